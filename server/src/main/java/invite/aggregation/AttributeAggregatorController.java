@@ -1,35 +1,40 @@
 package invite.aggregation;
 
-import invite.manage.EntityType;
-import invite.manage.Manage;
-import invite.model.Authority;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.cron.LastActivityBuffer;
+import invite.exception.InvalidInputException;
+import invite.model.MembershipsRequest;
 import invite.model.Organisation;
-import invite.model.Role;
-import invite.model.User;
-import invite.model.UserRole;
-import invite.provision.scim.GroupURN;
-import invite.repository.UserRepository;
+import invite.repository.OrganisationRepository;
+import invite.voot.VootMemberships;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
+import org.springframework.util.CollectionUtils;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static invite.SwaggerOpenIdConfig.BASIC_AUTHENTICATION_SCHEME_NAME;
@@ -37,84 +42,141 @@ import static invite.SwaggerOpenIdConfig.BASIC_AUTHENTICATION_SCHEME_NAME;
 @RestController
 @RequestMapping(value = {"/api/external/v1/aa"}, produces = MediaType.APPLICATION_JSON_VALUE)
 @SecurityRequirement(name = BASIC_AUTHENTICATION_SCHEME_NAME)
-@Transactional
 public class AttributeAggregatorController {
 
     private static final Log LOG = LogFactory.getLog(AttributeAggregatorController.class);
     private static final String AUTORISATIE = "autorisatie";
     private static final String ID = "id";
 
-    private final UserRepository userRepository;
-    private final Manage manage;
-    private final String groupUrnPrefix;
+    private final VootMemberships vootMemberships;
+    private final ServiceProviderRoles serviceProviderRoles;
+    private final OrganisationRepository organisationRepository;
+    private final LastActivityBuffer lastActivityBuffer;
+    private final ObjectMapper objectMapper;
 
-    public AttributeAggregatorController(UserRepository userRepository,
-                                         Manage manage,
-                                         @Value("${voot.group_urn_domain}") String groupUrnPrefix) {
-        this.userRepository = userRepository;
-        this.manage = manage;
-        this.groupUrnPrefix = groupUrnPrefix;
+    public AttributeAggregatorController(VootMemberships vootMemberships,
+                                         ServiceProviderRoles serviceProviderRoles,
+                                         OrganisationRepository organisationRepository,
+                                         LastActivityBuffer lastActivityBuffer,
+                                         ObjectMapper objectMapper) {
+        this.vootMemberships = vootMemberships;
+        this.serviceProviderRoles = serviceProviderRoles;
+        this.organisationRepository = organisationRepository;
+        this.lastActivityBuffer = lastActivityBuffer;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{unspecified_id}")
     @PreAuthorize("hasRole('ATTRIBUTE_AGGREGATION')")
     public ResponseEntity<List<Map<String, String>>> getGroupMemberships(@PathVariable("unspecified_id") String unspecifiedId,
                                                                          @RequestParam("SPentityID") String spEntityId) {
-        Optional<Map<String, Object>> optionalProvider;
-        try {
-            optionalProvider = manage
-                    .providerByEntityID(EntityType.SAML20_SP, spEntityId)
-                    .or(() -> manage.providerByEntityID(EntityType.OIDC10_RP, spEntityId));
-        } catch (RuntimeException e) {
-            LOG.error("Error in communication with Manage", e);
-            optionalProvider = Optional.empty();
-        }
-
-        if (optionalProvider.isEmpty()) {
+        Optional<String> optionalManageId = this.manageId(spEntityId);
+        if (optionalManageId.isEmpty()) {
             LOG.debug(String.format("AA request for unknown service: %s", spEntityId));
             return ResponseEntity.ok(Collections.emptyList());
         }
-        Optional<User> optionalUser = userRepository.findBySubIgnoreCase(unspecifiedId);
-        if (optionalUser.isEmpty()) {
+        VootMemberships.Memberships memberships = vootMemberships.memberships(unspecifiedId);
+        if (memberships.userId() == null) {
             LOG.debug(String.format("AA request for unknown user: %s", unspecifiedId));
             return ResponseEntity.ok(Collections.emptyList());
         }
-        User user = optionalUser.get();
-        user.setLastActivity(Instant.now());
-        userRepository.save(user);
-
-        Map<String, Object> provider = optionalProvider.get();
-        List<Map<String, String>> userRoleList = user.getUserRoles().stream()
-                .filter(userRole -> userRole.getRole().applicationsUsed().stream()
-                        .anyMatch(application -> application.getManageId().equals(provider.get(ID))))
-                .filter(userRole -> userRole.getAuthority().equals(Authority.GUEST) || userRole.isGuestRoleIncluded())
-                .map(this::parseUserRole)
+        lastActivityBuffer.record(memberships.userId());
+
+        List<Map<String, String>> userRoleList = this.attributes(memberships, serviceProviderRoles.roleIds(optionalManageId.get()),
+                organisationRepository::findOrganisationOfUser);
+        LOG.debug(String.format("Returning %o roles for AA request for user: %s and service %s", userRoleList.size(), unspecifiedId, spEntityId));
+
+        return ResponseEntity.ok(userRoleList);
+    }
+
+    /**
+     * Streams the attributes of all subs for all spEntityIDs as newline delimited JSON, one line per combination of
+     * sub and service provider in the order of the request. Like the bulk VOOT request, the last activity of the
+     * users is not recorded.
+     */
+    @PostMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ATTRIBUTE_AGGREGATION')")
+    public ResponseEntity<StreamingResponseBody> getGroupMembershipsBulk(@Validated @RequestBody MembershipsRequest membershipsRequest) {
+        List<String> spEntityIDs = membershipsRequest.getSpEntityIDs();
+        if (CollectionUtils.isEmpty(spEntityIDs)) {
+            throw new InvalidInputException("spEntityIDs are required for attribute aggregation");
+        }
+        List<String> subs = membershipsRequest.getSubs();
+        //Resolve the service providers before streaming, unknown services have no roles
+        Map<String, Set<Long>> roleIdsBySpEntityID = new LinkedHashMap<>();
+        spEntityIDs.forEach(spEntityId -> roleIdsBySpEntityID.put(spEntityId, this.manageId(spEntityId)
+                .map(serviceProviderRoles::roleIds)
+                .orElse(Set.of())));
+        LOG.debug(String.format("Bulk AA request for %s users and %s services", subs.size(), spEntityIDs.size()));
+
+        StreamingResponseBody body = outputStream -> {
+            for (int i = 0; i < subs.size(); i += VootMemberships.BATCH_SIZE) {
+                List<String> batch = subs.subList(i, Math.min(i + VootMemberships.BATCH_SIZE, subs.size()));
+                Map<String, VootMemberships.Memberships> membershipsBySub = vootMemberships.memberships(batch);
+                Map<Long, Organisation> organisations = this.organisationsOfCrmMembers(membershipsBySub.values());
+                for (String sub : batch) {
+                    VootMemberships.Memberships memberships = membershipsBySub.get(sub.toLowerCase(Locale.ROOT));
+                    for (Map.Entry<String, Set<Long>> entry : roleIdsBySpEntityID.entrySet()) {
+                        List<Map<String, String>> attributes = memberships.userId() == null ?
+                                Collections.emptyList() : this.attributes(memberships, entry.getValue(),
+                                userId -> Optional.ofNullable(organisations.get(userId)));
+                        outputStream.write(objectMapper.writeValueAsBytes(
+                                Map.of("sub", sub, "SPentityID", entry.getKey(), "attributes", attributes)));
+                        outputStream.write('\n');
+                    }
+                }
+                outputStream.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private Optional<String> manageId(String spEntityId) {
+        try {
+            return serviceProviderRoles.manageId(spEntityId);
+        } catch (RuntimeException e) {
+            LOG.error("Error in communication with Manage", e);
+            return Optional.empty();
+        }
+    }
+
+    //The organisations of the users with a CRM role, resolved for the whole batch with one query
+    private Map<Long, Organisation> organisationsOfCrmMembers(Collection<VootMemberships.Memberships> memberships) {
+        List<Long> userIds = memberships.stream()
+                .filter(userMemberships -> userMemberships.memberships().stream().anyMatch(VootMemberships.Membership::crmRole))
+                .map(VootMemberships.Memberships::userId)
+                .toList();
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Organisation> organisations = new HashMap<>();
+        organisationRepository.findOrganisationsOfUsers(userIds)
+                .forEach(row -> organisations.putIfAbsent((Long) row[0], (Organisation) row[1]));
+        return organisations;
+    }
+
+    private List<Map<String, String>> attributes(VootMemberships.Memberships memberships,
+                                                 Set<Long> roleIds,
+                                                 Function<Long, Optional<Organisation>> organisationOfUser) {
+        List<Map<String, String>> userRoleList = memberships.memberships().stream()
+                .filter(membership -> roleIds.contains(membership.roleId()))
+                .map(this::parseMembership)
                 //Nees to be mutable
                 .collect(Collectors.toCollection(ArrayList::new));
 
-        List<Map<String, String>> autorisatieRoles = userRoleList.stream()
-                .filter(m -> m.containsKey(AUTORISATIE))
-                .toList();
-        if (!autorisatieRoles.isEmpty()) {
-            user.getUserRoles().stream()
-                    .map(userRole -> userRole.getRole())
-                    .filter(r -> r.getOrganisation() != null)
-                    .findFirst()
-                    .ifPresent(role -> {
-                        Organisation organisation = role.getOrganisation();
+        boolean autorisatieRoles = userRoleList.stream().anyMatch(m -> m.containsKey(AUTORISATIE));
+        if (autorisatieRoles) {
+            organisationOfUser.apply(memberships.userId())
+                    .ifPresent(organisation -> {
                         userRoleList.add(Map.of(AUTORISATIE, "urn:mace:surfnet.nl:surfnet.nl:sab:organizationCode:" + organisation.getCrmOrganisationAbbrevation()));
                         userRoleList.add(Map.of(AUTORISATIE, "urn:mace:surfnet.nl:surfnet.nl:sab:organizationGUID:" + organisation.getCrmOrganisationId()));
                     });
         }
-        LOG.debug(String.format("Returning %o roles for AA request for user: %s and service %s", userRoleList.size(), unspecifiedId, spEntityId));
-
-        return ResponseEntity.ok(userRoleList);
+        return userRoleList;
     }
 
-    private Map<String, String> parseUserRole(UserRole userRole) {
-        Role role = userRole.getRole();
-        String urn = GroupURN.urnFromRole(groupUrnPrefix, role);
-        return Map.of(StringUtils.hasText(role.getCrmRoleId()) ? AUTORISATIE : ID, urn);
+    private Map<String, String> parseMembership(VootMemberships.Membership membership) {
+        return Map.of(membership.crmRole() ? AUTORISATIE : ID, membership.urn());
     }
 
 }
@@ -0,0 +1,114 @@
+package invite.aggregation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import invite.manage.EntityType;
+import invite.manage.Manage;
+import invite.repository.ApplicationUsageRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index of the roles per service provider for attribute aggregation. The manage identifier of a service provider
+ * entityID is cached, and the roles per manage identifier are read from the application_usages into memory. The
+ * index is rebuilt when a role or application usage changes or when the time-to-live has passed.
+ */
+@Component
+public class ServiceProviderRoles {
+
+    private static final Log LOG = LogFactory.getLog(ServiceProviderRoles.class);
+
+    private final Manage manage;
+    private final ApplicationUsageRepository applicationUsageRepository;
+    private final boolean enabled;
+    private final Duration timeToLive;
+    private final Cache<String, Optional<String>> manageIdentifiers;
+
+    private volatile Map<String, Set<Long>> roleIdsByManageId = Map.of();
+    private volatile Instant builtAt = Instant.EPOCH;
+    private volatile boolean stale = true;
+
+    public ServiceProviderRoles(Manage manage,
+                                ApplicationUsageRepository applicationUsageRepository,
+                                @Value("${attribute-aggregation.cache.enabled}") boolean enabled,
+                                @Value("${attribute-aggregation.cache.time-to-live}") Duration timeToLive) {
+        this.manage = manage;
+        this.applicationUsageRepository = applicationUsageRepository;
+        this.enabled = enabled;
+        this.timeToLive = timeToLive;
+        this.manageIdentifiers = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(10_000)
+                .build();
+    }
+
+    /**
+     * Returns the manage identifier of the SAML SP or OIDC RP. Errors of Manage are not cached and propagated.
+     */
+    public Optional<String> manageId(String spEntityId) {
+        if (!enabled) {
+            return this.resolveManageId(spEntityId);
+        }
+        return this.manageIdentifiers.get(spEntityId, this::resolveManageId);
+    }
+
+    private Optional<String> resolveManageId(String spEntityId) {
+        return manage.providerByEntityID(EntityType.SAML20_SP, spEntityId)
+                .or(() -> manage.providerByEntityID(EntityType.OIDC10_RP, spEntityId))
+                .map(provider -> (String) provider.get("id"));
+    }
+
+    public Set<Long> roleIds(String manageId) {
+        if (!enabled) {
+            return new HashSet<>(applicationUsageRepository.findRoleIdsByManageId(manageId));
+        }
+        if (stale || builtAt.plus(timeToLive).isBefore(Instant.now())) {
+            this.rebuild();
+        }
+        return roleIdsByManageId.getOrDefault(manageId, Set.of());
+    }
+
+    private synchronized void rebuild() {
+        if (!stale && builtAt.plus(timeToLive).isAfter(Instant.now())) {
+            //Rebuilt by another thread
+            return;
+        }
+        //Reset before querying, so changes during the query mark the index stale again
+        this.stale = false;
+        Map<String, Set<Long>> index = new HashMap<>();
+        applicationUsageRepository.findAllManageIdRoleIds().forEach(row -> index
+                .computeIfAbsent((String) row.get("manage_id"), key -> new HashSet<>())
+                .add(((Number) row.get("role_id")).longValue()));
+        index.replaceAll((manageId, roleIds) -> Set.copyOf(roleIds));
+        this.roleIdsByManageId = index;
+        this.builtAt = Instant.now();
+        LOG.debug(String.format("Rebuilt the attribute aggregation index for %s applications", index.size()));
+    }
+
+    /**
+     * Marks the index stale now and after the current transaction has completed.
+     */
+    public void invalidate() {
+        this.stale = true;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    stale = true;
+                }
+            });
+        }
+    }
+}
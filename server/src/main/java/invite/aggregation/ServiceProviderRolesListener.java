@@ -0,0 +1,24 @@
+package invite.aggregation;
+
+import invite.model.EntityChangeListener;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener for Role and ApplicationUsage which invalidates the index of roles per service provider.
+ */
+public class ServiceProviderRolesListener extends EntityChangeListener<ServiceProviderRoles> {
+
+    public ServiceProviderRolesListener(ObjectProvider<ServiceProviderRoles> serviceProviderRoles) {
+        super(serviceProviderRoles);
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        this.report(ServiceProviderRoles::invalidate);
+    }
+}
@@ -6,6 +6,9 @@ import invite.exception.InvitationExpiredException;
 import invite.exception.InvitationStatusException;
 import invite.exception.NotFoundException;
 import invite.exception.RemoteException;
+import invite.export.ExportFormat;
+import invite.export.ExportQueries;
+import invite.export.RowExporter;
 import invite.logging.AccessLogger;
 import invite.logging.Event;
 import invite.mail.MailBox;
@@ -33,6 +36,7 @@ import invite.repository.InvitationRepository;
 import invite.repository.OrganisationRepository;
 import invite.repository.RoleRepository;
 import invite.repository.UserRepository;
+import invite.search.SearchCounts;
 import invite.security.SuperAdmin;
 import invite.security.UserPermissions;
 import io.swagger.v3.oas.annotations.Operation;
@@ -51,6 +55,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -74,6 +79,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
@@ -116,6 +122,8 @@ public class InvitationController implements InvitationResource {
     private final SuperAdmin superAdmin;
     private final InvitationOperations invitationOperations;
     private final UserRoleAuditService userRoleAuditService;
+    private final RowExporter rowExporter;
+    private final SearchCounts searchCounts;
 
     public InvitationController(MailBox mailBox,
                                 Manage manage,
@@ -126,7 +134,9 @@ public class InvitationController implements InvitationResource {
                                 ApplicationRepository applicationRepository,
                                 ProvisioningService provisioningService,
                                 SecurityContextRepository securityContextRepository,
-                                SuperAdmin superAdmin, UserRoleAuditService userRoleAuditService) {
+                                SuperAdmin superAdmin, UserRoleAuditService userRoleAuditService,
+                                RowExporter rowExporter,
+                                SearchCounts searchCounts) {
         this.mailBox = mailBox;
         this.manage = manage;
         this.invitationRepository = invitationRepository;
@@ -139,6 +149,8 @@ public class InvitationController implements InvitationResource {
         this.superAdmin = superAdmin;
         this.invitationOperations = new InvitationOperations(this);
         this.userRoleAuditService = userRoleAuditService;
+        this.rowExporter = rowExporter;
+        this.searchCounts = searchCounts;
     }
 
     @PostMapping("")
@@ -498,42 +510,131 @@ public class InvitationController implements InvitationResource {
                                                             @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection) {
         LOG.debug(String.format("GET /search for invitations %s", user.getEduPersonPrincipalName()));
 
-        Page<Map<String, Object>> invitationsPage;
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.fromString(sortDirection), sort));
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
         boolean queryHasText = StringUtils.hasText(query);
         query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
         String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
         boolean noSearchTokens = parsedQuery.equals("*");
+        String status = Status.OPEN.name();
+        String strictQuery = query.toUpperCase() + "%";
+        //Without a cursor the keyset queries are offset queries, and the total is counted by the cached SearchCounts
+        Slice<Map<String, Object>> invitationsSlice;
+        SearchCounts.Count count;
+        Set<String> tables = Set.of("invitations", "users");
 
         if (roleId == null) {
             UserPermissions.assertSuperUser(user);
             if (queryHasText && !noSearchTokens) {
-                invitationsPage = invitationRepository.searchByStatusPageWithKeyword(Status.OPEN.name(), parsedQuery, pageable);
+                invitationsSlice = invitationRepository.searchByStatusKeysetWithKeyword(status, parsedQuery, null, null, pageable);
+                count = searchCounts.count(tables, "invitations:keyword", List.of(status, parsedQuery),
+                        () -> invitationRepository.countSearchByStatusWithKeyword(status, parsedQuery));
+            } else if (noSearchTokens) {
+                //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
+                invitationsSlice = invitationRepository.searchByStatusKeysetWithStrictSearch(status, strictQuery, null, null, pageable);
+                count = searchCounts.count(tables, "invitations:strict", List.of(status, strictQuery),
+                        () -> invitationRepository.countSearchByStatusWithStrictSearch(status, strictQuery));
+            } else {
+                invitationsSlice = invitationRepository.searchByStatusKeyset(status, null, null, pageable);
+                count = searchCounts.count(tables, "invitations", List.of(status),
+                        () -> invitationRepository.countByStatus(Status.OPEN));
+            }
+        } else {
+            Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
+            User userFromDB = userRepository.getReferenceById(user.getId());
+            UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
+            if (queryHasText && !noSearchTokens) {
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeysetWithKeyword(status, roleId, parsedQuery, null, null, pageable);
+                count = searchCounts.count(tables, "invitations:role:keyword", List.of(status, roleId, parsedQuery),
+                        () -> invitationRepository.countSearchByStatusAndRoleWithKeyword(status, roleId, parsedQuery));
+            } else if (noSearchTokens) {
+                //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeysetWithStrictSearch(status, roleId, strictQuery, null, null, pageable);
+                count = searchCounts.count(tables, "invitations:role:strict", List.of(status, roleId, strictQuery),
+                        () -> invitationRepository.countSearchByStatusAndRoleWithStrictSearch(status, roleId, strictQuery));
+            } else {
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeyset(status, roleId, null, null, pageable);
+                count = searchCounts.count(tables, "invitations:role", List.of(status, roleId),
+                        () -> invitationRepository.countSearchByStatusAndRole(status, roleId));
+            }
+        }
+        List<Map<String, Object>> invitations = this.addRoles(KeysetPage.withoutSortColumn(invitationsSlice.getContent()));
+        return Pagination.of(invitationsSlice, invitations, count);
+    }
+
+    @GetMapping(value = "search", params = "cursor")
+    @Transactional(readOnly = true)
+    public ResponseEntity<KeysetPage<Map<String, Object>>> searchByKeyset(@Parameter(hidden = true) User user,
+                                                                          @RequestParam(value = "cursor") String cursor,
+                                                                          @RequestParam(value = "roleId", required = false) Long roleId,
+                                                                          @RequestParam(value = "query", required = false, defaultValue = "") String query,
+                                                                          @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
+                                                                          @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
+                                                                          @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection) {
+        LOG.debug(String.format("GET /search with cursor for invitations %s", user.getEduPersonPrincipalName()));
+
+        KeysetPage.Cursor keyset = KeysetPage.Cursor.parse(cursor);
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(0, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
+        boolean queryHasText = StringUtils.hasText(query);
+        query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
+        String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
+        boolean noSearchTokens = parsedQuery.equals("*");
+        String status = Status.OPEN.name();
+        Slice<Map<String, Object>> invitationsSlice;
+
+        if (roleId == null) {
+            UserPermissions.assertSuperUser(user);
+            if (queryHasText && !noSearchTokens) {
+                invitationsSlice = invitationRepository.searchByStatusKeysetWithKeyword(status, parsedQuery, keyset.value(), keyset.id(), pageable);
             } else if (noSearchTokens) {
                 //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
                 query = query.toUpperCase() + "%";
-                invitationsPage = invitationRepository.searchByStatusPageWithStrictSearch(Status.OPEN.name(), query, pageable);
+                invitationsSlice = invitationRepository.searchByStatusKeysetWithStrictSearch(status, query, keyset.value(), keyset.id(), pageable);
             } else {
-                invitationsPage = invitationRepository.searchByStatusPage(Status.OPEN.name(), pageable);
+                invitationsSlice = invitationRepository.searchByStatusKeyset(status, keyset.value(), keyset.id(), pageable);
             }
         } else {
             Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
             User userFromDB = userRepository.getReferenceById(user.getId());
             UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
             if (queryHasText && !noSearchTokens) {
-                invitationsPage = invitationRepository.searchByStatusAndRoleWithKeywordPage(Status.OPEN.name(), role.getId(), parsedQuery, pageable);
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeysetWithKeyword(status, role.getId(), parsedQuery, keyset.value(), keyset.id(), pageable);
             } else if (noSearchTokens) {
                 //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
                 query = query.toUpperCase() + "%";
-                invitationsPage = invitationRepository.searchByStatusAndRoleWithStrictSearch(Status.OPEN.name(), role.getId(), query, pageable);
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeysetWithStrictSearch(status, role.getId(), query, keyset.value(), keyset.id(), pageable);
             } else {
-                invitationsPage = invitationRepository.searchByStatusAndRolePage(Status.OPEN.name(), role.getId(), pageable);
+                invitationsSlice = invitationRepository.searchByStatusAndRoleKeyset(status, role.getId(), keyset.value(), keyset.id(), pageable);
             }
         }
-        if (invitationsPage.getTotalElements() == 0L) {
-            return ResponseEntity.ok(invitationsPage);
+        KeysetPage<Map<String, Object>> keysetPage = KeysetPage.of(invitationsSlice, sort);
+        return ResponseEntity.ok(new KeysetPage<>(this.addRoles(keysetPage.content()), keysetPage.next()));
+    }
+
+    @GetMapping("export")
+    @Transactional(readOnly = true)
+    public ResponseEntity<StreamingResponseBody> export(@Parameter(hidden = true) User user,
+                                                        @RequestParam(value = "roleId", required = false) Long roleId,
+                                                        @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format) {
+        LOG.debug(String.format("GET /export for invitations %s", user.getEduPersonPrincipalName()));
+
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        if (roleId == null) {
+            UserPermissions.assertSuperUser(user);
+            return rowExporter.export("invitations", exportFormat, ExportQueries.INVITATIONS, Status.OPEN.name());
+        }
+        Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
+        User userFromDB = userRepository.getReferenceById(user.getId());
+        UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
+        return rowExporter.export("invitations", exportFormat, ExportQueries.INVITATIONS_BY_ROLE, Status.OPEN.name(), role.getId());
+    }
+
+    private List<Map<String, Object>> addRoles(List<Map<String, Object>> invitationMaps) {
+        if (invitationMaps.isEmpty()) {
+            return invitationMaps;
         }
-        List<Long> invitationIdentifiers = invitationsPage.getContent().stream()
+        List<Long> invitationIdentifiers = invitationMaps.stream()
                 .map(m -> (Long) m.get("id")).toList();
         //The rolesAndManageIdentifiers is a cartesian product, but the relationship between invitation, role and application is mainly 1-1-1
         List<Map<String, Object>> rolesAndManageIdentifiers = invitationRepository.findRoles(invitationIdentifiers);
@@ -541,7 +642,7 @@ public class InvitationController implements InvitationResource {
                 .stream()
                 .collect(Collectors.groupingBy(m -> (Long) m.get("id")));
         //We need to add all roles, but also a list of manageIdentifiers for each role
-        List<Map<String, Object>> invitations = invitationsPage.getContent()
+        List<Map<String, Object>> invitations = invitationMaps
                 .stream()
                 //Must copy to avoid java.lang.UnsupportedOperationException: A TupleBackedMap cannot be modified
                 .map(invitationMap -> {
@@ -568,7 +669,7 @@ public class InvitationController implements InvitationResource {
                     return copy;
                 })
                 .toList();
-        return Pagination.of(invitationsPage, invitations);
+        return invitations;
     }
 
     @GetMapping("/mine")
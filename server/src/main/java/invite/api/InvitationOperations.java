@@ -154,13 +154,11 @@ public class InvitationOperations {
                 .toList();
 
 
-        if (!invitationRequest.isSuppressSendingEmails()) {
-
-            invitations.forEach(invitation -> {
-                Optional<String> idpName = identityProviderName(this.invitationResource.getManage(), invitation);
-                mailBox.sendInviteMail(user == null ? remoteUser : user,
-                        invitation, groupedProviders, invitationRequest.getLanguage(), idpName);
-            });
+        if (!invitationRequest.isSuppressSendingEmails() && !invitations.isEmpty()) {
+            //The invitations share their organization, and therefore their identity provider
+            Optional<String> idpName = identityProviderName(this.invitationResource.getManage(), invitations.getFirst());
+            mailBox.sendInviteMails(user == null ? remoteUser : user,
+                    invitations, groupedProviders, invitationRequest.getLanguage(), idpName);
         }
         invitations.forEach(invitation -> AccessLogger.invitation(LOG, Event.Created, invitation));
         InvitationResponse invitationResponse = new InvitationResponse(
@@ -0,0 +1,92 @@
+package invite.api;
+
+import invite.exception.InvalidInputException;
+import invite.repository.Keyset;
+import org.springframework.data.domain.Slice;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A slice of a keyset paginated search. The next cursor is an opaque token with the sort value and id of the last row,
+ * which is null if there are no more rows. Keyset pagination does not count the total number of rows.
+ */
+public record KeysetPage<T>(List<T> content, String next) {
+
+    /**
+     * The sort value of the rows is selected as keyset_sort, unless the sort property is an alias of the select.
+     */
+    public static KeysetPage<Map<String, Object>> of(Slice<Map<String, Object>> slice, String sort) {
+        List<Map<String, Object>> rows = slice.getContent();
+        String next = null;
+        if (slice.hasNext() && !rows.isEmpty()) {
+            Map<String, Object> last = rows.getLast();
+            Object sortValue = last.containsKey(Keyset.SORT_COLUMN) ? last.get(Keyset.SORT_COLUMN) : last.get(sort);
+            next = cursor(sortValue, (Number) last.get("id"));
+        }
+        return new KeysetPage<>(withoutSortColumn(rows), next);
+    }
+
+    static List<Map<String, Object>> withoutSortColumn(List<Map<String, Object>> rows) {
+        //Must copy to avoid java.lang.UnsupportedOperationException: A TupleBackedMap cannot be modified
+        return rows.stream()
+                .map(row -> {
+                    Map<String, Object> copy = new HashMap<>(row);
+                    copy.remove(Keyset.SORT_COLUMN);
+                    return copy;
+                })
+                .toList();
+    }
+
+    public static <T> KeysetPage<T> of(Slice<T> slice, Function<T, Object> sortValue, Function<T, Long> id) {
+        List<T> content = slice.getContent();
+        String next = slice.hasNext() && !content.isEmpty() ?
+                cursor(sortValue.apply(content.getLast()), id.apply(content.getLast())) : null;
+        return new KeysetPage<>(content, next);
+    }
+
+    private static String cursor(Object sortValue, Number id) {
+        String value = sortValue == null ? "" : ":" + sqlValue(sortValue);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id.longValue() + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    //The sort value is compared in SQL with the sort column
+    private static String sqlValue(Object value) {
+        return switch (value) {
+            case Boolean b -> b ? "1" : "0";
+            case Instant instant -> Timestamp.from(instant).toString();
+            case LocalDateTime localDateTime -> Timestamp.valueOf(localDateTime).toString();
+            default -> value.toString();
+        };
+    }
+
+    /**
+     * The parsed cursor of the previous slice. Both the value and the id are null for the first slice.
+     */
+    public record Cursor(String value, Long id) {
+
+        public static Cursor parse(String token) {
+            if (!StringUtils.hasText(token)) {
+                return new Cursor(null, null);
+            }
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(':');
+                return separator == -1 ?
+                        new Cursor(null, Long.valueOf(decoded)) :
+                        new Cursor(decoded.substring(separator + 1), Long.valueOf(decoded.substring(0, separator)));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidInputException("Invalid cursor: " + token);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import invite.config.Config;
 import invite.exception.NotFoundException;
 import invite.manage.EntityType;
 import invite.manage.Manage;
+import invite.manage.ProviderView;
 import invite.model.Application;
 import invite.model.Authority;
 import invite.config.RequestedAuthnContext;
@@ -181,10 +182,11 @@ public class ManageController {
         //Convert to map with key = manage_id and value = role_count
         Map<String, Long> applicationsPerManageId = applicationRepository.countByApplications().stream()
                 .collect(Collectors.toMap(m -> (String) m.get("manage_id"), m -> (Long) m.get("role_count")));
-        providers.forEach(provider -> {
-            Long roleCount = applicationsPerManageId.getOrDefault(provider.get("id"), 0L);
-            provider.put("roleCount", roleCount);
-        });
+        //The providers are shared, so the roleCount is added to a view
+        providers = providers.stream()
+                .map(provider -> ProviderView.withEntry(provider, "roleCount",
+                        applicationsPerManageId.getOrDefault(provider.get("id"), 0L)))
+                .toList();
         List<Map<String, Object>> provisionings = manage.provisioning(applications.stream()
                 .map(Application::getManageId)
                 .toList());
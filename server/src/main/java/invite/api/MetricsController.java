@@ -1,6 +1,7 @@
 package invite.api;
 
 import invite.model.Authority;
+import invite.model.ProvisioningMessage;
 import invite.model.Status;
 import invite.repository.*;
 import io.micrometer.core.instrument.Gauge;
@@ -19,6 +20,7 @@ public class MetricsController {
                              InvitationRepository invitationRepository,
                              UserRoleRepository userRoleRepository,
                              ApplicationRepository applicationRepository,
+                             ProvisioningMessageRepository provisioningMessageRepository,
                              MeterRegistry meterRegistry) {
 
         Gauge.builder("total_number_of_users", () ->
@@ -61,6 +63,13 @@ public class MetricsController {
                 .description("Total number of pending invitations")
                 .register(meterRegistry);
 
+        Stream.of(ProvisioningMessage.MessageStatus.values())
+                .forEach(status -> Gauge
+                        .builder("total_number_of_" + status.name().toLowerCase() + "_provisioning_messages",
+                                () -> provisioningMessageRepository.countByStatus(status))
+                        .description("Total number of " + status.name().toLowerCase() + " provisioning messages")
+                        .register(meterRegistry));
+
     }
 
 }
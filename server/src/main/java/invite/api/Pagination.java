@@ -1,7 +1,10 @@
 package invite.api;
 
+import invite.search.SearchCounts;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
@@ -13,6 +16,31 @@ public class Pagination {
     }
 
     static <T> ResponseEntity<Page<T>> of(Page<?> page, List<T> content) {
-        return ResponseEntity.ok(new PageImpl<>(content, page.getPageable(), page.getTotalElements()));
+        return ResponseEntity.ok(new CountedPage<>(content, page.getPageable(), page.getTotalElements(), true));
+    }
+
+    /**
+     * The total of the count is not queried with the slice, and is an estimate if the count is not exact.
+     */
+    static <T> ResponseEntity<Page<T>> of(Slice<?> slice, List<T> content, SearchCounts.Count count) {
+        return ResponseEntity.ok(new CountedPage<>(content, slice.getPageable(), count.total(), count.exact()));
+    }
+
+    /**
+     * A page which exposes whether the total number of elements is exact, so the total of an estimate can be
+     * presented as an approximation.
+     */
+    public static class CountedPage<T> extends PageImpl<T> {
+
+        private final boolean totalExact;
+
+        CountedPage(List<T> content, Pageable pageable, long total, boolean totalExact) {
+            super(content, pageable, total);
+            this.totalExact = totalExact;
+        }
+
+        public boolean isTotalExact() {
+            return totalExact;
+        }
     }
 }
@@ -3,6 +3,9 @@ package invite.api;
 import invite.config.Config;
 import invite.exception.NotFoundException;
 import invite.exception.UserRestrictionException;
+import invite.export.ExportFormat;
+import invite.export.ExportQueries;
+import invite.export.RowExporter;
 import invite.logging.AccessLogger;
 import invite.logging.Event;
 import invite.manage.EntityType;
@@ -22,18 +25,24 @@ import invite.repository.ApplicationUsageRepository;
 import invite.repository.RoleRepository;
 import invite.repository.UserRepository;
 import invite.repository.UserRoleRepository;
+import invite.search.SearchCounts;
+import invite.search.UserSummaries;
 import invite.security.UserPermissions;
+import invite.voot.VootMemberships;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.Getter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -51,6 +60,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
@@ -91,6 +101,10 @@ public class RoleController implements ApplicationResource {
     private final RoleOperations roleOperations;
     private final String groupUrnPrefix;
     private final UserRepository userRepository;
+    private final VootMemberships vootMemberships;
+    private final RowExporter rowExporter;
+    private final SearchCounts searchCounts;
+    private final UserSummaries userSummaries;
 
     public RoleController(RoleRepository roleRepository,
                           UserRoleRepository userRoleRepository,
@@ -99,7 +113,11 @@ public class RoleController implements ApplicationResource {
                           Manage manage,
                           ProvisioningService provisioningService,
                           @Value("${voot.group_urn_domain}") String groupUrnPrefix,
-                          UserRepository userRepository) {
+                          UserRepository userRepository,
+                          VootMemberships vootMemberships,
+                          RowExporter rowExporter,
+                          SearchCounts searchCounts,
+                          UserSummaries userSummaries) {
         this.roleRepository = roleRepository;
         this.userRoleRepository = userRoleRepository;
         this.applicationRepository = applicationRepository;
@@ -109,6 +127,10 @@ public class RoleController implements ApplicationResource {
         this.roleOperations = new RoleOperations(this);
         this.groupUrnPrefix = groupUrnPrefix;
         this.userRepository = userRepository;
+        this.vootMemberships = vootMemberships;
+        this.rowExporter = rowExporter;
+        this.searchCounts = searchCounts;
+        this.userSummaries = userSummaries;
     }
 
     @GetMapping("")
@@ -121,30 +143,41 @@ public class RoleController implements ApplicationResource {
                                                          @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
                                                          @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection) {
         LOG.debug(String.format("/roles for user %s", user.getEduPersonPrincipalName()));
-        Page<Role> rolesPage;
+        Slice<Role> rolesSlice;
+        SearchCounts.Count count;
         if (user.isSuperUser()) {
             if (force) {
                 Pageable pageable = PageRequest.of(0, Integer.MAX_VALUE);
-                rolesPage = roleRepository.searchByPage(pageable);
+                Page<Role> rolesPage = roleRepository.searchByPage(pageable);
+                rolesSlice = rolesPage;
+                count = SearchCounts.Count.exact(rolesPage.getTotalElements());
             } else {
-                Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.fromString(sortDirection), sort));
+                Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+                Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
                 boolean queryHasText = StringUtils.hasText(query);
                 query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
                 String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
                 boolean noSearchTokens = parsedQuery.equals("*");
+                //Without a cursor the keyset queries are offset queries, and the total is counted by the cached SearchCounts
                 if (queryHasText && !noSearchTokens) {
-                    rolesPage = roleRepository.searchByPageWithKeyword(parsedQuery, pageable);
+                    rolesSlice = roleRepository.searchByKeysetWithKeyword(parsedQuery, null, null, pageable);
+                    count = searchCounts.count(Set.of("roles"), "roles:keyword", List.of(parsedQuery),
+                            () -> roleRepository.countSearchWithKeyword(parsedQuery));
                 } else if (noSearchTokens) {
                     //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
-                    query = query.toUpperCase() + "%";
-                    rolesPage = roleRepository.searchByPageWithStrictSearch(query, pageable);
+                    String strictQuery = query.toUpperCase() + "%";
+                    rolesSlice = roleRepository.searchByKeysetWithStrictSearch(strictQuery, null, null, pageable);
+                    count = searchCounts.count(Set.of("roles"), "roles:strict", List.of(strictQuery),
+                            () -> roleRepository.countSearchWithStrictSearch(strictQuery));
                 } else {
-                    rolesPage = roleRepository.searchByPage(pageable);
+                    rolesSlice = roleRepository.searchByKeyset(null, null, pageable);
+                    count = searchCounts.estimate("roles", roleRepository::count);
                 }
             }
         } else {
             UserPermissions.assertApplicationManager(user);
             Pageable pageable = PageRequest.of(0, Integer.MAX_VALUE);
+            Page<Role> rolesPage;
             if (user.isInstitutionAdmin()) {
                 rolesPage = roleRepository.searchByPageAndOrganizationGUID(user.getOrganizationGUID(), pageable);
             } else {
@@ -154,11 +187,62 @@ public class RoleController implements ApplicationResource {
                 List<Role> roles = roleRepository.findByApplicationUsagesApplicationManageIdIn(manageIdentifiers);
                 rolesPage = new PageImpl<>(roles, pageable, roles.size());
             }
+            rolesSlice = rolesPage;
+            count = SearchCounts.Count.exact(rolesPage.getTotalElements());
         }
-        List<Long> roleIdentifiers = rolesPage.getContent().stream().map(role -> role.getId()).toList();
+        List<Long> roleIdentifiers = rolesSlice.getContent().stream().map(role -> role.getId()).toList();
         List<Map<String, Object>> applications = roleRepository.findApplications(roleIdentifiers);
-        List<Role> roles = manage.addManageMetaData(this.roleFromQuery(rolesPage, applications));
-        return Pagination.of(rolesPage, roles);
+        List<Role> roles = manage.addManageMetaData(this.roleFromQuery(rolesSlice, applications));
+        return Pagination.of(rolesSlice, roles, count);
+    }
+
+    @GetMapping(value = "", params = "cursor")
+    @Transactional(readOnly = true)
+    public ResponseEntity<KeysetPage<Role>> rolesByKeyset(@Parameter(hidden = true) User user,
+                                                          @RequestParam(value = "cursor") String cursor,
+                                                          @RequestParam(value = "query", required = false, defaultValue = "") String query,
+                                                          @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
+                                                          @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
+                                                          @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection) {
+        LOG.debug(String.format("/roles with cursor for user %s", user.getEduPersonPrincipalName()));
+
+        UserPermissions.assertSuperUser(user);
+        KeysetPage.Cursor keyset = KeysetPage.Cursor.parse(cursor);
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(0, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
+        boolean queryHasText = StringUtils.hasText(query);
+        query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
+        String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
+        boolean noSearchTokens = parsedQuery.equals("*");
+        Slice<Role> rolesSlice;
+        if (queryHasText && !noSearchTokens) {
+            rolesSlice = roleRepository.searchByKeysetWithKeyword(parsedQuery, keyset.value(), keyset.id(), pageable);
+        } else if (noSearchTokens) {
+            //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
+            query = query.toUpperCase() + "%";
+            rolesSlice = roleRepository.searchByKeysetWithStrictSearch(query, keyset.value(), keyset.id(), pageable);
+        } else {
+            rolesSlice = roleRepository.searchByKeyset(keyset.value(), keyset.id(), pageable);
+        }
+        List<Long> roleIdentifiers = rolesSlice.getContent().stream().map(role -> role.getId()).toList();
+        List<Map<String, Object>> applications = roleRepository.findApplications(roleIdentifiers);
+        List<Role> roles = manage.addManageMetaData(this.roleFromQuery(rolesSlice, applications));
+        return ResponseEntity.ok(KeysetPage.of(new SliceImpl<>(roles, pageable, rolesSlice.hasNext()),
+                role -> new BeanWrapperImpl(role).getPropertyValue(sort), Role::getId));
+    }
+
+    @GetMapping("export")
+    @Transactional(readOnly = true)
+    public ResponseEntity<StreamingResponseBody> export(@Parameter(hidden = true) User user,
+                                                        @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format) {
+        LOG.debug(String.format("/roles/export for user %s", user.getEduPersonPrincipalName()));
+
+        UserPermissions.assertInstitutionAdmin(user);
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        if (user.isSuperUser()) {
+            return rowExporter.export("roles", exportFormat, ExportQueries.ROLES);
+        }
+        return rowExporter.export("roles", exportFormat, ExportQueries.ROLES_BY_ORGANIZATION_GUID, user.getOrganizationGUID());
     }
 
     @GetMapping("{id}")
@@ -280,6 +364,9 @@ public class RoleController implements ApplicationResource {
         provisioningService.deleteGroupRequest(role);
         provisioningService.deleteUserRequest(role);
         roleRepository.deleteRoleById(role.getId());
+        vootMemberships.evictAll();
+        //The user roles are deleted by the database
+        userSummaries.changed(userRoles.stream().map(userRole -> userRole.getUser().getId()).toList());
 
         AccessLogger.role(LOG, Event.Deleted, user, role);
         return Results.deleteResult();
@@ -332,8 +419,8 @@ public class RoleController implements ApplicationResource {
     }
 
     //See RoleRepository#searchByPage
-    private List<Role> roleFromQuery(Page<Role> rolesPage, List<Map<String, Object>> applications) {
-        List<Role> roles = rolesPage.getContent();
+    private List<Role> roleFromQuery(Slice<Role> rolesSlice, List<Map<String, Object>> applications) {
+        List<Role> roles = rolesSlice.getContent();
 
         //Now add all applications, note that we need to preserve ordering of the roles
         Map<Long, List<Map<String, Object>>> applicationGroupedByRoleId =
@@ -1,6 +1,7 @@
 package invite.api;
 
 import invite.config.Config;
+import invite.cron.MailOutboxDispatcher;
 import invite.cron.ResourceCleaner;
 import invite.cron.RoleExpirationNotifier;
 import invite.exception.NotAllowedException;
@@ -53,6 +54,7 @@ public class SystemController {
     private final PerformanceSeed performanceSeed;
     private final Config config;
     private final ApplicationUsageRepository applicationUsageRepository;
+    private final MailOutboxDispatcher mailOutboxDispatcher;
 
     public SystemController(ResourceCleaner resourceCleaner,
                             RoleExpirationNotifier roleExpirationNotifier,
@@ -61,7 +63,8 @@ public class SystemController {
                             Manage manage,
                             PerformanceSeed performanceSeed,
                             Config config,
-                            ApplicationUsageRepository applicationUsageRepository) {
+                            ApplicationUsageRepository applicationUsageRepository,
+                            MailOutboxDispatcher mailOutboxDispatcher) {
         this.resourceCleaner = resourceCleaner;
         this.roleExpirationNotifier = roleExpirationNotifier;
         this.roleRepository = roleRepository;
@@ -70,6 +73,7 @@ public class SystemController {
         this.performanceSeed = performanceSeed;
         this.config = config;
         this.applicationUsageRepository = applicationUsageRepository;
+        this.mailOutboxDispatcher = mailOutboxDispatcher;
     }
 
     @GetMapping("/cron/cleanup")
@@ -87,6 +91,14 @@ public class SystemController {
         return ResponseEntity.ok(Map.of("mails", roleExpirationNotifier.doSweep()));
     }
 
+    @GetMapping("/mail-outbox")
+    @Transactional(readOnly = true)
+    public ResponseEntity<Map<String, Long>> mailOutbox(@Parameter(hidden = true) User user) {
+        LOG.debug(String.format("/mail-outbox for user %s", user.getEduPersonPrincipalName()));
+        UserPermissions.assertSuperUser(user);
+        return ResponseEntity.ok(mailOutboxDispatcher.counts());
+    }
+
     @GetMapping("/expiry-user-roles")
     public ResponseEntity<List<UserRole>> expiryUserRoles(@Parameter(hidden = true) User user) {
         LOG.debug(String.format("/expiry-user-roles for user %s", user.getEduPersonPrincipalName()));
@@ -120,6 +132,16 @@ public class SystemController {
         return ResponseEntity.ok(performanceSeed.go(numberOfRole, numberOfUsers));
     }
 
+    @DeleteMapping("/manage-cache")
+    public ResponseEntity<Void> evictManageCache(@Parameter(hidden = true) User user,
+                                                 @RequestParam(value = "entityType", required = false) EntityType entityType,
+                                                 @RequestParam(value = "identifier", required = false) String identifier) {
+        LOG.debug(String.format("/manage-cache for user %s", user.getEduPersonPrincipalName()));
+        UserPermissions.assertSuperUser(user);
+        manage.evict(entityType, identifier);
+        return Results.deleteResult();
+    }
+
     @GetMapping("/landing-page-fix")
     public ResponseEntity<Map<String, Integer>> landingPageFix(@Parameter(hidden = true) User user) {
         LOG.debug(String.format("landing-page-fix for user %s", user.getEduPersonPrincipalName()));
@@ -2,10 +2,12 @@ package invite.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import crypto.KeyStore;
 import invite.config.Config;
 import invite.exception.NotFoundException;
 import invite.exception.UserRestrictionException;
+import invite.export.ExportFormat;
+import invite.export.ExportQueries;
+import invite.export.RowExporter;
 import invite.manage.EntityType;
 import invite.manage.Manage;
 import invite.logging.AccessLogger;
@@ -18,6 +20,7 @@ import invite.repository.InvitationRepository;
 import invite.repository.RemoteProvisionedUserRepository;
 import invite.repository.RoleRepository;
 import invite.repository.UserRepository;
+import invite.search.SearchCounts;
 import invite.security.UserPermissions;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -31,6 +34,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -41,6 +45,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.view.RedirectView;
 
 import java.net.InetAddress;
@@ -74,7 +79,9 @@ public class UserController {
     private final ObjectMapper objectMapper;
     private final RemoteProvisionedUserRepository remoteProvisionedUserRepository;
     private final GraphClient graphClient;
+    private final RowExporter rowExporter;
     private final ProvisioningService provisioningService;
+    private final SearchCounts searchCounts;
 
     @Autowired
     public UserController(Config config,
@@ -83,11 +90,11 @@ public class UserController {
                           Manage manage,
                           ObjectMapper objectMapper,
                           RemoteProvisionedUserRepository remoteProvisionedUserRepository,
-                          KeyStore keyStore,
-                          @Value("${config.eduid-idp-schac-home-organization}") String eduidIdpSchacHomeOrganization,
-                          @Value("${config.server-url}") String serverBaseURL,
+                          GraphClient graphClient,
                           @Value("${voot.group_urn_domain}") String groupUrnPrefix,
-                          ProvisioningService provisioningService) {
+                          ProvisioningService provisioningService,
+                          RowExporter rowExporter,
+                          SearchCounts searchCounts) {
         this.invitationRepository = invitationRepository;
         this.roleRepository = roleRepository;
         this.provisioningService = provisioningService;
@@ -96,7 +103,9 @@ public class UserController {
         this.objectMapper = objectMapper;
         this.manage = manage;
         this.remoteProvisionedUserRepository = remoteProvisionedUserRepository;
-        this.graphClient = new GraphClient(serverBaseURL, eduidIdpSchacHomeOrganization, keyStore, objectMapper);
+        this.graphClient = graphClient;
+        this.rowExporter = rowExporter;
+        this.searchCounts = searchCounts;
     }
 
     @GetMapping("config")
@@ -181,23 +190,77 @@ public class UserController {
         LOG.debug(String.format("/search for user %s", user.getEduPersonPrincipalName()));
 
         UserPermissions.assertSuperUser(user);
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.fromString(sortDirection), sort));
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
+
+        boolean queryHasText = StringUtils.hasText(query);
+        query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
+        String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
+        boolean noSearchTokens = parsedQuery.equals("*");
+        //Without a cursor the keyset queries are offset queries, and the total is counted by the cached SearchCounts
+        Slice<Map<String, Object>> usersSlice;
+        SearchCounts.Count count;
+        if (queryHasText && !noSearchTokens) {
+            usersSlice = userRepository.searchByKeysetWithKeyword(parsedQuery, null, null, pageable);
+            count = searchCounts.count(Set.of("users"), "users:keyword", List.of(parsedQuery),
+                    () -> userRepository.countSearchWithKeyword(parsedQuery));
+        } else if (noSearchTokens) {
+            //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
+            String strictQuery = query.toUpperCase() + "%";
+            usersSlice = userRepository.searchByKeysetWithStrictMode(strictQuery, null, null, pageable);
+            count = searchCounts.count(Set.of("users"), "users:strict", List.of(strictQuery),
+                    () -> userRepository.countSearchWithStrictMode(strictQuery));
+        } else {
+            usersSlice = userRepository.searchByKeyset(null, null, pageable);
+            count = searchCounts.estimate("users", userRepository::count);
+        }
+        return Pagination.of(usersSlice, KeysetPage.withoutSortColumn(usersSlice.getContent()), count);
+    }
+
+    @GetMapping(value = "search", params = "cursor")
+    @Transactional(readOnly = true)
+    public ResponseEntity<KeysetPage<Map<String, Object>>> searchByKeyset(@Parameter(hidden = true) User user,
+                                                                          @RequestParam(value = "cursor") String cursor,
+                                                                          @RequestParam(value = "query", required = false, defaultValue = "") String query,
+                                                                          @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
+                                                                          @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
+                                                                          @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection) {
+        LOG.debug(String.format("/search with cursor for user %s", user.getEduPersonPrincipalName()));
+
+        UserPermissions.assertSuperUser(user);
+        KeysetPage.Cursor keyset = KeysetPage.Cursor.parse(cursor);
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(0, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
 
         boolean queryHasText = StringUtils.hasText(query);
         query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
         String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
         boolean noSearchTokens = parsedQuery.equals("*");
-        Page<Map<String, Object>> usersPage ;
+        Slice<Map<String, Object>> usersSlice;
         if (queryHasText && !noSearchTokens) {
-            usersPage =  userRepository.searchByPageWithKeyword(parsedQuery, pageable);
+            usersSlice = userRepository.searchByKeysetWithKeyword(parsedQuery, keyset.value(), keyset.id(), pageable);
         } else if (noSearchTokens) {
             //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
             query = query.toUpperCase() + "%";
-            usersPage =  userRepository.searchByPageWithStrictMode(query, pageable);
+            usersSlice = userRepository.searchByKeysetWithStrictMode(query, keyset.value(), keyset.id(), pageable);
         } else {
-            usersPage =  userRepository.searchByPage(pageable);
+            usersSlice = userRepository.searchByKeyset(keyset.value(), keyset.id(), pageable);
+        }
+        return ResponseEntity.ok(KeysetPage.of(usersSlice, sort));
+    }
+
+    @GetMapping("export")
+    @Transactional(readOnly = true)
+    public ResponseEntity<StreamingResponseBody> export(@Parameter(hidden = true) User user,
+                                                        @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format) {
+        LOG.debug(String.format("/export for user %s", user.getEduPersonPrincipalName()));
+
+        UserPermissions.assertInstitutionAdmin(user);
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        if (user.isSuperUser()) {
+            return rowExporter.export("users", exportFormat, ExportQueries.USERS);
         }
-        return ResponseEntity.ok(usersPage);
+        return rowExporter.export("users", exportFormat, ExportQueries.USERS_BY_ORGANIZATION_GUID, user.getOrganizationGUID());
     }
 
     @GetMapping("search-by-application")
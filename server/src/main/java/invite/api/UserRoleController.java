@@ -4,6 +4,9 @@ import invite.audit.UserRoleAuditService;
 import invite.config.Config;
 import invite.exception.NotAllowedException;
 import invite.exception.NotFoundException;
+import invite.export.ExportFormat;
+import invite.export.ExportQueries;
+import invite.export.RowExporter;
 import invite.logging.AccessLogger;
 import invite.logging.Event;
 import invite.manage.ManageIdentifier;
@@ -13,7 +16,11 @@ import invite.provision.scim.OperationType;
 import invite.repository.RoleRepository;
 import invite.repository.UserRepository;
 import invite.repository.UserRoleRepository;
+import invite.search.SearchCounts;
+import invite.search.UserRoleCounts;
+import invite.search.UserSummaries;
 import invite.security.UserPermissions;
+import invite.voot.VootMemberships;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -24,6 +31,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +39,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
@@ -64,13 +73,23 @@ public class UserRoleController implements UserRoleResource {
     private final Config config;
     private final UserRoleOperations userRoleOperations;
     private final UserRoleAuditService userRoleAuditService;
+    private final VootMemberships vootMemberships;
+    private final RowExporter rowExporter;
+    private final SearchCounts searchCounts;
+    private final UserSummaries userSummaries;
+    private final UserRoleCounts userRoleCounts;
 
     public UserRoleController(UserRoleRepository userRoleRepository,
                               RoleRepository roleRepository,
                               UserRepository userRepository,
                               ProvisioningService provisioningService,
                               UserRoleAuditService userRoleAuditService,
-                              Config config) {
+                              Config config,
+                              VootMemberships vootMemberships,
+                              RowExporter rowExporter,
+                              SearchCounts searchCounts,
+                              UserSummaries userSummaries,
+                              UserRoleCounts userRoleCounts) {
         this.userRoleRepository = userRoleRepository;
         this.roleRepository = roleRepository;
         this.userRepository = userRepository;
@@ -78,6 +97,11 @@ public class UserRoleController implements UserRoleResource {
         this.config = config;
         this.userRoleAuditService = userRoleAuditService;
         this.userRoleOperations = new UserRoleOperations(this);
+        this.vootMemberships = vootMemberships;
+        this.rowExporter = rowExporter;
+        this.searchCounts = searchCounts;
+        this.userSummaries = userSummaries;
+        this.userRoleCounts = userRoleCounts;
     }
 
     @GetMapping("roles/{roleId}")
@@ -124,14 +148,14 @@ public class UserRoleController implements UserRoleResource {
 
     @GetMapping("/search/{roleId}/{guests}")
     @Transactional(readOnly = true)
-    public ResponseEntity<Page<?>> searchPaginated(@PathVariable("roleId") Long roleId,
-                                                   @PathVariable("guests") boolean guests,
-                                                   @RequestParam(value = "query", required = false, defaultValue = "") String query,
-                                                   @RequestParam(value = "pageNumber", required = false, defaultValue = "0") int pageNumber,
-                                                   @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
-                                                   @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
-                                                   @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection,
-                                                   @Parameter(hidden = true) User user) {
+    public ResponseEntity<Page<Map<String, Object>>> searchPaginated(@PathVariable("roleId") Long roleId,
+                                                                     @PathVariable("guests") boolean guests,
+                                                                     @RequestParam(value = "query", required = false, defaultValue = "") String query,
+                                                                     @RequestParam(value = "pageNumber", required = false, defaultValue = "0") int pageNumber,
+                                                                     @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
+                                                                     @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
+                                                                     @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection,
+                                                                     @Parameter(hidden = true) User user) {
         LOG.debug(String.format("GET user_roles/search/%s for user %s", roleId, user.getEduPersonPrincipalName()));
 
         Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
@@ -139,28 +163,102 @@ public class UserRoleController implements UserRoleResource {
         User userFromDB = userRepository.getReferenceById(user.getId());
         UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
 
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.fromString(sortDirection), sort));
-        Page<Map<String, Object>> page;
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
+        //Without a cursor the keyset queries are offset queries, and the total is counted by the cached SearchCounts
+        Slice<Map<String, Object>> slice;
+        SearchCounts.Count count;
+        Set<String> tables = Set.of("user_roles", "users");
+        String shape = guests ? "user_roles:guests" : "user_roles:non_guests";
         boolean queryHasText = StringUtils.hasText(query);
         query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
         String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
         boolean noSearchTokens = parsedQuery.equals("*");
         if (queryHasText && !noSearchTokens) {
-            page = guests ?
-                    userRoleRepository.searchGuestsByPageWithKeyword(roleId, parsedQuery, pageable) :
-                    userRoleRepository.searchNonGuestsByPageWithKeyword(roleId, parsedQuery, pageable);
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeysetWithKeyword(roleId, parsedQuery, null, null, pageable) :
+                    userRoleRepository.searchNonGuestsByKeysetWithKeyword(roleId, parsedQuery, null, null, pageable);
+            count = searchCounts.count(tables, shape + ":keyword", List.of(roleId, parsedQuery), () -> guests ?
+                    userRoleRepository.countGuestsWithKeyword(roleId, parsedQuery) :
+                    userRoleRepository.countNonGuestsWithKeyword(roleId, parsedQuery));
+        } else if (noSearchTokens) {
+            //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
+            String strictQuery = query.toUpperCase() + "%";
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeysetWithStrictSearch(roleId, strictQuery, null, null, pageable) :
+                    userRoleRepository.searchNonGuestsByKeysetWithStrictSearch(roleId, strictQuery, null, null, pageable);
+            count = searchCounts.count(tables, shape + ":strict", List.of(roleId, strictQuery), () -> guests ?
+                    userRoleRepository.countGuestsWithStrictSearch(roleId, strictQuery) :
+                    userRoleRepository.countNonGuestsWithStrictSearch(roleId, strictQuery));
+        } else {
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeyset(roleId, null, null, pageable) :
+                    userRoleRepository.searchNonGuestsByKeyset(roleId, null, null, pageable);
+            count = searchCounts.count(tables, shape, List.of(roleId), () -> guests ?
+                    userRoleRepository.countGuests(roleId) :
+                    userRoleRepository.countNonGuests(roleId));
+        }
+        return Pagination.of(slice, KeysetPage.withoutSortColumn(slice.getContent()), count);
+    }
+
+    @GetMapping(value = "/search/{roleId}/{guests}", params = "cursor")
+    @Transactional(readOnly = true)
+    public ResponseEntity<KeysetPage<Map<String, Object>>> searchByKeyset(@PathVariable("roleId") Long roleId,
+                                                                          @PathVariable("guests") boolean guests,
+                                                                          @RequestParam(value = "cursor") String cursor,
+                                                                          @RequestParam(value = "query", required = false, defaultValue = "") String query,
+                                                                          @RequestParam(value = "pageSize", required = false, defaultValue = "10") int pageSize,
+                                                                          @RequestParam(value = "sort", required = false, defaultValue = "name") String sort,
+                                                                          @RequestParam(value = "sortDirection", required = false, defaultValue = "ASC") String sortDirection,
+                                                                          @Parameter(hidden = true) User user) {
+        LOG.debug(String.format("GET user_roles/search/%s with cursor for user %s", roleId, user.getEduPersonPrincipalName()));
+
+        Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
+
+        User userFromDB = userRepository.getReferenceById(user.getId());
+        UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
+
+        KeysetPage.Cursor keyset = KeysetPage.Cursor.parse(cursor);
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Pageable pageable = PageRequest.of(0, pageSize, Sort.by(direction, sort).and(Sort.by(direction, "id")));
+        Slice<Map<String, Object>> slice;
+        boolean queryHasText = StringUtils.hasText(query);
+        query = queryHasText ? URLDecoder.decode(query, Charset.defaultCharset()) : query;
+        String parsedQuery = queryHasText ? FullSearchQueryParser.parse(query) : "";
+        boolean noSearchTokens = parsedQuery.equals("*");
+        if (queryHasText && !noSearchTokens) {
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeysetWithKeyword(roleId, parsedQuery, keyset.value(), keyset.id(), pageable) :
+                    userRoleRepository.searchNonGuestsByKeysetWithKeyword(roleId, parsedQuery, keyset.value(), keyset.id(), pageable);
         } else if (noSearchTokens) {
             //Rare condition if users search on kb.nl, at@ex where all the parsed tokens are < 3 characters
             query = query.toUpperCase() + "%";
-            page = guests ?
-                    userRoleRepository.searchGuestsByPageWithStrictSearch(roleId, query, pageable) :
-                    userRoleRepository.searchNonGuestsByPageWithStrictSearch(roleId, query, pageable);
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeysetWithStrictSearch(roleId, query, keyset.value(), keyset.id(), pageable) :
+                    userRoleRepository.searchNonGuestsByKeysetWithStrictSearch(roleId, query, keyset.value(), keyset.id(), pageable);
         } else {
-            page = guests ?
-                    userRoleRepository.searchGuestsByPage(roleId, pageable) :
-                    userRoleRepository.searchNonGuestsByPage(roleId, pageable);
+            slice = guests ?
+                    userRoleRepository.searchGuestsByKeyset(roleId, keyset.value(), keyset.id(), pageable) :
+                    userRoleRepository.searchNonGuestsByKeyset(roleId, keyset.value(), keyset.id(), pageable);
         }
-        return ResponseEntity.ok(page);
+        return ResponseEntity.ok(KeysetPage.of(slice, sort));
+    }
+
+    @GetMapping("/export/{roleId}/{guests}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable("roleId") Long roleId,
+                                                        @PathVariable("guests") boolean guests,
+                                                        @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+                                                        @Parameter(hidden = true) User user) {
+        LOG.debug(String.format("GET user_roles/export/%s for user %s", roleId, user.getEduPersonPrincipalName()));
+
+        Role role = roleRepository.findById(roleId).orElseThrow(() -> new NotFoundException("Role not found"));
+
+        User userFromDB = userRepository.getReferenceById(user.getId());
+        UserPermissions.assertRoleAccess(userFromDB, role, Authority.INVITER);
+
+        String sql = guests ? ExportQueries.GUEST_USER_ROLES : ExportQueries.NON_GUEST_USER_ROLES;
+        return rowExporter.export(guests ? "guests" : "members", ExportFormat.parse(format), sql, roleId);
     }
 
     @PostMapping("user_role_provisioning")
@@ -257,6 +355,9 @@ public class UserRoleController implements UserRoleResource {
             provisioningService.deleteUserRoleRequest(userRole);
 
             userRoleRepository.deleteUserRoleById(id);
+            vootMemberships.evict(userOfUserRole.getSub());
+            userSummaries.changed(userOfUserRole.getId());
+            userRoleCounts.removed(userRole.getRole().getId());
             AccessLogger.userRole(LOG, Event.Deleted, userFromDB, userRole);
         }
         return Results.deleteResult();
@@ -0,0 +1,168 @@
+package invite.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shared outbound HTTP client for all remote integrations (e.g. Manage, SCIM / EVA provisioning, eduID). All
+ * RestTemplates share one JDK HttpClient, which keeps connections alive in its pool and uses HTTP/2 when the remote
+ * server supports it. The number of concurrent requests per host is capped and every request is timed per integration
+ * and host.
+ */
+@Component
+public class HttpClients {
+
+    private static final Log LOG = LogFactory.getLog(HttpClients.class);
+
+    private final HttpClient httpClient;
+    private final int maxConcurrentRequestsPerHost;
+    private final Duration acquireTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public HttpClients(@Value("${http.connect-timeout}") Duration connectTimeout,
+                       @Value("${http.max-concurrent-requests-per-host}") int maxConcurrentRequestsPerHost,
+                       @Value("${http.acquire-timeout}") Duration acquireTimeout,
+                       MeterRegistry meterRegistry) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                //Same behaviour as the default RestTemplate
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.acquireTimeout = acquireTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns a new RestTemplate for the integration, the name of the integration is used to tag the metrics. The
+     * caller is free to add interceptors and an error handler.
+     */
+    public RestTemplate restTemplate(String integration, Duration readTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(this.httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new MeteredInterceptor(integration));
+        return restTemplate;
+    }
+
+    private class MeteredInterceptor implements ClientHttpRequestInterceptor {
+
+        private final String integration;
+
+        private MeteredInterceptor(String integration) {
+            this.integration = integration;
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+            String host = request.getURI().getHost();
+            Semaphore permits = hostPermits.computeIfAbsent(String.valueOf(host),
+                    key -> new Semaphore(maxConcurrentRequestsPerHost, true));
+            this.acquire(permits, host);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException | RuntimeException e) {
+                this.complete(permits, sample, request, host, "IO_ERROR");
+                throw e;
+            }
+            String status = String.valueOf(response.getStatusCode().value());
+            //The permit and the timer cover reading the body, until the RestTemplate closes the response
+            return new MeteredResponse(response, () -> this.complete(permits, sample, request, host, status));
+        }
+
+        private void complete(Semaphore permits, Timer.Sample sample, HttpRequest request, String host, String status) {
+            permits.release();
+            sample.stop(Timer.builder("outbound_http_requests")
+                    .description("Outbound HTTP requests per integration and host")
+                    .tag("integration", integration)
+                    .tag("host", String.valueOf(host))
+                    .tag("method", request.getMethod().name())
+                    .tag("status", status)
+                    .register(meterRegistry));
+        }
+
+        private void acquire(Semaphore permits, String host) throws IOException {
+            try {
+                if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    meterRegistry.counter("outbound_http_rejected", "integration", integration, "host", String.valueOf(host))
+                            .increment();
+                    LOG.warn(String.format("Maximum of %s concurrent requests to %s reached for %s",
+                            maxConcurrentRequestsPerHost, host, integration));
+                    throw new IOException(String.format("No connection available for %s within %s", host, acquireTimeout));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static class MeteredResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private MeteredResponse(ClientHttpResponse response, Runnable onClose) {
+            this.response = response;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
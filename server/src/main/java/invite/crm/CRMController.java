@@ -36,7 +36,9 @@ import invite.repository.OrganisationRepository;
 import invite.repository.RoleRepository;
 import invite.repository.UserRepository;
 import invite.repository.UserRoleRepository;
+import invite.search.UserSummaries;
 import invite.security.UserPermissions;
+import invite.voot.VootMemberships;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -110,6 +112,8 @@ public class CRMController implements ApplicationResource {
     private final InvitationRepository invitationRepository;
     private final OrganisationRepository organisationRepository;
     private final RoleOperations roleOperations;
+    private final VootMemberships vootMemberships;
+    private final UserSummaries userSummaries;
 
 
     @SuppressWarnings("unchecked")
@@ -126,7 +130,9 @@ public class CRMController implements ApplicationResource {
                          MailBox mailBox, Manage manage,
                          UserRoleAuditService userRoleAuditService,
                          InvitationRepository invitationRepository,
-                         OrganisationRepository organisationRepository) throws IOException {
+                         OrganisationRepository organisationRepository,
+                         VootMemberships vootMemberships,
+                         UserSummaries userSummaries) throws IOException {
         this.userRepository = userRepository;
         this.collabPersonPrefix = collabPersonPrefix;
         this.inviterName = inviterName;
@@ -141,6 +147,8 @@ public class CRMController implements ApplicationResource {
         this.invitationRepository = invitationRepository;
         this.organisationRepository = organisationRepository;
         this.roleOperations = new RoleOperations(this);
+        this.vootMemberships = vootMemberships;
+        this.userSummaries = userSummaries;
         Map<String, Map<String, Object>> crmConfigRaw = objectMapper.readValue(crmConfigResource.getInputStream(), new TypeReference<>() {
         });
         this.crmConfig = crmConfigRaw.entrySet().stream()
@@ -187,7 +195,11 @@ public class CRMController implements ApplicationResource {
                 role.getCrmRoleAbbrevation(), role.getName()));
         provisioningService.deleteGroupRequest(role);
         provisioningService.deleteUserRequest(role);
+        //The user roles are deleted by the database
+        List<Long> userIdentifiers = userRoleRepository.findUserIdsByRoleId(role.getId());
         roleRepository.deleteRoleById(role.getId());
+        vootMemberships.evictAll();
+        userSummaries.changed(userIdentifiers);
     }
 
     private boolean reconcileRoleApplications(Role role, CRMConfigEntry crmConfigEntry) {
@@ -564,7 +576,13 @@ public class CRMController implements ApplicationResource {
         Optional<Organisation> optionalOrganisation = organisationRepository.findByCrmOrganisationId(crmOrganisation.getOrganisationId());
         return optionalOrganisation
                 .map(organisation -> {
+                    //The roles and user roles of the organisation are deleted by the database
+                    List<Long> userIdentifiers = userRoleRepository.findUserIdsByOrganisationId(organisation.getId());
                     organisationRepository.delete(organisation);
+                    //Refresh the summaries after the cascaded delete and not at the commit of the transaction
+                    organisationRepository.flush();
+                    vootMemberships.evictAll();
+                    userSummaries.changed(userIdentifiers);
                     return ResponseEntity.ok(Map.of("status", "deleted"));
                 }).orElseGet(() -> ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
                         Map.of("status",
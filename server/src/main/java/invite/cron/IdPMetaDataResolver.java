@@ -1,5 +1,6 @@
 package invite.cron;
 
+import invite.mail.LogoCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,11 +28,14 @@ public class IdPMetaDataResolver {
     private static final List<String> languages = List.of("nl", "en");
 
     private final Resource metaDataResource;
+    private final LogoCache logoCache;
     private Map<String, IdentityProvider> identityProviderMap = new HashMap<>();
 
     @Autowired
-    public IdPMetaDataResolver(@Value("${cron.metadata-resolver-url}") Resource metaDataResource) {
+    public IdPMetaDataResolver(@Value("${cron.metadata-resolver-url}") Resource metaDataResource,
+                               LogoCache logoCache) {
         this.metaDataResource = metaDataResource;
+        this.logoCache = logoCache;
     }
 
     @Scheduled(initialDelayString = "${cron.metadata-resolver-initial-delay-milliseconds}",
@@ -95,6 +99,8 @@ public class IdPMetaDataResolver {
             this.identityProviderMap = newIdentityProviderMap;
             LOG.info(String.format("Parsed %s institution domain names from %s in %s ms",
                     identityProviderMap.size(), metaDataResource.getDescription(), System.currentTimeMillis() - start));
+            //Invitations embed the logo of the institution of the inviter
+            logoCache.warm(newIdentityProviderMap.values().stream().map(IdentityProvider::getLogoUrl).toList());
         } catch (FileNotFoundException fe) {
             LOG.warn(String.format("Could not read IdP Metadata from %s", metaDataResource.getDescription()));
         } catch (Exception e) {
@@ -0,0 +1,81 @@
+package invite.cron;
+
+import invite.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for the last activity of users on read-only paths like VOOT and attribute aggregation, which are
+ * called for every login. Only the latest activity per user is kept and the buffer is periodically flushed in batched
+ * updates. Every node flushes its own buffer, so there is no ShedLock; the update never moves the last activity back.
+ */
+@Component
+public class LastActivityBuffer {
+
+    private static final Log LOG = LogFactory.getLog(LastActivityBuffer.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final Map<Long, Instant> pendingActivities = new ConcurrentHashMap<>();
+
+    public LastActivityBuffer(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public void record(Long userId) {
+        //Second precision is sufficient and allows for grouping the updates
+        this.pendingActivities.merge(userId, Instant.now().truncatedTo(ChronoUnit.SECONDS),
+                (current, latest) -> current.isAfter(latest) ? current : latest);
+    }
+
+    @Scheduled(fixedDelayString = "${cron.last-activity-flush-cron}",
+            initialDelayString = "${cron.last-activity-flush-cron}")
+    public void flush() {
+        this.doFlush();
+    }
+
+    public int doFlush() {
+        Map<Instant, List<Long>> userIdsByActivity = new HashMap<>();
+        for (Long userId : List.copyOf(this.pendingActivities.keySet())) {
+            Instant lastActivity = this.pendingActivities.remove(userId);
+            if (lastActivity != null) {
+                userIdsByActivity.computeIfAbsent(lastActivity, key -> new ArrayList<>()).add(userId);
+            }
+        }
+        int updated = 0;
+        for (Map.Entry<Instant, List<Long>> entry : userIdsByActivity.entrySet()) {
+            List<Long> userIds = entry.getValue();
+            for (int i = 0; i < userIds.size(); i += BATCH_SIZE) {
+                List<Long> batch = userIds.subList(i, Math.min(i + BATCH_SIZE, userIds.size()));
+                try {
+                    updated += userRepository.updateLastActivity(entry.getKey(), batch);
+                } catch (RuntimeException e) {
+                    LOG.error(String.format("Error in flushing the last activity of %s users", batch.size()), e);
+                    //Retry in the next flush, unless a newer activity has been recorded in the meantime
+                    batch.forEach(userId -> this.pendingActivities.merge(userId, entry.getKey(),
+                            (current, failed) -> current.isAfter(failed) ? current : failed));
+                }
+            }
+        }
+        if (updated > 0) {
+            LOG.debug(String.format("CRON: Flushed the last activity of %s users", updated));
+        }
+        return updated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.doFlush();
+    }
+}
@@ -0,0 +1,170 @@
+package invite.cron;
+
+import invite.mail.MailDispatcher;
+import invite.model.MailMessage;
+import invite.repository.MailMessageRepository;
+import jakarta.mail.internet.MimeMessage;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the mail_outbox table. Due mails are claimed by pushing their next attempt beyond the claim-timeout, so the
+ * node holding the lock only claims and every node sends the mails it has claimed, without sending a mail twice. The
+ * claimed mails are sent by the MailDispatcher, and no more mails are claimed than its queue can hold. Failed mails are
+ * retried with an exponential backoff until the maximum number of attempts is reached. Sent mails are kept without
+ * their MIME message for the retention period, to report the number of sent mails.
+ * <p>
+ * The mails are changed with targeted updates and only the MIME messages of the claimed mails are loaded, so the large
+ * MIME messages are never written again.
+ */
+@Component
+public class MailOutboxDispatcher {
+
+    public static final String LOCK_NAME = "mail_outbox_dispatcher_lock";
+    private static final Log LOG = LogFactory.getLog(MailOutboxDispatcher.class);
+
+    private final MailMessageRepository mailMessageRepository;
+    private final MailDispatcher mailDispatcher;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+    private final Duration retention;
+
+    public MailOutboxDispatcher(MailMessageRepository mailMessageRepository,
+                                MailDispatcher mailDispatcher,
+                                JavaMailSender mailSender,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${email.outbox.enabled}") boolean enabled,
+                                @Value("${email.outbox.batch-size}") int batchSize,
+                                @Value("${email.outbox.max-attempts}") int maxAttempts,
+                                @Value("${email.outbox.initial-backoff}") Duration initialBackoff,
+                                @Value("${email.outbox.max-backoff}") Duration maxBackoff,
+                                @Value("${email.outbox.claim-timeout}") Duration claimTimeout,
+                                @Value("${email.outbox.retention}") Duration retention) {
+        this.mailMessageRepository = mailMessageRepository;
+        this.mailDispatcher = mailDispatcher;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimTimeout = claimTimeout;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${cron.mail-outbox-dispatcher-cron}",
+            initialDelayString = "${cron.mail-outbox-dispatcher-cron}")
+    @SchedulerLock(name = LOCK_NAME, lockAtLeastFor = "${cron.mail-outbox-dispatcher-lock-at-least-for}",
+            lockAtMostFor = "${cron.mail-outbox-dispatcher-lock-at-most-for}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        this.doDispatch();
+        int purged = mailMessageRepository.deleteSentBefore(Instant.now().minus(retention), batchSize);
+        if (purged > 0) {
+            LOG.debug(String.format("CRON: Purged %s sent mails", purged));
+        }
+    }
+
+    public int doDispatch() {
+        List<Map<String, Object>> messages = transactionTemplate.execute(status -> this.claim());
+        messages.forEach(message -> {
+            Long messageId = ((Number) message.get("id")).longValue();
+            try {
+                MimeMessage mimeMessage = mailSender.createMimeMessage(
+                        new ByteArrayInputStream((byte[]) message.get("mime_message")));
+                mailDispatcher.dispatch(mimeMessage, new OutboxCallback(messageId));
+            } catch (RuntimeException e) {
+                this.failed(messageId, e);
+            }
+        });
+        if (!messages.isEmpty()) {
+            LOG.info(String.format("CRON: Dispatched %s mails", messages.size()));
+        }
+        return messages.size();
+    }
+
+    public Map<String, Long> counts() {
+        return Map.of(
+                "pending", mailMessageRepository.countByStatus(MailMessage.MessageStatus.PENDING),
+                "failed", mailMessageRepository.countByStatus(MailMessage.MessageStatus.FAILED),
+                "sent", mailMessageRepository.countByStatus(MailMessage.MessageStatus.SENT)
+        );
+    }
+
+    private List<Map<String, Object>> claim() {
+        Instant now = Instant.now();
+        //Backpressure: mails stay pending while the queue of the dispatcher is full
+        int limit = Math.min(batchSize, mailDispatcher.remainingCapacity());
+        if (limit == 0) {
+            return List.of();
+        }
+        List<Long> ids = mailMessageRepository.findDueIds(now, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        mailMessageRepository.claim(ids, now.plus(claimTimeout));
+        return mailMessageRepository.findMimeMessagesByIdIn(ids);
+    }
+
+    private void sent(Long messageId) {
+        mailMessageRepository.markSent(messageId, Instant.now());
+    }
+
+    private void failed(Long messageId, Exception e) {
+        mailMessageRepository.findAttemptsById(messageId).forEach(message -> {
+            int attempts = ((Number) message.get("attempts")).intValue();
+            if (attempts >= maxAttempts) {
+                LOG.error(String.format("Giving up on mail %s to %s after %s attempts",
+                        messageId, message.get("recipients"), attempts));
+                mailMessageRepository.markFailed(messageId, e.getMessage());
+            } else {
+                Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+                mailMessageRepository.reschedule(messageId,
+                        Instant.now().plus(backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff), e.getMessage());
+            }
+        });
+    }
+
+    private class OutboxCallback implements MailDispatcher.Callback {
+
+        private final Long messageId;
+
+        private OutboxCallback(Long messageId) {
+            this.messageId = messageId;
+        }
+
+        @Override
+        public void sent() {
+            MailOutboxDispatcher.this.sent(messageId);
+        }
+
+        @Override
+        public void failed(Exception e) {
+            LOG.error(String.format("Error in sending mail %s", messageId), e);
+            MailOutboxDispatcher.this.failed(messageId, e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package invite.cron;
+
+import invite.model.ProvisioningMessage;
+import invite.provision.OutboxProvisioningService;
+import invite.repository.ProvisioningMessageRepository;
+import jakarta.annotation.PreDestroy;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the provisioning_outbox table. Due messages are claimed by pushing their next attempt beyond the claim-timeout
+ * and are handed to a single-threaded worker with a bounded queue per Manage provisioning, which prevents a slow endpoint
+ * from delaying the others. The messages for one provisioning are sent in order: a message is not claimed while an
+ * older message for the same provisioning is claimed or backing off, and a claimed message is postponed when an older
+ * message has failed. Failed messages are retried with an exponential backoff until the maximum number of attempts is
+ * reached.
+ * <p>
+ * The remote call is made without a transaction, so a slow endpoint does not hold on to a database connection.
+ */
+@Component
+public class ProvisioningOutboxDispatcher {
+
+    public static final String LOCK_NAME = "provisioning_outbox_dispatcher_lock";
+    private static final Log LOG = LogFactory.getLog(ProvisioningOutboxDispatcher.class);
+
+    private final ProvisioningMessageRepository provisioningMessageRepository;
+    private final OutboxProvisioningService outboxProvisioningService;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, ThreadPoolExecutor> workers = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+
+    public ProvisioningOutboxDispatcher(ProvisioningMessageRepository provisioningMessageRepository,
+                                        OutboxProvisioningService outboxProvisioningService,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${provisioning.outbox.enabled}") boolean enabled,
+                                        @Value("${provisioning.outbox.batch-size}") int batchSize,
+                                        @Value("${provisioning.outbox.queue-capacity}") int queueCapacity,
+                                        @Value("${provisioning.outbox.max-attempts}") int maxAttempts,
+                                        @Value("${provisioning.outbox.initial-backoff}") Duration initialBackoff,
+                                        @Value("${provisioning.outbox.max-backoff}") Duration maxBackoff,
+                                        @Value("${provisioning.outbox.claim-timeout}") Duration claimTimeout) {
+        this.provisioningMessageRepository = provisioningMessageRepository;
+        this.outboxProvisioningService = outboxProvisioningService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimTimeout = claimTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${cron.provisioning-outbox-dispatcher-cron}",
+            initialDelayString = "${cron.provisioning-outbox-dispatcher-cron}")
+    @SchedulerLock(name = LOCK_NAME, lockAtLeastFor = "${cron.provisioning-outbox-dispatcher-lock-at-least-for}",
+            lockAtMostFor = "${cron.provisioning-outbox-dispatcher-lock-at-most-for}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        this.doDispatch();
+    }
+
+    public int doDispatch() {
+        List<ProvisioningMessage> messages = transactionTemplate.execute(status -> this.claim());
+        messages.forEach(message -> {
+            try {
+                this.worker(message.getManageProvisioningId()).execute(() -> this.send(message.getId()));
+            } catch (RejectedExecutionException e) {
+                //Queue is full, the claim will expire and the message will be picked up again
+                LOG.warn(String.format("Worker queue for provisioning %s is full, postponing message %s",
+                        message.getManageProvisioningId(), message.getId()));
+            }
+        });
+        if (!messages.isEmpty()) {
+            LOG.info(String.format("CRON: Dispatched %s provisioning messages", messages.size()));
+        }
+        return messages.size();
+    }
+
+    private List<ProvisioningMessage> claim() {
+        Instant now = Instant.now();
+        Map<String, Integer> remainingCapacities = new HashMap<>();
+        List<ProvisioningMessage> messages = provisioningMessageRepository.findDueInOrder(now, batchSize)
+                .stream()
+                //Backpressure: messages for a provisioning with a full queue stay pending
+                .filter(message -> remainingCapacities.compute(message.getManageProvisioningId(), (id, remaining) ->
+                        (remaining == null ? this.worker(id).getQueue().remainingCapacity() : remaining) - 1) >= 0)
+                .toList();
+        messages.forEach(message -> {
+            message.setAttempts(message.getAttempts() + 1);
+            message.setNextAttemptAt(now.plus(claimTimeout));
+        });
+        return provisioningMessageRepository.saveAll(messages);
+    }
+
+    private void send(Long messageId) {
+        try {
+            Optional<OutboxProvisioningService.Delivery> delivery = transactionTemplate.execute(status ->
+                    provisioningMessageRepository.findById(messageId)
+                            .filter(message -> !this.postponed(message))
+                            .map(outboxProvisioningService::prepare));
+            if (delivery.isEmpty()) {
+                return;
+            }
+            outboxProvisioningService.deliver(delivery.get());
+            transactionTemplate.executeWithoutResult(status ->
+                    provisioningMessageRepository.deleteAllByIdInBatch(delivery.get().messageIds()));
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Error in sending provisioning message %s", messageId), e);
+            transactionTemplate.executeWithoutResult(status -> provisioningMessageRepository.findById(messageId)
+                    .ifPresent(message -> this.reschedule(message, e)));
+        }
+    }
+
+    //An older message of the same provisioning has failed and is backing off, so this message must wait for it
+    private boolean postponed(ProvisioningMessage message) {
+        if (!provisioningMessageRepository.existsByManageProvisioningIdAndStatusAndIdLessThan(
+                message.getManageProvisioningId(), ProvisioningMessage.MessageStatus.PENDING, message.getId())) {
+            return false;
+        }
+        LOG.debug(String.format("Postponing provisioning message %s until the older messages for provisioning %s are sent",
+                message.getId(), message.getManageProvisioningId()));
+        //Not an attempt, and due again as soon as the older messages are sent
+        message.setAttempts(message.getAttempts() - 1);
+        message.setNextAttemptAt(Instant.now());
+        provisioningMessageRepository.save(message);
+        return true;
+    }
+
+    private void reschedule(ProvisioningMessage message, RuntimeException e) {
+        int attempts = message.getAttempts();
+        message.setLastError(e.getMessage());
+        if (attempts >= maxAttempts) {
+            LOG.error(String.format("Giving up on provisioning message %s for provisioning %s after %s attempts",
+                    message.getId(), message.getManageProvisioningId(), attempts));
+            message.setStatus(ProvisioningMessage.MessageStatus.FAILED);
+        } else {
+            Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+            message.setNextAttemptAt(Instant.now().plus(backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff));
+        }
+        provisioningMessageRepository.save(message);
+    }
+
+    private ThreadPoolExecutor worker(String manageProvisioningId) {
+        return workers.computeIfAbsent(manageProvisioningId, id -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    Thread.ofPlatform().name("provisioning-" + id + "-", 0).factory());
+            //Idle provisionings do not hold on to a thread
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        //Queued messages are not lost, their claim expires and they are dispatched again
+        workers.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+}
@@ -11,6 +11,9 @@ import invite.repository.InvitationRepository;
 import invite.repository.UserRepository;
 import invite.repository.UserRoleAuditRepository;
 import invite.repository.UserRoleRepository;
+import invite.search.UserRoleCounts;
+import invite.search.UserSummaries;
+import invite.voot.VootMemberships;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +42,9 @@ public class ResourceCleaner {
     private final int purgeAuditLogDays;
     private final int purgeExpiredInvitationDays;
     private final InvitationRepository invitationRepository;
+    private final VootMemberships vootMemberships;
+    private final UserSummaries userSummaries;
+    private final UserRoleCounts userRoleCounts;
 
 
     @Autowired
@@ -48,6 +54,9 @@ public class ResourceCleaner {
                            UserRoleAuditRepository userRoleAuditRepository,
                            UserRoleAuditService userRoleAuditService,
                            InvitationRepository invitationRepository,
+                           VootMemberships vootMemberships,
+                           UserSummaries userSummaries,
+                           UserRoleCounts userRoleCounts,
                            @Value("${cron.last-activity-duration-days}") int lastActivityDurationDays,
                            @Value("${cron.purge-audit-log-days}") int purgeAuditLogDays,
                            @Value("${cron.purge-expired-invitations-days}") int purgeExpiredInvitationDays) {
@@ -60,6 +69,9 @@ public class ResourceCleaner {
         this.purgeAuditLogDays = purgeAuditLogDays;
         this.purgeExpiredInvitationDays = purgeExpiredInvitationDays;
         this.invitationRepository = invitationRepository;
+        this.vootMemberships = vootMemberships;
+        this.userSummaries = userSummaries;
+        this.userRoleCounts = userRoleCounts;
     }
 
     @Scheduled(fixedDelayString = "${cron.user-cleaner-cron}",
@@ -120,6 +132,9 @@ public class ResourceCleaner {
                 userRoleAuditService.logAction(userRole, UserRoleAudit.ActionType.DELETE);
                 provisioningService.deleteUserRoleRequest(userRole);
                 userRoleRepository.deleteUserRoleById(userRole.getId());
+                vootMemberships.evict(user.getSub());
+                userSummaries.changed(user.getId());
+                userRoleCounts.removed(role.getId());
 
                 LOG.info(String.format("Deleted userRole for user %s and role %s with an endDate in the past",
                         user.getEmail(),
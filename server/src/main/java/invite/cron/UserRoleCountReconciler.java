@@ -0,0 +1,33 @@
+package invite.cron;
+
+import invite.search.UserRoleCounts;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically corrects the user role count of roles which has drifted from the actual number of user roles.
+ */
+@Component
+public class UserRoleCountReconciler {
+
+    public static final String LOCK_NAME = "user_role_count_reconciler_lock";
+    private static final Log LOG = LogFactory.getLog(UserRoleCountReconciler.class);
+
+    private final UserRoleCounts userRoleCounts;
+
+    public UserRoleCountReconciler(UserRoleCounts userRoleCounts) {
+        this.userRoleCounts = userRoleCounts;
+    }
+
+    @Scheduled(fixedDelayString = "${cron.user-role-count-reconciler-cron}",
+            initialDelayString = "#{T(java.util.concurrent.ThreadLocalRandom).current().nextLong(${cron.delay_min:200000}, ${cron.delay_max:1200001})}")
+    @SchedulerLock(name = LOCK_NAME, lockAtLeastFor = "${cron.user-role-count-reconciler-lock-at-least-for}",
+            lockAtMostFor = "${cron.user-role-count-reconciler-lock-at-most-for}")
+    public void reconcile() {
+        LOG.info("CRON: Reconciling the user role count of roles");
+        this.userRoleCounts.reconcile();
+    }
+}
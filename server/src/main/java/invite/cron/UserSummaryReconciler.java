@@ -0,0 +1,33 @@
+package invite.cron;
+
+import invite.search.UserSummaries;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically corrects the summary columns of users which have drifted from their actual user roles and applications.
+ */
+@Component
+public class UserSummaryReconciler {
+
+    public static final String LOCK_NAME = "user_summary_reconciler_lock";
+    private static final Log LOG = LogFactory.getLog(UserSummaryReconciler.class);
+
+    private final UserSummaries userSummaries;
+
+    public UserSummaryReconciler(UserSummaries userSummaries) {
+        this.userSummaries = userSummaries;
+    }
+
+    @Scheduled(fixedDelayString = "${cron.user-summary-reconciler-cron}",
+            initialDelayString = "#{T(java.util.concurrent.ThreadLocalRandom).current().nextLong(${cron.delay_min:200000}, ${cron.delay_max:1200001})}")
+    @SchedulerLock(name = LOCK_NAME, lockAtLeastFor = "${cron.user-summary-reconciler-lock-at-least-for}",
+            lockAtMostFor = "${cron.user-summary-reconciler-lock-at-most-for}")
+    public void reconcile() {
+        LOG.info("CRON: Reconciling the summaries of users");
+        this.userSummaries.reconcile();
+    }
+}
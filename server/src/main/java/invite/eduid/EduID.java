@@ -1,5 +1,6 @@
 package invite.eduid;
 
+import invite.config.HttpClients;
 import invite.exception.RemoteException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -9,6 +10,7 @@ import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Optional;
 
@@ -23,9 +25,11 @@ public class EduID {
 
     public EduID(@Value("${myconext.uri}") String uri,
                  @Value("${myconext.username}") String userName,
-                 @Value("${myconext.password}") String password) {
+                 @Value("${myconext.password}") String password,
+                 @Value("${http.read-timeout.eduid}") Duration readTimeout,
+                 HttpClients httpClients) {
         this.uri = uri;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = httpClients.restTemplate("eduid", readTimeout);
         this.restTemplate.getInterceptors().add(new BasicAuthenticationInterceptor(userName, password));
         this.headers = initHttpHeaders();
     }
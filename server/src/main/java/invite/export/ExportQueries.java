@@ -0,0 +1,80 @@
+package invite.export;
+
+/**
+ * The native queries of the exports. The rows are ordered by id, which makes the export stable and lets MariaDB
+ * stream the rows in primary key order without a filesort.
+ */
+public final class ExportQueries {
+
+    public static final String USERS = """
+            SELECT u.id, u.sub, u.eduperson_principal_name, u.name, u.email, u.schac_home_organization,
+                u.super_user, u.institution_admin, u.organization_guid, u.created_at, u.last_activity,
+                u.authorities AS authority
+            FROM users u
+            ORDER BY u.id
+            """;
+
+    //The users with a role of the organization, like UserRepository#searchByPageRoleUsers
+    public static final String USERS_BY_ORGANIZATION_GUID = """
+            SELECT u.id, u.sub, u.eduperson_principal_name, u.name, u.email, u.schac_home_organization,
+                u.super_user, u.institution_admin, u.organization_guid, u.created_at, u.last_activity,
+                u.authorities AS authority
+            FROM users u
+            WHERE EXISTS (SELECT ur.id FROM user_roles ur INNER JOIN roles r ON r.id = ur.role_id
+                WHERE ur.user_id = u.id AND r.organization_guid = ?)
+            ORDER BY u.id
+            """;
+
+    public static final String ROLES = """
+            SELECT r.id, r.name, r.short_name, r.description, r.urn, r.identifier, r.organization_guid,
+                r.default_expiry_days, r.enforce_email_equality, r.edu_id_only, r.created_at,
+                r.user_role_count
+            FROM roles r
+            ORDER BY r.id
+            """;
+
+    public static final String ROLES_BY_ORGANIZATION_GUID = """
+            SELECT r.id, r.name, r.short_name, r.description, r.urn, r.identifier, r.organization_guid,
+                r.default_expiry_days, r.enforce_email_equality, r.edu_id_only, r.created_at,
+                r.user_role_count
+            FROM roles r
+            WHERE r.organization_guid = ?
+            ORDER BY r.id
+            """;
+
+    public static final String GUEST_USER_ROLES = """
+            SELECT ur.id, ur.authority, ur.end_date, ur.created_at, u.id AS user_id, u.sub, u.name, u.email,
+                u.schac_home_organization, ur.role_id
+            FROM user_roles ur INNER JOIN users u ON u.id = ur.user_id
+            WHERE ur.role_id = ? AND (ur.authority = 'GUEST' OR ur.guest_role_included)
+            ORDER BY ur.id
+            """;
+
+    public static final String NON_GUEST_USER_ROLES = """
+            SELECT ur.id, ur.authority, ur.end_date, ur.created_at, u.id AS user_id, u.sub, u.name, u.email,
+                u.schac_home_organization, ur.role_id
+            FROM user_roles ur INNER JOIN users u ON u.id = ur.user_id
+            WHERE ur.role_id = ? AND ur.authority <> 'GUEST'
+            ORDER BY ur.id
+            """;
+
+    public static final String INVITATIONS = """
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
+                u.id AS inviter_id, u.name AS inviter_name, u.email AS inviter_email
+            FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
+            WHERE i.status = ?
+            ORDER BY i.id
+            """;
+
+    public static final String INVITATIONS_BY_ROLE = """
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
+                u.id AS inviter_id, u.name AS inviter_name, u.email AS inviter_email
+            FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
+                INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
+            WHERE i.status = ? AND ir.role_id = ?
+            ORDER BY i.id
+            """;
+
+    private ExportQueries() {
+    }
+}
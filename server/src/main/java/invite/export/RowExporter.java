@@ -0,0 +1,183 @@
+package invite.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams the rows of a native query as NDJSON or CSV directly from a forward-only, read-only cursor. With a positive
+ * fetch size the MariaDB driver streams the result set instead of loading it in memory, so the memory use of an export
+ * is independent of the number of rows and the first rows are sent before the query has been fully read.
+ */
+@Component
+public class RowExporter {
+
+    private static final Log LOG = LogFactory.getLog(RowExporter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public RowExporter(JdbcTemplate jdbcTemplate,
+                       ObjectMapper objectMapper,
+                       @Value("${export.fetch-size}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        //The flush interval of the writers, a zero or negative fetch size would not stream the result set anyway
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException(String.format("export.fetch-size must be positive, is %s", fetchSize));
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public ResponseEntity<StreamingResponseBody> export(String name, ExportFormat format, String sql, Object... parameters) {
+        StreamingResponseBody body = outputStream -> {
+            RowWriter rowWriter = format == ExportFormat.CSV ? new CsvRowWriter(outputStream) : new NdjsonRowWriter(outputStream);
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    for (int i = 0; i < parameters.length; i++) {
+                        statement.setObject(i + 1, parameters[i]);
+                    }
+                    return statement;
+                }, (RowCallbackHandler) rowWriter::write);
+            } catch (UncheckedIOException e) {
+                //The client has gone away
+                throw e.getCause();
+            }
+            outputStream.flush();
+            LOG.debug(String.format("Exported %s %s rows", rowWriter.rows, name));
+        };
+        String fileName = String.format("%s.%s", name, format.getExtension());
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    private static Object value(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toInstant() : value;
+    }
+
+    private abstract class RowWriter {
+
+        final OutputStream outputStream;
+        String[] columns;
+        long rows;
+
+        RowWriter(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        void write(ResultSet resultSet) throws SQLException {
+            try {
+                if (columns == null) {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    columns = new String[metaData.getColumnCount()];
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i] = metaData.getColumnLabel(i + 1);
+                    }
+                    this.header();
+                }
+                this.row(resultSet);
+                //Flush the first row immediately and then once per fetched batch
+                if (rows++ % fetchSize == 0) {
+                    outputStream.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void header() throws IOException;
+
+        abstract void row(ResultSet resultSet) throws IOException, SQLException;
+    }
+
+    private class NdjsonRowWriter extends RowWriter {
+
+        NdjsonRowWriter(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        void header() {
+            //NDJSON has no header
+        }
+
+        @Override
+        void row(ResultSet resultSet) throws IOException, SQLException {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                row.put(columns[i], value(resultSet.getObject(i + 1)));
+            }
+            outputStream.write(objectMapper.writeValueAsBytes(row));
+            outputStream.write('\n');
+        }
+    }
+
+    private class CsvRowWriter extends RowWriter {
+
+        CsvRowWriter(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        void header() throws IOException {
+            this.line(columns);
+        }
+
+        @Override
+        void row(ResultSet resultSet) throws IOException, SQLException {
+            String[] values = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                Object value = value(resultSet.getObject(i + 1));
+                values[i] = value == null ? "" : value instanceof String s ? this.text(s) : value.toString();
+            }
+            this.line(values);
+        }
+
+        private String text(String value) {
+            //Prevent spreadsheet applications from interpreting user input as a formula
+            return !value.isEmpty() && "=+-@".indexOf(value.charAt(0)) > -1 ? "'" + value : value;
+        }
+
+        private void line(String[] values) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                String value = values[i];
+                if (value.indexOf(',') > -1 || value.indexOf('"') > -1 || value.indexOf('\n') > -1 || value.indexOf('\r') > -1) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append("\r\n");
+            outputStream.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -12,6 +12,7 @@ import invite.model.*;
 import invite.provision.ProvisioningService;
 import invite.provision.scim.GroupURN;
 import invite.repository.*;
+import invite.search.UserSummaries;
 import invite.security.RemoteUser;
 import invite.security.RemoteUserPermissions;
 import io.swagger.v3.oas.annotations.Hidden;
@@ -68,6 +69,7 @@ public class InternalInviteController implements ApplicationResource, Invitation
     private final RoleOperations roleOperations;
     private final InvitationOperations invitationOperations;
     private final UserRoleOperations userRoleOperations;
+    private final UserSummaries userSummaries;
     private final String groupUrnPrefix;
 
 
@@ -79,6 +81,7 @@ public class InternalInviteController implements ApplicationResource, Invitation
                                     Manage manage,
                                     InvitationRepository invitationRepository,
                                     ProvisioningService provisioningService,
+                                    UserSummaries userSummaries,
                                     @Value("${voot.group_urn_domain}") String groupUrnPrefix) {
         this.roleRepository = roleRepository;
         this.userRoleRepository = userRoleRepository;
@@ -88,6 +91,7 @@ public class InternalInviteController implements ApplicationResource, Invitation
         this.manage = manage;
         this.invitationRepository = invitationRepository;
         this.provisioningService = provisioningService;
+        this.userSummaries = userSummaries;
         this.groupUrnPrefix = groupUrnPrefix;
         this.userRoleOperations = new UserRoleOperations(this);
         this.roleOperations = new RoleOperations(this);
@@ -316,7 +320,10 @@ public class InternalInviteController implements ApplicationResource, Invitation
         RemoteUserPermissions.assertApplicationAccess(remoteUser, role);
 
         provisioningService.deleteGroupRequest(role);
+        //The user roles are deleted by the database
+        List<Long> userIdentifiers = userRoleRepository.findUserIdsByRoleId(role.getId());
         roleRepository.delete(role);
+        userSummaries.changed(userIdentifiers);
 
         AccessLogger.role(LOG, Event.Deleted, remoteUser, role);
 
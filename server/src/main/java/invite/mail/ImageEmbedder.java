@@ -2,12 +2,14 @@ package invite.mail;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
 
 import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.Base64;
 import java.util.Optional;
 
@@ -15,10 +17,12 @@ public class ImageEmbedder {
 
     private static final Log LOG = LogFactory.getLog(ImageEmbedder.class);
     private static final String DEFAULT_CONTENT_TYPE = "image/png";
-    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
     private static final int MAX_IMAGE_BYTES = 1 * 1024 * 1024; // 1 MegaByte
 
-    private ImageEmbedder() {
+    private final RestTemplate restTemplate;
+
+    public ImageEmbedder(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
     }
 
     /**
@@ -27,21 +31,40 @@ public class ImageEmbedder {
      * @param imageUrl the absolute URL of the image to fetch
      * @return the data: URL, or empty if the image cannot be fetched
      */
-    public static Optional<String> fetchAsDataUrl(String imageUrl) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(imageUrl)).build();
-            HttpResponse<InputStream> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
-
-            Optional<byte[]> body = readBounded(response.body(), imageUrl);
-            if (body.isEmpty()) {
-                return Optional.empty();
-            }
-
-            String contentType = response.headers()
-                    .firstValue("Content-Type")
-                    .orElse(DEFAULT_CONTENT_TYPE);
+    public Optional<String> fetchAsDataUrl(String imageUrl) {
+        return this.fetch(imageUrl, null).map(Image::dataUrl);
+    }
 
-            return Optional.of(toDataUrl(contentType, body.get()));
+    /**
+     * Fetches a remote image, revalidating the previously fetched image with its ETag and Last-Modified validators.
+     *
+     * @param imageUrl the absolute URL of the image to fetch
+     * @param previous the previously fetched image, or null
+     * @return the previous image if it is not modified, the fetched image, or empty if the image cannot be fetched
+     */
+    public Optional<Image> fetch(String imageUrl, Image previous) {
+        try {
+            return restTemplate.execute(URI.create(imageUrl), HttpMethod.GET, request -> {
+                if (previous != null && StringUtils.hasText(previous.etag())) {
+                    request.getHeaders().setIfNoneMatch(previous.etag());
+                }
+                if (previous != null && StringUtils.hasText(previous.lastModified())) {
+                    request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+                }
+            }, response -> {
+                if (previous != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                    return Optional.of(previous);
+                }
+                Optional<byte[]> body = readBounded(response.getBody(), imageUrl);
+                if (body.isEmpty()) {
+                    return Optional.empty();
+                }
+                HttpHeaders headers = response.getHeaders();
+                String contentType = Optional.ofNullable(headers.getFirst(HttpHeaders.CONTENT_TYPE))
+                        .orElse(DEFAULT_CONTENT_TYPE);
+                return Optional.of(new Image(imageUrl, toDataUrl(contentType, body.get()),
+                        headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED)));
+            });
         } catch (Exception e) {
             LOG.warn(String.format("Error fetching image from %s: %s", imageUrl, e.getMessage()));
             return Optional.empty();
@@ -66,4 +89,10 @@ public class ImageEmbedder {
     private static String toDataUrl(String contentType, byte[] body) {
         return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(body);
     }
+
+    /**
+     * A fetched image as a data: URL, with the validators of the response to revalidate the image.
+     */
+    public record Image(String url, String dataUrl, String etag, String lastModified) {
+    }
 }
@@ -0,0 +1,209 @@
+package invite.mail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.config.HttpClients;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the institution logos embedded as data: URLs in the invitation mails, so sending an invitation never waits
+ * for the web server of an institution. The most recently used logos are kept in memory up to a maximum size, and all
+ * logos are written to a local directory from which they are loaded after an eviction or a restart.
+ * <p>
+ * A logo which is not cached is fetched in the background and is missing in the mails sent in the meantime. After each
+ * refresh of the IdP metadata all logos are revalidated in the background with their ETag and Last-Modified validators.
+ * When a logo can not be fetched the cached logo keeps being used.
+ */
+@Component
+public class LogoCache {
+
+    private static final Log LOG = LogFactory.getLog(LogoCache.class);
+
+    private final ImageEmbedder imageEmbedder;
+    private final ObjectMapper objectMapper;
+    private final Optional<Path> directory;
+    private final long maxMemoryBytes;
+    private final boolean preWarm;
+    private final Map<String, ImageEmbedder.Image> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> fetching = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private long memoryBytes = 0L;
+
+    @Autowired
+    public LogoCache(HttpClients httpClients,
+                     ObjectMapper objectMapper,
+                     @Value("${http.read-timeout.images}") Duration readTimeout,
+                     @Value("${email.logo-cache.directory}") String directory,
+                     @Value("${email.logo-cache.max-memory-bytes}") long maxMemoryBytes,
+                     @Value("${email.logo-cache.pre-warm}") boolean preWarm) {
+        this(new ImageEmbedder(httpClients.restTemplate("images", readTimeout)), objectMapper, directory,
+                maxMemoryBytes, preWarm);
+    }
+
+    public LogoCache(ImageEmbedder imageEmbedder,
+                     ObjectMapper objectMapper,
+                     String directory,
+                     long maxMemoryBytes,
+                     boolean preWarm) {
+        this.imageEmbedder = imageEmbedder;
+        this.objectMapper = objectMapper;
+        this.directory = StringUtils.hasText(directory) ? createDirectory(Path.of(directory)) : Optional.empty();
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.preWarm = preWarm;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "logo-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the cached logo as a data: URL. A logo which is not cached is fetched in the background and is empty.
+     */
+    public Optional<String> dataUrl(String logoUrl) {
+        if (!StringUtils.hasText(logoUrl)) {
+            return Optional.empty();
+        }
+        Optional<ImageEmbedder.Image> image = this.cached(logoUrl);
+        if (image.isEmpty()) {
+            this.refreshInBackground(logoUrl);
+        }
+        return image.map(ImageEmbedder.Image::dataUrl);
+    }
+
+    /**
+     * Fetches the logos which are not cached and revalidates the cached logos, in the background.
+     */
+    public void warm(Collection<String> logoUrls) {
+        if (!this.preWarm) {
+            return;
+        }
+        logoUrls.stream()
+                .filter(StringUtils::hasText)
+                .distinct()
+                .forEach(this::refreshInBackground);
+    }
+
+    private void refreshInBackground(String logoUrl) {
+        //Do not queue a logo which is already being fetched
+        if (this.fetching.add(logoUrl)) {
+            this.executor.submit(() -> {
+                try {
+                    this.refresh(logoUrl);
+                } finally {
+                    this.fetching.remove(logoUrl);
+                }
+            });
+        }
+    }
+
+    void refresh(String logoUrl) {
+        ImageEmbedder.Image previous = this.cached(logoUrl).orElse(null);
+        this.imageEmbedder.fetch(logoUrl, previous)
+                .filter(image -> image != previous)
+                .ifPresent(image -> {
+                    this.remember(image);
+                    this.save(image);
+                });
+    }
+
+    private Optional<ImageEmbedder.Image> cached(String logoUrl) {
+        synchronized (this.memory) {
+            ImageEmbedder.Image image = this.memory.get(logoUrl);
+            if (image != null) {
+                return Optional.of(image);
+            }
+        }
+        Optional<ImageEmbedder.Image> image = this.load(logoUrl);
+        image.ifPresent(this::remember);
+        return image;
+    }
+
+    private void remember(ImageEmbedder.Image image) {
+        synchronized (this.memory) {
+            ImageEmbedder.Image replaced = this.memory.put(image.url(), image);
+            this.memoryBytes += size(image) - (replaced == null ? 0L : size(replaced));
+            //Evict the least recently used logos, which remain in the directory
+            Iterator<ImageEmbedder.Image> iterator = this.memory.values().iterator();
+            while (this.memoryBytes > this.maxMemoryBytes && iterator.hasNext()) {
+                this.memoryBytes -= size(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    private Optional<ImageEmbedder.Image> load(String logoUrl) {
+        return this.directory.map(dir -> this.file(dir, logoUrl)).filter(Files::exists).flatMap(path -> {
+            try {
+                return Optional.of(objectMapper.readValue(path.toFile(), ImageEmbedder.Image.class));
+            } catch (IOException e) {
+                LOG.error(String.format("Error in loading the logo %s from %s", logoUrl, path), e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    private void save(ImageEmbedder.Image image) {
+        this.directory.ifPresent(dir -> {
+            Path path = this.file(dir, image.url());
+            try {
+                Path tempFile = Files.createTempFile(dir, "logo", ".json");
+                objectMapper.writeValue(tempFile.toFile(), image);
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.error(String.format("Error in saving the logo %s to %s", image.url(), path), e);
+            }
+        });
+    }
+
+    private Path file(Path dir, String logoUrl) {
+        return dir.resolve(DigestUtils.md5DigestAsHex(logoUrl.getBytes(StandardCharsets.UTF_8)) + ".json");
+    }
+
+    private static Optional<Path> createDirectory(Path path) {
+        try {
+            return Optional.of(Files.createDirectories(path));
+        } catch (IOException e) {
+            LOG.error(String.format("Error in creating the logo cache directory %s, logos are only cached in memory", path), e);
+            return Optional.empty();
+        }
+    }
+
+    private static long size(ImageEmbedder.Image image) {
+        return image.dataUrl().length();
+    }
+
+    /**
+     * Stops the background fetches, and waits for the logo which is being fetched to be saved.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdownNow();
+        if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            LOG.warn("Shutting down while a logo is being fetched");
+        }
+    }
+}
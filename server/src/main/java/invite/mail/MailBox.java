@@ -2,8 +2,6 @@ package invite.mail;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.mustachejava.DefaultMustacheFactory;
-import com.github.mustachejava.MustacheFactory;
 import invite.cron.IdPMetaDataResolver;
 import invite.cron.IdentityProvider;
 import invite.manage.Manage;
@@ -20,14 +18,16 @@ import lombok.SneakyThrows;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -40,6 +40,7 @@ import java.util.stream.Collectors;
 public class MailBox {
 
     private static final Log LOG = LogFactory.getLog(MailBox.class);
+    private static final String URL_PLACEHOLDER = "INVITATION_URL_PLACEHOLDER";
 
     private final JavaMailSender mailSender;
     private final String clientUrl;
@@ -50,9 +51,11 @@ public class MailBox {
 
     private final Map<String, Map<String, String>> subjects;
 
-    private final MustacheFactory mustacheFactory = new DefaultMustacheFactory("templates");
+    private final MailTemplates mailTemplates = new MailTemplates("templates");
     private final IdPMetaDataResolver idPMetaDataResolver;
     private final Manage manage;
+    private final LogoCache logoCache;
+    private final MailOutbox mailOutbox;
 
     public MailBox(ObjectMapper objectMapper,
                    IdPMetaDataResolver idPMetaDataResolver,
@@ -62,8 +65,12 @@ public class MailBox {
                    String clientUrl,
                    String welcomeUrl,
                    String environment,
-                   Manage manage) throws IOException {
+                   Manage manage,
+                   LogoCache logoCache,
+                   MailOutbox mailOutbox) throws IOException {
         this.mailSender = mailSender;
+        this.mailOutbox = mailOutbox;
+        this.logoCache = logoCache;
         this.idPMetaDataResolver = idPMetaDataResolver;
         this.manage = manage;
         this.emailFrom = emailFrom;
@@ -76,13 +83,28 @@ public class MailBox {
 
     }
 
-    @SneakyThrows
     public void sendInviteMail(Provisionable provisionable,
                                Invitation invitation,
                                List<GroupedProviders> groupedProviders,
                                Language language,
                                Optional<String> optionalIdpName) {
-        Authority intendedAuthority = invitation.getIntendedAuthority();
+        this.sendInviteMails(provisionable, List.of(invitation), groupedProviders, language, optionalIdpName);
+    }
+
+    /**
+     * Sends the mails of the invitations created by one request, which share their roles, applications, intended
+     * authority, message and language. The mail is rendered once and only the URL and the recipient differ per mail.
+     */
+    @SneakyThrows
+    public void sendInviteMails(Provisionable provisionable,
+                                List<Invitation> invitations,
+                                List<GroupedProviders> groupedProviders,
+                                Language language,
+                                Optional<String> optionalIdpName) {
+        if (invitations.isEmpty()) {
+            return;
+        }
+        Invitation invitation = invitations.getFirst();
         String title = String.format(subjects.get(language.name()).get("newInvitation"),
                 invitation.getRoles().stream().map(role -> role.getRole().getName()).collect(Collectors.joining(", ")));
         Map<String, Object> variables = new HashMap<>();
@@ -96,7 +118,7 @@ public class MailBox {
                     .map(idp -> idp.getName())
                     .orElse(user.getSchacHomeOrganization()));
             variables.put("institutionLogoUrl", identityProvider
-                    .flatMap(idp -> ImageEmbedder.fetchAsDataUrl(idp.getLogoUrl()))
+                    .flatMap(idp -> logoCache.dataUrl(idp.getLogoUrl()))
                     .orElse(null));
         } else {
             variables.put("institutionName", "SURF");
@@ -130,9 +152,8 @@ public class MailBox {
         if (!environment.equalsIgnoreCase("prod")) {
             variables.put("environment", environment);
         }
-        String url = intendedAuthority.equals(Authority.GUEST) ? welcomeUrl : clientUrl;
-
-        variables.put("url", String.format("%s/invitation/accept?hash=%s", url, invitation.getHash()));
+        //The URL is unescaped in the templates and substituted per invitation after rendering
+        variables.put("url", URL_PLACEHOLDER);
         variables.put("useEduID", invitation.isEduIDOnly());
 
         Map<String, String> images = new HashMap<>();
@@ -147,12 +168,20 @@ public class MailBox {
         } else {
             cause = provisionable.getName();
         }
-        sendMail(String.format("invitation_%s", language.name()),
-                title,
-                cause,
-                variables,
-                images,
-                invitation.getEmail());
+        String templateName = String.format("invitation_%s", language.name());
+        String htmlText = this.mailTemplate(templateName + ".html", variables);
+        String plainText = this.mailTemplate(templateName + ".txt", variables);
+        List<MimeMessage> messages = new ArrayList<>();
+        for (Invitation recipientInvitation : invitations) {
+            String url = this.inviteMailURL(recipientInvitation);
+            messages.add(this.createMessage(title,
+                    cause,
+                    plainText.replace(URL_PLACEHOLDER, url),
+                    htmlText.replace(URL_PLACEHOLDER, url),
+                    images,
+                    recipientInvitation.getEmail()));
+        }
+        doSendMail(messages);
     }
 
     private void addInlineImages(MimeMessageHelper helper, Map<String, String> imagePathsMap) {
@@ -163,9 +192,9 @@ public class MailBox {
 
     @SneakyThrows
     private void addInlineImage(MimeMessageHelper helper, String cid, String resourcePath) {
-        ClassPathResource resource = new ClassPathResource(resourcePath);
-        if (resource.exists()) {
-            helper.addInline(cid, resource);
+        ByteArrayResource resource = mailTemplates.image(resourcePath);
+        if (resource != null) {
+            helper.addInline(cid, resource, MediaType.IMAGE_PNG_VALUE);
         }
     }
 
@@ -217,7 +246,16 @@ public class MailBox {
                             String... to) throws MessagingException, IOException {
         String htmlText = this.mailTemplate(templateName + ".html", variables);
         String plainText = this.mailTemplate(templateName + ".txt", variables);
+        doSendMail(List.of(this.createMessage(subject, cause, plainText, htmlText, images, to)));
+        return htmlText;
+    }
 
+    private MimeMessage createMessage(String subject,
+                                      String cause,
+                                      String plainText,
+                                      String htmlText,
+                                      Map<String, String> images,
+                                      String... to) throws MessagingException, IOException {
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
         helper.setSubject(subject);
@@ -233,21 +271,19 @@ public class MailBox {
                 String.join(", ", to),
                 cause,
                 message.getMessageID()));
-
-        doSendMail(message);
-        return htmlText;
+        return message;
     }
 
     protected void setText(String plainText, String htmlText, MimeMessageHelper helper) throws MessagingException, IOException {
         helper.setText(plainText, htmlText);
     }
 
-    protected void doSendMail(MimeMessage message) {
-        new Thread(() -> mailSender.send(message)).start();
+    protected void doSendMail(List<MimeMessage> messages) {
+        mailOutbox.send(messages);
     }
 
     private String mailTemplate(String templateName, Map<String, Object> context) {
-        return mustacheFactory.compile(templateName).execute(new StringWriter(), context).toString();
+        return mailTemplates.render(templateName, context);
     }
 
     private String splitListSemantically(List<String> values) {
@@ -24,9 +24,12 @@ public class MailConf {
                            IdPMetaDataResolver idPMetaDataResolver,
                            Manage manage,
                            JavaMailSender mailSender,
-                           ObjectMapper objectMapper) throws IOException {
+                           ObjectMapper objectMapper,
+                           LogoCache logoCache,
+                           MailOutbox mailOutbox) throws IOException {
         return new MailBox(objectMapper, idPMetaDataResolver, mailSender, emailFrom,
-                contactEmail, config.getClientUrl(), config.getWelcomeUrl(), env, manage);
+                contactEmail, config.getClientUrl(), config.getWelcomeUrl(), env, manage, logoCache,
+                mailOutbox);
     }
 
 
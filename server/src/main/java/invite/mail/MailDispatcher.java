@@ -0,0 +1,251 @@
+package invite.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the mails asynchronously with a fixed number of workers reading from a bounded queue. Each worker sends the
+ * queued mails in batches over a single SMTP connection, so a bulk invitation does not open a connection per mail. The
+ * number of mails per second is optionally limited across all workers, to stay within the limits of the mail relay, in
+ * which case the batches are limited to the mails of one second.
+ * <p>
+ * Callers block when the queue is full, which slows down bulk invitations instead of exhausting the memory. A mail is
+ * rejected, and logged, if the queue stays full for longer than the offer timeout.
+ */
+@Component
+public class MailDispatcher {
+
+    private static final Log LOG = LogFactory.getLog(MailDispatcher.class);
+
+    private final JavaMailSender mailSender;
+    private final int batchSize;
+    private final Duration offerTimeout;
+    private final long nanosPerMail;
+    private final BlockingQueue<Dispatch> queue;
+    private final ExecutorService workers;
+    private final Timer latency;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private volatile boolean running = true;
+    private long nextSendAt = System.nanoTime();
+
+    public MailDispatcher(JavaMailSender mailSender,
+                          @Value("${email.dispatch.workers}") int workers,
+                          @Value("${email.dispatch.batch-size}") int batchSize,
+                          @Value("${email.dispatch.queue-capacity}") int queueCapacity,
+                          @Value("${email.dispatch.offer-timeout}") Duration offerTimeout,
+                          @Value("${email.dispatch.max-per-second}") int maxPerSecond,
+                          MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        //A batch is sent in one burst after the throttle, so a batch never exceeds the mails of one second
+        this.batchSize = maxPerSecond > 0 ? Math.min(batchSize, maxPerSecond) : batchSize;
+        this.offerTimeout = offerTimeout;
+        this.nanosPerMail = maxPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxPerSecond : 0L;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("mail_dispatch_queue_size", this.queue, BlockingQueue::size)
+                .description("Number of mails waiting to be sent")
+                .register(meterRegistry);
+        this.latency = Timer.builder("mail_dispatch_latency")
+                .description("Time between queueing and sending a mail")
+                .register(meterRegistry);
+        this.sent = meterRegistry.counter("mail_dispatch_messages", "outcome", "sent");
+        this.failed = meterRegistry.counter("mail_dispatch_messages", "outcome", "failed");
+        this.rejected = meterRegistry.counter("mail_dispatch_messages", "outcome", "rejected");
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-dispatcher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            this.workers.submit(this::work);
+        }
+    }
+
+    /**
+     * Queues the mail, and blocks for at most the offer timeout if the queue is full.
+     */
+    public void dispatch(MimeMessage message) {
+        this.dispatch(message, Callback.NONE);
+    }
+
+    /**
+     * Queues the mail, and calls the callback on the worker thread when the mail is sent or has failed.
+     */
+    public void dispatch(MimeMessage message, Callback callback) {
+        try {
+            if (this.running && this.queue.offer(new Dispatch(message, callback, System.nanoTime()),
+                    this.offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            this.reject(message, callback, "the mail queue is full or shut down");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.reject(message, callback, "interrupted while queueing");
+        }
+    }
+
+    private void reject(MimeMessage message, Callback callback, String reason) {
+        this.rejected.increment();
+        LOG.error(String.format("Rejected mail %s, %s", messageId(message), reason));
+        callback.failed(new IllegalStateException(reason));
+    }
+
+    public int remainingCapacity() {
+        return this.running ? this.queue.remainingCapacity() : 0;
+    }
+
+    private void work() {
+        List<Dispatch> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Dispatch first = this.queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - 1);
+                this.send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                //Never let a worker die
+                LOG.error("Unexpected error in sending mails", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Dispatch> batch) throws InterruptedException {
+        for (int i = 0; i < batch.size(); i++) {
+            this.throttle();
+        }
+        MimeMessage[] messages = batch.stream().map(Dispatch::message).toArray(MimeMessage[]::new);
+        Map<Object, Exception> failures = Map.of();
+        MailException failure = null;
+        try {
+            //JavaMailSenderImpl sends all messages over one connection
+            this.mailSender.send(messages);
+        } catch (MailSendException e) {
+            failure = e;
+            failures = e.getFailedMessages();
+        } catch (MailException e) {
+            failure = e;
+        }
+        long now = System.nanoTime();
+        int failed = 0;
+        for (Dispatch dispatch : batch) {
+            this.latency.record(now - dispatch.queuedAt(), TimeUnit.NANOSECONDS);
+            //Without failed messages the entire batch has failed
+            Exception exception = failure == null ? null :
+                    failures.isEmpty() ? failure : failures.get(dispatch.message());
+            this.complete(dispatch, exception);
+            failed += exception == null ? 0 : 1;
+        }
+        if (failure != null) {
+            LOG.error(String.format("Error in sending %d of %d mails", failed, messages.length), failure);
+        }
+        this.sent.increment(messages.length - failed);
+        this.failed.increment(failed);
+    }
+
+    private void complete(Dispatch dispatch, Exception exception) {
+        try {
+            if (exception == null) {
+                dispatch.callback().sent();
+            } else {
+                dispatch.callback().failed(exception);
+            }
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Error in the callback of mail %s", messageId(dispatch.message())), e);
+        }
+    }
+
+    //Spaces the mails evenly over the second, shared by all workers
+    private void throttle() throws InterruptedException {
+        if (this.nanosPerMail == 0L) {
+            return;
+        }
+        long sendAt;
+        synchronized (this) {
+            sendAt = Math.max(this.nextSendAt, System.nanoTime());
+            this.nextSendAt = sendAt + this.nanosPerMail;
+        }
+        long wait = sendAt - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static String messageId(MimeMessage message) {
+        try {
+            return message.getMessageID();
+        } catch (MessagingException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Stops accepting mails and sends the queued mails for at most the offer timeout.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        this.workers.shutdown();
+        if (!this.workers.awaitTermination(this.offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            LOG.warn(String.format("Shutting down with %d unsent mails", this.queue.size()));
+            this.workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Notified of the outcome of a queued mail.
+     */
+    public interface Callback {
+
+        Callback NONE = new Callback() {
+            @Override
+            public void sent() {
+            }
+
+            @Override
+            public void failed(Exception e) {
+            }
+        };
+
+        void sent();
+
+        void failed(Exception e);
+    }
+
+    private record Dispatch(MimeMessage message, Callback callback, long queuedAt) {
+    }
+}
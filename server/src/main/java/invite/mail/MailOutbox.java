@@ -0,0 +1,76 @@
+package invite.mail;
+
+import invite.model.MailMessage;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.SneakyThrows;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the mails in the mail_outbox table, in the transaction of the caller, so a mail is never lost once the change
+ * which caused it is committed. The mails are sent by the MailOutboxDispatcher. When the outbox is disabled the mails
+ * are queued in memory with the MailDispatcher.
+ */
+@Component
+public class MailOutbox {
+
+    private static final String INSERT = """
+            INSERT INTO mail_outbox (recipients, subject, mime_message, status, attempts, next_attempt_at, created_at)
+            VALUES (?, ?, ?, ?, 0, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MailDispatcher mailDispatcher;
+    private final boolean enabled;
+
+    public MailOutbox(JdbcTemplate jdbcTemplate,
+                      MailDispatcher mailDispatcher,
+                      @Value("${email.outbox.enabled}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mailDispatcher = mailDispatcher;
+        this.enabled = enabled;
+    }
+
+    public void send(MimeMessage message) {
+        this.send(List.of(message));
+    }
+
+    /**
+     * Stores the mails with one JDBC batch, or queues them in memory when the outbox is disabled. The MailMessage
+     * entity is not used for the insert, as Hibernate does not batch inserts of entities with an IDENTITY id.
+     */
+    public void send(List<MimeMessage> messages) {
+        if (!this.enabled) {
+            messages.forEach(this.mailDispatcher::dispatch);
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        this.jdbcTemplate.batchUpdate(INSERT, messages.stream().map(message -> row(message, now)).toList());
+    }
+
+    @SneakyThrows
+    private static Object[] row(MimeMessage message, Timestamp now) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        message.writeTo(outputStream);
+        return new Object[]{recipients(message), message.getSubject(), outputStream.toByteArray(),
+                MailMessage.MessageStatus.PENDING.name(), now, now};
+    }
+
+    private static String recipients(MimeMessage message) throws MessagingException {
+        Address[] recipients = message.getRecipients(Message.RecipientType.TO);
+        return recipients == null ? "" : Arrays.stream(recipients)
+                .map(Address::toString)
+                .collect(Collectors.joining(", "));
+    }
+}
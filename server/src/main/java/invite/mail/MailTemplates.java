@@ -0,0 +1,62 @@
+package invite.mail;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import lombok.SneakyThrows;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StreamUtils;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable registry of the mail templates and inline images. All html and txt templates, for every language, are
+ * compiled once when the application starts, so an invalid template fails the startup instead of a send. The inline
+ * images are read once and shared by all mails.
+ */
+public class MailTemplates {
+
+    private final Map<String, Mustache> templates;
+    private final Map<String, ByteArrayResource> images;
+
+    @SneakyThrows
+    public MailTemplates(String directory) {
+        MustacheFactory mustacheFactory = new DefaultMustacheFactory(directory);
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Map<String, Mustache> compiled = new HashMap<>();
+        for (String extension : new String[]{"html", "txt"}) {
+            for (Resource resource : resolver.getResources(String.format("classpath:/%s/*.%s", directory, extension))) {
+                String name = resource.getFilename();
+                compiled.put(name, mustacheFactory.compile(name));
+            }
+        }
+        this.templates = Map.copyOf(compiled);
+        Map<String, ByteArrayResource> loaded = new HashMap<>();
+        for (Resource resource : resolver.getResources(String.format("classpath:/%s/*.png", directory))) {
+            byte[] bytes = StreamUtils.copyToByteArray(resource.getInputStream());
+            loaded.put(directory + "/" + resource.getFilename(), new ByteArrayResource(bytes, resource.getFilename()));
+        }
+        this.images = Map.copyOf(loaded);
+    }
+
+    public String render(String templateName, Map<String, Object> context) {
+        Mustache mustache = this.templates.get(templateName);
+        if (mustache == null) {
+            throw new IllegalArgumentException(String.format("Unknown mail template %s, known templates are %s",
+                    templateName, Arrays.toString(this.templates.keySet().stream().sorted().toArray())));
+        }
+        return mustache.execute(new StringWriter(), context).toString();
+    }
+
+    /**
+     * Returns the bytes of the inline image with the classpath location, or null if there is no such image.
+     */
+    public ByteArrayResource image(String resourcePath) {
+        return this.images.get(resourcePath);
+    }
+}
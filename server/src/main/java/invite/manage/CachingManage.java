@@ -0,0 +1,285 @@
+package invite.manage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Read-through cache in front of another {@link Manage}, most likely the {@link RemoteManage}. Results are cached
+ * per EntityType and keyed on the manage identifier, the entityID or the institution GUID. Absent results are cached
+ * as well, but with a - typically shorter - negative time-to-live. The returned providers are the shared and
+ * unmodifiable cached maps, callers that change a provider must copy it.
+ */
+@SuppressWarnings("unchecked")
+public class CachingManage implements Manage {
+
+    private static final Log LOG = LogFactory.getLog(CachingManage.class);
+
+    private static final List<String> REFERENCE_ATTRIBUTES = List.of("id", "_id", "entityid", "institutionGuid");
+
+    private final Manage manage;
+    private final Duration timeToLive;
+    private final Duration negativeTimeToLive;
+    private final long maximumSize;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<EntityType, Cache<String, Map<String, Object>>> providersById = new EnumMap<>(EntityType.class);
+    private final Map<EntityType, Cache<String, Optional<Map<String, Object>>>> providersByEntityID = new EnumMap<>(EntityType.class);
+    private final Cache<EntityType, List<Map<String, Object>>> providersByEntityType;
+    //Keyed on the manage identifier of the application which is linked to the provisioning
+    private final Cache<String, List<Map<String, Object>>> provisioningsByApplicationId;
+    private final Cache<String, List<Map<String, Object>>> identityProvidersByInstitutionalGUID;
+    private final Cache<String, List<Map<String, Object>>> providersByInstitutionalGUID;
+
+    public CachingManage(Manage manage,
+                         Duration timeToLive,
+                         Duration negativeTimeToLive,
+                         long maximumSize,
+                         MeterRegistry meterRegistry) {
+        this.manage = manage;
+        this.timeToLive = timeToLive;
+        this.negativeTimeToLive = negativeTimeToLive;
+        this.maximumSize = maximumSize;
+        this.meterRegistry = meterRegistry;
+        Stream.of(EntityType.values()).forEach(entityType -> {
+            String name = entityType.collectionName();
+            this.providersById.put(entityType, this.cache(String.format("manage_%s_by_id", name)));
+            this.providersByEntityID.put(entityType, this.cache(String.format("manage_%s_by_entity_id", name)));
+        });
+        this.providersByEntityType = this.cache("manage_providers_by_entity_type");
+        this.provisioningsByApplicationId = this.cache("manage_provisioning_by_application_id");
+        this.identityProvidersByInstitutionalGUID = this.cache("manage_saml20_idp_by_institution_guid");
+        this.providersByInstitutionalGUID = this.cache("manage_providers_by_institution_guid");
+    }
+
+    @Override
+    public List<Map<String, Object>> providers(EntityType... entityTypes) {
+        return Stream.of(entityTypes)
+                .map(entityType -> this.providersByEntityType.get(entityType, key -> manage.providers(key)))
+                .flatMap(List::stream)
+                .map(this::shared)
+                .toList();
+    }
+
+    @Override
+    public Map<String, Object> providerById(EntityType entityType, String id) {
+        if (!StringUtils.hasText(id)) {
+            return manage.providerById(entityType, id);
+        }
+        return shared(this.providersById.get(entityType).get(id, key -> manage.providerById(entityType, key)));
+    }
+
+    @Override
+    public List<String> idpEntityIdentifiersByServiceEntityId(List<String> serviceEntityIdentifiers) {
+        return manage.idpEntityIdentifiersByServiceEntityId(serviceEntityIdentifiers);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> providerByEntityID(EntityType entityType, String entityID) {
+        if (!StringUtils.hasText(entityID)) {
+            return manage.providerByEntityID(entityType, entityID);
+        }
+        return this.providersByEntityID.get(entityType)
+                .get(entityID, key -> manage.providerByEntityID(entityType, key))
+                .map(this::shared);
+    }
+
+    @Override
+    public List<Map<String, Object>> providersByIdIn(EntityType entityType, List<String> identifiers) {
+        if (CollectionUtils.isEmpty(identifiers)) {
+            return emptyList();
+        }
+        Map<String, Map<String, Object>> providers = this.providersById.get(entityType).getAll(identifiers, missingIdentifiers -> {
+            LOG.debug(String.format("Cache miss in providersByIdIn for %s %s", entityType, missingIdentifiers));
+            Map<String, Map<String, Object>> results = new HashMap<>();
+            //Negative cache entries for identifiers unknown in Manage
+            missingIdentifiers.forEach(identifier -> results.put(identifier, Map.of()));
+            manage.providersByIdIn(entityType, new ArrayList<>(missingIdentifiers)).stream()
+                    .filter(provider -> StringUtils.hasText((String) provider.get("id")))
+                    .forEach(provider -> results.put((String) provider.get("id"), provider));
+            return results;
+        });
+        return identifiers.stream()
+                .distinct()
+                .map(providers::get)
+                .filter(provider -> !CollectionUtils.isEmpty(provider))
+                .map(this::shared)
+                .toList();
+    }
+
+    @Override
+    public List<Map<String, Object>> provisioning(Collection<String> applicationIdentifiers) {
+        if (CollectionUtils.isEmpty(applicationIdentifiers)) {
+            return emptyList();
+        }
+        Map<String, List<Map<String, Object>>> provisionings = this.provisioningsByApplicationId.getAll(
+                new HashSet<>(applicationIdentifiers),
+                missingIdentifiers -> this.groupBy(
+                        missingIdentifiers,
+                        manage.provisioning(new ArrayList<>(missingIdentifiers)),
+                        provisioning -> ((List<Map<String, String>>) provisioning.getOrDefault("applications", emptyList()))
+                                .stream()
+                                .map(application -> application.get("id"))
+                                .toList()));
+        return distinctBy(provisionings.values().stream().flatMap(List::stream).toList(), provisioning -> provisioning.get("id"))
+                .stream()
+                .map(this::shared)
+                .toList();
+    }
+
+    @Override
+    public List<Map<String, Object>> providersAllowedByIdP(Map<String, Object> identityProvider) {
+        return manage.providersAllowedByIdP(identityProvider);
+    }
+
+    @Override
+    public List<Map<String, Object>> providersAllowedByIdPs(List<Map<String, Object>> identityProviders) {
+        return manage.providersAllowedByIdPs(identityProviders);
+    }
+
+    @Override
+    public List<Map<String, Object>> identityProvidersByInstitutionalGUID(String organisationGUID) {
+        if (!StringUtils.hasText(organisationGUID)) {
+            return manage.identityProvidersByInstitutionalGUID(organisationGUID);
+        }
+        return this.identityProvidersByInstitutionalGUID
+                .get(organisationGUID, key -> List.copyOf(manage.identityProvidersByInstitutionalGUID(key)))
+                .stream()
+                .map(this::shared)
+                .toList();
+    }
+
+    @Override
+    public List<Map<String, Object>> providersByInstitutionalGUID(List<String> organisationGUIDs) {
+        if (CollectionUtils.isEmpty(organisationGUIDs)) {
+            return manage.providersByInstitutionalGUID(organisationGUIDs);
+        }
+        Map<String, List<Map<String, Object>>> providers = this.providersByInstitutionalGUID.getAll(
+                new HashSet<>(organisationGUIDs),
+                missingGUIDs -> this.groupBy(
+                        missingGUIDs,
+                        manage.providersByInstitutionalGUID(new ArrayList<>(missingGUIDs)),
+                        provider -> StringUtils.hasText((String) provider.get("institutionGuid")) ?
+                                List.of((String) provider.get("institutionGuid")) : emptyList()));
+        return providers.values().stream()
+                .flatMap(List::stream)
+                .map(this::shared)
+                .toList();
+    }
+
+    @Override
+    public Map<String, Object> updatePolicy(Map<String, Object> policy) {
+        return manage.updatePolicy(policy);
+    }
+
+    @Override
+    public List<Map<String, Object>> policiesByServiceProviders(List<String> serviceProviderEntityIds) {
+        return manage.policiesByServiceProviders(serviceProviderEntityIds);
+    }
+
+    @Override
+    public void evict(EntityType entityType, String identifier) {
+        LOG.info(String.format("Evicting Manage cache for entityType %s and identifier %s", entityType, identifier));
+        if (entityType == null) {
+            this.caches().forEach(Cache::invalidateAll);
+            this.providersByEntityType.invalidateAll();
+            return;
+        }
+        this.providersByEntityType.invalidate(entityType);
+        List<Cache<String, ?>> caches = new ArrayList<>(List.of(this.providersById.get(entityType), this.providersByEntityID.get(entityType)));
+        switch (entityType) {
+            case SAML20_SP, OIDC10_RP -> caches.add(this.providersByInstitutionalGUID);
+            case SAML20_IDP -> caches.add(this.identityProvidersByInstitutionalGUID);
+            case PROVISIONING -> caches.add(this.provisioningsByApplicationId);
+        }
+        if (!StringUtils.hasText(identifier)) {
+            caches.forEach(Cache::invalidateAll);
+            return;
+        }
+        caches.forEach(cache -> cache.asMap().entrySet()
+                .removeIf(entry -> entry.getKey().equals(identifier) || this.references(entry.getValue(), identifier)));
+        //A changed provider may be linked to a provisioning, which is cached under the identifier of the provider
+        this.provisioningsByApplicationId.invalidate(identifier);
+    }
+
+    private List<Cache<String, ?>> caches() {
+        List<Cache<String, ?>> caches = new ArrayList<>();
+        caches.addAll(this.providersById.values());
+        caches.addAll(this.providersByEntityID.values());
+        caches.add(this.provisioningsByApplicationId);
+        caches.add(this.identityProvidersByInstitutionalGUID);
+        caches.add(this.providersByInstitutionalGUID);
+        return caches;
+    }
+
+    private boolean references(Object value, String identifier) {
+        if (value instanceof Optional<?> optional) {
+            return optional.map(provider -> this.references(provider, identifier)).orElse(false);
+        }
+        if (value instanceof Collection<?> providers) {
+            return providers.stream().anyMatch(provider -> this.references(provider, identifier));
+        }
+        if (value instanceof Map<?, ?> provider) {
+            return REFERENCE_ATTRIBUTES.stream().anyMatch(attribute -> identifier.equals(provider.get(attribute)));
+        }
+        return false;
+    }
+
+    private Map<String, List<Map<String, Object>>> groupBy(Collection<? extends String> keys,
+                                                           List<Map<String, Object>> providers,
+                                                           Function<Map<String, Object>, List<String>> keyExtractor) {
+        Map<String, List<Map<String, Object>>> results = new HashMap<>();
+        //Negative cache entries for keys without any provider
+        keys.forEach(key -> results.put(key, new ArrayList<>()));
+        providers.forEach(provider -> keyExtractor.apply(provider).stream()
+                .filter(results::containsKey)
+                .forEach(key -> results.get(key).add(provider)));
+        results.replaceAll((key, value) -> List.copyOf(value));
+        return results;
+    }
+
+    //The cached providers are shared and unmodifiable, only the negative cache entries are replaced
+    private Map<String, Object> shared(Map<String, Object> provider) {
+        return CollectionUtils.isEmpty(provider) ? new HashMap<>() : provider;
+    }
+
+    private boolean isNegative(Object value) {
+        if (value instanceof Optional<?> optional) {
+            return optional.isEmpty();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return CollectionUtils.isEmpty(map);
+        }
+        return value instanceof Collection<?> collection && collection.isEmpty();
+    }
+
+    private <K, V> Cache<K, V> cache(String name) {
+        Cache<K, V> cache = Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfter(Expiry.<K, V>writing((key, value) -> this.isNegative(value) ? this.negativeTimeToLive : this.timeToLive))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(this.meterRegistry, cache, name);
+        return cache;
+    }
+}
@@ -2,32 +2,29 @@ package invite.manage;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import invite.exception.NotFoundException;
 import lombok.SneakyThrows;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.StringUtils;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.Collections.emptyList;
-
-@SuppressWarnings("unchecked")
+/**
+ * Manage backed by static JSON exports, used when manage is disabled (e.g. local development, load-tests and staging).
+ * All providers are transformed and indexed once at construction, so lookups don't scan the exports.
+ */
 public final class LocalManage implements Manage {
 
     private static final Log LOG = LogFactory.getLog(LocalManage.class);
 
-    private final Map<EntityType, List<Map<String, Object>>> allProviders;
+    private final ManageIndex manageIndex;
 
     private final DefaultResourceLoader defaultResourceLoader = new DefaultResourceLoader();
 
@@ -36,9 +33,10 @@ public final class LocalManage implements Manage {
     }
 
     public LocalManage(ObjectMapper objectMapper, String staticManageDirectory) {
-        this.allProviders = Stream.of(EntityType.values()).collect(Collectors.toMap(
-                entityType -> entityType,
+        Map<EntityType, List<Map<String, Object>>> allProviders = Stream.of(EntityType.values()).collect(Collectors.toMap(
+                Function.identity(),
                 entityType -> this.initialize(objectMapper, entityType, staticManageDirectory)));
+        this.manageIndex = new ManageIndex(allProviders);
     }
 
     @SneakyThrows
@@ -53,109 +51,50 @@ public final class LocalManage implements Manage {
     public List<Map<String, Object>> providers(EntityType... entityTypes) {
         LOG.debug("providers for : " + List.of(entityTypes));
 
-        //Ensure it is immutable
-        return transformProvider(Stream.of(entityTypes).map(entityType -> this.allProviders.get(entityType).stream().toList())
-                .flatMap(List::stream)
-                .toList());
+        return this.manageIndex.providers(entityTypes);
     }
 
     @Override
     public List<Map<String, Object>> providersByIdIn(EntityType entityType, List<String> identifiers) {
         LOG.debug("providersByIdIn for : " + entityType);
 
-        List<Map<String, Object>> providers = this.allProviders.get(entityType);
-        return transformProvider(providers.stream()
-                .filter(provider -> identifiers.contains(provider.get("_id")))
-                .collect(Collectors.toList()));
+        return this.manageIndex.providersByIdIn(entityType, identifiers);
     }
 
     @Override
     public Optional<Map<String, Object>> providerByEntityID(EntityType entityType, String entityID) {
         LOG.debug("providerByEntityID for : " + entityType);
 
-        return this.allProviders.get(entityType).stream()
-                .filter(provider -> entityID.equals(((Map<String, Object>) provider.get("data")).get("entityid")))
-                .map(this::transformProvider)
-                .findFirst();
+        return this.manageIndex.providerByEntityID(entityType, entityID);
     }
 
     @Override
     public Map<String, Object> providerById(EntityType entityType, String id) {
         LOG.debug("providerById for : " + entityType);
 
-        List<Map<String, Object>> providers = providers(entityType);
-        return providers.stream()
-                .filter(provider -> provider.get("_id").equals(id))
-                .findFirst()
-                .orElseThrow(() -> new NotFoundException("Provider not found"));
+        return this.manageIndex.providerById(entityType, id);
     }
 
     @Override
     public List<String> idpEntityIdentifiersByServiceEntityId(List<String> serviceEntityIdentifiers) {
-        if (serviceEntityIdentifiers.isEmpty()) {
-            return emptyList();
-        }
-        List<Map<String, Object>> allIdentityProviders = this.providers(EntityType.SAML20_IDP);
-        return allIdentityProviders.stream()
-                .filter(idp -> {
-                    List<Map<String, String>> allowedEntities = (List<Map<String, String>>) idp.getOrDefault("allowedEntities", emptyList());
-                    boolean allowedAll = (boolean) idp.getOrDefault("allowedall", false);
-                    return allowedAll || allowedEntities.stream()
-                            .map(entity -> entity.get("name"))
-                            .anyMatch(name -> serviceEntityIdentifiers.contains(name));
-                })
-                .map(idp -> (String) idp.get("entityid"))
-                .toList();
+        return this.manageIndex.idpEntityIdentifiersByServiceEntityId(serviceEntityIdentifiers);
     }
 
     @Override
     public List<Map<String, Object>> provisioning(Collection<String> applicationIdentifiers) {
         LOG.debug("provisioning for : " + applicationIdentifiers);
 
-        if (CollectionUtils.isEmpty(applicationIdentifiers)) {
-            return Collections.emptyList();
-        }
-        return providers(EntityType.PROVISIONING).stream()
-                .filter(map -> {
-                    List<Map<String, String>> applications = (List<Map<String, String>>) map.get("applications");
-                    return applications.stream().anyMatch(m -> applicationIdentifiers.contains(m.get("id")));
-                })
-                .collect(Collectors.toList());
+        return this.manageIndex.provisioning(applicationIdentifiers);
     }
 
     @Override
     public List<Map<String, Object>> providersAllowedByIdPs(List<Map<String, Object>> identityProviders) {
-        if (identityProviders.isEmpty()) {
-            return emptyList();
-        }
-        List<Map<String, Object>> allProviders = this.providers(EntityType.SAML20_SP, EntityType.OIDC10_RP);
-        if (identityProviders.stream()
-                .anyMatch(idp -> (Boolean) idp.getOrDefault("allowedall", Boolean.FALSE))) {
-            return allProviders;
-        }
-        List<String> institutionGuids = identityProviders.stream()
-                .map(idp -> (String) idp.get("institutionGuid"))
-                .filter(institutionGuid -> StringUtils.hasText(institutionGuid))
-                .toList();
-        List<String> entityIdentifiers = identityProviders.stream()
-                .map(idp -> (List<Map<String, String>>) idp.getOrDefault("allowedEntities", emptyList()))
-                .flatMap(Collection::stream)
-                .map(m -> m.get("name"))
-                .distinct()
-                .toList();
-        List<Map<String, Object>> providers = allProviders.stream()
-                .filter(provider -> entityIdentifiers.contains((String) provider.get("entityid")) ||
-                        institutionGuids.contains((String) provider.get("institutionGuid")))
-                .toList();
-        return providers;
+        return this.manageIndex.providersAllowedByIdPs(identityProviders);
     }
 
     @Override
     public List<Map<String, Object>> providersByInstitutionalGUID(List<String> organisationGUIDs) {
-        List<Map<String, Object>> allProviders = this.providers(EntityType.SAML20_SP, EntityType.OIDC10_RP);
-        return allProviders.stream()
-                .filter(provider -> organisationGUIDs.contains((String)provider.get("institutionGuid")))
-                .toList();
+        return this.manageIndex.providersByInstitutionalGUID(organisationGUIDs);
     }
 
     @Override
@@ -169,26 +108,12 @@ public final class LocalManage implements Manage {
     public List<Map<String, Object>> identityProvidersByInstitutionalGUID(String organisationGUID) {
         LOG.debug("identityProviderByInstitutionalGUID for : " + organisationGUID);
 
-        List<Map<String, Object>> providers = providers(EntityType.SAML20_IDP);
-        return providers
-                .stream()
-                .filter(provider -> Objects.equals(provider.get("institutionGuid"), organisationGUID))
-                .toList();
+        return this.manageIndex.identityProvidersByInstitutionalGUID(organisationGUID);
     }
 
     @Override
     public List<Map<String, Object>> policiesByServiceProviders(List<String> serviceProviderEntityIds) {
-        if (serviceProviderEntityIds.isEmpty()) {
-            return List.of();
-        }
-        return this.allProviders.get(EntityType.POLICY).stream()
-                .filter(policy -> {
-                    List<Map<String, String>> serviceProviderIds = (List<Map<String, String>>)
-                            getData(policy).getOrDefault("serviceProviderIds", List.of());
-                    return serviceProviderIds.stream()
-                            .anyMatch(m -> serviceProviderEntityIds.contains(m.get("name")));
-                })
-                .toList();
+        return this.manageIndex.policiesByServiceProviders(serviceProviderEntityIds);
     }
 
     @Override
@@ -196,10 +121,4 @@ public final class LocalManage implements Manage {
         return policy;
     }
 
-
-    private Map<String, Object> getData(Map<String, Object> provider) {
-        return (Map<String, Object>) provider.get("data");
-    }
-
-
 }
@@ -46,6 +46,14 @@ public interface Manage {
 
     List<Map<String, Object>> policiesByServiceProviders(List<String> serviceProviderEntityIds);
 
+    /**
+     * Evict cached metadata. A null entityType evicts everything and a null identifier evicts all entries of the
+     * entityType. The identifier is matched against the manage identifier, entityID and institution GUID.
+     */
+    default void evict(EntityType entityType, String identifier) {
+        //Only caching implementations need to act
+    }
+
     default List<Map<String, Object>> transformProvider(List<Map<String, Object>> providers) {
         //Defensive because of Manage misbehavior
         if (CollectionUtils.isEmpty(providers)) {
@@ -54,88 +62,17 @@ public interface Manage {
         return providers.stream().map(this::transformProvider).toList();
     }
 
-    @SuppressWarnings("unchecked")
     default Map<String, Object> transformProvider(Map<String, Object> provider) {
         //Defensive mostly because of tests
         if (CollectionUtils.isEmpty(provider)) {
             return new HashMap<>();
         }
-        Map data = (Map) provider.get("data");
         //When mocking - using the results of LocalManage - the provider may already be transformed
-        if (CollectionUtils.isEmpty(data)) {
+        if (CollectionUtils.isEmpty((Map<?, ?>) provider.get("data"))) {
             return provider;
         }
-        Map metaDataFields = (Map) data.get("metaDataFields");
-        //Can't use Map.of as values can be null
-        Map application = new HashMap<>();
-        //Due to the different API's we are using, the result sometimes contains an "_id" and sometimes an "id"
-        Object id = provider.get("id");
-        if (id != null) {
-            application.put("id", id);
-            application.put("_id", id);
-        } else {
-            Object underscoreId = provider.get("_id");
-            application.put("id", underscoreId);
-            application.put("_id", underscoreId);
-        }
-        //This data won't leave the application, but is needed by the provisioning service
-        if (provider.get("type").equals(EntityType.PROVISIONING.collectionName())) {
-            List.of(
-                    "provisioning_type",
-                    "scim_url",
-                    "scim_user",
-                    "scim_password",
-                    "scim_bearer_token",
-                    "scim_update_role_put_method",
-                    "scim_user_identifier",
-                    "scim_user_provisioning_only",
-                    "eva_url",
-                    "eva_token",
-                    "eva_guest_account_duration",
-                    "graph_url",
-                    "graph_client_id",
-                    "graph_secret",
-                    "graph_tenant",
-                    "user_wait_time"
-            ).forEach(attribute -> application.put(attribute, metaDataFields.get(attribute)));
-        }
-        String scimUrl = (String) application.get("scim_url");
-        if (StringUtils.hasText(scimUrl) && scimUrl.endsWith("/")) {
-            application.put("scim_url", scimUrl.substring(0, scimUrl.length() - 1));
-        }
-        application.put("type", provider.get("type"));
-        application.put("applications", data.get("applications"));
-        application.put("allowedEntities", data.get("allowedEntities"));
-        application.put("mfaEntities", data.get("mfaEntities"));
-        application.put("allowedall", data.get("allowedall"));
-        application.put("entityid", data.get("entityid"));
-        application.put("logo", metaDataFields.get("logo:0:url"));
-        application.put("url", metaDataFields.get("coin:application_url"));
-        application.put("OrganizationName:en", metaDataFields.get("OrganizationName:en"));
-        application.put("OrganizationName:nl", metaDataFields.get("OrganizationName:nl"));
-        application.put("name:en", metaDataFields.get("name:en"));
-        application.put("name:nl", metaDataFields.get("name:nl"));
-        application.put("institutionGuid", metaDataFields.get("coin:institution_guid"));
-        Map<String, Object> arp = (Map<String, Object>) data.get("arp");
-        if (!CollectionUtils.isEmpty(arp)) {
-            boolean enabled = (boolean) arp.getOrDefault("enabled", false);
-            if (!enabled) {
-                //Will receive all attributes, but not from any other source than idp
-                application.put("receivesMemberships", false);
-            } else {
-                Map<String, Object> attributes = (Map<String, Object>) arp.getOrDefault("attributes", Map.of());
-                List<Map<String, Object>> isMemberOf = (List<Map<String, Object>>) attributes.get("urn:mace:dir:attribute-def:isMemberOf");
-                if (CollectionUtils.isEmpty(isMemberOf)) {
-                    application.put("receivesMemberships", false);
-                } else {
-                    boolean receivesVootMemberships = isMemberOf.stream()
-                            .map(m -> m.getOrDefault("source", "nope"))
-                            .anyMatch(source -> source.equals("voot") || source.equals("invite"));
-                    application.put("receivesMemberships", receivesVootMemberships);
-                }
-            }
-        }
-        return application;
+        //Shared and unmodifiable, callers that change the result must copy it
+        return ProviderView.of(provider).asMap();
     }
 
 
@@ -157,18 +94,16 @@ public interface Manage {
         roles.forEach(role -> role.setApplicationMaps(
                 role.getApplicationUsages().stream()
                         .map(applicationUsage -> {
-                            Map<String, Object> applicationMap =
-                                    transformProvider(remoteApplications.get(applicationUsage.getApplication().getManageId()));
+                            Map<String, Object> applicationMap = remoteApplications.get(applicationUsage.getApplication().getManageId());
                             if (CollectionUtils.isEmpty(applicationMap)) {
                                 //If remote manage is not behaving
                                 applicationMap = new HashMap<>();
                                 applicationMap.put("unknown", true);
-                            } else {
-                                //Bugfix for overwrite of map reference value in case roles are linked to same application, need new Map
-                                applicationMap = new HashMap<>(applicationMap);
+                                applicationMap.put("landingPage", applicationUsage.getLandingPage());
+                                return applicationMap;
                             }
-                            applicationMap.put("landingPage", applicationUsage.getLandingPage());
-                            return applicationMap;
+                            //Roles linked to the same application share the provider, each with their own landingPage
+                            return ProviderView.withEntry(applicationMap, "landingPage", applicationUsage.getLandingPage());
                         })
                         .toList()));
         return roles;
@@ -4,6 +4,8 @@ package invite.manage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import crypto.CompoundKeyStore;
 import crypto.KeyStore;
+import invite.config.HttpClients;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.util.IOUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -11,6 +13,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
+import java.time.Duration;
 
 @Configuration
 public class ManageConf {
@@ -21,8 +24,24 @@ public class ManageConf {
                          @Value("${manage.password}") String password,
                          @Value("${manage.enabled}") boolean enabled,
                          @Value("${manage.staticManageDirectory}") String staticManageDirectory,
-                         ObjectMapper objectMapper) throws IOException {
-        return enabled ? new RemoteManage(url, user, password) : new LocalManage(objectMapper, staticManageDirectory);
+                         @Value("${manage.cache.enabled}") boolean cacheEnabled,
+                         @Value("${manage.cache.time-to-live}") Duration timeToLive,
+                         @Value("${manage.cache.negative-time-to-live}") Duration negativeTimeToLive,
+                         @Value("${manage.cache.maximum-size}") long maximumSize,
+                         @Value("${manage.snapshot.enabled}") boolean snapshotEnabled,
+                         @Value("${manage.snapshot.file}") String snapshotFile,
+                         @Value("${http.read-timeout.manage}") Duration readTimeout,
+                         ObjectMapper objectMapper,
+                         HttpClients httpClients,
+                         MeterRegistry meterRegistry) throws IOException {
+        if (!enabled) {
+            return new LocalManage(objectMapper, staticManageDirectory);
+        }
+        RemoteManage remoteManage = new RemoteManage(httpClients.restTemplate("manage", readTimeout), url, user, password);
+        if (snapshotEnabled) {
+            return new SnapshotManage(remoteManage, objectMapper, snapshotFile, meterRegistry);
+        }
+        return cacheEnabled ? new CachingManage(remoteManage, timeToLive, negativeTimeToLive, maximumSize, meterRegistry) : remoteManage;
     }
 
     @Bean
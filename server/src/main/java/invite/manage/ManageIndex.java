@@ -0,0 +1,217 @@
+package invite.manage;
+
+import invite.exception.NotFoundException;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Immutable, in-memory index of all raw Manage documents. The providers are transformed once and indexed on the
+ * manage identifier, entityID, institution GUID and the applications linked to a provisioning, so all lookups are
+ * hash lookups instead of scans. Results are in the order of the Manage documents, like a scan would return them.
+ * Returned providers are the shared and unmodifiable maps of the index, callers that change a provider must copy it.
+ */
+@SuppressWarnings("unchecked")
+final class ManageIndex {
+
+    private static final List<EntityType> SERVICE_PROVIDER_TYPES = List.of(EntityType.SAML20_SP, EntityType.OIDC10_RP);
+
+    private final Map<EntityType, List<Map<String, Object>>> rawProviders = new EnumMap<>(EntityType.class);
+    private final Map<EntityType, List<Map<String, Object>>> providers = new EnumMap<>(EntityType.class);
+    private final Map<Map<String, Object>, Integer> positions = new IdentityHashMap<>();
+    private final Map<EntityType, Map<String, Map<String, Object>>> providersById = new EnumMap<>(EntityType.class);
+    private final Map<EntityType, Map<String, Map<String, Object>>> providersByEntityID = new EnumMap<>(EntityType.class);
+    private final Map<EntityType, Map<String, List<Map<String, Object>>>> providersByInstitutionGuid = new EnumMap<>(EntityType.class);
+    private final Map<String, List<Map<String, Object>>> provisioningsByApplicationId = new HashMap<>();
+    //Keyed on the entityID of the service providers which are explicitly allowed by the IdP
+    private final Map<String, List<Map<String, Object>>> identityProvidersByAllowedEntityID = new HashMap<>();
+    private final List<Map<String, Object>> identityProvidersAllowingAll = new ArrayList<>();
+    private final Map<String, List<Map<String, Object>>> policiesByServiceProviderEntityID = new HashMap<>();
+
+    ManageIndex(Map<EntityType, List<Map<String, Object>>> rawProviders) {
+        Stream.of(EntityType.values()).forEach(entityType -> {
+            List<Map<String, Object>> raw = List.copyOf(rawProviders.getOrDefault(entityType, emptyList()));
+            this.rawProviders.put(entityType, raw);
+            //Policies are returned as-is
+            List<Map<String, Object>> transformed = entityType.equals(EntityType.POLICY) ? raw :
+                    raw.stream().map(provider -> ProviderView.of(provider).asMap()).toList();
+            this.providers.put(entityType, transformed);
+            transformed.forEach(provider -> this.positions.put(provider, this.positions.size()));
+            Map<String, Map<String, Object>> byId = new HashMap<>();
+            Map<String, Map<String, Object>> byEntityID = new HashMap<>();
+            Map<String, List<Map<String, Object>>> byInstitutionGuid = new HashMap<>();
+            transformed.forEach(provider -> {
+                String id = (String) provider.getOrDefault("_id", provider.get("id"));
+                if (StringUtils.hasText(id)) {
+                    byId.put(id, provider);
+                }
+                String entityID = (String) provider.get("entityid");
+                if (StringUtils.hasText(entityID)) {
+                    byEntityID.putIfAbsent(entityID, provider);
+                }
+                String institutionGuid = (String) provider.get("institutionGuid");
+                if (StringUtils.hasText(institutionGuid)) {
+                    byInstitutionGuid.computeIfAbsent(institutionGuid, key -> new ArrayList<>()).add(provider);
+                }
+            });
+            this.providersById.put(entityType, byId);
+            this.providersByEntityID.put(entityType, byEntityID);
+            this.providersByInstitutionGuid.put(entityType, byInstitutionGuid);
+        });
+        this.providers.get(EntityType.PROVISIONING).forEach(provisioning ->
+                this.names(provisioning.get("applications"), "id").forEach(applicationId ->
+                        this.provisioningsByApplicationId.computeIfAbsent(applicationId, key -> new ArrayList<>()).add(provisioning)));
+        this.providers.get(EntityType.SAML20_IDP).forEach(identityProvider -> {
+            if (Boolean.TRUE.equals(identityProvider.get("allowedall"))) {
+                this.identityProvidersAllowingAll.add(identityProvider);
+            } else {
+                this.names(identityProvider.get("allowedEntities"), "name").forEach(entityID ->
+                        this.identityProvidersByAllowedEntityID.computeIfAbsent(entityID, key -> new ArrayList<>()).add(identityProvider));
+            }
+        });
+        this.rawProviders.get(EntityType.POLICY).forEach(policy -> {
+            Map<String, Object> data = (Map<String, Object>) policy.getOrDefault("data", Map.of());
+            this.names(data.get("serviceProviderIds"), "name").forEach(entityID ->
+                    this.policiesByServiceProviderEntityID.computeIfAbsent(entityID, key -> new ArrayList<>()).add(policy));
+        });
+    }
+
+    Map<EntityType, List<Map<String, Object>>> rawProviders() {
+        return rawProviders;
+    }
+
+    List<Map<String, Object>> providers(EntityType... entityTypes) {
+        return Stream.of(entityTypes)
+                .map(this.providers::get)
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    Map<String, Object> providerById(EntityType entityType, String id) {
+        Map<String, Object> provider = this.providersById.get(entityType).get(id);
+        if (provider == null) {
+            throw new NotFoundException("Provider not found");
+        }
+        return provider;
+    }
+
+    Optional<Map<String, Object>> providerByEntityID(EntityType entityType, String entityID) {
+        return Optional.ofNullable(this.providersByEntityID.get(entityType).get(entityID));
+    }
+
+    List<Map<String, Object>> providersByIdIn(EntityType entityType, List<String> identifiers) {
+        if (CollectionUtils.isEmpty(identifiers)) {
+            return emptyList();
+        }
+        Map<String, Map<String, Object>> byId = this.providersById.get(entityType);
+        return shared(identifiers.stream().distinct().map(byId::get));
+    }
+
+    List<String> idpEntityIdentifiersByServiceEntityId(List<String> serviceEntityIdentifiers) {
+        if (CollectionUtils.isEmpty(serviceEntityIdentifiers)) {
+            return emptyList();
+        }
+        Stream<Map<String, Object>> identityProviders = Stream.concat(
+                this.identityProvidersAllowingAll.stream(),
+                serviceEntityIdentifiers.stream()
+                        .distinct()
+                        .flatMap(entityID -> this.identityProvidersByAllowedEntityID.getOrDefault(entityID, emptyList()).stream()));
+        return ordered(identityProviders)
+                .map(identityProvider -> (String) identityProvider.get("entityid"))
+                .toList();
+    }
+
+    List<Map<String, Object>> provisioning(Collection<String> applicationIdentifiers) {
+        if (CollectionUtils.isEmpty(applicationIdentifiers)) {
+            return emptyList();
+        }
+        return shared(applicationIdentifiers.stream()
+                .distinct()
+                .map(applicationId -> this.provisioningsByApplicationId.getOrDefault(applicationId, emptyList()))
+                .flatMap(List::stream));
+    }
+
+    List<Map<String, Object>> providersAllowedByIdPs(List<Map<String, Object>> identityProviders) {
+        if (CollectionUtils.isEmpty(identityProviders)) {
+            return emptyList();
+        }
+        if (identityProviders.stream().anyMatch(idp -> (Boolean) idp.getOrDefault("allowedall", Boolean.FALSE))) {
+            return this.providers(EntityType.SAML20_SP, EntityType.OIDC10_RP);
+        }
+        Stream<Map<String, Object>> allowedProviders = identityProviders.stream()
+                .map(idp -> this.names(idp.get("allowedEntities"), "name"))
+                .flatMap(List::stream)
+                .distinct()
+                .flatMap(entityID -> SERVICE_PROVIDER_TYPES.stream()
+                        .map(entityType -> this.providersByEntityID.get(entityType).get(entityID)));
+        Stream<Map<String, Object>> institutionProviders = this.byInstitutionGuid(SERVICE_PROVIDER_TYPES, identityProviders.stream()
+                .map(idp -> (String) idp.get("institutionGuid"))
+                .toList());
+        return shared(Stream.concat(allowedProviders, institutionProviders));
+    }
+
+    List<Map<String, Object>> providersByInstitutionalGUID(List<String> organisationGUIDs) {
+        return shared(this.byInstitutionGuid(SERVICE_PROVIDER_TYPES, organisationGUIDs));
+    }
+
+    List<Map<String, Object>> identityProvidersByInstitutionalGUID(String organisationGUID) {
+        return shared(this.byInstitutionGuid(List.of(EntityType.SAML20_IDP), List.of(String.valueOf(organisationGUID))));
+    }
+
+    List<Map<String, Object>> policiesByServiceProviders(List<String> serviceProviderEntityIds) {
+        if (CollectionUtils.isEmpty(serviceProviderEntityIds)) {
+            return emptyList();
+        }
+        return shared(serviceProviderEntityIds.stream()
+                .distinct()
+                .map(entityID -> this.policiesByServiceProviderEntityID.getOrDefault(entityID, emptyList()))
+                .flatMap(List::stream));
+    }
+
+    private Stream<Map<String, Object>> byInstitutionGuid(List<EntityType> entityTypes, List<String> organisationGUIDs) {
+        if (CollectionUtils.isEmpty(organisationGUIDs)) {
+            return Stream.empty();
+        }
+        return organisationGUIDs.stream()
+                .filter(StringUtils::hasText)
+                .distinct()
+                .flatMap(guid -> entityTypes.stream()
+                        .map(entityType -> this.providersByInstitutionGuid.get(entityType).getOrDefault(guid, emptyList()))
+                        .flatMap(List::stream));
+    }
+
+    private List<String> names(Object references, String attribute) {
+        if (!(references instanceof List<?> list)) {
+            return emptyList();
+        }
+        return list.stream()
+                .filter(reference -> reference instanceof Map)
+                .map(reference -> (String) ((Map<String, Object>) reference).get(attribute))
+                .filter(StringUtils::hasText)
+                .toList();
+    }
+
+    //Distinct on identity, because the same provider can be found through different indexes
+    private Stream<Map<String, Object>> ordered(Stream<Map<String, Object>> providers) {
+        Map<Map<String, Object>, Boolean> seen = new IdentityHashMap<>();
+        return providers
+                .filter(provider -> provider != null && seen.put(provider, Boolean.TRUE) == null)
+                .sorted(Comparator.comparingInt(this.positions::get));
+    }
+
+    private List<Map<String, Object>> shared(Stream<Map<String, Object>> providers) {
+        return ordered(providers).toList();
+    }
+}
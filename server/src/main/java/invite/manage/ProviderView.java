@@ -0,0 +1,253 @@
+package invite.manage;
+
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Typed and immutable view of a raw Manage document, which is parsed once. The map representation used in the API's
+ * and the provisioning is only materialised on the first call of {@link #asMap()} and shared afterwards.
+ */
+@SuppressWarnings("unchecked")
+public final class ProviderView {
+
+    //This data won't leave the application, but is needed by the provisioning service
+    private static final List<String> PROVISIONING_ATTRIBUTES = List.of(
+            "provisioning_type",
+            "scim_url",
+            "scim_user",
+            "scim_password",
+            "scim_bearer_token",
+            "scim_update_role_put_method",
+            "scim_user_identifier",
+            "scim_user_provisioning_only",
+            "eva_url",
+            "eva_token",
+            "eva_guest_account_duration",
+            "graph_url",
+            "graph_client_id",
+            "graph_secret",
+            "graph_tenant",
+            "user_wait_time"
+    );
+
+    private final String id;
+    private final String type;
+    private final String entityId;
+    private final Object applications;
+    private final Object allowedEntities;
+    private final Object mfaEntities;
+    private final Object allowedAll;
+    private final Object logo;
+    private final Object url;
+    private final Object organizationNameEn;
+    private final Object organizationNameNl;
+    private final Object nameEn;
+    private final Object nameNl;
+    private final String institutionGuid;
+    //Null if the provider has no ARP
+    private final Boolean receivesMemberships;
+    //Empty if the provider is not a provisioning
+    private final Map<String, Object> provisioningAttributes;
+
+    private volatile Map<String, Object> map;
+
+    private ProviderView(Map<String, Object> provider) {
+        Map<String, Object> data = (Map<String, Object>) provider.get("data");
+        Map<String, Object> metaDataFields = (Map<String, Object>) data.get("metaDataFields");
+        //Due to the different API's we are using, the result sometimes contains an "_id" and sometimes an "id"
+        Object identifier = provider.get("id");
+        this.id = (String) (identifier != null ? identifier : provider.get("_id"));
+        this.type = (String) provider.get("type");
+        this.entityId = (String) data.get("entityid");
+        this.applications = data.get("applications");
+        this.allowedEntities = data.get("allowedEntities");
+        this.mfaEntities = data.get("mfaEntities");
+        this.allowedAll = data.get("allowedall");
+        this.logo = metaDataFields.get("logo:0:url");
+        this.url = metaDataFields.get("coin:application_url");
+        this.organizationNameEn = metaDataFields.get("OrganizationName:en");
+        this.organizationNameNl = metaDataFields.get("OrganizationName:nl");
+        this.nameEn = metaDataFields.get("name:en");
+        this.nameNl = metaDataFields.get("name:nl");
+        this.institutionGuid = (String) metaDataFields.get("coin:institution_guid");
+        this.receivesMemberships = receivesMemberships((Map<String, Object>) data.get("arp"));
+        if (EntityType.PROVISIONING.collectionName().equals(this.type)) {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            PROVISIONING_ATTRIBUTES.forEach(attribute -> attributes.put(attribute, metaDataFields.get(attribute)));
+            String scimUrl = (String) attributes.get("scim_url");
+            if (StringUtils.hasText(scimUrl) && scimUrl.endsWith("/")) {
+                attributes.put("scim_url", scimUrl.substring(0, scimUrl.length() - 1));
+            }
+            this.provisioningAttributes = Collections.unmodifiableMap(attributes);
+        } else {
+            this.provisioningAttributes = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * The provider must be a raw Manage document containing "data".
+     */
+    public static ProviderView of(Map<String, Object> provider) {
+        return new ProviderView(provider);
+    }
+
+    private static Boolean receivesMemberships(Map<String, Object> arp) {
+        if (CollectionUtils.isEmpty(arp)) {
+            return null;
+        }
+        boolean enabled = (boolean) arp.getOrDefault("enabled", false);
+        if (!enabled) {
+            //Will receive all attributes, but not from any other source than idp
+            return false;
+        }
+        Map<String, Object> attributes = (Map<String, Object>) arp.getOrDefault("attributes", Map.of());
+        List<Map<String, Object>> isMemberOf = (List<Map<String, Object>>) attributes.get("urn:mace:dir:attribute-def:isMemberOf");
+        if (CollectionUtils.isEmpty(isMemberOf)) {
+            return false;
+        }
+        return isMemberOf.stream()
+                .map(m -> m.getOrDefault("source", "nope"))
+                .anyMatch(source -> source.equals("voot") || source.equals("invite"));
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public String entityId() {
+        return entityId;
+    }
+
+    public String institutionGuid() {
+        return institutionGuid;
+    }
+
+    public boolean allowedAll() {
+        return Boolean.TRUE.equals(allowedAll);
+    }
+
+    public boolean receivesMemberships() {
+        return Boolean.TRUE.equals(receivesMemberships);
+    }
+
+    /**
+     * Returns the shared and unmodifiable map representation, callers who want to change it must copy it.
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> result = this.map;
+        if (result == null) {
+            //Can't use Map.of as values can be null
+            Map<String, Object> application = new HashMap<>(this.provisioningAttributes);
+            application.put("id", id);
+            application.put("_id", id);
+            application.put("type", type);
+            application.put("applications", applications);
+            application.put("allowedEntities", allowedEntities);
+            application.put("mfaEntities", mfaEntities);
+            application.put("allowedall", allowedAll);
+            application.put("entityid", entityId);
+            application.put("logo", logo);
+            application.put("url", url);
+            application.put("OrganizationName:en", organizationNameEn);
+            application.put("OrganizationName:nl", organizationNameNl);
+            application.put("name:en", nameEn);
+            application.put("name:nl", nameNl);
+            application.put("institutionGuid", institutionGuid);
+            if (receivesMemberships != null) {
+                application.put("receivesMemberships", receivesMemberships);
+            }
+            result = Collections.unmodifiableMap(application);
+            this.map = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns an unmodifiable view of the provider with one extra entry, without copying the provider. Used for the
+     * per-role landingPage of an application, which is shared between all roles of the application.
+     */
+    public static Map<String, Object> withEntry(Map<String, Object> provider, String key, Object value) {
+        return new ExtraEntryMap(provider, key, value);
+    }
+
+    private static final class ExtraEntryMap extends AbstractMap<String, Object> implements Serializable {
+
+        private final Map<String, Object> provider;
+        private final String key;
+        private final Object value;
+
+        private ExtraEntryMap(Map<String, Object> provider, String key, Object value) {
+            this.provider = provider;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object get(Object name) {
+            return key.equals(name) ? value : provider.get(name);
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return key.equals(name) || provider.containsKey(name);
+        }
+
+        @Override
+        public int size() {
+            return provider.containsKey(key) ? provider.size() : provider.size() + 1;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> entries = provider.entrySet().stream()
+                            .filter(entry -> !key.equals(entry.getKey()))
+                            .iterator();
+                    return new Iterator<>() {
+                        private boolean extraEntryReturned;
+
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext() || !extraEntryReturned;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (entries.hasNext()) {
+                                return entries.next();
+                            }
+                            if (extraEntryReturned) {
+                                throw new NoSuchElementException();
+                            }
+                            extraEntryReturned = true;
+                            return new SimpleImmutableEntry<>(key, value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ExtraEntryMap.this.size();
+                }
+            };
+        }
+    }
+}
@@ -27,10 +27,11 @@ public class RemoteManage implements Manage {
     };
 
     private final String url;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
 
-    public RemoteManage(String url, String user, String password) {
+    public RemoteManage(RestTemplate restTemplate, String url, String user, String password) {
         this.url = url;
+        this.restTemplate = restTemplate;
         restTemplate.getInterceptors().add(new BasicAuthenticationInterceptor(user, password));
         ResponseErrorHandler resilientErrorHandler = new ResilientErrorHandler();
         restTemplate.setErrorHandler(resilientErrorHandler);
@@ -51,16 +52,62 @@ public class RemoteManage implements Manage {
             LOG.debug("No identifiers in providersByIdIn");
             return emptyList();
         }
-        String param = identifiers.stream().map(id -> String.format("\"%s\"", id)).collect(joining(","));
-        String body = String.format("{ \"id\": { \"$in\": [%s]}}", param);
-        String manageUrl = String.format("%s/manage/api/internal/rawSearch/%s", url, entityType.collectionName());
-        List<Map<String, Object>> providers = restTemplate.postForObject(manageUrl, body, List.class);
+        List<Map<String, Object>> providers = this.rawSearchByIdIn(entityType, identifiers);
         if (providers != null) {
             LOG.debug(String.format("Got %d results for providersByIdIn", providers.size()));
         }
         return transformProvider(providers);
     }
 
+    /**
+     * Returns the complete, untransformed Manage documents of all providers of the entityType.
+     */
+    public List<Map<String, Object>> rawProviders(EntityType entityType) {
+        LOG.debug(String.format("rawProviders %s", entityType));
+        String manageUrl = String.format("%s/manage/api/internal/rawSearch/%s", url, entityType.collectionName());
+        return this.nonNull(restTemplate.postForObject(manageUrl, "{}", List.class));
+    }
+
+    /**
+     * Returns the complete, untransformed Manage documents of the providers with the identifiers.
+     */
+    public List<Map<String, Object>> rawProvidersByIdIn(EntityType entityType, Collection<String> identifiers) {
+        if (CollectionUtils.isEmpty(identifiers)) {
+            return emptyList();
+        }
+        return this.nonNull(this.rawSearchByIdIn(entityType, identifiers));
+    }
+
+    private List<Map<String, Object>> rawSearchByIdIn(EntityType entityType, Collection<String> identifiers) {
+        String param = identifiers.stream().map(id -> String.format("\"%s\"", id)).collect(joining(","));
+        String body = String.format("{ \"id\": { \"$in\": [%s]}}", param);
+        String manageUrl = String.format("%s/manage/api/internal/rawSearch/%s", url, entityType.collectionName());
+        return restTemplate.postForObject(manageUrl, body, List.class);
+    }
+
+    /**
+     * Returns the version of all providers of the entityType keyed on their manage identifier. The version is
+     * incremented by Manage for every change of the provider.
+     */
+    public Map<String, Object> providerVersions(EntityType entityType) {
+        LOG.debug(String.format("providerVersions %s", entityType));
+        Map<String, Object> query = new HashMap<>();
+        query.put("REQUESTED_ATTRIBUTES", new ArrayList<>());
+        String manageUrl = String.format("%s/manage/api/internal/search/%s", url, entityType.collectionName());
+        List<Map<String, Object>> providers = this.nonNull(restTemplate.postForObject(manageUrl, query, List.class));
+        Map<String, Object> versions = new HashMap<>();
+        providers.forEach(provider -> versions.put((String) provider.get("_id"), provider.get("version")));
+        return versions;
+    }
+
+    private List<Map<String, Object>> nonNull(List<Map<String, Object>> providers) {
+        //The ResilientErrorHandler swallows errors, which results in null or an error map
+        if (providers == null) {
+            throw new IllegalStateException("No response from Manage");
+        }
+        return providers;
+    }
+
     @Override
     public List<String> idpEntityIdentifiersByServiceEntityId(List<String> serviceEntityIdentifiers) {
         LOG.debug("idpEntityIdentifiersByServiceEntityId");
@@ -0,0 +1,241 @@
+package invite.manage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory snapshot of all Manage entities, which answers all queries from a {@link ManageIndex} without calling
+ * Manage. The snapshot is written to a local file and loaded from that file on restart. Changes in Manage are
+ * synchronized periodically by comparing the version of every provider with the version in the snapshot and only
+ * fetching the new and changed providers. When Manage is unavailable the last snapshot keeps being used.
+ */
+public class SnapshotManage implements Manage {
+
+    private static final Log LOG = LogFactory.getLog(SnapshotManage.class);
+
+    private final RemoteManage remoteManage;
+    private final ObjectMapper objectMapper;
+    private final Optional<Path> snapshotFile;
+    private volatile ManageIndex manageIndex;
+    private volatile Instant synchronizedAt = Instant.EPOCH;
+
+    public SnapshotManage(RemoteManage remoteManage,
+                          ObjectMapper objectMapper,
+                          String snapshotFile,
+                          MeterRegistry meterRegistry) {
+        this.remoteManage = remoteManage;
+        this.objectMapper = objectMapper;
+        this.snapshotFile = StringUtils.hasText(snapshotFile) ? Optional.of(Path.of(snapshotFile)) : Optional.empty();
+        this.manageIndex = this.loadSnapshot().orElseGet(() -> this.newIndex(Map.of()));
+        if (this.manageIndex.rawProviders().values().stream().allMatch(List::isEmpty)) {
+            this.synchronize();
+        }
+        Gauge.builder("manage_snapshot_age_seconds", () -> Instant.now().getEpochSecond() - this.synchronizedAt.getEpochSecond())
+                .description("Seconds since the last successful synchronization of the Manage snapshot")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${manage.snapshot.sync-interval}", fixedDelayString = "${manage.snapshot.sync-interval}")
+    public synchronized void synchronize() {
+        long start = System.currentTimeMillis();
+        Map<EntityType, List<Map<String, Object>>> rawProviders = new EnumMap<>(this.manageIndex.rawProviders());
+        boolean changed = false;
+        try {
+            for (EntityType entityType : EntityType.values()) {
+                changed = this.synchronize(entityType, rawProviders) || changed;
+            }
+        } catch (RuntimeException e) {
+            //Keep on using the last snapshot
+            LOG.error("Error in synchronizing the Manage snapshot", e);
+            return;
+        }
+        this.synchronizedAt = Instant.now();
+        if (changed) {
+            this.manageIndex = this.newIndex(rawProviders);
+            this.saveSnapshot(rawProviders);
+        }
+        LOG.info(String.format("Synchronized Manage snapshot in %s ms, changes: %s", System.currentTimeMillis() - start, changed));
+    }
+
+    private boolean synchronize(EntityType entityType, Map<EntityType, List<Map<String, Object>>> rawProviders) {
+        List<Map<String, Object>> current = rawProviders.getOrDefault(entityType, List.of());
+        if (current.isEmpty()) {
+            List<Map<String, Object>> providers = this.remoteManage.rawProviders(entityType);
+            rawProviders.put(entityType, providers);
+            return !providers.isEmpty();
+        }
+        Map<String, Object> remoteVersions = this.remoteManage.providerVersions(entityType);
+        Map<String, Object> localVersions = current.stream()
+                .collect(Collectors.toMap(provider -> (String) provider.get("_id"), this::version, (first, second) -> first));
+        //Providers without a version are always fetched again
+        Set<String> changedIdentifiers = remoteVersions.entrySet().stream()
+                .filter(entry -> entry.getValue() == null || !Objects.equals(entry.getValue(), localVersions.get(entry.getKey())))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        boolean removed = localVersions.keySet().stream().anyMatch(id -> !remoteVersions.containsKey(id));
+        if (changedIdentifiers.isEmpty() && !removed) {
+            return false;
+        }
+        LOG.info(String.format("Manage snapshot of %s has %s new or changed providers", entityType, changedIdentifiers.size()));
+        List<Map<String, Object>> providers = new ArrayList<>(current.stream()
+                .filter(provider -> remoteVersions.containsKey((String) provider.get("_id")))
+                .filter(provider -> !changedIdentifiers.contains((String) provider.get("_id")))
+                .toList());
+        //Prevent huge queries
+        List<String> identifiers = List.copyOf(changedIdentifiers);
+        for (int i = 0; i < identifiers.size(); i += 250) {
+            providers.addAll(this.remoteManage.rawProvidersByIdIn(entityType, identifiers.subList(i, Math.min(i + 250, identifiers.size()))));
+        }
+        rawProviders.put(entityType, providers);
+        return true;
+    }
+
+    private Object version(Map<String, Object> provider) {
+        return provider.get("version");
+    }
+
+    private ManageIndex newIndex(Map<EntityType, List<Map<String, Object>>> rawProviders) {
+        return new ManageIndex(rawProviders);
+    }
+
+    private Optional<ManageIndex> loadSnapshot() {
+        return this.snapshotFile.filter(Files::exists).flatMap(path -> {
+            try {
+                Map<EntityType, List<Map<String, Object>>> rawProviders = objectMapper.readValue(path.toFile(), new TypeReference<>() {
+                });
+                LOG.info(String.format("Loaded Manage snapshot from %s", path));
+                return Optional.of(this.newIndex(rawProviders));
+            } catch (IOException | RuntimeException e) {
+                LOG.error(String.format("Error in loading the Manage snapshot from %s", path), e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    private void saveSnapshot(Map<EntityType, List<Map<String, Object>>> rawProviders) {
+        this.snapshotFile.ifPresent(path -> {
+            try {
+                Path tempFile = Files.createTempFile(path.toAbsolutePath().getParent(), "manage-snapshot", ".json");
+                objectMapper.writeValue(tempFile.toFile(), rawProviders);
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.error(String.format("Error in saving the Manage snapshot to %s", path), e);
+            }
+        });
+    }
+
+    @Override
+    public List<Map<String, Object>> providers(EntityType... entityTypes) {
+        return this.manageIndex.providers(entityTypes);
+    }
+
+    @Override
+    public Map<String, Object> providerById(EntityType entityType, String id) {
+        return this.manageIndex.providerById(entityType, id);
+    }
+
+    @Override
+    public List<String> idpEntityIdentifiersByServiceEntityId(List<String> serviceEntityIdentifiers) {
+        return this.manageIndex.idpEntityIdentifiersByServiceEntityId(serviceEntityIdentifiers);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> providerByEntityID(EntityType entityType, String entityID) {
+        return this.manageIndex.providerByEntityID(entityType, entityID);
+    }
+
+    @Override
+    public List<Map<String, Object>> providersByIdIn(EntityType entityType, List<String> identifiers) {
+        return this.manageIndex.providersByIdIn(entityType, identifiers);
+    }
+
+    @Override
+    public List<Map<String, Object>> provisioning(Collection<String> applicationIdentifiers) {
+        return this.manageIndex.provisioning(applicationIdentifiers);
+    }
+
+    @Override
+    public List<Map<String, Object>> providersAllowedByIdP(Map<String, Object> identityProvider) {
+        return this.manageIndex.providersAllowedByIdPs(List.of(identityProvider));
+    }
+
+    @Override
+    public List<Map<String, Object>> providersAllowedByIdPs(List<Map<String, Object>> identityProviders) {
+        return this.manageIndex.providersAllowedByIdPs(identityProviders);
+    }
+
+    @Override
+    public List<Map<String, Object>> identityProvidersByInstitutionalGUID(String organisationGUID) {
+        return this.manageIndex.identityProvidersByInstitutionalGUID(organisationGUID);
+    }
+
+    @Override
+    public List<Map<String, Object>> providersByInstitutionalGUID(List<String> organisationGUIDs) {
+        return this.manageIndex.providersByInstitutionalGUID(organisationGUIDs);
+    }
+
+    @Override
+    public Map<String, Object> updatePolicy(Map<String, Object> policy) {
+        Map<String, Object> result = this.remoteManage.updatePolicy(policy);
+        //Read your own writes
+        this.evict(EntityType.POLICY, (String) policy.get("id"));
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> policiesByServiceProviders(List<String> serviceProviderEntityIds) {
+        return this.manageIndex.policiesByServiceProviders(serviceProviderEntityIds);
+    }
+
+    /**
+     * Refreshes the provider in the snapshot, or all providers of the entityType when the identifier is null. A null
+     * entityType triggers a full synchronization.
+     */
+    @Override
+    public synchronized void evict(EntityType entityType, String identifier) {
+        if (entityType == null) {
+            this.synchronize();
+            return;
+        }
+        Map<EntityType, List<Map<String, Object>>> rawProviders = new EnumMap<>(this.manageIndex.rawProviders());
+        try {
+            if (!StringUtils.hasText(identifier)) {
+                rawProviders.put(entityType, this.remoteManage.rawProviders(entityType));
+            } else {
+                List<Map<String, Object>> providers = this.remoteManage.rawProvidersByIdIn(entityType, List.of(identifier));
+                rawProviders.put(entityType, Stream.concat(
+                                rawProviders.getOrDefault(entityType, List.of()).stream()
+                                        .filter(provider -> !identifier.equals(provider.get("_id"))),
+                                providers.stream())
+                        .toList());
+            }
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Error in refreshing %s %s in the Manage snapshot", entityType, identifier), e);
+            return;
+        }
+        this.manageIndex = this.newIndex(rawProviders);
+        this.saveSnapshot(rawProviders);
+    }
+}
@@ -1,9 +1,11 @@
 package invite.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import invite.aggregation.ServiceProviderRolesListener;
 import invite.manage.ManageIdentifier;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -20,6 +22,7 @@ import java.io.Serializable;
 @NoArgsConstructor
 @Getter
 @Setter
+@EntityListeners(ServiceProviderRolesListener.class)
 public class ApplicationUsage implements Serializable {
 
     @Id
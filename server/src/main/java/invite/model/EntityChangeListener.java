@@ -0,0 +1,27 @@
+package invite.model;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.function.Consumer;
+
+/**
+ * Base class of the entity listeners which report the changes of entities to a Spring bean.
+ * <p>
+ * The listeners are instantiated by the EntityManagerFactory the bean depends on, so the bean is looked up lazily and
+ * the change is not reported while the bean is not yet available. The listeners are called while the persistence context
+ * is flushed, which may happen as part of the commit, so a bean which writes to the database must use plain JDBC on the
+ * connection of the current transaction instead of the EntityManager. Changes with native queries bypass the listeners
+ * and must be reported after the change.
+ */
+public abstract class EntityChangeListener<T> {
+
+    private final ObjectProvider<T> bean;
+
+    protected EntityChangeListener(ObjectProvider<T> bean) {
+        this.bean = bean;
+    }
+
+    protected void report(Consumer<T> change) {
+        this.bean.ifAvailable(change);
+    }
+}
@@ -4,9 +4,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import invite.api.InvitationOperations;
 import invite.config.RequestedAuthnContext;
+import invite.search.SearchCountsListener;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
@@ -35,6 +37,7 @@ import java.util.Map;
 import java.util.Set;
 
 @Entity(name = "invitations")
+@EntityListeners(SearchCountsListener.class)
 @NoArgsConstructor
 @Getter
 @Setter
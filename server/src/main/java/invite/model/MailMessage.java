@@ -0,0 +1,64 @@
+package invite.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity(name = "mail_outbox")
+@NoArgsConstructor
+@Getter
+@Setter
+public class MailMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "recipients", nullable = false)
+    private String recipients;
+
+    @Column(name = "subject")
+    private String subject;
+
+    //The complete MIME message including the inline images, as written by MimeMessage#writeTo. Cleared once sent.
+    @Lob
+    @Column(name = "mime_message")
+    private byte[] mimeMessage;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @NotNull
+    private MessageStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    public MailMessage(String recipients, String subject, byte[] mimeMessage) {
+        this.recipients = recipients;
+        this.subject = subject;
+        this.mimeMessage = mimeMessage;
+        this.status = MessageStatus.PENDING;
+        this.createdAt = Instant.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public enum MessageStatus {
+        PENDING, SENT, FAILED
+    }
+}
@@ -0,0 +1,26 @@
+package invite.model;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipsRequest {
+
+    //Validate the elements, because errors after the streaming has started can not result in an error response
+    @NotEmpty
+    private List<@NotBlank String> subs;
+
+    private List<@NotBlank String> spEntityIDs = new ArrayList<>();
+
+}
@@ -0,0 +1,83 @@
+package invite.model;
+
+import invite.provision.scim.OperationType;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity(name = "provisioning_outbox")
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProvisioningMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "manage_provisioning_id", nullable = false)
+    private String manageProvisioningId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false)
+    private Operation operation;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation_type")
+    private OperationType operationType;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "role_id")
+    private Long roleId;
+
+    @Column(name = "user_role_id")
+    private Long userRoleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @NotNull
+    private MessageStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    public ProvisioningMessage(Operation operation,
+                               String manageProvisioningId,
+                               Long userId,
+                               Long roleId,
+                               Long userRoleId,
+                               OperationType operationType) {
+        this.operation = operation;
+        this.manageProvisioningId = manageProvisioningId;
+        this.userId = userId;
+        this.roleId = roleId;
+        this.userRoleId = userRoleId;
+        this.operationType = operationType;
+        this.status = MessageStatus.PENDING;
+        this.createdAt = Instant.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public enum Operation {
+        NEW_USER, UPDATE_USER, UPDATE_USER_ROLE, NEW_GROUP, UPDATE_GROUP
+    }
+
+    public enum MessageStatus {
+        PENDING, FAILED
+    }
+}
@@ -7,6 +7,10 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 
 @Entity(name = "remote_provisioned_groups")
@@ -30,12 +34,32 @@ public class RemoteProvisionedGroup implements Serializable, RemoteIdentifier {
     @NotNull
     private String manageProvisioningId;
 
+    //The remote identifiers of the members last sent in a PUT request, only valid when membersSyncedAt is not null
+    @ElementCollection
+    @CollectionTable(name = "remote_provisioned_group_members", joinColumns = @JoinColumn(name = "remote_provisioned_group_id"))
+    @Column(name = "remote_identifier")
+    private Set<String> members = new HashSet<>();
+
+    @Column(name = "members_synced_at")
+    private Instant membersSyncedAt;
+
     public RemoteProvisionedGroup(Role role, @NotNull String remoteScimIdentifier, @NotNull String manageProvisioningId) {
         this.role = role;
         this.remoteScimIdentifier = remoteScimIdentifier;
         this.manageProvisioningId = manageProvisioningId;
     }
 
+    public boolean isMembersSynced() {
+        return this.membersSyncedAt != null;
+    }
+
+    public void syncMembers(Collection<String> remoteIdentifiers) {
+        //Only the difference is flushed to the collection table
+        this.members.retainAll(remoteIdentifiers);
+        this.members.addAll(remoteIdentifiers);
+        this.membersSyncedAt = Instant.now();
+    }
+
     @Override
     public String getRemoteIdentifier() {
         return this.remoteScimIdentifier;
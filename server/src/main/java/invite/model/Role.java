@@ -2,14 +2,16 @@ package invite.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import invite.aggregation.ServiceProviderRolesListener;
 import invite.provision.scim.GroupURN;
+import invite.search.SearchCountsListener;
+import invite.voot.VootMembershipListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.Formula;
 
 import java.io.Serializable;
 import java.time.Instant;
@@ -22,6 +24,7 @@ import java.util.stream.Collectors;
 @Getter
 @Setter
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@EntityListeners({VootMembershipListener.class, ServiceProviderRolesListener.class, SearchCountsListener.class})
 public class Role implements Serializable, Provisionable {
 
     @Id
@@ -89,8 +92,9 @@ public class Role implements Serializable, Provisionable {
     @Column(name = "crm_role_abbrevation")
     private String crmRoleAbbrevation;
 
-    @Formula(value = "(SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=id)")
-    private Long userRoleCount;
+    //Maintained by UserRoleCounts and never written by Hibernate
+    @Column(name = "user_role_count", insertable = false, updatable = false)
+    private Long userRoleCount = 0L;
 
     @OneToMany(mappedBy = "role",
             fetch = FetchType.EAGER,
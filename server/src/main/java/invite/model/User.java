@@ -3,9 +3,11 @@ package invite.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import invite.manage.ManageIdentifier;
 import invite.provision.Provisioning;
+import invite.search.SearchCountsListener;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -38,6 +40,7 @@ import java.util.stream.Stream;
 import static invite.security.InstitutionAdmin.*;
 
 @Entity(name = "users")
+@EntityListeners(SearchCountsListener.class)
 @NoArgsConstructor
 @Getter
 @Setter
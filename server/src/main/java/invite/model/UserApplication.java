@@ -1,7 +1,9 @@
 package invite.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import invite.search.UserSummaryListener;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -18,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 
 @Entity(name = "user_applications")
+@EntityListeners(UserSummaryListener.class)
 @NoArgsConstructor
 @Getter
 @Setter
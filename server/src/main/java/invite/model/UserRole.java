@@ -2,6 +2,10 @@ package invite.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import invite.search.SearchCountsListener;
+import invite.search.UserRoleCountListener;
+import invite.search.UserSummaryListener;
+import invite.voot.VootMembershipListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
@@ -18,6 +22,8 @@ import java.util.Set;
 @NoArgsConstructor
 @Getter
 @Setter
+@EntityListeners({VootMembershipListener.class, SearchCountsListener.class, UserSummaryListener.class,
+        UserRoleCountListener.class})
 public class UserRole implements Serializable {
 
     @Id
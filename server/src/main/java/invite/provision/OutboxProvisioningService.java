@@ -0,0 +1,258 @@
+package invite.provision;
+
+import invite.exception.NotFoundException;
+import invite.manage.EntityType;
+import invite.manage.Manage;
+import invite.model.Authority;
+import invite.model.ProvisioningMessage;
+import invite.model.Role;
+import invite.model.User;
+import invite.model.UserRole;
+import invite.provision.graph.GraphResponse;
+import invite.provision.scim.OperationType;
+import invite.repository.ProvisioningMessageRepository;
+import invite.repository.RoleRepository;
+import invite.repository.UserRepository;
+import invite.repository.UserRoleRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Writes the provisioning operations that can be deferred to the provisioning_outbox table in the transaction of the
+ * caller, which are drained by the {@link invite.cron.ProvisioningOutboxDispatcher}. Operations that delete state and
+ * the Graph user provisioning, which requires the redirect URL of the response, are sent synchronously and concurrently
+ * per provisioning by the {@link ProvisioningFanOut} of the {@link ProvisioningServiceDefault}. The deferred messages
+ * for different provisionings are sent concurrently by the per-provisioning workers of the dispatcher.
+ */
+@Service
+@Primary
+public class OutboxProvisioningService implements ProvisioningService {
+
+    private static final Log LOG = LogFactory.getLog(OutboxProvisioningService.class);
+
+    private final ProvisioningServiceDefault provisioningService;
+    private final ProvisioningMessageRepository provisioningMessageRepository;
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final Manage manage;
+    private final boolean enabled;
+
+    @Autowired
+    public OutboxProvisioningService(ProvisioningServiceDefault provisioningService,
+                                     ProvisioningMessageRepository provisioningMessageRepository,
+                                     UserRepository userRepository,
+                                     RoleRepository roleRepository,
+                                     UserRoleRepository userRoleRepository,
+                                     Manage manage,
+                                     @Value("${provisioning.outbox.enabled}") boolean enabled) {
+        this.provisioningService = provisioningService;
+        this.provisioningMessageRepository = provisioningMessageRepository;
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.userRoleRepository = userRoleRepository;
+        this.manage = manage;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Optional<GraphResponse> newUserRequest(User user) {
+        if (!this.enabled || user.getId() == null) {
+            return provisioningService.newUserRequest(user);
+        }
+        List<Provisioning> graphProvisionings = new ArrayList<>();
+        provisioningService.getProvisionings(user).forEach(provisioning -> {
+            if (provisioning.getProvisioningType().equals(ProvisioningType.graph)) {
+                graphProvisionings.add(provisioning);
+            } else {
+                this.enqueue(new ProvisioningMessage(ProvisioningMessage.Operation.NEW_USER, provisioning.getId(),
+                        user.getId(), null, null, null));
+            }
+        });
+        //The GraphResponse is needed for the redirect of the user, the graph provisionings are sent concurrently
+        return graphProvisionings.isEmpty() ? Optional.empty() :
+                provisioningService.newUserRequest(user, graphProvisionings);
+    }
+
+    @Override
+    public void updateUserRequest(User user) {
+        if (!this.enabled || user.getId() == null) {
+            provisioningService.updateUserRequest(user);
+            return;
+        }
+        provisioningService.getProvisionings(user).forEach(provisioning ->
+                this.enqueue(new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_USER, provisioning.getId(),
+                        user.getId(), null, null, null)));
+    }
+
+    @Override
+    public void updateUserRoleRequest(UserRole userRole) {
+        if (!this.enabled || userRole.getId() == null) {
+            provisioningService.updateUserRoleRequest(userRole);
+            return;
+        }
+        //For now only eva is eligible for update's for the userRole
+        provisioningService.getProvisionings(userRole.getUser()).stream()
+                .filter(provisioning -> provisioning.getProvisioningType().equals(ProvisioningType.eva))
+                .forEach(provisioning ->
+                        this.enqueue(new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_USER_ROLE, provisioning.getId(),
+                                null, null, userRole.getId(), null)));
+    }
+
+    @Override
+    public void deleteUserRoleRequest(UserRole userRole) {
+        provisioningService.deleteUserRoleRequest(userRole);
+    }
+
+    @Override
+    public void deleteUserRequest(User user) {
+        provisioningService.deleteUserRequest(user);
+    }
+
+    @Override
+    public void deleteUserRequest(Role role) {
+        provisioningService.deleteUserRequest(role);
+    }
+
+    @Override
+    public void newGroupRequest(Role role) {
+        if (!this.enabled || role.getId() == null) {
+            provisioningService.newGroupRequest(role);
+            return;
+        }
+        provisioningService.getProvisionings(role).forEach(provisioning ->
+                this.enqueue(new ProvisioningMessage(ProvisioningMessage.Operation.NEW_GROUP, provisioning.getId(),
+                        null, role.getId(), null, null)));
+    }
+
+    @Override
+    public void updateGroupRequest(UserRole userRole, OperationType operationType) {
+        //Removals are followed by the deletion of the userRole, so these can't be deferred
+        if (!this.enabled || userRole.getId() == null || !operationType.equals(OperationType.add)) {
+            provisioningService.updateGroupRequest(userRole, operationType);
+            return;
+        }
+        if (!userRole.getAuthority().equals(Authority.GUEST) && !userRole.isGuestRoleIncluded()) {
+            //We only provision GUEST users
+            return;
+        }
+        provisioningService.getProvisionings(userRole.getRole()).stream()
+                .filter(provisioning -> provisioning.getProvisioningType().equals(ProvisioningType.scim) &&
+                        !provisioning.isScimUserProvisioningOnly())
+                .forEach(provisioning ->
+                        this.enqueue(new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_GROUP, provisioning.getId(),
+                                null, userRole.getRole().getId(), userRole.getId(), operationType)));
+    }
+
+    @Override
+    public void updateGroupRequest(List<String> previousManageIdentifiers, Role newRole, boolean nameChanged) {
+        provisioningService.updateGroupRequest(previousManageIdentifiers, newRole, nameChanged);
+    }
+
+    @Override
+    public void deleteGroupRequest(Role role) {
+        provisioningService.deleteGroupRequest(role);
+    }
+
+    @Override
+    public List<Provisioning> getProvisionings(List<UserRole> userRoles) {
+        return provisioningService.getProvisionings(userRoles);
+    }
+
+    /**
+     * Loads the entities of the message. Must be called within a short transaction and makes no remote calls, the
+     * returned delivery is sent with {@link #deliver(Delivery)} without a transaction. Messages for deleted users, roles
+     * or userRoles are silently dropped.
+     */
+    public Delivery prepare(ProvisioningMessage message) {
+        return switch (message.getOperation()) {
+            case NEW_USER -> this.delivery(message, userRepository.findById(message.getUserId())
+                    .map(user -> provisioning -> provisioningService.newUserRequest(user, provisioning)));
+            case UPDATE_USER -> this.delivery(message, userRepository.findById(message.getUserId())
+                    .map(user -> provisioning -> provisioningService.updateUserRequest(user, provisioning)));
+            case UPDATE_USER_ROLE -> this.delivery(message, userRoleRepository.findById(message.getUserRoleId())
+                    .map(userRole -> {
+                        Hibernate.initialize(userRole.getUser());
+                        return provisioning -> provisioningService.updateUserRoleRequest(userRole, provisioning);
+                    }));
+            case NEW_GROUP -> this.delivery(message, roleRepository.findById(message.getRoleId())
+                    .map(role -> provisioning -> provisioningService.newGroupRequest(role, provisioning)));
+            case UPDATE_GROUP -> this.prepareUpdateGroup(message);
+        };
+    }
+
+    /**
+     * Send the provisioning request of the delivery, any exception is propagated to the caller to schedule a retry.
+     * Deliveries for non-existent provisionings are silently dropped.
+     */
+    public void deliver(Delivery delivery) {
+        ProvisioningMessage message = delivery.message();
+        Map<String, Object> provider;
+        try {
+            provider = manage.providerById(EntityType.PROVISIONING, message.getManageProvisioningId());
+        } catch (NotFoundException | HttpClientErrorException.NotFound e) {
+            provider = Map.of();
+        }
+        if (CollectionUtils.isEmpty(provider)) {
+            LOG.warn(String.format("Dropping provisioning message %s for non-existent provisioning %s",
+                    message.getId(), message.getManageProvisioningId()));
+            return;
+        }
+        delivery.request().accept(new Provisioning(provider));
+    }
+
+    private Delivery prepareUpdateGroup(ProvisioningMessage message) {
+        //Collapse all pending changes of the same group for this provisioning into one request
+        List<ProvisioningMessage> messages = message.getRoleId() == null ? List.of(message) :
+                provisioningMessageRepository.findByManageProvisioningIdAndRoleIdAndOperationAndOperationTypeAndStatusOrderByIdAsc(
+                        message.getManageProvisioningId(),
+                        message.getRoleId(),
+                        ProvisioningMessage.Operation.UPDATE_GROUP,
+                        message.getOperationType(),
+                        ProvisioningMessage.MessageStatus.PENDING);
+        List<UserRole> userRoles = messages.stream()
+                .map(groupMessage -> userRoleRepository.findById(groupMessage.getUserRoleId()))
+                .flatMap(Optional::stream)
+                .toList();
+        userRoles.forEach(userRole -> Hibernate.initialize(userRole.getUser()));
+        if (messages.size() > 1) {
+            LOG.debug(String.format("Collapsed %s provisioning messages into message %s", messages.size() - 1, message.getId()));
+        }
+        return new Delivery(message, messages.stream().map(ProvisioningMessage::getId).toList(), provisioning -> {
+            if (!userRoles.isEmpty()) {
+                provisioningService.updateGroupRequest(userRoles, message.getOperationType(), provisioning);
+            }
+        });
+    }
+
+    private Delivery delivery(ProvisioningMessage message, Optional<Consumer<Provisioning>> request) {
+        return new Delivery(message, List.of(message.getId()), request.orElse(provisioning -> {
+        }));
+    }
+
+    private void enqueue(ProvisioningMessage message) {
+        LOG.debug(String.format("Enqueue provisioning message %s for provisioning %s",
+                message.getOperation(), message.getManageProvisioningId()));
+        provisioningMessageRepository.save(message);
+    }
+
+    /**
+     * The loaded request of a provisioning message and the ids of the messages it sends, which are deleted when the
+     * request is sent.
+     */
+    public record Delivery(ProvisioningMessage message, List<Long> messageIds, Consumer<Provisioning> request) {
+    }
+}
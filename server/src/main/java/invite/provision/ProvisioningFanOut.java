@@ -0,0 +1,62 @@
+package invite.provision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Sends the remote requests for different provisionings concurrently on virtual threads. Tasks for the same
+ * provisioning are sent sequentially in the order of submission. The tasks must not use the persistence context of
+ * the caller, as the results are meant to be persisted on the calling thread.
+ */
+public class ProvisioningFanOut {
+
+    public record ProvisioningTask<T>(Provisioning provisioning, Supplier<T> task) {
+    }
+
+    /**
+     * Returns the results in the order of the tasks. A failing task skips the remaining tasks of its provisioning and
+     * the first exception is re-thrown after the tasks of the other provisionings have completed.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> invokeAll(List<ProvisioningTask<T>> tasks) {
+        Map<String, List<Integer>> tasksPerProvisioning = new LinkedHashMap<>();
+        IntStream.range(0, tasks.size()).forEach(i -> tasksPerProvisioning
+                .computeIfAbsent(tasks.get(i).provisioning().getId(), id -> new ArrayList<>())
+                .add(i));
+        Object[] results = new Object[tasks.size()];
+        if (tasksPerProvisioning.size() < 2) {
+            //Nothing to gain
+            IntStream.range(0, tasks.size()).forEach(i -> results[i] = tasks.get(i).task().get());
+            return (List<T>) Arrays.asList(results);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            tasksPerProvisioning.values().forEach(indexes -> futures.add(executor.submit(() ->
+                    indexes.forEach(i -> results[i] = tasks.get(i).task().get()))));
+        }
+        //The executor is closed, so all futures are done
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+}
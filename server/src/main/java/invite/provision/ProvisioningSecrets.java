@@ -0,0 +1,51 @@
+package invite.provision;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import crypto.KeyStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Decrypts the secrets of Manage provisionings (e.g. SCIM password, EVA token or Graph secret). The RSA decryption is
+ * expensive, so the decrypted secrets are cached on their ciphertext for a limited time. A changed secret in Manage
+ * has a different ciphertext and is decrypted again.
+ */
+@Component
+public class ProvisioningSecrets {
+
+    private final KeyStore keyStore;
+    private final Cache<String, String> decryptedSecrets;
+    private final Counter decryptions;
+
+    public ProvisioningSecrets(KeyStore keyStore,
+                               @Value("${provisioning.secrets.time-to-live}") Duration timeToLive,
+                               @Value("${provisioning.secrets.maximum-size}") long maximumSize,
+                               MeterRegistry meterRegistry) {
+        this.keyStore = keyStore;
+        this.decryptedSecrets = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .build();
+        this.decryptions = Counter.builder("provisioning_secret_decryptions")
+                .description("Number of decrypted provisioning secrets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the secret as-is if it is not encrypted.
+     */
+    public String decrypt(String secret) {
+        if (!keyStore.isEncryptedSecret(secret)) {
+            return secret;
+        }
+        return this.decryptedSecrets.get(secret, ciphertext -> {
+            this.decryptions.increment();
+            return keyStore.decodeAndDecrypt(ciphertext);
+        });
+    }
+}
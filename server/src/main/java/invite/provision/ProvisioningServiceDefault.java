@@ -1,7 +1,7 @@
 package invite.provision;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import crypto.KeyStore;
+import invite.config.HttpClients;
 import invite.eduid.EduID;
 import invite.eduid.EduIDProvision;
 import invite.exception.InvalidInputException;
@@ -16,6 +16,7 @@ import invite.model.RemoteProvisionedUser;
 import invite.model.Role;
 import invite.model.User;
 import invite.model.UserRole;
+import invite.provision.ProvisioningFanOut.ProvisioningTask;
 import invite.provision.eva.EvaClient;
 import invite.provision.graph.GraphClient;
 import invite.provision.graph.GraphResponse;
@@ -45,7 +46,6 @@ import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClientException;
@@ -59,10 +59,13 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @SuppressWarnings("unchecked")
@@ -81,13 +84,16 @@ public class ProvisioningServiceDefault implements ProvisioningService {
 
     private static final Log LOG = LogFactory.getLog(ProvisioningServiceDefault.class);
 
+    private static final Runnable NOTHING_TO_SAVE = () -> {
+    };
+
     private final ParameterizedTypeReference<Map<String, Object>> mapParameterizedTypeReference = new ParameterizedTypeReference<>() {
     };
 
     private final ParameterizedTypeReference<String> stringParameterizedTypeReference = new ParameterizedTypeReference<>() {
     };
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
 
     private final UserRoleRepository userRoleRepository;
     private final RemoteProvisionedUserRepository remoteProvisionedUserRepository;
@@ -97,8 +103,10 @@ public class ProvisioningServiceDefault implements ProvisioningService {
     private final String groupUrnPrefix;
     private final GraphClient graphClient;
     private final EvaClient evaClient;
-    private final KeyStore keyStore;
+    private final ProvisioningSecrets provisioningSecrets;
     private final EduID eduID;
+    private final ProvisioningFanOut provisioningFanOut = new ProvisioningFanOut();
+    private final ThreadLocal<RemoteUserIdentifiers> remoteUserIdentifiersHolder = new ThreadLocal<>();
 
     @Autowired
     public ProvisioningServiceDefault(UserRoleRepository userRoleRepository,
@@ -106,51 +114,84 @@ public class ProvisioningServiceDefault implements ProvisioningService {
                                       RemoteProvisionedGroupRepository remoteProvisionedGroupRepository,
                                       Manage manage,
                                       ObjectMapper objectMapper,
-                                      KeyStore keyStore,
+                                      ProvisioningSecrets provisioningSecrets,
                                       EduID eduID,
+                                      GraphClient graphClient,
                                       @Value("${voot.group_urn_domain}") String groupUrnPrefix,
-                                      @Value("${config.eduid-idp-schac-home-organization}") String eduidIdpSchacHomeOrganization,
-                                      @Value("${config.server-url}") String serverBaseURL) {
+                                      @Value("${http.read-timeout.provisioning}") Duration readTimeout,
+                                      HttpClients httpClients) {
         this.userRoleRepository = userRoleRepository;
         this.remoteProvisionedUserRepository = remoteProvisionedUserRepository;
         this.remoteProvisionedGroupRepository = remoteProvisionedGroupRepository;
         this.manage = manage;
         this.objectMapper = objectMapper;
-        this.keyStore = keyStore;
+        this.provisioningSecrets = provisioningSecrets;
         this.groupUrnPrefix = groupUrnPrefix;
         this.eduID = eduID;
-        this.graphClient = new GraphClient(serverBaseURL, eduidIdpSchacHomeOrganization, keyStore, objectMapper);
-        this.evaClient = new EvaClient(keyStore, remoteProvisionedUserRepository);
-        // Using JdkClientHttpRequestFactory (available in Spring 6.1+)
-        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory();
-        requestFactory.setReadTimeout(Duration.ofMinutes(1));
-        restTemplate.setRequestFactory(requestFactory);
+        this.graphClient = graphClient;
+        this.evaClient = new EvaClient(provisioningSecrets);
+        this.restTemplate = httpClients.restTemplate("provisioning", readTimeout);
     }
 
     @Override
     public Optional<GraphResponse> newUserRequest(User user) {
-        LOG.info(String.format("Provisioning newUserRequest for user: %s", user.getEmail()));
-        List<Provisioning> provisionings = getProvisionings(user);
+        return this.inProvisioningPass(() -> {
+            LOG.info(String.format("Provisioning newUserRequest for user: %s", user.getEmail()));
+            return this.newUserRequest(user, getProvisionings(user));
+        });
+    }
+
+    /**
+     * Provision the user concurrently to the provisionings where the user is unknown.
+     */
+    public Optional<GraphResponse> newUserRequest(User user, List<Provisioning> candidateProvisionings) {
+        return this.inProvisioningPass(() -> {
+            RemoteUserIdentifiers remoteUserIdentifiers = this.currentRemoteUserIdentifiers();
+            List<Provisioning> provisionings = candidateProvisionings.stream()
+                    .filter(provisioning -> remoteUserIdentifiers.get(provisioning.getId(), user).isEmpty())
+                    .toList();
+            List<Optional<ProvisioningResponse>> provisioningResponses = this.provisioningFanOut.invokeAll(provisionings.stream()
+                    .map(provisioning -> new ProvisioningTask<>(provisioning, this.newUserTask(user, provisioning)))
+                    .toList());
+            AtomicReference<GraphResponse> graphResponseReference = new AtomicReference<>();
+            IntStream.range(0, provisionings.size()).forEach(i ->
+                    this.saveNewUserResponse(user, provisionings.get(i), provisioningResponses.get(i)).ifPresent(graphResponseReference::set));
+            return Optional.ofNullable(graphResponseReference.get());
+        });
+    }
+
+    public Optional<GraphResponse> newUserRequest(User user, Provisioning provisioning) {
+        return this.inProvisioningPass(() -> {
+            //Provision the user only to the provisionings in Manage where the user is unknown
+            if (this.currentRemoteUserIdentifiers().get(provisioning.getId(), user).isPresent()) {
+                return Optional.empty();
+            }
+            return this.saveNewUserResponse(user, provisioning, this.newUserTask(user, provisioning).get());
+        });
+    }
+
+    private Supplier<Optional<ProvisioningResponse>> newUserTask(User user, Provisioning provisioning) {
+        UserRequest userRequest = new UserRequest(user, provisioning);
+        return this.newRequest(provisioning, () -> {
+            this.resolveInstitutionalEduID(user, provisioning, userRequest);
+            return prettyJson(userRequest);
+        }, user);
+    }
+
+    private Optional<GraphResponse> saveNewUserResponse(User user,
+                                                        Provisioning provisioning,
+                                                        Optional<ProvisioningResponse> provisioningResponse) {
         AtomicReference<GraphResponse> graphResponseReference = new AtomicReference<>();
-        //Provision the user to all provisionings in Manage where the user is unknown
-        provisionings.stream()
-                .filter(provisioning -> this.remoteProvisionedUserRepository.findByManageProvisioningIdAndUser(provisioning.getId(), user)
-                        .isEmpty())
-                .forEach(provisioning -> {
-                    UserRequest userRequest = new UserRequest(user, provisioning);
-                    this.resolveInstitutionalEduID(user, provisioning, userRequest);
-                    String userRequestJson = prettyJson(userRequest);
-                    Optional<ProvisioningResponse> provisioningResponse = this.newRequest(provisioning, userRequestJson, user);
-                    provisioningResponse.ifPresent(response -> {
-                        if (!response.isErrorResponse() && StringUtils.hasText(response.remoteIdentifier())) {
-                            RemoteProvisionedUser remoteProvisionedUser = new RemoteProvisionedUser(user, response.remoteIdentifier(), provisioning.getId());
-                            this.remoteProvisionedUserRepository.save(remoteProvisionedUser);
-                        }
-                        if (response.isGraphResponse()) {
-                            graphResponseReference.set((GraphResponse) response);
-                        }
-                    });
-                });
+        provisioningResponse.ifPresent(response -> {
+            if (!response.isErrorResponse() && StringUtils.hasText(response.remoteIdentifier())) {
+                RemoteProvisionedUser remoteProvisionedUser = new RemoteProvisionedUser(user, response.remoteIdentifier(), provisioning.getId());
+                this.remoteProvisionedUserRepository.save(remoteProvisionedUser);
+                this.currentRemoteUserIdentifiers().put(provisioning.getId(), user, response.remoteIdentifier());
+            }
+            if (response.isGraphResponse()) {
+                graphResponseReference.set((GraphResponse) response);
+            }
+        });
         return Optional.ofNullable(graphResponseReference.get());
     }
 
@@ -167,252 +208,380 @@ public class ProvisioningServiceDefault implements ProvisioningService {
 
     @Override
     public void updateUserRequest(User user) {
-        LOG.info(String.format("Provisioning updateUserRequest for user: %s", user.getEmail()));
-        List<Provisioning> userProvisionings = getProvisionings(user);
-        List<Provisioning> provisionings = userProvisionings.stream()
-                .toList();
-        //Provision the user to all provisionings in Manage where the user is known
-        provisionings.forEach(provisioning -> {
-            try {
-                if (this.hasEvaHook(provisioning)) {
-                    RequestEntity requestEntity = this.evaClient.updateUserRequest(provisioning, user);
-                    this.doExchange(requestEntity, APIType.USER_API, mapParameterizedTypeReference, provisioning);
-                } else if (this.hasScimHook(provisioning)) {
-                    Optional<RemoteProvisionedUser> provisionedUserOptional =
-                            this.remoteProvisionedUserRepository.findByManageProvisioningIdAndUser(provisioning.getId(), user);
-                    provisionedUserOptional.ifPresent(remoteProvisionedUser -> {
-                        UserRequest userRequest = new UserRequest(user, provisioning, remoteProvisionedUser.getRemoteIdentifier());
-                        this.resolveInstitutionalEduID(user, provisioning, userRequest);
-                        String userRequestJson = prettyJson(userRequest);
-                        this.updateRequest(provisioning, userRequestJson, APIType.USER_API, remoteProvisionedUser.getRemoteIdentifier(), HttpMethod.PUT);
-                    });
-                }
-            } catch (RuntimeException e) {
-                //We choose to ignore these, because one remote provisioning errors should not stop other provisionings
-                LOG.error(String.format("Error in updateUserRequest for provisioning %s for user %s",
-                                provisioning.getEntityId(), user.getEmail())
-                        , e);
+        this.inProvisioningPass(() -> {
+            LOG.info(String.format("Provisioning updateUserRequest for user: %s", user.getEmail()));
+            List<Provisioning> userProvisionings = getProvisionings(user);
+            List<Provisioning> provisionings = userProvisionings.stream()
+                    .toList();
+            //Provision the user to all provisionings in Manage where the user is known
+            List<ProvisioningTask<Void>> tasks = provisionings.stream()
+                    .map(provisioning -> {
+                        try {
+                            Supplier<Void> task = this.updateUserTask(user, provisioning);
+                            return new ProvisioningTask<>(provisioning, () -> {
+                                try {
+                                    return task.get();
+                                } catch (RuntimeException e) {
+                                    this.logUpdateUserError(user, provisioning, e);
+                                    return null;
+                                }
+                            });
+                        } catch (RuntimeException e) {
+                            this.logUpdateUserError(user, provisioning, e);
+                            return null;
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .toList();
+            this.provisioningFanOut.invokeAll(tasks);
+        });
+    }
+
+    private void logUpdateUserError(User user, Provisioning provisioning, RuntimeException e) {
+        //We choose to ignore these, because one remote provisioning errors should not stop other provisionings
+        LOG.error(String.format("Error in updateUserRequest for provisioning %s for user %s",
+                        provisioning.getEntityId(), user.getEmail())
+                , e);
+    }
+
+    public void updateUserRequest(User user, Provisioning provisioning) {
+        this.inProvisioningPass(() -> this.updateUserTask(user, provisioning).get());
+    }
 
+    private Supplier<Void> updateUserTask(User user, Provisioning provisioning) {
+        Optional<String> remoteIdentifierOptional = this.currentRemoteUserIdentifiers().get(provisioning.getId(), user);
+        if (this.hasEvaHook(provisioning)) {
+            RequestEntity requestEntity = this.evaClient.updateUserRequest(provisioning, user, remoteIdentifierOptional);
+            return () -> {
+                this.doExchange(requestEntity, APIType.USER_API, mapParameterizedTypeReference, provisioning);
+                return null;
+            };
+        } else if (this.hasScimHook(provisioning)) {
+            if (remoteIdentifierOptional.isPresent()) {
+                String remoteIdentifier = remoteIdentifierOptional.get();
+                UserRequest userRequest = new UserRequest(user, provisioning, remoteIdentifier);
+                return () -> {
+                    this.resolveInstitutionalEduID(user, provisioning, userRequest);
+                    String userRequestJson = prettyJson(userRequest);
+                    this.updateRequest(provisioning, userRequestJson, APIType.USER_API, remoteIdentifier, HttpMethod.PUT);
+                    return null;
+                };
             }
-        });
+        }
+        return () -> null;
     }
 
     @Override
     public void updateUserRoleRequest(UserRole userRole) {
-        LOG.info(String.format("Provisioning updateUserRoleRequest for userRole: %s", userRole.getId()));
-        List<Provisioning> provisionings = getProvisionings(userRole.getUser());
-        provisionings.forEach(provisioning -> {
-            if (this.hasEvaHook(provisioning)) {
-                try {
-                    //For now only eva is eligible for update's for the userRole (e.g. new end date)
-                    RequestEntity requestEntity = this.evaClient.updateUserRequest(provisioning, userRole.getUser());
-                    doExchange(requestEntity, APIType.USER_API, stringParameterizedTypeReference, provisioning);
-                } catch (InvalidInputException e) {
-                    //Can't be helped and won't happen on production
-                    LOG.error("Error from evaClient", e);
-                }
-            }
-
+        this.inProvisioningPass(() -> {
+            LOG.info(String.format("Provisioning updateUserRoleRequest for userRole: %s", userRole.getId()));
+            List<Provisioning> provisionings = getProvisionings(userRole.getUser());
+            provisionings.forEach(provisioning -> this.updateUserRoleRequest(userRole, provisioning));
         });
+    }
 
+    public void updateUserRoleRequest(UserRole userRole, Provisioning provisioning) {
+        if (this.hasEvaHook(provisioning)) {
+            try {
+                //For now only eva is eligible for update's for the userRole (e.g. new end date)
+                User user = userRole.getUser();
+                RequestEntity requestEntity = this.evaClient.updateUserRequest(provisioning, user,
+                        this.currentRemoteUserIdentifiers().get(provisioning.getId(), user));
+                doExchange(requestEntity, APIType.USER_API, stringParameterizedTypeReference, provisioning);
+            } catch (InvalidInputException e) {
+                //Can't be helped and won't happen on production
+                LOG.error("Error from evaClient", e);
+            }
+        }
     }
 
     @Override
     public void deleteUserRequest(User user) {
-        LOG.info(String.format("provisioning deleteUserRequest for user %s", user.getEmail()));
-        //First send update role requests
-        user.getUserRoles()
-                .forEach(userRole -> this.updateGroupRequest(userRole, OperationType.remove));
-
-        List<Provisioning> provisionings = getProvisionings(user);
-        //Delete the user to all provisionings in Manage where the user is known
-        deprovisionUser(user, provisionings);
+        this.inProvisioningPass(() -> {
+            LOG.info(String.format("provisioning deleteUserRequest for user %s", user.getEmail()));
+            //First send update role requests
+            user.getUserRoles()
+                    .forEach(userRole -> this.updateGroupRequest(userRole, OperationType.remove));
+
+            List<Provisioning> provisionings = getProvisionings(user);
+            //Delete the user to all provisionings in Manage where the user is known
+            deprovisionUser(user, provisionings);
+        });
     }
 
     @Override
     public void deleteUserRoleRequest(UserRole userRole) {
-        LOG.info(String.format("Provisioning deleteUserRoleRequest for role %s", userRole.getId()));
-        getProvisionings(userRole.getUser())
-                .stream()
-                .filter(this::hasEvaHook)
-                .forEach(provisioning -> {
-                    // Sends deletion request to EVA for each provisioning
-                    RequestEntity requestEntity = this.evaClient.deleteUserRequest(provisioning, userRole.getUser());
-                    if (requestEntity != null) {
-                        doExchange(requestEntity, APIType.USER_API, stringParameterizedTypeReference, provisioning);
-                    }
-                });
-        //First send update role request
-        this.updateGroupRequest(userRole, OperationType.remove);
-        /*
-         * We need a List all provisionings for the user#userRole, and then remove the provisiongs that are still in
-         * use by other user#userRoles, and those remainging are the provisionings which we need to delete
-         */
-        User user = userRole.getUser();
-        List<Provisioning> userRoleProvisionings = getProvisioningsUserRole(user, userRole);
-        List<String> otherProvisioningIdentifiers = user.getUserRoles().stream()
-                .filter(otherUserRole -> !otherUserRole.getId().equals(userRole.getId()))
-                .map(otherUserRole -> getProvisioningsUserRole(user, otherUserRole))
-                .flatMap(Collection::stream)
-                .map(Provisioning::getId)
-                .toList();
-        List<Provisioning> provisionings = userRoleProvisionings.stream()
-                .filter(provisioning -> !otherProvisioningIdentifiers.contains(provisioning.getId()))
-                .toList();
-        //Delete the user to the not used anymore provisionings in Manage
-        deprovisionUser(user, provisionings);
-    }
-
-    @Override
-    public void deleteUserRequest(Role role) {
-        LOG.info(String.format("Provisioning deleteUserRequest for role: %s", role.getId()));
-        List<String> manageIdentifiers = getManageIdentifiers(role);
-        List<Provisioning> allRoleProvisionings = manage.provisioning(manageIdentifiers).stream()
-                .map(Provisioning::new)
-                .toList();
-        /*
-         * We can't deprovision all users of the Role in each provisioning, as they might be in use in other provisioned
-         * roles. We need all provisionings of the Role, but we need to check for each user which provisionings needs to
-         * be excluded from the deprovision.
-         */
-        List<UserRole> userRoles = userRoleRepository.findByRole(role);
-        userRoles.forEach(userRole -> {
+        this.inProvisioningPass(() -> {
+            LOG.info(String.format("Provisioning deleteUserRoleRequest for role %s", userRole.getId()));
+            getProvisionings(userRole.getUser())
+                    .stream()
+                    .filter(this::hasEvaHook)
+                    .forEach(provisioning -> {
+                        // Sends deletion request to EVA for each provisioning
+                        User user = userRole.getUser();
+                        this.currentRemoteUserIdentifiers().get(provisioning.getId(), user).ifPresent(remoteIdentifier -> {
+                            RequestEntity requestEntity = this.evaClient.deleteUserRequest(provisioning, remoteIdentifier);
+                            this.deleteRemoteProvisionedUser(provisioning, user);
+                            doExchange(requestEntity, APIType.USER_API, stringParameterizedTypeReference, provisioning);
+                        });
+                    });
+            //First send update role request
+            this.updateGroupRequest(userRole, OperationType.remove);
+            /*
+             * We need a List all provisionings for the user#userRole, and then remove the provisiongs that are still in
+             * use by other user#userRoles, and those remainging are the provisionings which we need to delete
+             */
             User user = userRole.getUser();
-            List<ManageIdentifier> otherManageIdentifiers = user.getUserRoles().stream()
+            List<Provisioning> userRoleProvisionings = getProvisioningsUserRole(user, userRole);
+            List<String> otherProvisioningIdentifiers = user.getUserRoles().stream()
                     .filter(otherUserRole -> !otherUserRole.getId().equals(userRole.getId()))
-                    .map(otherUserRole -> user.manageIdentifierSet(userRole))
+                    .map(otherUserRole -> getProvisioningsUserRole(user, otherUserRole))
                     .flatMap(Collection::stream)
+                    .map(Provisioning::getId)
                     .toList();
-            // Provisionings that are used by any other userRoles are filtered out
-            List<Provisioning> provisionings = allRoleProvisionings.stream()
-                    .filter(provisioning -> provisioning.getRemoteApplications().stream()
-                            .noneMatch(otherManageIdentifiers::contains))
+            List<Provisioning> provisionings = userRoleProvisionings.stream()
+                    .filter(provisioning -> !otherProvisioningIdentifiers.contains(provisioning.getId()))
                     .toList();
-            //Delete the user to the not used anymore provisionings  in Manage
+            //Delete the user to the not used anymore provisionings in Manage
             deprovisionUser(user, provisionings);
         });
     }
 
+    @Override
+    public void deleteUserRequest(Role role) {
+        this.inProvisioningPass(() -> {
+            LOG.info(String.format("Provisioning deleteUserRequest for role: %s", role.getId()));
+            List<String> manageIdentifiers = getManageIdentifiers(role);
+            List<Provisioning> allRoleProvisionings = manage.provisioning(manageIdentifiers).stream()
+                    .map(Provisioning::new)
+                    .toList();
+            /*
+             * We can't deprovision all users of the Role in each provisioning, as they might be in use in other provisioned
+             * roles. We need all provisionings of the Role, but we need to check for each user which provisionings needs to
+             * be excluded from the deprovision.
+             */
+            List<UserRole> userRoles = userRoleRepository.findByRole(role);
+            //One query per provisioning for the remote identifiers of all users of the role
+            List<User> users = userRoles.stream().map(UserRole::getUser).toList();
+            allRoleProvisionings.forEach(provisioning -> this.currentRemoteUserIdentifiers().getAll(provisioning.getId(), users));
+            userRoles.forEach(userRole -> {
+                User user = userRole.getUser();
+                List<ManageIdentifier> otherManageIdentifiers = user.getUserRoles().stream()
+                        .filter(otherUserRole -> !otherUserRole.getId().equals(userRole.getId()))
+                        .map(otherUserRole -> user.manageIdentifierSet(userRole))
+                        .flatMap(Collection::stream)
+                        .toList();
+                // Provisionings that are used by any other userRoles are filtered out
+                List<Provisioning> provisionings = allRoleProvisionings.stream()
+                        .filter(provisioning -> provisioning.getRemoteApplications().stream()
+                                .noneMatch(otherManageIdentifiers::contains))
+                        .toList();
+                //Delete the user to the not used anymore provisionings  in Manage
+                deprovisionUser(user, provisionings);
+            });
+        });
+    }
+
     private void deprovisionUser(User user, List<Provisioning> provisionings) {
         provisionings.forEach(provisioning -> {
-            Optional<RemoteProvisionedUser> provisionedUserOptional = this.remoteProvisionedUserRepository
-                    .findByManageProvisioningIdAndUser(provisioning.getId(), user);
-            if (provisionedUserOptional.isPresent()) {
+            Optional<String> remoteIdentifierOptional = this.currentRemoteUserIdentifiers().get(provisioning.getId(), user);
+            if (remoteIdentifierOptional.isPresent()) {
                 LOG.info(String.format("Provisioning deprovisionUser for user: %s", user.getEmail()));
-                RemoteProvisionedUser remoteProvisionedUser = provisionedUserOptional.get();
-                String remoteIdentifier = remoteProvisionedUser.getRemoteIdentifier();
+                String remoteIdentifier = remoteIdentifierOptional.get();
                 UserRequest userRequest = new UserRequest(user, provisioning, remoteIdentifier);
                 this.resolveInstitutionalEduID(user, provisioning, userRequest);
                 String userRequestJson = prettyJson(userRequest);
                 this.deleteRequest(provisioning, userRequestJson, user, remoteIdentifier);
-                this.remoteProvisionedUserRepository.delete(remoteProvisionedUser);
+                this.deleteRemoteProvisionedUser(provisioning, user);
             } else {
                 LOG.info(String.format("No provisionings found in deprovisionUser for user: %s", user.getEmail()));
             }
         });
     }
 
+    private void deleteRemoteProvisionedUser(Provisioning provisioning, User user) {
+        this.remoteProvisionedUserRepository.deleteByManageProvisioningIdAndUserId(provisioning.getId(), user.getId());
+        this.currentRemoteUserIdentifiers().remove(provisioning.getId(), user);
+    }
+
     @Override
     public void newGroupRequest(Role role) {
         List<Provisioning> provisionings = getProvisionings(role);
-        provisionings.forEach(provisioning -> {
-            Optional<RemoteProvisionedGroup> provisionedGroupOptional = this.remoteProvisionedGroupRepository
-                    .findByManageProvisioningIdAndRole(provisioning.getId(), role);
-            if (provisionedGroupOptional.isEmpty()) {
-                LOG.info(String.format("Provisioning newGroupRequest for role: %s", role.getId()));
-                String groupRequest = constructGroupRequest(role, null, Collections.emptyList());
-                Optional<ProvisioningResponse> provisioningResponse = this.newRequest(provisioning, groupRequest, role);
-                provisioningResponse.ifPresent(response -> {
-                    RemoteProvisionedGroup remoteProvisionedGroup = new RemoteProvisionedGroup(role, response.remoteIdentifier(), provisioning.getId());
-                    this.remoteProvisionedGroupRepository.save(remoteProvisionedGroup);
-                });
-            } else {
-                LOG.info(String.format("No provisionings found in newGroupRequest for role: %s", role.getId()));
-            }
-        });
+        provisionings.forEach(provisioning -> this.newGroupRequest(role, provisioning));
+    }
+
+    public void newGroupRequest(Role role, Provisioning provisioning) {
+        Optional<RemoteProvisionedGroup> provisionedGroupOptional = this.remoteProvisionedGroupRepository
+                .findByManageProvisioningIdAndRole(provisioning.getId(), role);
+        if (provisionedGroupOptional.isEmpty()) {
+            LOG.info(String.format("Provisioning newGroupRequest for role: %s", role.getId()));
+            String groupRequest = constructGroupRequest(role, null, Collections.emptyList());
+            Optional<ProvisioningResponse> provisioningResponse = this.newRequest(provisioning, () -> groupRequest, role).get();
+            provisioningResponse.ifPresent(response -> {
+                RemoteProvisionedGroup remoteProvisionedGroup = new RemoteProvisionedGroup(role, response.remoteIdentifier(), provisioning.getId());
+                this.remoteProvisionedGroupRepository.save(remoteProvisionedGroup);
+            });
+        } else {
+            LOG.info(String.format("No provisionings found in newGroupRequest for role: %s", role.getId()));
+        }
     }
 
     @Override
     public void updateGroupRequest(UserRole userRole, OperationType operationType) {
         LOG.info(String.format("Provisioning updateGroupRequest for userRole: %s", userRole.getId()));
-        if (!userRole.getAuthority().equals(Authority.GUEST) && !userRole.isGuestRoleIncluded()) {
+        if (!isProvisionedGuest(userRole)) {
             //We only provision GUEST users
             return;
         }
-        Role role = userRole.getRole();
-        List<Provisioning> provisionings = getProvisionings(role).stream()
-                .toList();
-        provisionings.forEach(provisioning -> {
-            if (this.hasScimHook(provisioning) && !provisioning.isScimUserProvisioningOnly()) {
-                Optional<RemoteProvisionedGroup> provisionedGroupOptional = this.remoteProvisionedGroupRepository
-                        .findByManageProvisioningIdAndRole(provisioning.getId(), role);
-                provisionedGroupOptional.ifPresentOrElse(provisionedGroup -> {
-                            List<UserRole> userRoles = new ArrayList<>();
-                            if (provisioning.isScimUpdateRolePutMethod()) {
-                                //We need all userRoles for a PUT and we only provision guests
-                                userRoles = userRoleRepository.findByRole(userRole.getRole())
-                                        .stream()
-                                        .filter(userRoleDB -> userRoleDB.getAuthority().equals(Authority.GUEST) || userRoleDB.isGuestRoleIncluded())
-                                        .collect(Collectors.toCollection(ArrayList::new));
-                                boolean userRolePresent = userRoles.stream().anyMatch(dbUserRole -> dbUserRole.getId().equals(userRole.getId()));
-                                if (operationType.equals(OperationType.add) && !userRolePresent) {
-                                    userRoles.add(userRole);
-                                } else if (operationType.equals(OperationType.remove) && userRolePresent) {
-                                    userRoles = userRoles.stream()
-                                            .filter(dbUserRole -> !dbUserRole.getId().equals(userRole.getId()))
-                                            .collect(Collectors.toCollection(ArrayList::new));
-                                }
-                            } else {
-                                userRoles.add(userRole);
-                            }
-                            sendGroupPutRequest(provisioning, provisionedGroup, userRoles, role, operationType);
-                        }, () -> {
-                            this.newGroupRequest(role);
-                            this.updateGroupRequest(userRole, operationType);
-                        }
-                );
-            }
-            //For now only scim is eligible for update's for the groups (e.g. role name / members have changed)
-        });
+        List<Provisioning> provisionings = getProvisionings(userRole.getRole());
+        this.inProvisioningPass(() -> this.provisioningFanOut.invokeAll(provisionings.stream()
+                .map(provisioning -> new ProvisioningTask<>(provisioning, this.updateGroupTask(userRole, operationType, provisioning)))
+                .toList())
+                .forEach(Runnable::run));
     }
 
-    private void sendGroupPutRequest(Provisioning provisioning,
-                                     RemoteProvisionedGroup provisionedGroup,
-                                     List<UserRole> userRoles,
-                                     Role role,
-                                     OperationType operationType) {
-        LOG.info(String.format("Provisioning sendGroupPutRequest for provisioning: %s", provisioning.getId()));
-        List<String> userScimIdentifiers = userRoles.stream()
-                .map(userRole -> this.remoteProvisionedUserRepository
-                        .findByManageProvisioningIdAndUser(provisioning.getId(), userRole.getUser())
+    public void updateGroupRequest(UserRole userRole, OperationType operationType, Provisioning provisioning) {
+        this.updateGroupRequest(List.of(userRole), operationType, provisioning);
+    }
+
+    /**
+     * Send one group update for all the userRoles, which must belong to the same role.
+     */
+    public void updateGroupRequest(List<UserRole> userRoles, OperationType operationType, Provisioning provisioning) {
+        this.inProvisioningPass(() -> this.updateGroupTask(userRoles, operationType, provisioning).get().run());
+    }
+
+    private Supplier<Runnable> updateGroupTask(UserRole userRole, OperationType operationType, Provisioning provisioning) {
+        return this.updateGroupTask(List.of(userRole), operationType, provisioning);
+    }
+
+    /*
+     * The task only sends the remote request and returns what needs to be saved afterwards, which must be run on the
+     * calling thread as the ProvisioningFanOut tasks can not use the persistence context of the caller.
+     */
+    private Supplier<Runnable> updateGroupTask(List<UserRole> userRoles, OperationType operationType, Provisioning provisioning) {
+        //We only provision GUEST users
+        List<UserRole> guestUserRoles = userRoles.stream().filter(this::isProvisionedGuest).toList();
+        //For now only scim is eligible for update's for the groups (e.g. role name / members have changed)
+        if (guestUserRoles.isEmpty() || !this.hasScimHook(provisioning) || provisioning.isScimUserProvisioningOnly()) {
+            return () -> NOTHING_TO_SAVE;
+        }
+        Role role = guestUserRoles.getFirst().getRole();
+        Optional<RemoteProvisionedGroup> provisionedGroupOptional = this.remoteProvisionedGroupRepository
+                .findWithMembersByManageProvisioningIdAndRole(provisioning.getId(), role);
+        if (provisionedGroupOptional.isEmpty()) {
+            //Ensure the group is provisioned just in time
+            this.newGroupRequest(role, provisioning);
+            provisionedGroupOptional = this.remoteProvisionedGroupRepository
+                    .findWithMembersByManageProvisioningIdAndRole(provisioning.getId(), role);
+        }
+        return provisionedGroupOptional
+                .map(provisionedGroup -> provisioning.isScimUpdateRolePutMethod() ?
+                        this.groupMembersPutTask(provisioning, provisionedGroup, guestUserRoles, role, operationType) :
+                        this.groupPutTask(provisioning, provisionedGroup, guestUserRoles, role, operationType))
+                .orElse(() -> NOTHING_TO_SAVE);
+    }
+
+    /*
+     * A PUT requires all members. Instead of resolving every member of the role, the delta is applied to the members
+     * last sent to the provisioning and no request is sent when the members are unchanged.
+     */
+    private Supplier<Runnable> groupMembersPutTask(Provisioning provisioning,
+                                                   RemoteProvisionedGroup provisionedGroup,
+                                                   List<UserRole> changedUserRoles,
+                                                   Role role,
+                                                   OperationType operationType) {
+        boolean membersSynced = provisionedGroup.isMembersSynced();
+        Set<String> previousMembers = membersSynced ? new HashSet<>(provisionedGroup.getMembers()) :
+                new HashSet<>(this.remoteProvisionedUserRepository.findGuestRemoteIdentifiersByRoleId(provisioning.getId(), role.getId()));
+        Set<String> members = new HashSet<>(previousMembers);
+        if (operationType.equals(OperationType.add)) {
+            members.addAll(this.remoteUserIdentifiers(provisioning, changedUserRoles, true));
+        } else if (operationType.equals(OperationType.remove)) {
+            this.remoteUserIdentifiers(provisioning, changedUserRoles, false).forEach(members::remove);
+        }
+        if (membersSynced && members.equals(previousMembers)) {
+            LOG.info(String.format("No change in members of group %s for provisioning %s", role.getName(), provisioning.getEntityId()));
+            return () -> NOTHING_TO_SAVE;
+        }
+        LOG.info(String.format("Provisioning groupMembersPutTask for provisioning: %s with %s members", provisioning.getId(), members.size()));
+        String groupRequest = constructGroupRequest(role, provisionedGroup.getRemoteIdentifier(), new ArrayList<>(members));
+        return this.groupMembersPutRequest(provisioning, provisionedGroup, groupRequest, members);
+    }
+
+    /*
+     * The members are only saved as sent after the PUT has succeeded, otherwise a retry would find the members
+     * unchanged and never send them.
+     */
+    private Supplier<Runnable> groupMembersPutRequest(Provisioning provisioning,
+                                                      RemoteProvisionedGroup provisionedGroup,
+                                                      String groupRequest,
+                                                      Collection<String> members) {
+        return () -> {
+            this.updateRequest(provisioning, groupRequest, APIType.GROUP_API, provisionedGroup.getRemoteIdentifier(), HttpMethod.PUT);
+            return () -> {
+                provisionedGroup.syncMembers(members);
+                this.remoteProvisionedGroupRepository.save(provisionedGroup);
+            };
+        };
+    }
+
+    private List<String> remoteUserIdentifiers(Provisioning provisioning, List<UserRole> userRoles, boolean provisionJustInTime) {
+        RemoteUserIdentifiers remoteUserIdentifiers = this.currentRemoteUserIdentifiers();
+        List<User> users = userRoles.stream().map(UserRole::getUser).toList();
+        Map<Long, String> remoteIdentifiers = remoteUserIdentifiers.getAll(provisioning.getId(), users);
+        return users.stream()
+                .map(user -> Optional.ofNullable(remoteIdentifiers.get(user.getId()))
                         .or(() -> {
-                            this.newUserRequest(userRole.getUser());
-                            return this.remoteProvisionedUserRepository
-                                    .findByManageProvisioningIdAndUser(provisioning.getId(), userRole.getUser());
+                            if (!provisionJustInTime) {
+                                return Optional.empty();
+                            }
+                            this.newUserRequest(user);
+                            return remoteUserIdentifiers.get(provisioning.getId(), user);
                         }))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
-                .map(RemoteProvisionedUser::getRemoteIdentifier)
                 .toList();
+    }
+
+    private boolean isProvisionedGuest(UserRole userRole) {
+        return userRole.getAuthority().equals(Authority.GUEST) || userRole.isGuestRoleIncluded();
+    }
+
+    private Supplier<Runnable> groupPutTask(Provisioning provisioning,
+                                            RemoteProvisionedGroup provisionedGroup,
+                                            List<UserRole> userRoles,
+                                            Role role,
+                                            OperationType operationType) {
+        LOG.info(String.format("Provisioning groupPutTask for provisioning: %s", provisioning.getId()));
+        List<String> userScimIdentifiers = this.remoteUserIdentifiers(provisioning, userRoles, true);
         if (!userScimIdentifiers.isEmpty() || operationType.equals(OperationType.replace)) {
             if (provisioning.isScimUpdateRolePutMethod()) {
                 String groupRequest = constructGroupRequest(
                         role,
                         provisionedGroup.getRemoteIdentifier(),
                         userScimIdentifiers);
-                this.updateRequest(provisioning, groupRequest, APIType.GROUP_API, provisionedGroup.getRemoteIdentifier(), HttpMethod.PUT);
+                return this.groupMembersPutRequest(provisioning, provisionedGroup, groupRequest, userScimIdentifiers);
             } else {
                 GroupPatchRequest request = operationType.equals(OperationType.replace) ?
                         new GroupPatchRequest(new DisplayNameOperation(role.getName())) :
                         new GroupPatchRequest(new MembersOperation(operationType, userScimIdentifiers));
                 String groupRequest = prettyJson(request);
-                this.updateRequest(provisioning, groupRequest, APIType.GROUP_API, provisionedGroup.getRemoteIdentifier(), HttpMethod.PATCH);
+                return () -> {
+                    this.updateRequest(provisioning, groupRequest, APIType.GROUP_API, provisionedGroup.getRemoteIdentifier(), HttpMethod.PATCH);
+                    return NOTHING_TO_SAVE;
+                };
             }
         }
+        return () -> NOTHING_TO_SAVE;
     }
 
     @Override
     public void updateGroupRequest(List<String> previousManageIdentifiers, Role newRole, boolean nameChanged) {
+        this.inProvisioningPass(() -> this.doUpdateGroupRequest(previousManageIdentifiers, newRole, nameChanged));
+    }
+
+    private void doUpdateGroupRequest(List<String> previousManageIdentifiers, Role newRole, boolean nameChanged) {
         //Immutable List cannot be sorted
         List<String> previousManageIdentifiersSorted = previousManageIdentifiers.stream().sorted().toList();
         List<String> newManageIdentifiers = this.getManageIdentifiers(newRole);
@@ -439,16 +608,16 @@ public class ProvisioningServiceDefault implements ProvisioningService {
                 .filter(provisioning -> !provisioning.isScimUserProvisioningOnly())
                 .forEach(provisioning -> {
                     Optional<RemoteProvisionedGroup> provisionedGroupOptional = this.remoteProvisionedGroupRepository
-                            .findByManageProvisioningIdAndRole(provisioning.getId(), newRole);
+                            .findWithMembersByManageProvisioningIdAndRole(provisioning.getId(), newRole);
                     if (provisionedGroupOptional.isEmpty()) {
                         //Ensure the group is provisioned just in time
                         this.newGroupRequest(newRole);
                         provisionedGroupOptional = this.remoteProvisionedGroupRepository
-                                .findByManageProvisioningIdAndRole(provisioning.getId(), newRole);
+                                .findWithMembersByManageProvisioningIdAndRole(provisioning.getId(), newRole);
                     }
                     provisionedGroupOptional.ifPresent(provisionedGroup -> {
                         List<UserRole> userRoles = userRoleRepository.findByRole(newRole);
-                        this.sendGroupPutRequest(provisioning, provisionedGroup, userRoles, newRole, OperationType.replace);
+                        this.groupPutTask(provisioning, provisionedGroup, userRoles, newRole, OperationType.replace).get().run();
                     });
                 });
 
@@ -502,41 +671,51 @@ public class ProvisioningServiceDefault implements ProvisioningService {
         return prettyJson(new GroupRequest(externalId, remoteGroupScimIdentifier, role.getName(), members));
     }
 
-    private Optional<ProvisioningResponse> newRequest(Provisioning provisioning, String request, Provisionable provisionable) {
+    /*
+     * All state is read on the calling thread and the returned Supplier only sends the remote request, so it can be
+     * invoked by the ProvisioningFanOut. The request body is resolved lazily as it may require a remote call.
+     */
+    private Supplier<Optional<ProvisioningResponse>> newRequest(Provisioning provisioning,
+                                                                Supplier<String> request,
+                                                                Provisionable provisionable) {
         boolean isUser = provisionable instanceof User;
         APIType apiType = isUser ? APIType.USER_API : APIType.GROUP_API;
-        RequestEntity<String> requestEntity = null;
-        boolean requiresRemoteIdentifier = false;
         if (hasEvaHook(provisioning) && isUser) {
             LOG.info(String.format("Provisioning new eva account for user %s and provisioning %s",
                     ((User) provisionable).getEmail(), provisioning.getEntityId()));
-            requestEntity = this.evaClient.newUserRequest(provisioning, (User) provisionable);
+            RequestEntity<String> requestEntity = this.evaClient.newUserRequest(provisioning, (User) provisionable);
+            return () -> Optional.of(this.exchangeNewRequest(requestEntity, apiType, provisioning, false));
         } else if (hasScimHook(provisioning) && (isUser || !provisioning.isScimUserProvisioningOnly())) {
             LOG.info(String.format("Provisioning new SCIM account for provisionable %s and provisioning %s",
                     provisionable.getName(), provisioning.getEntityId()));
             URI uri = this.provisioningUri(provisioning, apiType, Optional.empty());
-            requiresRemoteIdentifier = true;
-            requestEntity = new RequestEntity<>(request, httpHeaders(provisioning), HttpMethod.POST, uri);
+            HttpHeaders httpHeaders = httpHeaders(provisioning);
+            return () -> {
+                RequestEntity<String> requestEntity = new RequestEntity<>(request.get(), httpHeaders, HttpMethod.POST, uri);
+                return Optional.of(this.exchangeNewRequest(requestEntity, apiType, provisioning, true));
+            };
         } else if (hasGraphHook(provisioning) && isUser) {
             LOG.info(String.format("Provisioning new Graph user for provisionable %s and provisioning %s",
                     ((User) provisionable).getEmail(), provisioning.getEntityId()));
-            GraphResponse graphResponse = this.graphClient.newUserRequest(provisioning, (User) provisionable);
-            return Optional.of(graphResponse);
+            return () -> Optional.of(this.graphClient.newUserRequest(provisioning, (User) provisionable));
         }
-        if (requestEntity != null) {
-            Map<String, Object> results = doExchange(requestEntity, apiType, mapParameterizedTypeReference, provisioning);
-            String id = (String) results.get("id");
-            if (!StringUtils.hasText(id) && requiresRemoteIdentifier) {
-                String errorMessage = String.format("Error in %s response %s send to entityID %s. ID is required, but not present in SCIM response.",
-                        apiType,
-                        results,
-                        provisioning.getEntityId());
-                throw new RemoteException(HttpStatus.BAD_REQUEST, errorMessage, null);
-            }
-            return Optional.of(new DefaultProvisioningResponse(id));
+        return Optional::empty;
+    }
+
+    private ProvisioningResponse exchangeNewRequest(RequestEntity<String> requestEntity,
+                                                    APIType apiType,
+                                                    Provisioning provisioning,
+                                                    boolean requiresRemoteIdentifier) {
+        Map<String, Object> results = doExchange(requestEntity, apiType, mapParameterizedTypeReference, provisioning);
+        String id = (String) results.get("id");
+        if (!StringUtils.hasText(id) && requiresRemoteIdentifier) {
+            String errorMessage = String.format("Error in %s response %s send to entityID %s. ID is required, but not present in SCIM response.",
+                    apiType,
+                    results,
+                    provisioning.getEntityId());
+            throw new RemoteException(HttpStatus.BAD_REQUEST, errorMessage, null);
         }
-        return Optional.empty();
-
+        return new DefaultProvisioningResponse(id);
     }
 
     private void updateRequest(Provisioning provisioning,
@@ -551,7 +730,36 @@ public class ProvisioningServiceDefault implements ProvisioningService {
         }
     }
 
-    private List<Provisioning> getProvisionings(User user) {
+    /*
+     * The remote identifiers of users are memoized for the duration of the outermost public call on this thread, so
+     * the nested just-in-time provisioning and deprovisioning do not query the same rows over and over again.
+     */
+    private <T> T inProvisioningPass(Supplier<T> pass) {
+        if (this.remoteUserIdentifiersHolder.get() != null) {
+            return pass.get();
+        }
+        this.remoteUserIdentifiersHolder.set(new RemoteUserIdentifiers(this.remoteProvisionedUserRepository));
+        try {
+            return pass.get();
+        } finally {
+            this.remoteUserIdentifiersHolder.remove();
+        }
+    }
+
+    private void inProvisioningPass(Runnable pass) {
+        this.inProvisioningPass(() -> {
+            pass.run();
+            return null;
+        });
+    }
+
+    private RemoteUserIdentifiers currentRemoteUserIdentifiers() {
+        RemoteUserIdentifiers remoteUserIdentifiers = this.remoteUserIdentifiersHolder.get();
+        //Outside a provisioning pass nothing is memoized
+        return remoteUserIdentifiers != null ? remoteUserIdentifiers : new RemoteUserIdentifiers(this.remoteProvisionedUserRepository);
+    }
+
+    public List<Provisioning> getProvisionings(User user) {
         Set<ManageIdentifier> manageIdentifiers = user.manageIdentifierSet();
         List<String> identifiers = manageIdentifiers.stream().map(ManageIdentifier::manageId).toList();
         return manage.provisioning(identifiers).stream().map(Provisioning::new).toList();
@@ -563,7 +771,7 @@ public class ProvisioningServiceDefault implements ProvisioningService {
         return manage.provisioning(identifiers).stream().map(Provisioning::new).toList();
     }
 
-    private List<Provisioning> getProvisionings(Role role) {
+    public List<Provisioning> getProvisionings(Role role) {
         List<String> manageIdentifiers = getManageIdentifiers(role);
         return manage.provisioning(manageIdentifiers).stream().map(Provisioning::new).toList();
     }
@@ -580,7 +788,7 @@ public class ProvisioningServiceDefault implements ProvisioningService {
         APIType apiType = isUser ? APIType.USER_API : APIType.GROUP_API;
         RequestEntity<String> requestEntity = null;
         if (hasEvaHook(provisioning) && isUser) {
-            requestEntity = this.evaClient.deleteUserRequest(provisioning, (User) provisionable);
+            requestEntity = this.evaClient.deleteUserRequest(provisioning, remoteIdentifier);
         } else if (hasScimHook(provisioning) && (isUser || !provisioning.isScimUserProvisioningOnly())) {
             URI uri = this.provisioningUri(provisioning, apiType, Optional.ofNullable(remoteIdentifier));
             HttpHeaders headers = this.httpHeaders(provisioning);
@@ -653,13 +861,11 @@ public class ProvisioningServiceDefault implements ProvisioningService {
     }
 
     private String decryptScimPassword(Provisioning provisioning) {
-        String scimPassword = provisioning.getScimPassword();
-        return keyStore.isEncryptedSecret(scimPassword) ? keyStore.decodeAndDecrypt(scimPassword) : scimPassword;
+        return provisioningSecrets.decrypt(provisioning.getScimPassword());
     }
 
     private String decryptScimBearerToken(Provisioning provisioning) {
-        String scimBearerToken = provisioning.getScimBearerToken();
-        return keyStore.isEncryptedSecret(scimBearerToken) ? keyStore.decodeAndDecrypt(scimBearerToken) : scimBearerToken;
+        return provisioningSecrets.decrypt(provisioning.getScimBearerToken());
     }
 
     private HttpHeaders httpHeaders(Provisioning provisioning) {
@@ -0,0 +1,62 @@
+package invite.provision;
+
+import invite.model.User;
+import invite.repository.RemoteProvisionedUserRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Memo of the remote identifiers of users per provisioning for the duration of one provisioning pass. The remote
+ * identifiers of many users are resolved with one query and repeated lookups - also of unknown users - are free.
+ */
+class RemoteUserIdentifiers {
+
+    private final RemoteProvisionedUserRepository remoteProvisionedUserRepository;
+    private final Map<String, Map<Long, Optional<String>>> remoteIdentifiers = new HashMap<>();
+
+    RemoteUserIdentifiers(RemoteProvisionedUserRepository remoteProvisionedUserRepository) {
+        this.remoteProvisionedUserRepository = remoteProvisionedUserRepository;
+    }
+
+    Optional<String> get(String manageProvisioningId, User user) {
+        return Optional.ofNullable(this.getAll(manageProvisioningId, Set.of(user)).get(user.getId()));
+    }
+
+    Map<Long, String> getAll(String manageProvisioningId, Collection<User> users) {
+        Map<Long, Optional<String>> provisioningIdentifiers = this.remoteIdentifiers
+                .computeIfAbsent(manageProvisioningId, id -> new HashMap<>());
+        Set<Long> missingUserIdentifiers = users.stream()
+                .map(User::getId)
+                .filter(Objects::nonNull)
+                .filter(userId -> !provisioningIdentifiers.containsKey(userId))
+                .collect(Collectors.toSet());
+        if (!missingUserIdentifiers.isEmpty()) {
+            Map<Long, String> found = this.remoteProvisionedUserRepository.findRemoteIdentifiers(manageProvisioningId, missingUserIdentifiers);
+            missingUserIdentifiers.forEach(userId -> provisioningIdentifiers.put(userId, Optional.ofNullable(found.get(userId))));
+        }
+        Map<Long, String> results = new HashMap<>();
+        users.stream()
+                .map(User::getId)
+                .filter(Objects::nonNull)
+                .forEach(userId -> provisioningIdentifiers.get(userId).ifPresent(remoteIdentifier -> results.put(userId, remoteIdentifier)));
+        return results;
+    }
+
+    void put(String manageProvisioningId, User user, String remoteIdentifier) {
+        if (user.getId() == null) {
+            return;
+        }
+        this.remoteIdentifiers.computeIfAbsent(manageProvisioningId, id -> new HashMap<>())
+                .put(user.getId(), Optional.ofNullable(remoteIdentifier));
+    }
+
+    void remove(String manageProvisioningId, User user) {
+        this.put(manageProvisioningId, user, null);
+    }
+}
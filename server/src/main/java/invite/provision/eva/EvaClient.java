@@ -1,10 +1,8 @@
 package invite.provision.eva;
 
-import invite.model.RemoteProvisionedUser;
 import invite.model.User;
 import invite.provision.Provisioning;
-import invite.repository.RemoteProvisionedUserRepository;
-import crypto.KeyStore;
+import invite.provision.ProvisioningSecrets;
 import lombok.SneakyThrows;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -18,48 +16,43 @@ import java.util.Optional;
 @SuppressWarnings("unchecked")
 public class EvaClient {
 
-    private final KeyStore keyStore;
-    private final RemoteProvisionedUserRepository remoteProvisionedUserRepository;
+    private final ProvisioningSecrets provisioningSecrets;
 
-    public EvaClient(KeyStore keyStore, RemoteProvisionedUserRepository remoteProvisionedUserRepository) {
-        this.keyStore = keyStore;
-        this.remoteProvisionedUserRepository = remoteProvisionedUserRepository;
+    public EvaClient(ProvisioningSecrets provisioningSecrets) {
+        this.provisioningSecrets = provisioningSecrets;
     }
 
     @SneakyThrows
     @SuppressWarnings("unchecked")
     public RequestEntity<String> newUserRequest(Provisioning provisioning, User user) {
-        return doEvaRequest(provisioning, user, "/api/v1/guest/create", RequestType.create);
+        return doEvaRequest(provisioning, user, "/api/v1/guest/create", RequestType.create, Optional.empty());
     }
 
     @SneakyThrows
     @SuppressWarnings("unchecked")
-    public RequestEntity updateUserRequest(Provisioning provisioning, User user) {
-        return doEvaRequest(provisioning, user, "/api/v1/guest/create", RequestType.update);
+    public RequestEntity updateUserRequest(Provisioning provisioning, User user, Optional<String> remoteIdentifier) {
+        return doEvaRequest(provisioning, user, "/api/v1/guest/create", RequestType.update, remoteIdentifier);
     }
 
     @SneakyThrows
     @SuppressWarnings("unchecked")
-    public RequestEntity deleteUserRequest(Provisioning provisioning, User user) {
-        return remoteProvisionedUserRepository.findByManageProvisioningIdAndUser(provisioning.getId(), user)
-                .map(remoteProvisionedUser -> {
-                    String path = "/api/v1/guest/disable/" + remoteProvisionedUser.getRemoteIdentifier();
-                    remoteProvisionedUserRepository.delete(remoteProvisionedUser);
-                    return doEvaRequest(
-                            provisioning,
-                            user,
-                            path,
-                            RequestType.delete);
-                })
-                .orElse(null);
+    public RequestEntity deleteUserRequest(Provisioning provisioning, String remoteIdentifier) {
+        return doEvaRequest(
+                provisioning,
+                null,
+                "/api/v1/guest/disable/" + remoteIdentifier,
+                RequestType.delete,
+                Optional.empty());
     }
 
-    private RequestEntity doEvaRequest(Provisioning provisioning, User user, String path, RequestType requestType) {
+    private RequestEntity doEvaRequest(Provisioning provisioning,
+                                       User user,
+                                       String path,
+                                       RequestType requestType,
+                                       Optional<String> remoteIdentifier) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        String encryptedEvaToken = provisioning.getEvaToken();
-        String evaToken = keyStore.isEncryptedSecret(encryptedEvaToken) ? keyStore.decodeAndDecrypt(encryptedEvaToken) : encryptedEvaToken;
-        headers.add("X-Api-Key", evaToken);
+        headers.add("X-Api-Key", provisioningSecrets.decrypt(provisioning.getEvaToken()));
 
         String url = provisioning.getEvaUrl() + path;
         if (requestType.equals(RequestType.delete)) {
@@ -67,10 +60,7 @@ public class EvaClient {
         }
         MultiValueMap<String, String> map = new GuestAccount(user, provisioning).getRequest();
         if (requestType.equals(RequestType.update)) {
-            Optional<RemoteProvisionedUser> optionalRemoteProvisionedUser = this.remoteProvisionedUserRepository.findByManageProvisioningIdAndUser(provisioning.getId(), user);
-            optionalRemoteProvisionedUser
-                    .ifPresent(remoteProvisionedUser ->
-                            map.add("id", remoteProvisionedUser.getRemoteIdentifier()));
+            remoteIdentifier.ifPresent(id -> map.add("id", id));
         }
         return new RequestEntity(map, headers, HttpMethod.POST, URI.create(url));
     }
@@ -1,42 +1,68 @@
 package invite.provision.graph;
 
+import invite.config.HashGenerator;
 import invite.exception.RemoteException;
 import invite.model.User;
 import invite.provision.Provisioning;
+import invite.provision.ProvisioningSecrets;
+import com.azure.core.credential.TokenCredential;
 import com.azure.identity.ClientSecretCredential;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.microsoft.graph.authentication.TokenCredentialAuthProvider;
 import com.microsoft.graph.core.ClientException;
 import com.microsoft.graph.http.BaseRequest;
 import com.microsoft.graph.requests.GraphServiceClient;
 import com.microsoft.graph.requests.InvitationCollectionRequest;
 import com.microsoft.graph.requests.UserRequest;
-import crypto.KeyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import okhttp3.Request;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
+import reactor.core.publisher.Mono;
+
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.time.Duration;
 
+/**
+ * The GraphServiceClient is cached per Manage provisioning, so the ClientSecretCredential can re-use its access token
+ * until it expires. A cached client is replaced when the clientId, tenant or secret of the provisioning changes.
+ */
+@Component
 public class GraphClient {
 
     private static final Log LOG = LogFactory.getLog(GraphClient.class);
 
     private final String serverUrl;
     private final String eduidIdpSchacHomeOrganization;
-    private final KeyStore keyStore;
+    private final ProvisioningSecrets provisioningSecrets;
     private final ObjectMapper objectMapper;
-
-    public GraphClient(String serverUrl, String eduidIdpSchacHomeOrganization, KeyStore keyStore, ObjectMapper objectMapper) {
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, CachedGraphServiceClient> graphServiceClients = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterAccess(Duration.ofDays(1))
+            .build();
+
+    public GraphClient(@Value("${config.server-url}") String serverUrl,
+                       @Value("${config.eduid-idp-schac-home-organization}") String eduidIdpSchacHomeOrganization,
+                       ProvisioningSecrets provisioningSecrets,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
         this.serverUrl = serverUrl;
         this.eduidIdpSchacHomeOrganization = eduidIdpSchacHomeOrganization;
-        this.keyStore = keyStore;
+        this.provisioningSecrets = provisioningSecrets;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
     }
 
     @SuppressWarnings("unchecked")
@@ -128,17 +154,39 @@ public class GraphClient {
 
     }
 
-    private GraphServiceClient<Request> getRequestGraphServiceClient(Provisioning provisioning) {
-        String encryptedGraphSecret = provisioning.getGraphSecret();
-        String graphSecret = keyStore.isEncryptedSecret(encryptedGraphSecret) ? keyStore.decodeAndDecrypt(encryptedGraphSecret) : encryptedGraphSecret;
+    GraphServiceClient<Request> getRequestGraphServiceClient(Provisioning provisioning) {
+        //The secret is hashed in its encrypted form, so it is only decrypted when a new client is needed
+        String credentialKey = HashGenerator.hashToken(String.join("|",
+                String.valueOf(provisioning.getGraphClientId()),
+                String.valueOf(provisioning.getGraphTenant()),
+                String.valueOf(provisioning.getGraphSecret())));
+        return this.graphServiceClients.asMap().compute(provisioning.getId(), (id, cached) ->
+                cached != null && cached.credentialKey().equals(credentialKey) ? cached :
+                        new CachedGraphServiceClient(credentialKey, this.newGraphServiceClient(provisioning))
+        ).graphServiceClient();
+    }
+
+    private GraphServiceClient<Request> newGraphServiceClient(Provisioning provisioning) {
+        LOG.info(String.format("Creating Graph client for provisioning %s", provisioning.getEntityId()));
+        String graphSecret = provisioningSecrets.decrypt(provisioning.getGraphSecret());
         ClientSecretCredential credential = new ClientSecretCredentialBuilder()
                 .clientId(provisioning.getGraphClientId())
                 .tenantId(provisioning.getGraphTenant())
                 .clientSecret(graphSecret).build();
+        Timer timer = Timer.builder("graph_token_requests")
+                .description("Duration of access token requests for the Graph API")
+                .tag("tenant", String.valueOf(provisioning.getGraphTenant()))
+                .register(meterRegistry);
+        //Token requests that are served from the token cache of the credential are timed as well
+        TokenCredential timedCredential = tokenRequestContext -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return credential.getToken(tokenRequestContext).doFinally(signal -> sample.stop(timer));
+        });
+        TokenCredentialAuthProvider authProvider = new TokenCredentialAuthProvider(timedCredential);
+        return GraphServiceClient.builder().authenticationProvider(authProvider).buildClient();
+    }
 
-        TokenCredentialAuthProvider authProvider = new TokenCredentialAuthProvider(credential);
-        GraphServiceClient<Request> graphClient = GraphServiceClient.builder().authenticationProvider(authProvider).buildClient();
-        return graphClient;
+    private record CachedGraphServiceClient(String credentialKey, GraphServiceClient<Request> graphServiceClient) {
     }
 
     private static String replaceGraphUrl(String graphUrl, BaseRequest buildRequest) {
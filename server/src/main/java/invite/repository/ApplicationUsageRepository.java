@@ -3,9 +3,11 @@ package invite.repository;
 import invite.manage.EntityType;
 import invite.model.ApplicationUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +18,19 @@ public interface ApplicationUsageRepository extends JpaRepository<ApplicationUsa
 
     List<ApplicationUsage> findByLandingPageIsNull();
 
+    @Query(value = """
+            SELECT au.role_id FROM application_usages au
+            INNER JOIN applications a ON a.id = au.application_id
+            WHERE a.manage_id = ?1
+            """,
+            nativeQuery = true)
+    List<Long> findRoleIdsByManageId(String manageId);
+
+    @Query(value = """
+            SELECT a.manage_id, au.role_id FROM application_usages au
+            INNER JOIN applications a ON a.id = au.application_id
+            """,
+            nativeQuery = true)
+    List<Map<String, Object>> findAllManageIdRoleIds();
+
 }
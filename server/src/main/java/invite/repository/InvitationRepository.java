@@ -4,8 +4,8 @@ import invite.model.Invitation;
 import invite.model.Role;
 import invite.model.Status;
 import invite.model.User;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -41,113 +41,127 @@ public interface InvitationRepository extends JpaRepository<Invitation, Long>, Q
 
     long countByStatus(Status status);
 
+    //The keyset queries are rewritten by Keyset
     @Query(value = """
             SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
-            WHERE i.status = ?1
+            WHERE i.status = ?1 AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = "SELECT count(*) FROM invitations WHERE status = ?1",
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusPage(String status, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusKeyset(String status, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT i.id, i.email, i.remote_api_user, i.intended_authority,i.created_at, i.expiry_date,
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
             WHERE i.status = ?1 AND
             (MATCH(i.email) AGAINST(?2 IN BOOLEAN MODE)
-             OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?2  IN BOOLEAN MODE))
+             OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?2 IN BOOLEAN MODE))
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                     SELECT count(*) FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
-                     WHERE status = ?1 AND
-                     (MATCH(i.email) AGAINST(?2 IN BOOLEAN MODE)
-                     OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?2 IN BOOLEAN MODE))
-                    """,
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusPageWithKeyword(String status, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusKeysetWithKeyword(String status, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT i.id, i.email, i.remote_api_user, i.intended_authority,i.created_at, i.expiry_date,
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
             WHERE i.status = ?1 AND
             (UPPER(i.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2
-             or UPPER(u.email) LIKE ?2)
-            """,
-            countQuery = """
-                     SELECT count(*) FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
-                     WHERE status = ?1 AND
-                     (UPPER(i.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2
                      or UPPER(u.email) LIKE ?2)
-                    """,
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
+            """,
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusPageWithStrictSearch(String status, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusKeysetWithStrictSearch(String status, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT i.id, i.email, i.remote_api_user, i.intended_authority,i.created_at, i.expiry_date,
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-            INNER JOIN roles r ON r.id = ir.role_id
-            WHERE i.status = ?1 AND r.id = ?2
+            WHERE i.status = ?1 AND ir.role_id = ?2 AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                    SELECT count(*) FROM invitations i
-                    INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-                    INNER JOIN roles r ON r.id = ir.role_id
-                    WHERE status = ?1 and role_id = ?2
-                    """,
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusAndRolePage(String status, Long roleId, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusAndRoleKeyset(String status, Long roleId, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT i.id, i.email, i.remote_api_user, i.intended_authority,i.created_at, i.expiry_date,
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-            INNER JOIN roles r ON r.id = ir.role_id
-            WHERE i.status = ?1 AND r.id = ?2 AND
+            WHERE i.status = ?1 AND ir.role_id = ?2 AND
             (MATCH(i.email) AGAINST(?3 IN BOOLEAN MODE)
              OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?3 IN BOOLEAN MODE))
+            AND (?4 IS NOT NULL OR ?5 IS NULL)
             """,
-            countQuery = """
-                    SELECT count(*) FROM invitations i
-                    INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-                    INNER JOIN roles r ON r.id = ir.role_id
-                    LEFT JOIN users u ON u.id = i.inviter_id
-                    WHERE status = ?1 and role_id = ?2 AND
-                    (MATCH(i.email) AGAINST(?3 IN BOOLEAN MODE)
-                     OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?3 IN BOOLEAN MODE))
-                    """,
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusAndRoleWithKeywordPage(String status, Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusAndRoleKeysetWithKeyword(String status, Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT i.id, i.email, i.remote_api_user, i.intended_authority,i.created_at, i.expiry_date,
+            SELECT i.id, i.email, i.remote_api_user, i.intended_authority, i.created_at, i.expiry_date,
             u.id as user_id, u.name, u.email as inviter_email
             FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-            INNER JOIN roles r ON r.id = ir.role_id
-            WHERE i.status = ?1 AND r.id = ?2 AND
+            WHERE i.status = ?1 AND ir.role_id = ?2 AND
             (UPPER(i.email) LIKE ?3 or UPPER(u.schac_home_organization) LIKE ?3
                      or UPPER(u.email) LIKE ?3)
+            AND (?4 IS NOT NULL OR ?5 IS NULL)
             """,
-            countQuery = """
-                    SELECT count(*) FROM invitations i
-                    INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
-                    INNER JOIN roles r ON r.id = ir.role_id
-                    LEFT JOIN users u ON u.id = i.inviter_id
-                    WHERE status = ?1 and role_id = ?2 AND
-                    (UPPER(i.email) LIKE ?3 or UPPER(u.schac_home_organization) LIKE ?3
-                     or UPPER(u.email) LIKE ?3)
-                    """,
             queryRewriter = InvitationRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByStatusAndRoleWithStrictSearch(String status, Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByStatusAndRoleKeysetWithStrictSearch(String status, Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
+
+    //The counts of the searches are cached by SearchCounts
+    @Query(value = """
+            SELECT count(*) FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
+            WHERE status = ?1 AND
+            (MATCH(i.email) AGAINST(?2 IN BOOLEAN MODE)
+            OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?2 IN BOOLEAN MODE))
+            """,
+            nativeQuery = true)
+    long countSearchByStatusWithKeyword(String status, String keyWord);
+
+    @Query(value = """
+            SELECT count(*) FROM invitations i LEFT JOIN users u ON u.id = i.inviter_id
+            WHERE status = ?1 AND
+            (UPPER(i.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2
+            or UPPER(u.email) LIKE ?2)
+            """,
+            nativeQuery = true)
+    long countSearchByStatusWithStrictSearch(String status, String keyWord);
+
+    @Query(value = """
+            SELECT count(*) FROM invitations i
+            INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
+            WHERE status = ?1 and role_id = ?2
+            """,
+            nativeQuery = true)
+    long countSearchByStatusAndRole(String status, Long roleId);
+
+    @Query(value = """
+            SELECT count(*) FROM invitations i
+            INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
+            LEFT JOIN users u ON u.id = i.inviter_id
+            WHERE status = ?1 and role_id = ?2 AND
+            (MATCH(i.email) AGAINST(?3 IN BOOLEAN MODE)
+             OR MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) against (?3 IN BOOLEAN MODE))
+            """,
+            nativeQuery = true)
+    long countSearchByStatusAndRoleWithKeyword(String status, Long roleId, String keyWord);
+
+    @Query(value = """
+            SELECT count(*) FROM invitations i
+            INNER JOIN invitation_roles ir ON ir.invitation_id = i.id
+            LEFT JOIN users u ON u.id = i.inviter_id
+            WHERE status = ?1 and role_id = ?2 AND
+            (UPPER(i.email) LIKE ?3 or UPPER(u.schac_home_organization) LIKE ?3
+             or UPPER(u.email) LIKE ?3)
+            """,
+            nativeQuery = true)
+    long countSearchByStatusAndRoleWithStrictSearch(String status, Long roleId, String keyWord);
 
     @Query(value = """
                 SELECT ir.invitation_id as id, r.name, r.id as role_id, a.manage_id
@@ -164,9 +178,9 @@ public interface InvitationRepository extends JpaRepository<Invitation, Long>, Q
     default String rewrite(String query, Sort sort) {
         Sort.Order nameSort = sort.getOrderFor("name");
         if (nameSort != null) {
-            return query.replace("order by i.name", "order by u.name");
+            return Keyset.rewrite(query.replace("order by i.name", "order by u.name"));
         }
-        return query;
+        return Keyset.rewrite(query);
     }
 
 
@@ -0,0 +1,83 @@
+package invite.repository;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the keyset (seek) pagination queries of the repositories. A keyset query contains the marker
+ * <code>(?n IS NOT NULL OR ?m IS NULL)</code> where ?n is the sort value and ?m the id of the last row of the previous
+ * slice, both null for the first slice. The query is sorted on the sort property and the id, and the marker is replaced
+ * with a predicate which seeks past the last row using the same expressions as the order by. Rows are therefore never
+ * skipped with an offset and every slice costs the same as the first one.
+ * <p>
+ * The sort expression is selected as <code>keyset_sort</code>, to be able to create the cursor of the next slice.
+ * Sort expressions which are select aliases of aggregations can not be used in the where clause and are sought with a
+ * having clause instead.
+ */
+public final class Keyset {
+
+    public static final String SORT_COLUMN = "keyset_sort";
+
+    private static final Pattern MARKER = Pattern.compile("\\(\\?(\\d+) IS NOT NULL OR \\?(\\d+) IS NULL\\)");
+    private static final Pattern ORDER_BY = Pattern.compile(
+            "\\border by\\s+(\\S+)\\s+(asc|desc)\\s*,\\s*(\\S+)\\s+(asc|desc)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM = Pattern.compile("\\bfrom\\b", Pattern.CASE_INSENSITIVE);
+
+    private Keyset() {
+    }
+
+    public static String rewrite(String query) {
+        Matcher marker = MARKER.matcher(query);
+        Matcher orderBy = ORDER_BY.matcher(query);
+        if (!marker.find() || !orderBy.find()) {
+            return query;
+        }
+        String value = "?" + marker.group(1);
+        String id = "?" + marker.group(2);
+        String sortExpression = orderBy.group(1);
+        boolean ascending = orderBy.group(2).equalsIgnoreCase("asc");
+        String idExpression = orderBy.group(3);
+        String seek = seek(sortExpression, idExpression, value, id, ascending);
+        //Select aliases are not known in the where clause
+        boolean alias = !sortExpression.contains(".");
+        if (alias) {
+            //The parameters of the marker are bound in the having clause
+            return query.substring(0, marker.start()) + "1 = 1" + query.substring(marker.end(), orderBy.start()) +
+                    "HAVING " + seek + " " + query.substring(orderBy.start());
+        }
+        String rewritten = query.substring(0, marker.start()) + seek + query.substring(marker.end());
+        return selectSortColumn(rewritten, sortExpression);
+    }
+
+    /*
+     * MariaDB sorts NULL values first in ascending order and last in descending order.
+     */
+    private static String seek(String column, String id, String value, String lastId, boolean ascending) {
+        String comparison = ascending ? ">" : "<";
+        String seek = String.format("(%4$s IS NULL OR %1$s %5$s %3$s OR (%1$s = %3$s AND %2$s %5$s %4$s)",
+                column, id, value, lastId, comparison);
+        seek += ascending ?
+                String.format(" OR (%3$s IS NULL AND (%1$s IS NOT NULL OR %2$s > %4$s)))", column, id, value, lastId) :
+                String.format(" OR (%3$s IS NOT NULL AND %1$s IS NULL) OR (%3$s IS NULL AND %1$s IS NULL AND %2$s < %4$s))",
+                        column, id, value, lastId);
+        return seek;
+    }
+
+    private static String selectSortColumn(String query, String sortExpression) {
+        int depth = 0;
+        Matcher from = FROM.matcher(query);
+        int position = 0;
+        while (from.find()) {
+            for (int i = position; i < from.start(); i++) {
+                char c = query.charAt(i);
+                depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+            }
+            position = from.start();
+            if (depth == 0) {
+                return String.format("%s, %s AS %s %s", query.substring(0, from.start()).stripTrailing(),
+                        sortExpression, SORT_COLUMN, query.substring(from.start()));
+            }
+        }
+        throw new IllegalArgumentException("No from clause in keyset query: " + query);
+    }
+}
@@ -0,0 +1,64 @@
+package invite.repository;
+
+import invite.model.MailMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public interface MailMessageRepository extends JpaRepository<MailMessage, Long> {
+
+    @Query(value = """
+            SELECT id FROM mail_outbox WHERE status = 'PENDING' AND next_attempt_at <= ?1
+            ORDER BY id LIMIT ?2
+            """,
+            nativeQuery = true)
+    List<Long> findDueIds(Instant now, int limit);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE mail_outbox SET attempts = attempts + 1, next_attempt_at = ?2 WHERE id IN (?1)",
+            nativeQuery = true)
+    int claim(Collection<Long> ids, Instant nextAttemptAt);
+
+    //Only the id and the MIME message, which are needed to send the mails
+    @Query(value = "SELECT id, mime_message FROM mail_outbox WHERE id IN (?1) ORDER BY id", nativeQuery = true)
+    List<Map<String, Object>> findMimeMessagesByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT attempts, recipients FROM mail_outbox WHERE id = ?1", nativeQuery = true)
+    List<Map<String, Object>> findAttemptsById(Long id);
+
+    long countByStatus(MailMessage.MessageStatus status);
+
+    //The MIME message of a sent mail is no longer needed, the row is kept for the counts until the retention has passed
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE mail_outbox SET status = 'SENT', sent_at = ?2, last_error = NULL, mime_message = NULL
+            WHERE id = ?1
+            """,
+            nativeQuery = true)
+    int markSent(Long id, Instant sentAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE mail_outbox SET next_attempt_at = ?2, last_error = ?3 WHERE id = ?1", nativeQuery = true)
+    int reschedule(Long id, Instant nextAttemptAt, String lastError);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE mail_outbox SET status = 'FAILED', last_error = ?2 WHERE id = ?1", nativeQuery = true)
+    int markFailed(Long id, String lastError);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM mail_outbox WHERE status = 'SENT' AND sent_at < ?1 LIMIT ?2", nativeQuery = true)
+    int deleteSentBefore(Instant sentAt, int limit);
+}
@@ -11,6 +11,7 @@ import org.springframework.data.jpa.repository.QueryRewriter;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,4 +22,20 @@ public interface OrganisationRepository extends JpaRepository<Organisation, Long
     Optional<Organisation> findByCrmOrganisationId(String crmOrganisationId);
 
     List<Organisation> findByCrmOrganisationIdIsNotNull();
+
+    @Query(value = """
+            SELECT o.* FROM organisations o
+            INNER JOIN roles r ON r.organisation_id = o.id
+            INNER JOIN user_roles ur ON ur.role_id = r.id
+            WHERE ur.user_id = ?1 LIMIT 1
+            """,
+            nativeQuery = true)
+    Optional<Organisation> findOrganisationOfUser(Long userId);
+
+    //Set-based findOrganisationOfUser, one row with the user id and the organisation per organisation of the users
+    @Query("""
+            SELECT DISTINCT ur.user.id, r.organisation FROM user_roles ur JOIN ur.role r
+            WHERE ur.user.id IN ?1 AND r.organisation IS NOT NULL
+            """)
+    List<Object[]> findOrganisationsOfUsers(Collection<Long> userIds);
 }
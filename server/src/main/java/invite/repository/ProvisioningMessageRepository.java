@@ -0,0 +1,42 @@
+package invite.repository;
+
+import invite.model.ProvisioningMessage;
+import invite.provision.scim.OperationType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ProvisioningMessageRepository extends JpaRepository<ProvisioningMessage, Long> {
+
+    /*
+     * Head-of-line: a due message is only claimable when no older pending message for the same provisioning is backing
+     * off or claimed, which keeps the messages for one provisioning in order
+     */
+    @Query(value = """
+            SELECT * FROM provisioning_outbox po
+            WHERE po.status = 'PENDING' AND po.next_attempt_at <= :now
+            AND NOT EXISTS (SELECT 1 FROM provisioning_outbox older
+                            WHERE older.manage_provisioning_id = po.manage_provisioning_id
+                            AND older.status = 'PENDING' AND older.id < po.id AND older.next_attempt_at > :now)
+            ORDER BY po.id LIMIT :limit
+            """, nativeQuery = true)
+    List<ProvisioningMessage> findDueInOrder(@Param("now") Instant now, @Param("limit") int limit);
+
+    boolean existsByManageProvisioningIdAndStatusAndIdLessThan(String manageProvisioningId,
+                                                              ProvisioningMessage.MessageStatus status,
+                                                              Long id);
+
+    List<ProvisioningMessage> findByManageProvisioningIdAndRoleIdAndOperationAndOperationTypeAndStatusOrderByIdAsc(
+            String manageProvisioningId,
+            Long roleId,
+            ProvisioningMessage.Operation operation,
+            OperationType operationType,
+            ProvisioningMessage.MessageStatus status);
+
+    long countByStatus(ProvisioningMessage.MessageStatus status);
+}
@@ -2,6 +2,7 @@ package invite.repository;
 
 import invite.model.RemoteProvisionedGroup;
 import invite.model.Role;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,5 +13,8 @@ public interface RemoteProvisionedGroupRepository extends JpaRepository<RemotePr
 
     Optional<RemoteProvisionedGroup> findByManageProvisioningIdAndRole(String manageId, Role role);
 
+    @EntityGraph(attributePaths = "members")
+    Optional<RemoteProvisionedGroup> findWithMembersByManageProvisioningIdAndRole(String manageId, Role role);
+
 }
 
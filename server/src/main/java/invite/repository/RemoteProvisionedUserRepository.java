@@ -3,8 +3,15 @@ package invite.repository;
 import invite.model.RemoteProvisionedUser;
 import invite.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +20,35 @@ public interface RemoteProvisionedUserRepository extends JpaRepository<RemotePro
     Optional<RemoteProvisionedUser> findByManageProvisioningIdAndUser(String manageId, User user);
 
     Optional<RemoteProvisionedUser> findByRemoteScimIdentifier(String remoteScimIdentifier);
+
+    @Query(value = """
+            SELECT rpu.remote_scim_identifier FROM remote_provisioned_users rpu
+            INNER JOIN user_roles ur ON ur.user_id = rpu.user_id
+            WHERE rpu.manage_provisioning_id = ?1 AND ur.role_id = ?2
+            AND (ur.authority = 'GUEST' OR ur.guest_role_included = 1)
+            """, nativeQuery = true)
+    List<String> findGuestRemoteIdentifiersByRoleId(String manageProvisioningId, Long roleId);
+
+    //Uses the remote_provisioned_users_unique index
+    @Query(value = """
+            SELECT rpu.user_id AS user_id, rpu.remote_scim_identifier AS remote_identifier FROM remote_provisioned_users rpu
+            WHERE rpu.manage_provisioning_id = ?1 AND rpu.user_id IN ?2
+            """, nativeQuery = true)
+    List<Map<String, Object>> findRemoteIdentifiersByUserIdIn(String manageProvisioningId, Collection<Long> userIdentifiers);
+
+    default Map<Long, String> findRemoteIdentifiers(String manageProvisioningId, Collection<Long> userIdentifiers) {
+        Map<Long, String> results = new HashMap<>();
+        List<Long> identifiers = List.copyOf(userIdentifiers);
+        //Prevent huge IN clauses
+        for (int i = 0; i < identifiers.size(); i += 1000) {
+            this.findRemoteIdentifiersByUserIdIn(manageProvisioningId, identifiers.subList(i, Math.min(i + 1000, identifiers.size())))
+                    .forEach(row -> results.put(((Number) row.get("user_id")).longValue(), (String) row.get("remote_identifier")));
+        }
+        return results;
+    }
+
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query(value = "DELETE FROM remote_provisioned_users WHERE manage_provisioning_id = ?1 AND user_id = ?2", nativeQuery = true)
+    void deleteByManageProvisioningIdAndUserId(String manageProvisioningId, Long userId);
 }
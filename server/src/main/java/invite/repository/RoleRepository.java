@@ -4,6 +4,7 @@ import invite.model.Organisation;
 import invite.model.Role;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -26,14 +27,12 @@ public interface RoleRepository extends JpaRepository<Role, Long>, QueryRewriter
     void deleteRoleById(Long id);
 
 
-    @Query(value = "SELECT *, (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=r.id) as userRoleCount " +
-            "FROM roles r WHERE MATCH (name, description) against (?1  IN BOOLEAN MODE) AND id > 0 LIMIT ?2",
+    @Query(value = "SELECT * FROM roles r WHERE MATCH (name, description) against (?1  IN BOOLEAN MODE) AND id > 0 LIMIT ?2",
             nativeQuery = true)
     List<Role> search(String keyWord, int limit);
 
     @Query(value = """
-            SELECT *,
-                (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=r.id) as userRoleCount
+            SELECT *
             FROM roles r
             """,
             countQuery = """
@@ -43,35 +42,49 @@ public interface RoleRepository extends JpaRepository<Role, Long>, QueryRewriter
             nativeQuery = true)
     Page<Role> searchByPage(Pageable pageable);
 
+    //The keyset queries are rewritten by Keyset
     @Query(value = """
-            SELECT *,
-                (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=r.id) as userRoleCount
+            SELECT *
+            FROM roles r WHERE (?1 IS NOT NULL OR ?2 IS NULL)
+            """,
+            queryRewriter = RoleRepository.class,
+            nativeQuery = true)
+    Slice<Role> searchByKeyset(String keysetValue, Long keysetId, Pageable pageable);
+
+    @Query(value = """
+            SELECT *
             FROM roles r WHERE MATCH (name, description) against (?1 IN BOOLEAN MODE)
+            AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(r.id) FROM roles r WHERE MATCH (name, description) against (?1 IN BOOLEAN MODE)
-                    """,
             queryRewriter = RoleRepository.class,
             nativeQuery = true)
-    Page<Role> searchByPageWithKeyword(String keyword, Pageable pageable);
+    Slice<Role> searchByKeysetWithKeyword(String keyword, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT *,
-                (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=r.id) as userRoleCount
-            FROM roles r WHERE 
-            UPPER(r.name) LIKE ?1 or UPPER(r.description) LIKE ?1                               
+            SELECT *
+            FROM roles r WHERE
+            (UPPER(r.name) LIKE ?1 or UPPER(r.description) LIKE ?1)
+            AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(r.id) FROM roles r WHERE 
-                    UPPER(r.name) LIKE ?1 or UPPER(r.description) LIKE ?1                                                                            
-                    """,
             queryRewriter = RoleRepository.class,
             nativeQuery = true)
-    Page<Role> searchByPageWithStrictSearch(String keyword, Pageable pageable);
+    Slice<Role> searchByKeysetWithStrictSearch(String keyword, String keysetValue, Long keysetId, Pageable pageable);
+
+    //The counts of the searches are cached by SearchCounts
+    @Query(value = """
+            SELECT COUNT(r.id) FROM roles r WHERE MATCH (name, description) against (?1 IN BOOLEAN MODE)
+            """,
+            nativeQuery = true)
+    long countSearchWithKeyword(String keyword);
+
+    @Query(value = """
+            SELECT COUNT(r.id) FROM roles r WHERE UPPER(r.name) LIKE ?1 or UPPER(r.description) LIKE ?1
+            """,
+            nativeQuery = true)
+    long countSearchWithStrictSearch(String keyword);
 
     @Query(value = """
-            SELECT *,
-                (SELECT COUNT(*) FROM user_roles ur WHERE ur.role_id=r.id) AS userRoleCount
+            SELECT *
             FROM roles r WHERE r.organization_guid = ?1
             """,
             countQuery = """
@@ -124,10 +137,10 @@ public interface RoleRepository extends JpaRepository<Role, Long>, QueryRewriter
     default String rewrite(String query, Sort sort) {
         Sort.Order userRoleCount = sort.getOrderFor("userRoleCount");
         if (userRoleCount != null) {
-            //Spring cannot sort on aggregated columns
-            return query.replace(" order by r.userRoleCount", " order by userRoleCount");
+            //Native queries are sorted on columns, and the user role count is an indexed counter column
+            return Keyset.rewrite(query.replace(" order by r.userRoleCount", " order by r.user_role_count"));
         }
-        return query;
+        return Keyset.rewrite(query);
     }
 
 }
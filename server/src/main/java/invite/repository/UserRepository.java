@@ -4,13 +4,17 @@ import invite.model.Organisation;
 import invite.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryRewriter;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -42,43 +46,55 @@ public interface UserRepository extends JpaRepository<User, Long>, QueryRewriter
 
     List<User> findByLastActivityBefore(Instant instant);
 
+    //Never moves the last activity back, as concurrent flushes from different nodes may overlap
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE users SET last_activity = ?1 WHERE id IN ?2 AND (last_activity IS NULL OR last_activity < ?1)",
+            nativeQuery = true)
+    int updateLastActivity(Instant lastActivity, Collection<Long> userIds);
+
+    //The keyset queries are rewritten by Keyset
     @Query(value = """
              SELECT u.id, u.name, u.email, u.schac_home_organization, u.super_user, u.institution_admin,
                 u.created_at as createdAt, u.last_activity as lastActivity,
-                (SELECT GROUP_CONCAT(DISTINCT ur.authority) FROM user_roles ur WHERE ur.user_id = u.id) AS authority,
-                (SELECT GROUP_CONCAT(DISTINCT au.application_id) FROM user_applications au WHERE au.user_id = u.id) AS userApplications
-                FROM users u
+                u.authorities AS authority, u.application_ids AS userApplications
+                FROM users u WHERE (?1 IS NOT NULL OR ?2 IS NULL)
             """,
-            countQuery = "SELECT count(*) FROM users",
             queryRewriter = UserRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByPage(Pageable pageable);
+    Slice<Map<String, Object>> searchByKeyset(String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
              SELECT u.id, u.name, u.email, u.schac_home_organization, u.super_user, u.institution_admin,
                 u.created_at as createdAt, u.last_activity as lastActivity,
-            (SELECT GROUP_CONCAT(DISTINCT ur.authority) FROM user_roles ur WHERE ur.user_id = u.id) AS authority,
-            (SELECT GROUP_CONCAT(DISTINCT au.application_id) FROM user_applications au WHERE au.user_id = u.id) AS userApplications
+                u.authorities AS authority, u.application_ids AS userApplications
               FROM users u WHERE MATCH (given_name, family_name, email, schac_home_organization) against (?1  IN BOOLEAN MODE)
+              AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = "SELECT count(*) FROM users WHERE MATCH (given_name, family_name, email, schac_home_organization) against (?1  IN BOOLEAN MODE)",
             queryRewriter = UserRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByPageWithKeyword(String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByKeysetWithKeyword(String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
              SELECT u.id, u.name, u.email, u.schac_home_organization, u.super_user, u.institution_admin,
                 u.created_at as createdAt, u.last_activity as lastActivity,
-            (SELECT GROUP_CONCAT(DISTINCT ur.authority) FROM user_roles ur WHERE ur.user_id = u.id) AS authority,
-            (SELECT GROUP_CONCAT(DISTINCT au.application_id) FROM user_applications au WHERE au.user_id = u.id) AS userApplications
-              FROM users u WHERE 
-                       UPPER(u.email) LIKE ?1 or UPPER(u.schac_home_organization) LIKE ?1                      
+                u.authorities AS authority, u.application_ids AS userApplications
+              FROM users u WHERE
+                       (UPPER(u.email) LIKE ?1 or UPPER(u.schac_home_organization) LIKE ?1)
+                       AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = "SELECT count(*) FROM users u WHERE " +
-                    "UPPER(u.email) LIKE ?1 or UPPER(u.schac_home_organization) LIKE ?1",
             queryRewriter = UserRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchByPageWithStrictMode(String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchByKeysetWithStrictMode(String keyWord, String keysetValue, Long keysetId, Pageable pageable);
+
+    //The counts of the searches are cached by SearchCounts
+    @Query(value = "SELECT count(*) FROM users WHERE MATCH (given_name, family_name, email, schac_home_organization) against (?1  IN BOOLEAN MODE)",
+            nativeQuery = true)
+    long countSearchWithKeyword(String keyWord);
+
+    @Query(value = "SELECT count(*) FROM users u WHERE UPPER(u.email) LIKE ?1 or UPPER(u.schac_home_organization) LIKE ?1",
+            nativeQuery = true)
+    long countSearchWithStrictMode(String keyWord);
 
     @Query(value = """
             SELECT distinct(u.id), u.email, u.name, u.schac_home_organization, u.created_at, u.last_activity
@@ -180,8 +196,8 @@ public interface UserRepository extends JpaRepository<User, Long>, QueryRewriter
     default String rewrite(String query, Sort sort) {
         Sort.Order authoritySort = sort.getOrderFor("authority");
         if (authoritySort != null) {
-            //Spring cannot sort on aggregated columns
-            return query.replace("order by u.authority", "order by authority");
+            //The authorities of the user are sorted on the highest authority, which is indexed
+            return Keyset.rewrite(query.replace("order by u.authority", "order by u.highest_authority"));
         }
         Sort.Order endDateSort = sort.getOrderFor("endDate");
         if (endDateSort != null) {
@@ -189,7 +205,7 @@ public interface UserRepository extends JpaRepository<User, Long>, QueryRewriter
             query = query.replace("distinct(u.id)", "u.id");
             return query.replace("order by u.endDate", "order by ur.end_date");
         }
-        return query;
+        return Keyset.rewrite(query);
     }
 
 }
@@ -4,8 +4,8 @@ import invite.model.Authority;
 import invite.model.Organisation;
 import invite.model.Role;
 import invite.model.UserRole;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -16,6 +16,7 @@ import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +39,42 @@ public interface UserRoleRepository extends JpaRepository<UserRole, Long>, Query
 
     long countByAuthority(Authority authority);
 
+    //One row per guest membership, or one row with a null role_id for a user without guest memberships
+    @Query(value = """
+            SELECT u.id AS user_id, r.id AS role_id, r.name, r.urn, r.teams_origin, r.crm_role_id, r.crm_role_name,
+                   r.identifier, r.short_name
+            FROM users u
+            LEFT JOIN user_roles ur ON ur.user_id = u.id AND (ur.authority = 'GUEST' OR ur.guest_role_included = 1)
+            LEFT JOIN roles r ON r.id = ur.role_id
+            WHERE u.sub = ?1
+            """,
+            nativeQuery = true)
+    List<Map<String, Object>> findGuestMembershipsBySub(String sub);
+
+    //Same projection as findGuestMembershipsBySub for multiple users, with the sub to group the rows by
+    @Query(value = """
+            SELECT u.sub, u.id AS user_id, r.id AS role_id, r.name, r.urn, r.teams_origin, r.crm_role_id, r.crm_role_name,
+                   r.identifier, r.short_name
+            FROM users u
+            LEFT JOIN user_roles ur ON ur.user_id = u.id AND (ur.authority = 'GUEST' OR ur.guest_role_included = 1)
+            LEFT JOIN roles r ON r.id = ur.role_id
+            WHERE u.sub IN (?1)
+            """,
+            nativeQuery = true)
+    List<Map<String, Object>> findGuestMembershipsBySubIn(Collection<String> subs);
+
+    //The users with a user role for a role of the organisation, which are deleted by the database with the organisation
+    @Query(value = """
+            SELECT DISTINCT ur.user_id FROM user_roles ur INNER JOIN roles r ON r.id = ur.role_id
+            WHERE r.organisation_id = ?1
+            """,
+            nativeQuery = true)
+    List<Long> findUserIdsByOrganisationId(Long organisationId);
+
+    //The users with a user role for the role, which are deleted by the database with the role
+    @Query(value = "SELECT DISTINCT ur.user_id FROM user_roles ur WHERE ur.role_id = ?1", nativeQuery = true)
+    List<Long> findUserIdsByRoleId(Long roleId);
+
     @Modifying
     @Query(value = "DELETE FROM user_roles WHERE id = ?1", nativeQuery = true)
     @Transactional(isolation = Isolation.SERIALIZABLE)
@@ -49,119 +86,148 @@ public interface UserRoleRepository extends JpaRepository<UserRole, Long>, Query
     void updateExpiryNotifications(Integer expiryNotifications, Long id);
 
 
+    //The keyset queries are rewritten by Keyset
     @Query(value = """
-            SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id, 
-                   u.name, u.email, u.schac_home_organization, r.id as role_id
-            FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                        INNER JOIN roles r on r.id = ur.role_id
+            SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
+                               u.name, u.email, u.schac_home_organization, r.id as role_id
+            FROM user_roles ur
+                    INNER JOIN roles r on r.id = ur.role_id
+                    INNER JOIN users u on u.id = ur.user_id
             WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
+            AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchGuestsByPage(Long roleId, Pageable pageable);
+    Slice<Map<String, Object>> searchGuestsByKeyset(Long roleId, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
-            SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,u.name, 
-                               u.email, u.schac_home_organization, r.id as role_id
-            FROM user_roles ur 
-                    INNER JOIN users u on u.id = ur.user_id
+            SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
+                               u.name, u.email, u.schac_home_organization, r.id as role_id
+            FROM user_roles ur
                     INNER JOIN roles r on r.id = ur.role_id
+                    INNER JOIN users u on u.id = ur.user_id
             WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
-                      AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+            AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1  AND (ur.authority = 'GUEST' OR ur.guest_role_included )
-                    AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchGuestsByPageWithKeyword(Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchGuestsByKeysetWithKeyword(Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
             SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
                                u.name, u.email, u.schac_home_organization, r.id as role_id
             FROM user_roles ur
-                        INNER JOIN roles r on r.id = ur.role_id
-                        INNER JOIN users u on u.id = ur.user_id WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+                    INNER JOIN roles r on r.id = ur.role_id
+                    INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
+            AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchNonGuestsByPage(Long roleId, Pageable pageable);
+    Slice<Map<String, Object>> searchGuestsByKeysetWithStrictSearch(Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
             SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
                                u.name, u.email, u.schac_home_organization, r.id as role_id
             FROM user_roles ur
                     INNER JOIN roles r on r.id = ur.role_id
-                    INNER JOIN users u on u.id = ur.user_id WHERE ur.role_id = ?1
-            AND ur.authority <> 'GUEST' AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+                    INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            AND (?2 IS NOT NULL OR ?3 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
-                    AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchNonGuestsByPageWithKeyword(Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchNonGuestsByKeyset(Long roleId, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
             SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
                                u.name, u.email, u.schac_home_organization, r.id as role_id
             FROM user_roles ur
                     INNER JOIN roles r on r.id = ur.role_id
-                    INNER JOIN users u on u.id = ur.user_id WHERE ur.role_id = ?1
-            AND ur.authority <> 'GUEST' AND 
-              (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+                    INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST' 
-                    AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchNonGuestsByPageWithStrictSearch(Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchNonGuestsByKeysetWithKeyword(Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
 
     @Query(value = """
             SELECT ur.id, ur.authority, ur.end_date as endDate, ur.created_at as createdAt, u.id as user_id,
                                u.name, u.email, u.schac_home_organization, r.id as role_id
             FROM user_roles ur
                     INNER JOIN roles r on r.id = ur.role_id
-                    INNER JOIN users u on u.id = ur.user_id WHERE ur.role_id = ?1
-            AND (ur.authority = 'GUEST' OR ur.guest_role_included ) AND 
-              (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+                    INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+            AND (?3 IS NOT NULL OR ?4 IS NULL)
             """,
-            countQuery = """
-                    SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
-                    WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
-                    AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
-                    """,
             queryRewriter = UserRoleRepository.class,
             nativeQuery = true)
-    Page<Map<String, Object>> searchGuestsByPageWithStrictSearch(Long roleId, String keyWord, Pageable pageable);
+    Slice<Map<String, Object>> searchNonGuestsByKeysetWithStrictSearch(Long roleId, String keyWord, String keysetValue, Long keysetId, Pageable pageable);
+
+    //The counts of the searches are cached by SearchCounts
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
+            """,
+            nativeQuery = true)
+    long countGuests(Long roleId);
+
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
+            AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+            """,
+            nativeQuery = true)
+    long countGuestsWithKeyword(Long roleId, String keyWord);
+
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND (ur.authority = 'GUEST' OR ur.guest_role_included )
+            AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+            """,
+            nativeQuery = true)
+    long countGuestsWithStrictSearch(Long roleId, String keyWord);
+
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            """,
+            nativeQuery = true)
+    long countNonGuests(Long roleId);
+
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            AND MATCH (u.given_name, u.family_name, u.email, u.schac_home_organization) AGAINST (?2  IN BOOLEAN MODE)
+            """,
+            nativeQuery = true)
+    long countNonGuestsWithKeyword(Long roleId, String keyWord);
+
+    @Query(value = """
+            SELECT COUNT(ur.id) FROM user_roles ur INNER JOIN users u on u.id = ur.user_id
+            WHERE ur.role_id = ?1 AND ur.authority <> 'GUEST'
+            AND (UPPER(u.email) LIKE ?2 or UPPER(u.schac_home_organization) LIKE ?2)
+            """,
+            nativeQuery = true)
+    long countNonGuestsWithStrictSearch(Long roleId, String keyWord);
 
     @Override
     default String rewrite(String query, Sort sort) {
         Sort.Order nameSort = sort.getOrderFor("name");
         if (nameSort != null) {
             //Spring can not sort on aggregated columns
-            return query.replace("order by ur.name", "order by u.name");
+            return Keyset.rewrite(query.replace("order by ur.name", "order by u.name"));
         }
         Sort.Order schacHomeSort = sort.getOrderFor("schac_home_organization");
         if (schacHomeSort != null) {
             //Spring can not sort on aggregated columns
-            return query.replace("order by ur.schac_home_organization", "order by u.schac_home_organization");
+            return Keyset.rewrite(query.replace("order by ur.schac_home_organization", "order by u.schac_home_organization"));
         }
-        return query;
+        return Keyset.rewrite(query);
     }
 }
@@ -0,0 +1,115 @@
+package invite.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Total counts of the paged searches. The count of a search is cached per query shape and parameters, and evicted when
+ * an entity of one of the searched tables changes. The time-to-live bounds the staleness for changes made on other
+ * nodes or with native queries. Unfiltered listings of large tables report the row estimate of the table statistics.
+ */
+@Component
+public class SearchCounts {
+
+    private static final Log LOG = LogFactory.getLog(SearchCounts.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long estimateThreshold;
+    private final Cache<Key, Long> cache;
+
+    public SearchCounts(JdbcTemplate jdbcTemplate,
+                        @Value("${search.count.cache.enabled}") boolean enabled,
+                        @Value("${search.count.cache.time-to-live}") Duration timeToLive,
+                        @Value("${search.count.cache.maximum-size}") long maximumSize,
+                        @Value("${search.count.estimate-threshold}") long estimateThreshold,
+                        MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.estimateThreshold = estimateThreshold;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "search_counts");
+    }
+
+    /**
+     * Returns the count of a search on the tables, where the shape identifies the query and the parameters are the
+     * arguments of the query.
+     */
+    public Count count(Set<String> tables, String shape, List<Object> parameters, LongSupplier counter) {
+        if (!enabled) {
+            return Count.exact(counter.getAsLong());
+        }
+        Long total = this.cache.get(new Key(tables, shape, parameters), key -> counter.getAsLong());
+        return Count.exact(total);
+    }
+
+    /**
+     * Returns the estimated number of rows of the table if the estimate exceeds the threshold, because counting all
+     * rows of a large InnoDB table scans an entire index. Otherwise the rows are counted.
+     */
+    public Count estimate(String table, LongSupplier counter) {
+        Long estimate = this.count(Set.of(table), "estimate", List.of(), () -> this.tableRows(table)).total();
+        if (estimate >= estimateThreshold) {
+            return Count.estimated(estimate);
+        }
+        return this.count(Set.of(table), "all", List.of(), counter);
+    }
+
+    private long tableRows(String table) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                Long.class, table);
+        return rows == null ? 0L : rows;
+    }
+
+    /**
+     * Evicts the counts of all searches on the table now and after the current transaction has completed.
+     */
+    public void invalidate(String table) {
+        Runnable eviction = () -> {
+            LOG.debug(String.format("Evicting the search counts of %s", table));
+            this.cache.asMap().keySet().removeIf(key -> key.tables().contains(table));
+        };
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    public record Count(long total, boolean exact) {
+
+        public static Count exact(long total) {
+            return new Count(total, true);
+        }
+
+        public static Count estimated(long total) {
+            return new Count(total, false);
+        }
+    }
+
+    private record Key(Set<String> tables, String shape, List<Object> parameters) {
+    }
+}
@@ -0,0 +1,29 @@
+package invite.search;
+
+import invite.model.EntityChangeListener;
+import jakarta.persistence.Entity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener for the searched entities which evicts the cached search counts of the table of the entity. The
+ * entity name is the table name.
+ */
+public class SearchCountsListener extends EntityChangeListener<SearchCounts> {
+
+    public SearchCountsListener(ObjectProvider<SearchCounts> searchCounts) {
+        super(searchCounts);
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        Entity annotation = entity.getClass().getAnnotation(Entity.class);
+        if (annotation != null) {
+            this.report(searchCounts -> searchCounts.invalidate(annotation.name()));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package invite.search;
+
+import invite.model.EntityChangeListener;
+import invite.model.Role;
+import invite.model.UserRole;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener for UserRole which maintains the user role count of the role. The role of a user role is never
+ * changed, so updates do not change the counts.
+ */
+public class UserRoleCountListener extends EntityChangeListener<UserRoleCounts> {
+
+    public UserRoleCountListener(ObjectProvider<UserRoleCounts> userRoleCounts) {
+        super(userRoleCounts);
+    }
+
+    @PostPersist
+    public void added(UserRole userRole) {
+        Role role = userRole.getRole();
+        if (role != null) {
+            this.report(counts -> counts.added(role.getId()));
+        }
+    }
+
+    @PostRemove
+    public void removed(UserRole userRole) {
+        Role role = userRole.getRole();
+        if (role != null) {
+            this.report(counts -> counts.removed(role.getId()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package invite.search;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the user_role_count counter column of roles, which replaces counting the user roles of every loaded role.
+ * The counter is incremented and decremented in the same transaction as the insert or delete of the user role, see
+ * {@link invite.model.EntityChangeListener} for the changes which must be reported.
+ */
+@Component
+public class UserRoleCounts {
+
+    private static final Log LOG = LogFactory.getLog(UserRoleCounts.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserRoleCounts(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void added(Long roleId) {
+        this.change(roleId, 1);
+    }
+
+    public void removed(Long roleId) {
+        this.change(roleId, -1);
+    }
+
+    private void change(Long roleId, int delta) {
+        if (roleId == null) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE roles SET user_role_count = GREATEST(user_role_count + ?, 0) WHERE id = ?",
+                delta, roleId);
+    }
+
+    /**
+     * Corrects the counters which have drifted, e.g. by changes with native queries which were not reported or by user
+     * roles deleted by cascading foreign keys. Returns the number of corrected roles.
+     */
+    public int reconcile() {
+        int corrected = jdbcTemplate.update("""
+                UPDATE roles r
+                INNER JOIN (SELECT r2.id, COUNT(ur.id) AS user_role_count
+                            FROM roles r2 LEFT JOIN user_roles ur ON ur.role_id = r2.id
+                            GROUP BY r2.id) counts ON counts.id = r.id
+                SET r.user_role_count = counts.user_role_count
+                WHERE r.user_role_count <> counts.user_role_count
+                """);
+        if (corrected > 0) {
+            LOG.warn(String.format("Corrected the user role count of %d roles", corrected));
+        }
+        return corrected;
+    }
+}
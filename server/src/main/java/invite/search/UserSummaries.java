@@ -0,0 +1,85 @@
+package invite.search;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maintains the summary columns of the user roles and applications of users, which replace the aggregations per row in
+ * the search of users. The authorities are ordered on rank, so the last authority is the highest. The summaries are
+ * refreshed by the {@link UserSummaryListener}.
+ */
+@Component
+public class UserSummaries {
+
+    private static final Log LOG = LogFactory.getLog(UserSummaries.class);
+
+    private static final String RANK =
+            "FIELD(ur.authority, 'GUEST', 'INVITER', 'MANAGER', 'APPLICATION_MANAGER', 'INSTITUTION_ADMIN', 'SUPER_USER')";
+
+    private static final String REFRESH = String.format("""
+            UPDATE users u SET
+                u.authorities = (SELECT GROUP_CONCAT(DISTINCT ur.authority ORDER BY %1$s)
+                                FROM user_roles ur WHERE ur.user_id = u.id),
+                u.highest_authority = (SELECT ur.authority FROM user_roles ur WHERE ur.user_id = u.id
+                                ORDER BY %1$s DESC LIMIT 1),
+                u.application_ids = (SELECT GROUP_CONCAT(DISTINCT ua.application_id ORDER BY ua.application_id)
+                                FROM user_applications ua WHERE ua.user_id = u.id)
+            WHERE u.id IN (:userIds)
+            """, RANK);
+
+    //The same summaries as REFRESH for all users, only written when they differ. The last authority is the highest.
+    private static final String RECONCILE = String.format("""
+            UPDATE users u
+            LEFT JOIN (SELECT ur.user_id, GROUP_CONCAT(DISTINCT ur.authority ORDER BY %1$s) AS authorities
+                       FROM user_roles ur GROUP BY ur.user_id) roles ON roles.user_id = u.id
+            LEFT JOIN (SELECT ua.user_id, GROUP_CONCAT(DISTINCT ua.application_id ORDER BY ua.application_id) AS application_ids
+                       FROM user_applications ua GROUP BY ua.user_id) applications ON applications.user_id = u.id
+            SET u.authorities = roles.authorities,
+                u.highest_authority = SUBSTRING_INDEX(roles.authorities, ',', -1),
+                u.application_ids = applications.application_ids
+            WHERE NOT (u.authorities <=> roles.authorities
+                       AND u.highest_authority <=> SUBSTRING_INDEX(roles.authorities, ',', -1)
+                       AND u.application_ids <=> applications.application_ids)
+            """, RANK);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UserSummaries(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void changed(Long userId) {
+        this.changed(userId == null ? List.of() : List.of(userId));
+    }
+
+    /**
+     * Refreshes the summaries of the users.
+     */
+    public void changed(Collection<Long> userIds) {
+        List<Long> identifiers = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (identifiers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(REFRESH, Map.of("userIds", identifiers));
+    }
+
+    /**
+     * Corrects the summaries which have drifted, e.g. by changes with native queries which were not reported or by user
+     * roles and applications deleted by cascading foreign keys. Returns the number of corrected users.
+     */
+    public int reconcile() {
+        int corrected = jdbcTemplate.update(RECONCILE, new MapSqlParameterSource());
+        if (corrected > 0) {
+            LOG.warn(String.format("Corrected the summaries of %d users", corrected));
+        }
+        return corrected;
+    }
+}
@@ -0,0 +1,34 @@
+package invite.search;
+
+import invite.model.EntityChangeListener;
+import invite.model.User;
+import invite.model.UserApplication;
+import invite.model.UserRole;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener for UserRole and UserApplication which refreshes the summary of the user after the change is flushed.
+ */
+public class UserSummaryListener extends EntityChangeListener<UserSummaries> {
+
+    public UserSummaryListener(ObjectProvider<UserSummaries> userSummaries) {
+        super(userSummaries);
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        User user = switch (entity) {
+            case UserRole userRole -> userRole.getUser();
+            case UserApplication userApplication -> userApplication.getUser();
+            default -> null;
+        };
+        if (user != null) {
+            this.report(summaries -> summaries.changed(user.getId()));
+        }
+    }
+}
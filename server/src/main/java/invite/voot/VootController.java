@@ -1,28 +1,34 @@
 package invite.voot;
 
-import invite.model.Authority;
-import invite.model.Role;
-import invite.model.User;
-import invite.model.UserRole;
-import invite.provision.scim.GroupURN;
-import invite.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.aggregation.ServiceProviderRoles;
+import invite.cron.LastActivityBuffer;
+import invite.model.MembershipsRequest;
 import invite.security.RemoteUser;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.CollectionUtils;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
-import java.util.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static invite.SwaggerOpenIdConfig.BASIC_AUTHENTICATION_SCHEME_NAME;
@@ -34,13 +40,19 @@ public class VootController {
 
     private static final Log LOG = LogFactory.getLog(VootController.class);
 
-    private final UserRepository userRepository;
-    private final String groupUrnPrefix;
+    private final VootMemberships vootMemberships;
+    private final ServiceProviderRoles serviceProviderRoles;
+    private final LastActivityBuffer lastActivityBuffer;
+    private final ObjectMapper objectMapper;
 
-    public VootController(UserRepository userRepository,
-                          @Value("${voot.group_urn_domain}") String groupUrnPrefix) {
-        this.userRepository = userRepository;
-        this.groupUrnPrefix = groupUrnPrefix;
+    public VootController(VootMemberships vootMemberships,
+                          ServiceProviderRoles serviceProviderRoles,
+                          LastActivityBuffer lastActivityBuffer,
+                          ObjectMapper objectMapper) {
+        this.vootMemberships = vootMemberships;
+        this.serviceProviderRoles = serviceProviderRoles;
+        this.lastActivityBuffer = lastActivityBuffer;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{unspecified_id}")
@@ -48,32 +60,58 @@ public class VootController {
     public ResponseEntity<List<Map<String, String>>> getGroupMemberships(
             @PathVariable("unspecified_id") String unspecifiedId,
             @Parameter(hidden = true) @AuthenticationPrincipal RemoteUser remoteUser) {
-        Optional<User> optionalUser = userRepository.findBySubIgnoreCase(unspecifiedId);
-        if (optionalUser.isPresent()) {
-            User user = optionalUser.get();
-            user.setLastActivity(Instant.now());
-            userRepository.save(user);
-            List<Map<String, String>> roles = user.getUserRoles().stream()
-                    .filter(userRole -> userRole.getAuthority().equals(Authority.GUEST) || userRole.isGuestRoleIncluded())
-                    .map(this::parseUserRole).collect(Collectors.toList());
-
-            LOG.debug(String.format("Returning %o roles for VOOT request for user: %s", roles.size(), unspecifiedId));
-
-            return ResponseEntity.ok(roles);
-        } else {
+        VootMemberships.Memberships memberships = vootMemberships.memberships(unspecifiedId);
+        if (memberships.userId() == null) {
             LOG.debug(String.format("VOOT request for unknown user: %s", unspecifiedId));
 
             return ResponseEntity.ok(Collections.emptyList());
         }
+        lastActivityBuffer.record(memberships.userId());
+        List<Map<String, String>> roles = memberships.groups();
+
+        LOG.debug(String.format("Returning %o roles for VOOT request for user: %s", roles.size(), unspecifiedId));
+
+        return ResponseEntity.ok(roles);
     }
 
-    private Map<String, String> parseUserRole(UserRole userRole) {
-        Map<String, String> res = new HashMap<>();
-        Role role = userRole.getRole();
-        String urn = GroupURN.urnFromRole(groupUrnPrefix, role);
-        res.put("urn", urn);
-        res.put("name", role.getName());
-        return res;
+    /**
+     * Streams the memberships of all subs as newline delimited JSON, one line per sub in the order of the request.
+     * The optional spEntityIDs restrict the memberships to the roles of these service providers. Bulk requests are
+     * made by reporting and synchronisation jobs, so the last activity of the users is not recorded.
+     */
+    @PostMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('VOOT')")
+    public ResponseEntity<StreamingResponseBody> getGroupMembershipsBulk(@Validated @RequestBody MembershipsRequest membershipsRequest) {
+        List<String> subs = membershipsRequest.getSubs();
+        //Resolve the service providers before streaming, so errors of Manage result in an error response
+        Optional<Set<Long>> optionalRoleIds = CollectionUtils.isEmpty(membershipsRequest.getSpEntityIDs()) ?
+                Optional.empty() :
+                Optional.of(membershipsRequest.getSpEntityIDs().stream()
+                        .map(serviceProviderRoles::manageId)
+                        .flatMap(Optional::stream)
+                        .flatMap(manageId -> serviceProviderRoles.roleIds(manageId).stream())
+                        .collect(Collectors.toSet()));
+        LOG.debug(String.format("Bulk VOOT request for %s users", subs.size()));
+
+        StreamingResponseBody body = outputStream -> {
+            for (int i = 0; i < subs.size(); i += VootMemberships.BATCH_SIZE) {
+                List<String> batch = subs.subList(i, Math.min(i + VootMemberships.BATCH_SIZE, subs.size()));
+                Map<String, VootMemberships.Memberships> membershipsBySub = vootMemberships.memberships(batch);
+                for (String sub : batch) {
+                    VootMemberships.Memberships memberships = membershipsBySub.get(sub.toLowerCase(Locale.ROOT));
+                    List<Map<String, String>> groups = optionalRoleIds
+                            .map(roleIds -> memberships.memberships().stream()
+                                    .filter(membership -> roleIds.contains(membership.roleId()))
+                                    .map(membership -> Map.of("urn", membership.urn(), "name", membership.name()))
+                                    .toList())
+                            .orElse(memberships.groups());
+                    outputStream.write(objectMapper.writeValueAsBytes(Map.of("sub", sub, "groups", groups)));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
 }
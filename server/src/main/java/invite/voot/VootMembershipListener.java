@@ -0,0 +1,33 @@
+package invite.voot;
+
+import invite.model.EntityChangeListener;
+import invite.model.Role;
+import invite.model.User;
+import invite.model.UserRole;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener for UserRole and Role which evicts the cached VOOT memberships.
+ */
+public class VootMembershipListener extends EntityChangeListener<VootMemberships> {
+
+    public VootMembershipListener(ObjectProvider<VootMemberships> vootMemberships) {
+        super(vootMemberships);
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        if (entity instanceof UserRole userRole) {
+            User user = userRole.getUser();
+            this.report(memberships -> memberships.evict(user != null ? user.getSub() : null));
+        } else if (entity instanceof Role) {
+            //The name and urn of the role are part of all memberships of the role
+            this.report(VootMemberships::evictAll);
+        }
+    }
+}
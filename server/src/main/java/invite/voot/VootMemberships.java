@@ -0,0 +1,182 @@
+package invite.voot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import invite.model.Role;
+import invite.provision.scim.GroupURN;
+import invite.repository.UserRoleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the guest memberships of a user for VOOT and attribute aggregation with one projection query instead of
+ * loading the user with all roles and applications. The memberships are cached per sub and evicted after the commit of
+ * a changed membership or role. The time-to-live bounds the staleness for changes made on other nodes.
+ */
+@Component
+public class VootMemberships {
+
+    private static final Log LOG = LogFactory.getLog(VootMemberships.class);
+    public static final int BATCH_SIZE = 1000;
+
+    private final UserRoleRepository userRoleRepository;
+    private final String groupUrnPrefix;
+    private final boolean enabled;
+    private final Cache<String, Memberships> cache;
+
+    public VootMemberships(UserRoleRepository userRoleRepository,
+                           @Value("${voot.group_urn_domain}") String groupUrnPrefix,
+                           @Value("${voot.cache.enabled}") boolean enabled,
+                           @Value("${voot.cache.time-to-live}") Duration timeToLive,
+                           @Value("${voot.cache.maximum-size}") long maximumSize,
+                           MeterRegistry meterRegistry) {
+        this.userRoleRepository = userRoleRepository;
+        this.groupUrnPrefix = groupUrnPrefix;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "voot_memberships");
+    }
+
+    /**
+     * The userId of the returned memberships is null for an unknown user.
+     */
+    public Memberships memberships(String sub) {
+        if (!enabled) {
+            return this.resolve(sub);
+        }
+        return this.cache.get(sub.toLowerCase(Locale.ROOT), key -> this.resolve(sub));
+    }
+
+    /**
+     * Returns the memberships of all subs, keyed by the lowercased sub. The memberships which are not cached are
+     * resolved with one query per batch of subs.
+     */
+    public Map<String, Memberships> memberships(Collection<String> subs) {
+        Set<String> keys = subs.stream()
+                .map(sub -> sub.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!enabled) {
+            return this.resolveAll(keys);
+        }
+        return this.cache.getAll(keys, this::resolveAll);
+    }
+
+    private Memberships resolve(String sub) {
+        return this.memberships(userRoleRepository.findGuestMembershipsBySub(sub));
+    }
+
+    private Map<String, Memberships> resolveAll(Set<? extends String> keys) {
+        List<String> subs = new ArrayList<>(keys);
+        Map<String, Memberships> result = new HashMap<>();
+        for (int i = 0; i < subs.size(); i += BATCH_SIZE) {
+            List<String> batch = subs.subList(i, Math.min(i + BATCH_SIZE, subs.size()));
+            userRoleRepository.findGuestMembershipsBySubIn(batch).stream()
+                    .collect(Collectors.groupingBy(row -> ((String) row.get("sub")).toLowerCase(Locale.ROOT)))
+                    .forEach((key, rows) -> result.put(key, this.memberships(rows)));
+        }
+        //Unknown users are cached as well, like in the lookup of a single sub
+        subs.forEach(key -> result.putIfAbsent(key, Memberships.of(null, List.of())));
+        return result;
+    }
+
+    private Memberships memberships(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return Memberships.of(null, List.of());
+        }
+        Long userId = ((Number) rows.getFirst().get("user_id")).longValue();
+        List<Membership> memberships = rows.stream()
+                .filter(row -> row.get("role_id") != null)
+                .map(row -> new Membership(
+                        ((Number) row.get("role_id")).longValue(),
+                        GroupURN.urnFromRole(groupUrnPrefix, this.role(row)),
+                        (String) row.get("name"),
+                        StringUtils.hasText((String) row.get("crm_role_id"))))
+                .toList();
+        return Memberships.of(userId, memberships);
+    }
+
+    private Role role(Map<String, Object> row) {
+        Role role = new Role();
+        role.setName((String) row.get("name"));
+        role.setUrn((String) row.get("urn"));
+        role.setTeamsOrigin(this.bool(row.get("teams_origin")));
+        role.setCrmRoleId((String) row.get("crm_role_id"));
+        role.setCrmRoleName((String) row.get("crm_role_name"));
+        role.setIdentifier((String) row.get("identifier"));
+        role.setShortName((String) row.get("short_name"));
+        return role;
+    }
+
+    private boolean bool(Object value) {
+        return value instanceof Boolean b ? b : value instanceof Number n && n.intValue() != 0;
+    }
+
+    /**
+     * Evicts the memberships of the user after the current transaction is committed, to prevent a concurrent request
+     * from caching the memberships before the change is visible.
+     */
+    public void evict(String sub) {
+        if (sub == null) {
+            this.evictAll();
+            return;
+        }
+        this.afterCommit(() -> this.cache.invalidate(sub.toLowerCase(Locale.ROOT)));
+    }
+
+    public void evictAll() {
+        this.afterCommit(() -> {
+            LOG.debug("Evicting all VOOT memberships");
+            this.cache.invalidateAll();
+        });
+    }
+
+    private void afterCommit(Runnable eviction) {
+        //Also evict immediately, so the changing transaction itself never reads stale memberships
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    public record Membership(Long roleId, String urn, String name, boolean crmRole) {
+    }
+
+    /**
+     * The groups are the VOOT representation of the memberships, which is shared between all requests.
+     */
+    public record Memberships(Long userId, List<Membership> memberships, List<Map<String, String>> groups) {
+
+        static Memberships of(Long userId, List<Membership> memberships) {
+            return new Memberships(userId, memberships, memberships.stream()
+                    .map(membership -> Map.of("urn", membership.urn(), "name", membership.name()))
+                    .toList());
+        }
+    }
+}
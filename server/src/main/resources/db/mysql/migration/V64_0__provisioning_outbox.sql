@@ -0,0 +1,25 @@
+CREATE TABLE `provisioning_outbox`
+(
+    `id`                     bigint       NOT NULL AUTO_INCREMENT,
+    `manage_provisioning_id` varchar(255) NOT NULL,
+    `operation`              varchar(255) NOT NULL,
+    `operation_type`         varchar(255) DEFAULT NULL,
+    `user_id`                bigint       DEFAULT NULL,
+    `role_id`                bigint       DEFAULT NULL,
+    `user_role_id`           bigint       DEFAULT NULL,
+    `status`                 varchar(255) NOT NULL,
+    `attempts`               int          NOT NULL DEFAULT 0,
+    `next_attempt_at`        datetime     NOT NULL,
+    `last_error`             text         DEFAULT NULL,
+    `created_at`             datetime     DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    INDEX `provisioning_outbox_status_next_attempt_at` (`status`, `next_attempt_at`),
+    CONSTRAINT `fk_provisioning_outbox_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE,
+    CONSTRAINT `fk_provisioning_outbox_role` FOREIGN KEY (`role_id`) REFERENCES `roles` (`id`) ON DELETE CASCADE,
+    CONSTRAINT `fk_provisioning_outbox_user_role` FOREIGN KEY (`user_role_id`) REFERENCES `user_roles` (`id`) ON DELETE CASCADE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- Pre-insert the lock row (critical for Galera safety)
+INSERT INTO shedlock (name, lock_until, locked_at, locked_by)
+VALUES ('provisioning_outbox_dispatcher_lock', '2000-01-01 00:00:00.000', '2000-01-01 00:00:00.000', 'init');
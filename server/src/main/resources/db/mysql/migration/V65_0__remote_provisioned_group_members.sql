@@ -0,0 +1,11 @@
+ALTER TABLE `remote_provisioned_groups`
+    ADD `members_synced_at` datetime DEFAULT NULL;
+
+CREATE TABLE `remote_provisioned_group_members`
+(
+    `remote_provisioned_group_id` bigint       NOT NULL,
+    `remote_identifier`           varchar(255) NOT NULL,
+    PRIMARY KEY (`remote_provisioned_group_id`, `remote_identifier`),
+    CONSTRAINT `fk_remote_provisioned_group_members_group` FOREIGN KEY (`remote_provisioned_group_id`) REFERENCES `remote_provisioned_groups` (`id`) ON DELETE CASCADE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,22 @@
+ALTER TABLE `users`
+    ADD `authorities` varchar(255) DEFAULT NULL,
+    ADD `highest_authority` varchar(255) DEFAULT NULL,
+    ADD `application_ids` text DEFAULT NULL;
+
+CREATE INDEX `users_highest_authority` ON `users` (`highest_authority`);
+
+UPDATE `users` u
+SET u.`authorities`       = (SELECT GROUP_CONCAT(DISTINCT ur.`authority`
+                                                 ORDER BY FIELD(ur.`authority`, 'GUEST', 'INVITER', 'MANAGER',
+                                                                'APPLICATION_MANAGER', 'INSTITUTION_ADMIN', 'SUPER_USER'))
+                             FROM `user_roles` ur
+                             WHERE ur.`user_id` = u.`id`),
+    u.`highest_authority` = (SELECT ur.`authority`
+                             FROM `user_roles` ur
+                             WHERE ur.`user_id` = u.`id`
+                             ORDER BY FIELD(ur.`authority`, 'GUEST', 'INVITER', 'MANAGER',
+                                            'APPLICATION_MANAGER', 'INSTITUTION_ADMIN', 'SUPER_USER') DESC
+                             LIMIT 1),
+    u.`application_ids`   = (SELECT GROUP_CONCAT(DISTINCT ua.`application_id` ORDER BY ua.`application_id`)
+                             FROM `user_applications` ua
+                             WHERE ua.`user_id` = u.`id`);
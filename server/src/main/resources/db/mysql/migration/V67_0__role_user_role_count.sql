@@ -0,0 +1,7 @@
+ALTER TABLE `roles`
+    ADD `user_role_count` bigint NOT NULL DEFAULT 0;
+
+UPDATE `roles` r
+SET r.`user_role_count` = (SELECT COUNT(*) FROM `user_roles` ur WHERE ur.`role_id` = r.`id`);
+
+CREATE INDEX `roles_user_role_count` ON `roles` (`user_role_count`);
@@ -0,0 +1,21 @@
+CREATE TABLE `mail_outbox`
+(
+    `id`              bigint       NOT NULL AUTO_INCREMENT,
+    `recipients`      text         NOT NULL,
+    `subject`         varchar(255) DEFAULT NULL,
+    `mime_message`    longblob     NOT NULL,
+    `status`          varchar(255) NOT NULL,
+    `attempts`        int          NOT NULL DEFAULT 0,
+    `next_attempt_at` datetime     NOT NULL,
+    `last_error`      text         DEFAULT NULL,
+    `created_at`      datetime     DEFAULT CURRENT_TIMESTAMP,
+    `sent_at`         datetime     DEFAULT NULL,
+    PRIMARY KEY (`id`),
+    INDEX `mail_outbox_status_next_attempt_at` (`status`, `next_attempt_at`),
+    INDEX `mail_outbox_status_sent_at` (`status`, `sent_at`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- Pre-insert the lock row (critical for Galera safety)
+INSERT INTO shedlock (name, lock_until, locked_at, locked_by)
+VALUES ('mail_outbox_dispatcher_lock', '2000-01-01 00:00:00.000', '2000-01-01 00:00:00.000', 'init');
@@ -0,0 +1,2 @@
+-- Supports the head-of-line check on the older pending messages of the same provisioning
+CREATE INDEX `provisioning_outbox_provisioning_status` ON `provisioning_outbox` (`manage_provisioning_id`, `status`, `next_attempt_at`);
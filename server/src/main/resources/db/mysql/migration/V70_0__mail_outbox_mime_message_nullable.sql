@@ -0,0 +1,6 @@
+ALTER TABLE `mail_outbox`
+    MODIFY `mime_message` longblob DEFAULT NULL;
+
+UPDATE `mail_outbox`
+SET `mime_message` = NULL
+WHERE `status` = 'SENT';
@@ -0,0 +1,3 @@
+-- Pre-insert the lock row (critical for Galera safety)
+INSERT INTO shedlock (name, lock_until, locked_at, locked_by)
+VALUES ('user_summary_reconciler_lock', '2000-01-01 00:00:00.000', '2000-01-01 00:00:00.000', 'init');
@@ -125,6 +125,13 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
                 "manage.url: http://localhost:8081",
                 "myconext.uri: http://localhost:8081/myconext/api/invite/provision-eduid",
                 "manage.enabled: true",
+                "manage.cache.enabled: false",
+                "provisioning.outbox.enabled: false",
+                "email.outbox.enabled: false",
+                "email.logo-cache.pre-warm: false",
+                "voot.cache.enabled: false",
+                "attribute-aggregation.cache.enabled: false",
+                "search.count.cache.enabled: false",
                 "spring.task.scheduling.enabled=false",
                 "spring.jpa.properties.hibernate.format_sql=false",
                 "spring.jpa.show-sql=false",
@@ -13,6 +13,7 @@ public class DefaultPage<T> {
     private Pageable pageable;
 
     private int totalElements;
+    private boolean totalExact;
     private boolean last;
     private int number;
     private int numberOfElements;
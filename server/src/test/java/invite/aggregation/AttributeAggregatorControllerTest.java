@@ -1,13 +1,18 @@
 package invite.aggregation;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import invite.AbstractTest;
 import invite.crm.CRMContact;
 import invite.crm.CRMRole;
+import invite.cron.LastActivityBuffer;
 import invite.manage.EntityType;
+import invite.model.MembershipsRequest;
 import io.restassured.common.mapper.TypeRef;
 import io.restassured.http.ContentType;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
 import java.util.Map;
@@ -21,6 +26,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AttributeAggregatorControllerTest extends AbstractTest {
 
+    @Autowired
+    private LastActivityBuffer lastActivityBuffer;
+
     @Test
     void getGroupMemberships() throws JsonProcessingException {
         stubForManageProviderByEntityID(SAML20_SP, "https://research");
@@ -165,5 +173,86 @@ class AttributeAggregatorControllerTest extends AbstractTest {
                 "urn:mace:surfnet.nl:surfnet.nl:sab:organizationGUID:" + CRM_ORGANIZATION_ID,
                 "urn:mace:surfnet.nl:surfnet.nl:sab:role:SURFconextbeheerder").sorted().toList();
         assertEquals(expected, autorizations);
+
+        //The organisations of the bulk request are resolved for the whole batch
+        String ndjson = given()
+                .when()
+                .auth().preemptive().basic("aa", "secret")
+                .accept("application/x-ndjson")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(KB_USER_SUB, GUEST_SUB), List.of(researchEntityId)))
+                .post("/api/external/v1/aa")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<Map<String, Object>> lines = ndjson.lines().map(this::parseLine).toList();
+        List<String> bulkAutorizations = ((List<Map<String, String>>) lines.getFirst().get("attributes")).stream()
+                .filter(m -> m.containsKey("autorisatie"))
+                .map(m -> m.get("autorisatie"))
+                .sorted()
+                .toList();
+        assertEquals(expected, bulkAutorizations);
+        assertTrue(((List<Map<String, String>>) lines.get(1).get("attributes")).stream()
+                .noneMatch(m -> m.containsKey("autorisatie")));
+    }
+
+    @Test
+    void getGroupMembershipsBulk() throws JsonProcessingException {
+        stubForManageProviderByEntityID(SAML20_SP, "https://research");
+        lastActivityBuffer.doFlush();
+        String ndjson = given()
+                .when()
+                .auth().preemptive().basic("aa", "secret")
+                .accept("application/x-ndjson")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB, "nope"), List.of("https://research")))
+                .post("/api/external/v1/aa")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<Map<String, Object>> lines = ndjson.lines().map(this::parseLine).toList();
+
+        assertEquals(2, lines.size());
+        assertEquals(GUEST_SUB, lines.get(0).get("sub"));
+        assertEquals("https://research", lines.get(0).get("SPentityID"));
+        List<Map<String, String>> attributes = (List<Map<String, String>>) lines.get(0).get("attributes");
+        assertEquals(1, attributes.size());
+        assertTrue(attributes.get(0).get("id").startsWith("urn:mace:surf.nl:test.surfaccess.nl:"));
+        assertEquals("nope", lines.get(1).get("sub"));
+        assertEquals(0, ((List<?>) lines.get(1).get("attributes")).size());
+        //Bulk requests are not logins
+        assertEquals(0, lastActivityBuffer.doFlush());
+    }
+
+    @Test
+    void getGroupMembershipsBulkWithoutServiceProviders() {
+        given()
+                .when()
+                .auth().preemptive().basic("aa", "secret")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB), List.of()))
+                .post("/api/external/v1/aa")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void getGroupMembershipsBulkWithBlankSub() {
+        given()
+                .when()
+                .auth().preemptive().basic("aa", "secret")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB, ""), List.of("https://research")))
+                .post("/api/external/v1/aa")
+                .then()
+                .statusCode(400);
+    }
+
+    @SneakyThrows
+    private Map<String, Object> parseLine(String line) {
+        return objectMapper.readValue(line, new TypeReference<>() {
+        });
     }
-}
\ No newline at end of file
+}
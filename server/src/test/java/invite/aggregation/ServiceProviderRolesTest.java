@@ -0,0 +1,41 @@
+package invite.aggregation;
+
+import invite.AbstractTest;
+import invite.model.Role;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceProviderRolesTest extends AbstractTest {
+
+    @Test
+    void manageId() {
+        ServiceProviderRoles serviceProviderRoles = serviceProviderRoles();
+
+        assertEquals(Optional.of("1"), serviceProviderRoles.manageId("https://wiki"));
+        assertEquals(Optional.empty(), serviceProviderRoles.manageId("https://nope"));
+    }
+
+    @Test
+    void roleIdsAreIndexedUntilInvalidated() {
+        ServiceProviderRoles serviceProviderRoles = serviceProviderRoles();
+        Role wiki = roleRepository.findByName("Wiki").get();
+
+        assertEquals(Set.of(wiki.getId()), serviceProviderRoles.roleIds("1"));
+        assertEquals(Set.of(), serviceProviderRoles.roleIds("nope"));
+
+        applicationUsageRepository.deleteAllInBatch();
+        assertEquals(Set.of(wiki.getId()), serviceProviderRoles.roleIds("1"));
+
+        serviceProviderRoles.invalidate();
+        assertEquals(Set.of(), serviceProviderRoles.roleIds("1"));
+    }
+
+    private ServiceProviderRoles serviceProviderRoles() {
+        return new ServiceProviderRoles(localManage, applicationUsageRepository, true, Duration.ofMinutes(5));
+    }
+}
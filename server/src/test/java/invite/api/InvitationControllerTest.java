@@ -20,8 +20,10 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static invite.security.SecurityConfig.API_TOKEN_HEADER;
@@ -1189,4 +1191,62 @@ class InvitationControllerTest extends AbstractTest {
         assertEquals(201, invitationResponse.getStatus());
     }
 
-}
\ No newline at end of file
+    @Test
+    void exportByRole() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        Role role = roleRepository.findByName("Research").get();
+        String csv = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .queryParam("roleId", role.getId())
+                .queryParam("format", "csv")
+                .get("/api/v1/invitations/export")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        long expected = invitationRepository.findByStatusAndRoles_role(Status.OPEN, role).size();
+        assertEquals(expected + 1, csv.lines().count());
+    }
+
+    @Test
+    void exportAllNotAllowed() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", MANAGE_SUB);
+
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .get("/api/v1/invitations/export")
+                .then()
+                .statusCode(403);
+    }
+
+    @Test
+    void searchByKeyset() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        List<Object> identifiers = new ArrayList<>();
+        String cursor = "";
+        do {
+            Map<String, Object> page = given()
+                    .when()
+                    .filter(accessCookieFilter.cookieFilter())
+                    .accept(ContentType.JSON)
+                    .queryParam("cursor", cursor)
+                    .queryParam("pageSize", 3)
+                    .queryParam("sort", "email")
+                    .get("/api/v1/invitations/search")
+                    .as(new TypeRef<>() {
+                    });
+            List<Map<String, Object>> content = (List<Map<String, Object>>) page.get("content");
+            content.forEach(invitation -> {
+                assertNotNull(invitation.get("roles"));
+                identifiers.add(invitation.get("id"));
+            });
+            cursor = (String) page.get("next");
+        } while (cursor != null);
+        assertEquals(invitationRepository.countByStatus(Status.OPEN), identifiers.size());
+        assertEquals(identifiers.size(), Set.copyOf(identifiers).size());
+    }
+}
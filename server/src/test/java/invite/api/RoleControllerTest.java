@@ -23,6 +23,7 @@ import org.springframework.http.HttpStatus;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -981,4 +982,51 @@ class RoleControllerTest extends AbstractTest {
         return roles.stream().filter(role -> role.getName().equalsIgnoreCase(name)).findFirst().orElseThrow(IllegalArgumentException::new);
     }
 
-}
\ No newline at end of file
+    @Test
+    void exportByInstitutionAdmin() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", INSTITUTION_ADMIN_SUB);
+
+        String csv = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .queryParam("format", "csv")
+                .get("/api/v1/roles/export")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<String> lines = csv.lines().toList();
+        assertTrue(lines.getFirst().startsWith("id,name,short_name"));
+        long expected = roleRepository.findAll().stream()
+                .filter(role -> ORGANISATION_GUID.equals(role.getOrganizationGUID()))
+                .count();
+        assertEquals(expected + 1, lines.size());
+    }
+
+    @Test
+    void rolesByKeyset() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        for (String sort : List.of("name", "userRoleCount")) {
+            List<Object> names = new ArrayList<>();
+            String cursor = "";
+            do {
+                Map<String, Object> page = given()
+                        .when()
+                        .filter(accessCookieFilter.cookieFilter())
+                        .accept(ContentType.JSON)
+                        .queryParam("cursor", cursor)
+                        .queryParam("pageSize", 2)
+                        .queryParam("sort", sort)
+                        .get("/api/v1/roles")
+                        .as(new TypeRef<>() {
+                        });
+                List<Map<String, Object>> content = (List<Map<String, Object>>) page.get("content");
+                content.forEach(role -> names.add(role.get("name")));
+                cursor = (String) page.get("next");
+            } while (cursor != null);
+            assertEquals(roleRepository.count(), names.size(), sort);
+            assertEquals(names.size(), Set.copyOf(names).size(), sort);
+        }
+    }
+}
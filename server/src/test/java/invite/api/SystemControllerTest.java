@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static io.restassured.RestAssured.given;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -100,4 +101,49 @@ class SystemControllerTest extends AbstractTest {
         assertEquals(1, results.get("roles"));
         assertEquals(1, results.get("userRoles"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void evictManageCache() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .header(accessCookieFilter.csrfToken().getHeaderName(), accessCookieFilter.csrfToken().getToken())
+                .queryParam("entityType", EntityType.SAML20_SP)
+                .queryParam("identifier", "1")
+                .contentType(ContentType.JSON)
+                .delete("/api/v1/system/manage-cache")
+                .then()
+                .statusCode(204);
+    }
+
+    @Test
+    void evictManageCacheNotAllowed() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", MANAGE_SUB);
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .header(accessCookieFilter.csrfToken().getHeaderName(), accessCookieFilter.csrfToken().getToken())
+                .contentType(ContentType.JSON)
+                .delete("/api/v1/system/manage-cache")
+                .then()
+                .statusCode(403);
+    }
+
+    @Test
+    void mailOutbox() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+        Map<String, Integer> counts = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .header(accessCookieFilter.csrfToken().getHeaderName(), accessCookieFilter.csrfToken().getToken())
+                .contentType(ContentType.JSON)
+                .get("/api/v1/system/mail-outbox")
+                .as(new TypeRef<>() {
+                });
+        assertEquals(Set.of("pending", "failed", "sent"), counts.keySet());
+    }
+}
@@ -14,6 +14,7 @@ import invite.model.UserRole;
 import io.restassured.common.mapper.TypeRef;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.util.MultiValueMap;
@@ -22,6 +23,8 @@ import org.springframework.web.util.UriComponentsBuilder;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -349,6 +352,25 @@ class UserControllerTest extends AbstractTest {
         assertEquals(1, page.getTotalElements());
     }
 
+    @Test
+    void searchCountsTotal() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        DefaultPage<User> page = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .contentType(ContentType.JSON)
+                .queryParam("pageNumber", 1)
+                .queryParam("pageSize", 3)
+                .get("/api/v1/users/search")
+                .as(new TypeRef<>() {
+                });
+        assertEquals(userRepository.count(), page.getTotalElements());
+        assertTrue(page.isTotalExact());
+        assertEquals(3, page.getContent().size());
+    }
+
     @Test
     void searchStrictMode() throws Exception {
         AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
@@ -929,4 +951,129 @@ class UserControllerTest extends AbstractTest {
         assertEquals(remoteScimIdentifier, userRequest.get("id"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void exportCsv() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        String csv = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .queryParam("format", "csv")
+                .get("/api/v1/users/export")
+                .then()
+                .statusCode(200)
+                .contentType("text/csv;charset=UTF-8")
+                .header("Content-Disposition", "attachment; filename=\"users.csv\"")
+                .extract()
+                .asString();
+        List<String> lines = csv.lines().toList();
+        assertTrue(lines.getFirst().startsWith("id,sub,eduperson_principal_name,name,email"));
+        assertEquals(userRepository.count() + 1, lines.size());
+    }
+
+    @Test
+    void exportByInstitutionAdmin() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", INSTITUTION_ADMIN_SUB);
+
+        String csv = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .queryParam("format", "csv")
+                .get("/api/v1/users/export")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<String> lines = csv.lines().toList();
+        //Same users as searchByApplication
+        long expected = userRepository.searchByPageRoleUsers(ORGANISATION_GUID, PageRequest.of(0, 100)).getTotalElements();
+        assertEquals(expected + 1, lines.size());
+        assertTrue(lines.stream().noneMatch(line -> line.contains(SUPER_SUB)));
+    }
+
+    @Test
+    void exportNotAllowed() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", MANAGE_SUB);
+
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .get("/api/v1/users/export")
+                .then()
+                .statusCode(403);
+    }
+
+    @Test
+    void exportUnsupportedFormat() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .queryParam("format", "xlsx")
+                .get("/api/v1/users/export")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void searchByKeyset() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        for (String sort : List.of("name", "last_activity", "authority")) {
+            for (String direction : List.of("ASC", "DESC")) {
+                List<Long> identifiers = new ArrayList<>();
+                String cursor = "";
+                do {
+                    Map<String, Object> page = given()
+                            .when()
+                            .filter(accessCookieFilter.cookieFilter())
+                            .accept(ContentType.JSON)
+                            .queryParam("cursor", cursor)
+                            .queryParam("pageSize", 2)
+                            .queryParam("sort", sort)
+                            .queryParam("sortDirection", direction)
+                            .get("/api/v1/users/search")
+                            .as(new TypeRef<>() {
+                            });
+                    List<Map<String, Object>> content = (List<Map<String, Object>>) page.get("content");
+                    content.forEach(user -> identifiers.add(((Number) user.get("id")).longValue()));
+                    cursor = (String) page.get("next");
+                } while (cursor != null);
+                assertEquals(userRepository.count(), identifiers.size(), sort + " " + direction);
+                assertEquals(identifiers.size(), new HashSet<>(identifiers).size(), sort + " " + direction);
+            }
+        }
+    }
+
+    @Test
+    void searchByKeysetWithQuery() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        Map<String, Object> page = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .queryParam("cursor", "")
+                .queryParam("query", "mary")
+                .get("/api/v1/users/search")
+                .as(new TypeRef<>() {
+                });
+        assertEquals(1, ((List<?>) page.get("content")).size());
+        assertNull(page.get("next"));
+    }
+
+    @Test
+    void searchByKeysetInvalidCursor() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", SUPER_SUB);
+
+        given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .queryParam("cursor", "nope")
+                .get("/api/v1/users/search")
+                .then()
+                .statusCode(400);
+    }
+}
@@ -6,8 +6,10 @@ import invite.exception.NotFoundException;
 import invite.manage.EntityType;
 import invite.model.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import io.restassured.common.mapper.TypeRef;
 import io.restassured.http.ContentType;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
@@ -656,4 +658,64 @@ class UserRoleControllerTest extends AbstractTest {
         assertEquals(Authority.GUEST, updatedUserRole.getAuthority());
     }
 
-}
\ No newline at end of file
+    @Test
+    void exportGuests() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", INVITER_WIKI_SUB);
+
+        Role role = roleRepository.findByName("Wiki").get();
+        String ndjson = given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .pathParams("roleId", role.getId())
+                .pathParams("guests", true)
+                .get("/api/v1/user_roles/export/{roleId}/{guests}")
+                .then()
+                .statusCode(200)
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
+        List<Map<String, Object>> rows = ndjson.lines().map(this::parseLine).toList();
+        assertEquals(2, rows.size());
+        rows.forEach(row -> assertEquals(role.getId().intValue(), row.get("role_id")));
+    }
+
+    @SneakyThrows
+    private Map<String, Object> parseLine(String line) {
+        return objectMapper.readValue(line, new TypeReference<>() {
+        });
+    }
+
+    @Test
+    void searchGuestsByKeyset() throws Exception {
+        AccessCookieFilter accessCookieFilter = openIDConnectFlow("/api/v1/users/login", INVITER_WIKI_SUB);
+
+        Role role = roleRepository.findByName("Wiki").get();
+        Map<String, Object> firstPage = searchGuestsByKeyset(accessCookieFilter, role, "");
+        assertEquals(1, ((List<?>) firstPage.get("content")).size());
+        assertNotNull(firstPage.get("next"));
+
+        Map<String, Object> secondPage = searchGuestsByKeyset(accessCookieFilter, role, (String) firstPage.get("next"));
+        assertEquals(1, ((List<?>) secondPage.get("content")).size());
+        assertNull(secondPage.get("next"));
+        assertNotEquals(((List<Map<String, Object>>) firstPage.get("content")).getFirst().get("id"),
+                ((List<Map<String, Object>>) secondPage.get("content")).getFirst().get("id"));
+    }
+
+    private Map<String, Object> searchGuestsByKeyset(AccessCookieFilter accessCookieFilter, Role role, String cursor) {
+        return given()
+                .when()
+                .filter(accessCookieFilter.cookieFilter())
+                .accept(ContentType.JSON)
+                .queryParams(Map.of(
+                        "cursor", cursor,
+                        "pageSize", 1,
+                        "sort", "end_date",
+                        "sortDirection", Sort.Direction.DESC
+                ))
+                .pathParams("roleId", role.getId())
+                .pathParams("guests", true)
+                .get("/api/v1/user_roles/search/{roleId}/{guests}")
+                .as(new TypeRef<>() {
+                });
+    }
+}
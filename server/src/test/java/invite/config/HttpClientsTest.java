@@ -0,0 +1,88 @@
+package invite.config;
+
+import invite.WireMockExtension;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientsTest {
+
+    @RegisterExtension
+    WireMockExtension mockServer = new WireMockExtension(8094);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void requestsAreTimedPerIntegrationAndHost() {
+        stubFor(get(urlPathEqualTo("/ok")).willReturn(aResponse().withBody("ok")));
+        stubFor(get(urlPathEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+        RestTemplate restTemplate = httpClients(5, Duration.ofSeconds(5)).restTemplate("test", Duration.ofSeconds(5));
+
+        assertEquals("ok", restTemplate.getForObject("http://localhost:8094/ok", String.class));
+        assertEquals("ok", restTemplate.getForObject("http://localhost:8094/ok", String.class));
+        assertThrows(HttpClientErrorException.NotFound.class,
+                () -> restTemplate.getForObject("http://localhost:8094/missing", String.class));
+
+        assertEquals(2L, timer("200").count());
+        assertEquals(1L, timer("404").count());
+    }
+
+    @Test
+    void concurrentRequestsPerHostAreCapped() {
+        stubFor(get(urlPathEqualTo("/slow")).willReturn(aResponse().withBody("slow").withFixedDelay(1000)));
+        RestTemplate restTemplate = httpClients(1, Duration.ofMillis(100)).restTemplate("test", Duration.ofSeconds(5));
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() ->
+                restTemplate.getForObject("http://localhost:8094/slow", String.class));
+        await().until(() -> mockServer.getAllServeEvents().size() == 1);
+        assertThrows(ResourceAccessException.class,
+                () -> restTemplate.getForObject("http://localhost:8094/slow", String.class));
+
+        assertEquals("slow", slow.join());
+        assertEquals(1.0, meterRegistry.get("outbound_http_rejected").counter().count());
+    }
+
+    @Test
+    void readingTheBodyIsTimedAndHoldsThePermit() {
+        stubFor(get(urlPathEqualTo("/dribble")).willReturn(aResponse().withBody("dribble".repeat(100))
+                .withChunkedDribbleDelay(5, 1000)));
+        RestTemplate restTemplate = httpClients(1, Duration.ofMillis(100)).restTemplate("test", Duration.ofSeconds(5));
+
+        CompletableFuture<String> dribble = CompletableFuture.supplyAsync(() ->
+                restTemplate.getForObject("http://localhost:8094/dribble", String.class));
+        await().until(() -> mockServer.getAllServeEvents().size() == 1);
+        assertThrows(ResourceAccessException.class,
+                () -> restTemplate.getForObject("http://localhost:8094/dribble", String.class));
+
+        assertEquals("dribble".repeat(100), dribble.join());
+        assertTrue(timer("200").totalTime(TimeUnit.MILLISECONDS) >= 500);
+    }
+
+    private HttpClients httpClients(int maxConcurrentRequestsPerHost, Duration acquireTimeout) {
+        return new HttpClients(Duration.ofSeconds(5), maxConcurrentRequestsPerHost, acquireTimeout, meterRegistry);
+    }
+
+    private Timer timer(String status) {
+        return meterRegistry.get("outbound_http_requests")
+                .tag("integration", "test")
+                .tag("host", "localhost")
+                .tag("status", status)
+                .timer();
+    }
+}
@@ -971,6 +971,11 @@ class CRMControllerTest extends AbstractMailTest {
 
     @Test
     void deleteOrganisation() {
+        User guest = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        Role mail = roleRepository.findByName("Mail").get();
+        userRoleRepository.save(new UserRole("system", guest, mail, Authority.MANAGER));
+        assertEquals("GUEST,MANAGER", jdbcTemplate.queryForObject("SELECT authorities FROM users WHERE sub = ?", String.class, GUEST_SUB));
+
         given()
                 .when()
                 .accept(ContentType.JSON)
@@ -983,6 +988,8 @@ class CRMControllerTest extends AbstractMailTest {
                 .body("status", equalTo("deleted"));
         Optional<Organisation> optionalOrganisation = organisationRepository.findByCrmOrganisationId(CRM_ORGANIZATION_ID);
         assertTrue(optionalOrganisation.isEmpty());
+        //The user role for the Mail role of the organisation is deleted by the database
+        assertEquals("GUEST", jdbcTemplate.queryForObject("SELECT authorities FROM users WHERE sub = ?", String.class, GUEST_SUB));
     }
 
     @Test
@@ -1,6 +1,7 @@
 package invite.cron;
 
 
+import invite.mail.LogoCache;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
 
@@ -8,22 +9,26 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 class IdPMetaDataResolverTest {
 
     @Test
     void resolveIdpMetaDataNoException() {
-        new IdPMetaDataResolver(null).resolveIdpMetaData();
+        new IdPMetaDataResolver(null, mock(LogoCache.class)).resolveIdpMetaData();
     }
 
     @Test
     void resolveIdpMetaDataNoExceptionFileNotFound() {
-        new IdPMetaDataResolver(new ClassPathResource("metadata/nope")).resolveIdpMetaData();
+        new IdPMetaDataResolver(new ClassPathResource("metadata/nope"), mock(LogoCache.class)).resolveIdpMetaData();
     }
 
     @Test
     void resolveIdentityProvider() {
-        IdPMetaDataResolver metaDataResolver = new IdPMetaDataResolver(new ClassPathResource("metadata/idps-metatdata-prod.xml"));
+        LogoCache logoCache = mock(LogoCache.class);
+        IdPMetaDataResolver metaDataResolver = new IdPMetaDataResolver(new ClassPathResource("metadata/idps-metatdata-prod.xml"), logoCache);
         List<String> schacHomes = Arrays.asList("student.ahk.nl", "ahknl.onmicrosoft.com", "ahk.nl");
         schacHomes.forEach(schacHome -> {
             IdentityProvider identityProvider = metaDataResolver.getIdentityProvider(schacHome).get();
@@ -32,6 +37,6 @@ class IdPMetaDataResolverTest {
             assertEquals("Amsterdamse Hogeschool voor de Kunsten", identityProvider.getDisplayNameNl());
             assertEquals("https://static.surfconext.nl/media/idp/ahk-logo.png", identityProvider.getLogoUrl());
         });
-
+        verify(logoCache).warm(argThat(logoUrls -> logoUrls.contains("https://static.surfconext.nl/media/idp/ahk-logo.png")));
     }
 }
\ No newline at end of file
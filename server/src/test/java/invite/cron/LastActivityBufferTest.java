@@ -0,0 +1,55 @@
+package invite.cron;
+
+import invite.AbstractTest;
+import invite.model.User;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.time.Period;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastActivityBufferTest extends AbstractTest {
+
+    @Autowired
+    private LastActivityBuffer lastActivityBuffer;
+
+    @Test
+    void flush() {
+        Instant past = Instant.now().minus(Period.ofDays(30));
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        user.setLastActivity(past);
+        userRepository.save(user);
+
+        given()
+                .when()
+                .auth().preemptive().basic("voot", "secret")
+                .accept(ContentType.JSON)
+                .contentType(ContentType.JSON)
+                .pathParam("sub", GUEST_SUB)
+                .get("/api/external/v1/voot/{sub}")
+                .then()
+                .statusCode(200);
+        lastActivityBuffer.doFlush();
+
+        Instant lastActivity = userRepository.findBySubIgnoreCase(GUEST_SUB).get().getLastActivity();
+        assertTrue(lastActivity.isAfter(past.plus(Period.ofDays(29))));
+    }
+
+    @Test
+    void flushNeverMovesLastActivityBack() {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        Instant future = Instant.now().plus(Period.ofDays(1));
+        user.setLastActivity(future);
+        userRepository.save(user);
+
+        lastActivityBuffer.record(user.getId());
+        lastActivityBuffer.doFlush();
+
+        Instant lastActivity = userRepository.findBySubIgnoreCase(GUEST_SUB).get().getLastActivity();
+        assertTrue(lastActivity.isAfter(Instant.now()));
+    }
+}
@@ -0,0 +1,91 @@
+package invite.cron;
+
+import invite.AbstractMailTest;
+import invite.mail.MailDispatcher;
+import invite.mail.MailOutbox;
+import invite.mail.MimeMessageParser;
+import invite.model.MailMessage;
+import invite.repository.MailMessageRepository;
+import jakarta.mail.internet.MimeMessage;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MailOutboxDispatcherTest extends AbstractMailTest {
+
+    @Autowired
+    private MailOutboxDispatcher mailOutboxDispatcher;
+
+    @Autowired
+    private MailMessageRepository mailMessageRepository;
+
+    @Autowired
+    private MailDispatcher mailDispatcher;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    void beforeEachMailOutbox() {
+        mailMessageRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void sendAndDispatch() throws Exception {
+        MailOutbox mailOutbox = new MailOutbox(jdbcTemplate, mailDispatcher, true);
+        mailOutbox.send(List.of(mimeMessage("guest@example.com"), mimeMessage("inviter@example.com")));
+
+        List<MailMessage> messages = mailMessageRepository.findAll();
+        assertEquals(2, messages.size());
+        assertEquals(MailMessage.MessageStatus.PENDING, messages.getFirst().getStatus());
+        assertEquals("guest@example.com", messages.getFirst().getRecipients());
+        assertEquals(2L, mailOutboxDispatcher.counts().get("pending"));
+
+        assertEquals(2, mailOutboxDispatcher.doDispatch());
+        List<MimeMessageParser> mailMessages = allMailMessages(2);
+        assertEquals("Invitation", mailMessages.getFirst().getSubject());
+        await().until(() -> mailOutboxDispatcher.counts().get("sent") == 2L);
+
+        //The MIME message of a sent mail is cleared
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM mail_outbox WHERE mime_message IS NULL AND attempts = 1", Integer.class));
+
+        //Sent mails are not dispatched again
+        assertEquals(0, mailOutboxDispatcher.doDispatch());
+        assertEquals(0L, mailOutboxDispatcher.counts().get("pending"));
+    }
+
+    @Test
+    void failedMailsAreChangedWithoutTheMimeMessage() {
+        MailMessage message = mailMessageRepository.save(new MailMessage("guest@example.com", "Invitation", new byte[]{1}));
+        Map<String, Object> attempts = mailMessageRepository.findAttemptsById(message.getId()).getFirst();
+        assertEquals(0, ((Number) attempts.get("attempts")).intValue());
+        assertEquals("guest@example.com", attempts.get("recipients"));
+
+        mailMessageRepository.markFailed(message.getId(), "Connection refused");
+        assertEquals(1L, mailOutboxDispatcher.counts().get("failed"));
+        assertTrue(mailMessageRepository.findAttemptsById(-1L).isEmpty());
+    }
+
+    @SneakyThrows
+    private MimeMessage mimeMessage(String to) {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setSubject("Invitation");
+        helper.setText("Plain", "<p>Html</p>");
+        helper.setTo(to);
+        helper.setFrom("no-reply@surf.nl");
+        message.saveChanges();
+        return message;
+    }
+}
@@ -0,0 +1,159 @@
+package invite.cron;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import invite.AbstractTest;
+import invite.manage.EntityType;
+import invite.manage.Manage;
+import invite.model.ProvisioningMessage;
+import invite.model.RemoteProvisionedUser;
+import invite.model.Role;
+import invite.model.User;
+import invite.model.UserRole;
+import invite.provision.OutboxProvisioningService;
+import invite.provision.ProvisioningServiceDefault;
+import invite.provision.graph.GraphResponse;
+import invite.provision.scim.OperationType;
+import invite.repository.ProvisioningMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProvisioningOutboxDispatcherTest extends AbstractTest {
+
+    @Autowired
+    private ProvisioningOutboxDispatcher provisioningOutboxDispatcher;
+
+    @Autowired
+    private ProvisioningMessageRepository provisioningMessageRepository;
+
+    @Autowired
+    private ProvisioningServiceDefault provisioningServiceDefault;
+
+    @Autowired
+    private Manage manage;
+
+    @Test
+    void enqueueAndDispatch() throws JsonProcessingException {
+        OutboxProvisioningService outboxProvisioningService = new OutboxProvisioningService(provisioningServiceDefault,
+                provisioningMessageRepository, userRepository, roleRepository, userRoleRepository, manage, true);
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        //See server/src/main/resources/manage/provisioning.json, applicationId="1" and provisioning "7"
+        this.stubForManageProvisioning(List.of("1"));
+        this.stubForManageProviderById(EntityType.PROVISIONING, "7");
+        super.stubForProvisionEduID(UUID.randomUUID().toString());
+        String remoteScimIdentifier = this.stubForCreateScimUser();
+
+        outboxProvisioningService.newUserRequest(user);
+
+        List<ProvisioningMessage> messages = provisioningMessageRepository.findAll();
+        assertEquals(1, messages.size());
+        assertEquals(ProvisioningMessage.Operation.NEW_USER, messages.getFirst().getOperation());
+        assertEquals("7", messages.getFirst().getManageProvisioningId());
+        mockServer.verify(0, postRequestedFor(urlPathMatching("/api/scim/v2/Users")));
+
+        assertEquals(1, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.count() == 0);
+
+        List<RemoteProvisionedUser> remoteProvisionedUsers = remoteProvisionedUserRepository.findAll();
+        assertEquals(1, remoteProvisionedUsers.size());
+        assertEquals(remoteScimIdentifier, remoteProvisionedUsers.getFirst().getRemoteIdentifier());
+    }
+
+    @Test
+    void newUserRequestSendsGraphSynchronously() throws JsonProcessingException {
+        OutboxProvisioningService outboxProvisioningService = new OutboxProvisioningService(provisioningServiceDefault,
+                provisioningMessageRepository, userRepository, roleRepository, userRoleRepository, manage, true);
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        //See server/src/main/resources/manage/provisioning.json, applicationId="2" and graph provisioning "9"
+        this.stubForManageProvisioning(List.of("2"));
+        this.stubForCreateGraphUser();
+
+        Optional<GraphResponse> graphResponse = outboxProvisioningService.newUserRequest(user);
+
+        assertEquals("https://www.google.com", graphResponse.get().inviteRedeemUrl());
+        assertEquals(0, provisioningMessageRepository.count());
+        assertEquals(1, remoteProvisionedUserRepository.count());
+    }
+
+    @Test
+    void dispatchCollapsesGroupUpdates() throws JsonProcessingException {
+        Role role = roleRepository.findByName("Research").get();
+        List<UserRole> userRoles = userRoleRepository.findByRole(role);
+        assertEquals(2, userRoles.size());
+        //See server/src/main/resources/manage/provisioning.json, applicationId="4" and provisioning "8" using PATCH
+        this.stubForManageProvisioning(List.of("4"));
+        this.stubForManageProviderById(EntityType.PROVISIONING, "8");
+        this.stubForCreateScimRole();
+        this.stubForCreateScimUser();
+        this.stubForUpdateScimRolePatch();
+        userRoles.forEach(userRole -> provisioningMessageRepository.save(new ProvisioningMessage(
+                ProvisioningMessage.Operation.UPDATE_GROUP, "8", null, role.getId(), userRole.getId(), OperationType.add)));
+
+        assertEquals(2, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.count() == 0);
+
+        mockServer.verify(1, patchRequestedFor(urlPathMatching("/api/scim/v2/Groups/(.*)")));
+    }
+
+    @Test
+    void dispatchWithRemoteError() {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        this.stubForManageProviderById(EntityType.PROVISIONING, "8");
+        ProvisioningMessage message = provisioningMessageRepository.save(
+                new ProvisioningMessage(ProvisioningMessage.Operation.NEW_USER, "8", user.getId(), null, null, null));
+
+        assertEquals(1, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.findById(message.getId()).get().getLastError() != null);
+
+        ProvisioningMessage failedMessage = provisioningMessageRepository.findById(message.getId()).get();
+        assertEquals(1, failedMessage.getAttempts());
+        assertEquals(ProvisioningMessage.MessageStatus.PENDING, failedMessage.getStatus());
+        assertTrue(failedMessage.getNextAttemptAt().isAfter(Instant.now()));
+        //Not due yet
+        assertEquals(0, provisioningOutboxDispatcher.doDispatch());
+    }
+
+    @Test
+    void dispatchInOrderPerProvisioning() {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        this.stubForManageProviderById(EntityType.PROVISIONING, "8");
+        this.stubForManageProviderByIdNotFound(EntityType.PROVISIONING, "nope");
+        ProvisioningMessage failing = provisioningMessageRepository.save(
+                new ProvisioningMessage(ProvisioningMessage.Operation.NEW_USER, "8", user.getId(), null, null, null));
+        ProvisioningMessage next = provisioningMessageRepository.save(
+                new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_USER, "8", user.getId(), null, null, null));
+
+        assertEquals(2, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.findById(next.getId()).get().getAttempts() == 0);
+
+        //The next message waits for the failed message, which is backing off
+        assertNotNull(provisioningMessageRepository.findById(failing.getId()).get().getLastError());
+        assertNull(provisioningMessageRepository.findById(next.getId()).get().getLastError());
+        provisioningMessageRepository.save(
+                new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_USER, "nope", user.getId(), null, null, null));
+        //Only the message for the other provisioning is dispatched
+        assertEquals(1, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.count() == 2);
+    }
+
+    @Test
+    void dispatchNonExistentProvisioning() {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        this.stubForManageProviderByIdNotFound(EntityType.PROVISIONING, "nope");
+        provisioningMessageRepository.save(
+                new ProvisioningMessage(ProvisioningMessage.Operation.UPDATE_USER, "nope", user.getId(), null, null, null));
+
+        assertEquals(1, provisioningOutboxDispatcher.doDispatch());
+        await().until(() -> provisioningMessageRepository.count() == 0);
+    }
+}
@@ -11,6 +11,9 @@ import invite.repository.InvitationRepository;
 import invite.repository.UserRepository;
 import invite.repository.UserRoleAuditRepository;
 import invite.repository.UserRoleRepository;
+import invite.search.UserRoleCounts;
+import invite.search.UserSummaries;
+import invite.voot.VootMemberships;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 
@@ -43,6 +46,9 @@ class ResourceCleanerUnitTest {
             userRoleAuditRepository,
             userRoleAuditService,
             invitationRepository,
+            mock(VootMemberships.class),
+            mock(UserSummaries.class),
+            mock(UserRoleCounts.class),
             5,
             5,
             5);
@@ -2,11 +2,14 @@ package invite.eduid;
 
 import invite.WireMockExtension;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.config.HttpClients;
 import invite.exception.RemoteException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,7 +19,8 @@ import static org.junit.jupiter.api.Assertions.*;
 class EduIDTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final EduID eduID = new EduID("http://localhost:8081/myconext/api/invite/provision-eduid", "invite", "secret");
+    private final EduID eduID = new EduID("http://localhost:8081/myconext/api/invite/provision-eduid", "invite", "secret",
+            Duration.ofSeconds(10), new HttpClients(Duration.ofSeconds(5), 5, Duration.ofSeconds(5), new SimpleMeterRegistry()));
 
     @RegisterExtension
     WireMockExtension mockServer = new WireMockExtension(8081);
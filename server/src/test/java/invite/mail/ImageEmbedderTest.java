@@ -2,9 +2,12 @@ package invite.mail;
 
 import com.github.tomakehurst.wiremock.http.Fault;
 import invite.WireMockExtension;
+import invite.config.HttpClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
@@ -18,6 +21,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ImageEmbedderTest {
 
+    private final ImageEmbedder imageEmbedder = new ImageEmbedder(
+            new HttpClients(Duration.ofSeconds(5), 5, Duration.ofSeconds(5), new SimpleMeterRegistry())
+                    .restTemplate("images", Duration.ofSeconds(5)));
+
     @RegisterExtension
     WireMockExtension mockServer = new WireMockExtension(8093);
 
@@ -29,7 +36,7 @@ class ImageEmbedderTest {
                 .withHeader("Content-Type", "image/png")
                 .withBody(pngBytes)));
 
-        Optional<String> dataUrl = ImageEmbedder.fetchAsDataUrl("http://localhost:8093/logo.png");
+        Optional<String> dataUrl = imageEmbedder.fetchAsDataUrl("http://localhost:8093/logo.png");
 
         assertTrue(dataUrl.isPresent());
         assertEquals("data:image/png;base64,iVBORw0KGgo=", dataUrl.get());
@@ -44,7 +51,7 @@ class ImageEmbedderTest {
                 .withHeader("Content-Type", "image/png")
                 .withBody(oversizedBody)));
 
-        Optional<String> dataUrl = ImageEmbedder.fetchAsDataUrl("http://localhost:8093/huge.png");
+        Optional<String> dataUrl = imageEmbedder.fetchAsDataUrl("http://localhost:8093/huge.png");
 
         assertTrue(dataUrl.isEmpty());
         verify(getRequestedFor(urlPathEqualTo("/huge.png")));
@@ -55,7 +62,7 @@ class ImageEmbedderTest {
         stubFor(get(urlPathEqualTo("/broken.png")).willReturn(aResponse()
                 .withFault(Fault.MALFORMED_RESPONSE_CHUNK)));
 
-        Optional<String> dataUrl = ImageEmbedder.fetchAsDataUrl("http://localhost:8093/broken.png");
+        Optional<String> dataUrl = imageEmbedder.fetchAsDataUrl("http://localhost:8093/broken.png");
 
         assertTrue(dataUrl.isEmpty());
         verify(getRequestedFor(urlPathEqualTo("/broken.png")));
@@ -63,7 +70,7 @@ class ImageEmbedderTest {
 
     @Test
     void fetchAsDataUrlReturnsEmptyOnFailure() {
-        Optional<String> dataUrl = ImageEmbedder.fetchAsDataUrl("not a url");
+        Optional<String> dataUrl = imageEmbedder.fetchAsDataUrl("not a url");
 
         assertTrue(dataUrl.isEmpty());
     }
@@ -0,0 +1,109 @@
+package invite.mail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.WireMockExtension;
+import invite.config.HttpClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogoCacheTest {
+
+    private static final String LOGO_URL = "http://localhost:8093/logo.png";
+
+    private final ImageEmbedder imageEmbedder = new ImageEmbedder(
+            new HttpClients(Duration.ofSeconds(5), 5, Duration.ofSeconds(5), new SimpleMeterRegistry())
+                    .restTemplate("images", Duration.ofSeconds(5)));
+
+    @RegisterExtension
+    WireMockExtension mockServer = new WireMockExtension(8093);
+
+    @TempDir
+    private Path tempDir;
+
+    private final List<LogoCache> logoCaches = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        //Stop the background fetches before the temporary directory is deleted
+        for (LogoCache logoCache : logoCaches) {
+            logoCache.shutdown();
+        }
+    }
+
+    @Test
+    void dataUrlIsFetchedInBackground() {
+        stubLogo("\"v1\"");
+        LogoCache logoCache = logoCache(10_000);
+
+        //Never blocks on the remote web server
+        assertTrue(logoCache.dataUrl(LOGO_URL).isEmpty());
+        await().until(() -> logoCache.dataUrl(LOGO_URL).isPresent());
+
+        assertEquals("data:image/png;base64,iVBORw0KGgo=", logoCache.dataUrl(LOGO_URL).get());
+        verify(1, getRequestedFor(urlPathEqualTo("/logo.png")));
+    }
+
+    @Test
+    void warmRevalidates() {
+        stubLogo("\"v1\"");
+        LogoCache logoCache = logoCache(10_000);
+        logoCache.refresh(LOGO_URL);
+        stubFor(get(urlPathEqualTo("/logo.png"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304)));
+
+        logoCache.warm(List.of(LOGO_URL, LOGO_URL));
+        await().until(() -> mockServer.countRequestsMatching(
+                getRequestedFor(urlPathEqualTo("/logo.png")).withHeader("If-None-Match", equalTo("\"v1\"")).build())
+                .getCount() == 1);
+
+        assertEquals(Optional.of("data:image/png;base64,iVBORw0KGgo="), logoCache.dataUrl(LOGO_URL));
+    }
+
+    @Test
+    void evictedLogosAreLoadedFromDirectory() {
+        stubLogo("\"v1\"");
+        //Too small to keep any logo in memory
+        logoCache(1).refresh(LOGO_URL);
+
+        //A new instance, like after a restart, does not fetch the logo again
+        Optional<String> dataUrl = logoCache(1).dataUrl(LOGO_URL);
+
+        assertEquals(Optional.of("data:image/png;base64,iVBORw0KGgo="), dataUrl);
+        verify(1, getRequestedFor(urlPathEqualTo("/logo.png")));
+    }
+
+    private LogoCache logoCache(long maxMemoryBytes) {
+        LogoCache logoCache = new LogoCache(imageEmbedder, new ObjectMapper(), tempDir.toString(), maxMemoryBytes, true);
+        logoCaches.add(logoCache);
+        return logoCache;
+    }
+
+    private void stubLogo(String etag) {
+        byte[] pngBytes = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        stubFor(get(urlPathEqualTo("/logo.png")).willReturn(aResponse()
+                .withHeader("Content-Type", "image/png")
+                .withHeader("ETag", etag)
+                .withBody(pngBytes)));
+    }
+}
@@ -87,6 +87,44 @@ class MailBoxTest extends AbstractMailTest {
         assertTrue(htmlContent.contains("for 10 days"));
     }
 
+    @Test
+    void sendInviteMails() throws Exception {
+        User user = new User(false, "eppn", "sub", "example.com", "John", "Doe", "jdoe@example.com");
+        Role role = new Role("name", "desc", application("1", EntityType.SAML20_SP), 365, false, false);
+        List<Invitation> invitations = List.of("first", "second").stream()
+                .map(name -> new Invitation(Authority.GUEST,
+                        "hash-" + name,
+                        name + "@ex.com",
+                        false,
+                        false,
+                        "https://eduid.nl/trust/linked-institution",
+                        false,
+                        "Please join..",
+                        Language.en,
+                        user,
+                        Instant.now().plus(30, ChronoUnit.DAYS),
+                        Instant.now().plus(365, ChronoUnit.DAYS),
+                        Set.of(new InvitationRole(role)),
+                        Set.of(),
+                        null))
+                .toList();
+        mailBox.sendInviteMails(user, invitations, List.of(
+                new GroupedProviders(
+                        localManage.providerById(EntityType.SAML20_SP, "1"),
+                        List.of(role),
+                        UUID.randomUUID().toString())
+        ), Language.en, Optional.empty());
+
+        List<MimeMessageParser> messages = super.allMailMessages(2);
+        for (MimeMessageParser message : messages) {
+            String recipient = message.getTo().getFirst().toString();
+            String hash = "hash-" + recipient.substring(0, recipient.indexOf("@"));
+            assertTrue(message.getHtmlContent().contains("accept?hash=" + hash));
+            assertTrue(message.getPlainContent().contains("accept?hash=" + hash));
+            assertFalse(message.getHtmlContent().contains("PLACEHOLDER"));
+        }
+    }
+
     private String doSendInviteMail(boolean eduIDOnly, Authority intendedAuthority) {
         User user = new User(false, "eppn", "sub", "example.com", "John", "Doe", "jdoe@example.com");
         Invitation invitation = new Invitation(intendedAuthority,
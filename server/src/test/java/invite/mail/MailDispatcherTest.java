@@ -0,0 +1,107 @@
+package invite.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class MailDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void dispatchInBatches() throws InterruptedException {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstBatch.await(5, TimeUnit.SECONDS);
+            batchSizes.add(invocation.getArguments().length);
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+        MailDispatcher mailDispatcher = mailDispatcher(mailSender, 10, 0);
+
+        for (int i = 0; i < 25; i++) {
+            mailDispatcher.dispatch(message());
+        }
+        firstBatch.countDown();
+        await().until(() -> batchSizes.stream().mapToInt(Integer::intValue).sum() == 25);
+
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+        assertTrue(batchSizes.size() < 25);
+        assertEquals(25.0, meterRegistry.counter("mail_dispatch_messages", "outcome", "sent").count());
+        mailDispatcher.shutdown();
+    }
+
+    @Test
+    void failedBatchDoesNotStopTheWorker() throws InterruptedException {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage[].class));
+        MailDispatcher mailDispatcher = mailDispatcher(mailSender, 10, 0);
+
+        mailDispatcher.dispatch(message());
+        await().until(() -> meterRegistry.counter("mail_dispatch_messages", "outcome", "failed").count() == 1.0);
+        mailDispatcher.dispatch(message());
+        await().until(() -> meterRegistry.counter("mail_dispatch_messages", "outcome", "failed").count() == 2.0);
+        mailDispatcher.shutdown();
+    }
+
+    @Test
+    void rateLimit() throws InterruptedException {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        MailDispatcher mailDispatcher = mailDispatcher(mailSender, 1, 20);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            mailDispatcher.dispatch(message());
+        }
+        await().until(() -> meterRegistry.counter("mail_dispatch_messages", "outcome", "sent").count() == 10.0);
+        //Ten mails at twenty per second are spaced over at least 450 milliseconds
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 450);
+        mailDispatcher.shutdown();
+    }
+
+    @Test
+    void rateLimitCapsTheBatchSize() throws InterruptedException {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.getArguments().length);
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+        MailDispatcher mailDispatcher = mailDispatcher(mailSender, 10, 4);
+
+        for (int i = 0; i < 8; i++) {
+            mailDispatcher.dispatch(message());
+        }
+        await().until(() -> batchSizes.stream().mapToInt(Integer::intValue).sum() == 8);
+
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 4));
+        mailDispatcher.shutdown();
+    }
+
+    private MailDispatcher mailDispatcher(JavaMailSender mailSender, int batchSize, int maxPerSecond) {
+        return new MailDispatcher(mailSender, 2, batchSize, 100, Duration.ofSeconds(5), maxPerSecond, meterRegistry);
+    }
+
+    private MimeMessage message() {
+        return new MimeMessage(Session.getInstance(new Properties()));
+    }
+}
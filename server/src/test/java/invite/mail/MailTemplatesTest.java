@@ -0,0 +1,37 @@
+package invite.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailTemplatesTest {
+
+    private final MailTemplates mailTemplates = new MailTemplates("templates");
+
+    @Test
+    void render() {
+        for (String language : new String[]{"en", "nl"}) {
+            for (String extension : new String[]{"html", "txt"}) {
+                String text = mailTemplates.render(String.format("invitation_%s.%s", language, extension),
+                        Map.of("title", "Invitation for Wiki"));
+                assertFalse(text.isBlank());
+            }
+        }
+        String html = mailTemplates.render("scim_provisioning_en.html", Map.of());
+        assertFalse(html.isBlank());
+    }
+
+    @Test
+    void renderUnknownTemplate() {
+        assertThrows(IllegalArgumentException.class, () -> mailTemplates.render("nope_en.html", Map.of()));
+    }
+
+    @Test
+    void image() {
+        assertTrue(mailTemplates.image("templates/logo-surf-black.png").contentLength() > 0);
+        assertTrue(mailTemplates.image("templates/eduID-logo-square.png").contentLength() > 0);
+        assertNull(mailTemplates.image("templates/nope.png"));
+    }
+}
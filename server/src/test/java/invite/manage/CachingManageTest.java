@@ -0,0 +1,105 @@
+package invite.manage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class CachingManageTest {
+
+    private final Manage delegate = spy(new LocalManage(new ObjectMapper()));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Manage manage = new CachingManage(delegate, Duration.ofMinutes(5), Duration.ofMinutes(1), 100, meterRegistry);
+
+    @Test
+    void providerById() {
+        Map<String, Object> provider = manage.providerById(EntityType.SAML20_SP, "1");
+        Map<String, Object> cachedProvider = manage.providerById(EntityType.SAML20_SP, "1");
+
+        assertEquals("1", cachedProvider.get("id"));
+        //The cached provider is shared and can't be changed
+        assertSame(provider, cachedProvider);
+        assertThrows(UnsupportedOperationException.class, () -> cachedProvider.put("roleCount", 1L));
+        verify(delegate, times(1)).providerById(EntityType.SAML20_SP, "1");
+        assertEquals(1D, meterRegistry.get("cache.gets").tag("cache", "manage_saml20_sp_by_id").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void providersByIdIn() {
+        List<Map<String, Object>> providers = manage.providersByIdIn(EntityType.SAML20_SP, List.of("1", "3", "nope"));
+        assertEquals(2, providers.size());
+
+        //Only the new identifier is fetched and the unknown identifier is negatively cached
+        providers = manage.providersByIdIn(EntityType.SAML20_SP, List.of("1", "3", "4", "nope"));
+        assertEquals(3, providers.size());
+        verify(delegate, times(1)).providersByIdIn(EntityType.SAML20_SP, List.of("4"));
+
+        assertEquals("1", manage.providerById(EntityType.SAML20_SP, "1").get("id"));
+        verify(delegate, never()).providerById(EntityType.SAML20_SP, "1");
+    }
+
+    @Test
+    void providerByEntityID() {
+        Optional<Map<String, Object>> provider = manage.providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        Optional<Map<String, Object>> unknown = manage.providerByEntityID(EntityType.SAML20_SP, "https://nope");
+        manage.providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        manage.providerByEntityID(EntityType.SAML20_SP, "https://nope");
+
+        assertTrue(provider.isPresent());
+        assertTrue(unknown.isEmpty());
+        verify(delegate, times(1)).providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        verify(delegate, times(1)).providerByEntityID(EntityType.SAML20_SP, "https://nope");
+    }
+
+    @Test
+    void provisioning() {
+        List<Map<String, Object>> provisionings = manage.provisioning(List.of("1", "4", "5"));
+        List<Map<String, Object>> cachedProvisionings = manage.provisioning(List.of("5", "4", "1"));
+
+        verify(delegate, times(1)).provisioning(anyList());
+        assertEquals(2, provisionings.size());
+        assertEquals(2, cachedProvisionings.size());
+    }
+
+    @Test
+    void identityProvidersByInstitutionalGUID() {
+        String organisationGUID = "ad93daef-0911-e511-80d0-005056956c1a";
+        List<Map<String, Object>> identityProviders = manage.identityProvidersByInstitutionalGUID(organisationGUID);
+        manage.identityProvidersByInstitutionalGUID(organisationGUID);
+
+        assertEquals(2, identityProviders.size());
+        verify(delegate, times(1)).identityProvidersByInstitutionalGUID(organisationGUID);
+    }
+
+    @Test
+    void evict() {
+        manage.providerById(EntityType.SAML20_SP, "1");
+        manage.providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        manage.providerById(EntityType.SAML20_SP, "3");
+
+        manage.evict(EntityType.SAML20_SP, "1");
+
+        manage.providerById(EntityType.SAML20_SP, "1");
+        manage.providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        manage.providerById(EntityType.SAML20_SP, "3");
+        verify(delegate, times(2)).providerById(EntityType.SAML20_SP, "1");
+        verify(delegate, times(2)).providerByEntityID(EntityType.SAML20_SP, "https://wiki");
+        verify(delegate, times(1)).providerById(EntityType.SAML20_SP, "3");
+
+        manage.evict(null, null);
+
+        manage.providerById(EntityType.SAML20_SP, "3");
+        verify(delegate, times(2)).providerById(EntityType.SAML20_SP, "3");
+    }
+}
@@ -1,6 +1,7 @@
 package invite.manage;
 
 import invite.AbstractTest;
+import invite.exception.NotFoundException;
 import invite.model.Role;
 import invite.provision.ProvisioningType;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,8 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LocalManageTest extends AbstractTest {
 
@@ -21,6 +24,23 @@ class LocalManageTest extends AbstractTest {
         roles.forEach(role -> role.getApplicationMaps().forEach(map -> assertNotNull(map.get("id"))));
     }
 
+    @Test
+    void indexedLookups() {
+        Map<String, Object> provider = localManage.providerById(EntityType.SAML20_SP, "1");
+        //The providers of the index are shared and can't be changed
+        assertThrows(UnsupportedOperationException.class, () -> provider.put("roleCount", 1L));
+
+        assertSame(provider, localManage.providerById(EntityType.SAML20_SP, "1"));
+        assertThrows(NotFoundException.class, () -> localManage.providerById(EntityType.SAML20_SP, "nope"));
+        assertEquals("1", localManage.providerByEntityID(EntityType.SAML20_SP, "https://wiki").get().get("id"));
+        assertEquals(List.of("1", "3"), localManage.providersByIdIn(EntityType.SAML20_SP, List.of("3", "1", "nope")).stream()
+                .map(application -> application.get("id"))
+                .toList());
+        assertEquals(List.of("7", "8"), localManage.provisioning(List.of("4", "1", "5")).stream()
+                .map(provisioning -> provisioning.get("id"))
+                .toList());
+    }
+
     @Test
     void provisioningScimTrailingSlash() {
         Map<String, Object> provider = Map.of(
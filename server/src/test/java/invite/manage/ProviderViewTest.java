@@ -0,0 +1,50 @@
+package invite.manage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderViewTest {
+
+    @Test
+    void asMapIsSharedAndUnmodifiable() {
+        ProviderView providerView = ProviderView.of(Map.of(
+                "_id", "1",
+                "type", EntityType.SAML20_SP.collectionName(),
+                "data", Map.of(
+                        "entityid", "https://wiki",
+                        "metaDataFields", Map.of("name:en", "Wiki", "coin:institution_guid", "guid"),
+                        "arp", Map.of("enabled", false))));
+        Map<String, Object> provider = providerView.asMap();
+
+        assertSame(provider, providerView.asMap());
+        assertEquals("1", provider.get("id"));
+        assertEquals("1", provider.get("_id"));
+        assertEquals("https://wiki", providerView.entityId());
+        assertEquals("guid", providerView.institutionGuid());
+        assertEquals(false, provider.get("receivesMemberships"));
+        assertTrue(provider.containsKey("logo"));
+        assertThrows(UnsupportedOperationException.class, () -> provider.put("roleCount", 1L));
+    }
+
+    @Test
+    void withEntry() throws Exception {
+        Map<String, Object> provider = new HashMap<>(Map.of("id", "1", "name:en", "Wiki"));
+        Map<String, Object> first = ProviderView.withEntry(provider, "landingPage", "https://landing/first");
+        Map<String, Object> second = ProviderView.withEntry(provider, "landingPage", "https://landing/second");
+
+        assertEquals("https://landing/first", first.get("landingPage"));
+        assertEquals("https://landing/second", second.get("landingPage"));
+        assertEquals(3, first.size());
+        assertEquals(Map.of("id", "1", "name:en", "Wiki", "landingPage", "https://landing/first"), first);
+        assertFalse(provider.containsKey("landingPage"));
+
+        String json = new ObjectMapper().writeValueAsString(List.of(first));
+        assertTrue(json.contains("\"landingPage\":\"https://landing/first\""));
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -35,7 +36,7 @@ class RemoteManageTest extends AbstractTest {
 
     @Test
     void providerById() throws JsonProcessingException {
-        Map<String, Object> provider = localManage.providerById(EntityType.SAML20_SP, "1");
+        Map<String, Object> provider = new HashMap<>(localManage.providerById(EntityType.SAML20_SP, "1"));
         String body = objectMapper.writeValueAsString(provider);
         stubFor(get(urlPathMatching("/manage/api/internal/metadata/saml20_sp/1")).willReturn(aResponse()
                 .withHeader("Content-Type", "application/json")
@@ -48,7 +49,9 @@ class RemoteManageTest extends AbstractTest {
 
     @Test
     void providersByIdIn() throws JsonProcessingException {
-        List<Map<String, Object>> providers = localManage.providersByIdIn(EntityType.SAML20_SP, List.of("1", "3", "4"));
+        List<Map<String, Object>> providers = localManage.providersByIdIn(EntityType.SAML20_SP, List.of("1", "3", "4")).stream()
+                .map(provider -> (Map<String, Object>) new HashMap<>(provider))
+                .toList();
         String body = objectMapper.writeValueAsString(providers);
         stubFor(post(urlPathMatching("/manage/api/internal/rawSearch/saml20_sp")).willReturn(aResponse()
                 .withHeader("Content-Type", "application/json")
@@ -0,0 +1,142 @@
+package invite.manage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import invite.exception.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+class SnapshotManageTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RemoteManage remoteManage = mock(RemoteManage.class);
+
+    @TempDir
+    private Path tempDir;
+
+    @BeforeEach
+    void beforeEach() {
+        when(remoteManage.rawProviders(any(EntityType.class)))
+                .thenAnswer(invocation -> rawProviders(invocation.getArgument(0)));
+        when(remoteManage.providerVersions(any(EntityType.class)))
+                .thenAnswer(invocation -> rawProviders(invocation.getArgument(0)).stream()
+                        .collect(Collectors.toMap(provider -> (String) provider.get("_id"), provider -> provider.get("version"))));
+    }
+
+    @Test
+    void queries() {
+        Manage manage = snapshotManage();
+
+        assertEquals("1", manage.providerById(EntityType.SAML20_SP, "1").get("id"));
+        assertThrows(NotFoundException.class, () -> manage.providerById(EntityType.SAML20_SP, "nope"));
+        assertTrue(manage.providerByEntityID(EntityType.SAML20_SP, "https://wiki").isPresent());
+        assertEquals(2, manage.providersByIdIn(EntityType.SAML20_SP, List.of("1", "3", "nope")).size());
+        assertEquals("7", manage.provisioning(List.of("1")).getFirst().get("id"));
+        assertEquals(1, manage.policiesByServiceProviders(List.of("https://network")).size());
+
+        //The providers are shared, callers must copy the result before changing it
+        Map<String, Object> provider = manage.providerById(EntityType.SAML20_SP, "1");
+        assertThrows(UnsupportedOperationException.class, () -> provider.put("roleCount", 1L));
+    }
+
+    @Test
+    void sameResultsAsLocalManage() {
+        Manage manage = snapshotManage();
+        Manage localManage = new LocalManage(objectMapper);
+
+        for (EntityType entityType : EntityType.values()) {
+            assertEquals(localManage.providers(entityType).size(), manage.providers(entityType).size());
+        }
+        Map<String, Object> identityProvider = localManage.providerById(EntityType.SAML20_IDP, "7");
+        assertEquals(
+                localManage.providersAllowedByIdP(identityProvider).stream().map(provider -> provider.get("id")).collect(Collectors.toSet()),
+                manage.providersAllowedByIdP(identityProvider).stream().map(provider -> provider.get("id")).collect(Collectors.toSet()));
+        List<String> entityIdentifiers = List.of("https://wiki", "https://network");
+        assertEquals(
+                new HashSet<>(localManage.idpEntityIdentifiersByServiceEntityId(entityIdentifiers)),
+                new HashSet<>(manage.idpEntityIdentifiersByServiceEntityId(entityIdentifiers)));
+    }
+
+    @Test
+    void synchronizeOnlyFetchesChangedProviders() {
+        SnapshotManage manage = snapshotManage();
+        List<Map<String, Object>> serviceProviders = rawProviders(EntityType.SAML20_SP);
+        Map<String, Object> changed = serviceProviders.stream().filter(provider -> provider.get("_id").equals("1")).findFirst().orElseThrow();
+        changed.put("version", 2);
+        ((Map<String, Object>) ((Map<String, Object>) changed.get("data")).get("metaDataFields")).put("name:en", "Changed");
+        Map<String, Object> versions = new HashMap<>();
+        //Provider "3" is removed in Manage
+        serviceProviders.stream()
+                .filter(provider -> !provider.get("_id").equals("3"))
+                .forEach(provider -> versions.put((String) provider.get("_id"), provider.get("version")));
+        when(remoteManage.providerVersions(EntityType.SAML20_SP)).thenReturn(versions);
+        when(remoteManage.rawProvidersByIdIn(EntityType.SAML20_SP, List.of("1"))).thenReturn(List.of(changed));
+
+        manage.synchronize();
+
+        assertEquals("Changed", manage.providerById(EntityType.SAML20_SP, "1").get("name:en"));
+        assertThrows(NotFoundException.class, () -> manage.providerById(EntityType.SAML20_SP, "3"));
+        verify(remoteManage, times(1)).rawProvidersByIdIn(any(), anyCollection());
+    }
+
+    @Test
+    void synchronizeKeepsSnapshotWhenManageIsDown() {
+        SnapshotManage manage = snapshotManage();
+        when(remoteManage.providerVersions(any(EntityType.class))).thenThrow(new IllegalStateException("No response from Manage"));
+
+        manage.synchronize();
+
+        assertEquals("1", manage.providerById(EntityType.SAML20_SP, "1").get("id"));
+    }
+
+    @Test
+    void snapshotIsLoadedFromFile() {
+        snapshotManage();
+        assertTrue(Files.exists(tempDir.resolve("snapshot.json")));
+        reset(remoteManage);
+        when(remoteManage.rawProviders(any(EntityType.class))).thenThrow(new IllegalStateException("No response from Manage"));
+
+        Manage manage = snapshotManage();
+
+        assertEquals("1", manage.providerById(EntityType.SAML20_SP, "1").get("id"));
+        verify(remoteManage, never()).rawProviders(any(EntityType.class));
+    }
+
+    @Test
+    void startsEmptyWhenManageIsDown() {
+        when(remoteManage.rawProviders(any(EntityType.class))).thenThrow(new IllegalStateException("No response from Manage"));
+
+        Manage manage = snapshotManage();
+
+        assertTrue(manage.providers(EntityType.SAML20_SP).isEmpty());
+    }
+
+    private SnapshotManage snapshotManage() {
+        return new SnapshotManage(remoteManage, objectMapper, tempDir.resolve("snapshot.json").toString(), new SimpleMeterRegistry());
+    }
+
+    @SneakyThrows
+    private List<Map<String, Object>> rawProviders(EntityType entityType) {
+        return objectMapper.readValue(
+                getClass().getResourceAsStream(String.format("/manage/%s.json", entityType.collectionName())),
+                new TypeReference<>() {
+                });
+    }
+}
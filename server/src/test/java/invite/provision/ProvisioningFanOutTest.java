@@ -0,0 +1,82 @@
+package invite.provision;
+
+import invite.provision.ProvisioningFanOut.ProvisioningTask;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProvisioningFanOutTest {
+
+    private final ProvisioningFanOut provisioningFanOut = new ProvisioningFanOut();
+
+    @Test
+    void invokeAllConcurrentlyPerProvisioning() {
+        Provisioning first = provisioning("1");
+        Provisioning second = provisioning("2");
+        //Only completes if the tasks of both provisionings run at the same time
+        CountDownLatch countDownLatch = new CountDownLatch(2);
+        List<String> sentRequests = new CopyOnWriteArrayList<>();
+        List<String> results = provisioningFanOut.invokeAll(List.of(
+                new ProvisioningTask<>(first, () -> awaitOther(countDownLatch, sentRequests, "1-a")),
+                new ProvisioningTask<>(second, () -> awaitOther(countDownLatch, sentRequests, "2-a")),
+                new ProvisioningTask<>(first, () -> send(sentRequests, "1-b")),
+                new ProvisioningTask<>(first, () -> send(sentRequests, "1-c"))
+        ));
+        assertEquals(List.of("1-a", "2-a", "1-b", "1-c"), results);
+        List<String> firstRequests = sentRequests.stream().filter(request -> request.startsWith("1")).toList();
+        assertEquals(List.of("1-a", "1-b", "1-c"), firstRequests);
+    }
+
+    @Test
+    void invokeAllWithException() {
+        List<String> sentRequests = new CopyOnWriteArrayList<>();
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> provisioningFanOut.invokeAll(List.of(
+                new ProvisioningTask<>(provisioning("1"), () -> {
+                    throw new IllegalArgumentException("1-a");
+                }),
+                new ProvisioningTask<>(provisioning("1"), () -> send(sentRequests, "1-b")),
+                new ProvisioningTask<>(provisioning("2"), () -> send(sentRequests, "2-a"))
+        )));
+        assertEquals("1-a", exception.getMessage());
+        //The remaining task of the failing provisioning is skipped
+        assertEquals(List.of("2-a"), sentRequests);
+    }
+
+    @Test
+    void invokeAllSingleProvisioning() {
+        String threadName = Thread.currentThread().getName();
+        List<String> results = provisioningFanOut.invokeAll(List.of(
+                new ProvisioningTask<>(provisioning("1"), () -> Thread.currentThread().getName())));
+        assertEquals(List.of(threadName), results);
+        assertTrue(provisioningFanOut.invokeAll(List.of()).isEmpty());
+    }
+
+    private String awaitOther(CountDownLatch countDownLatch, List<String> sentRequests, String request) {
+        countDownLatch.countDown();
+        try {
+            assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return send(sentRequests, request);
+    }
+
+    private String send(List<String> sentRequests, String request) {
+        sentRequests.add(request);
+        return request;
+    }
+
+    private Provisioning provisioning(String id) {
+        return new Provisioning(Map.of(
+                "id", id,
+                "provisioning_type", ProvisioningType.scim.name(),
+                "scim_url", "https://scim",
+                "scim_bearer_token", "secret"));
+    }
+}
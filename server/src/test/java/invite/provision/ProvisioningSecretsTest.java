@@ -0,0 +1,50 @@
+package invite.provision;
+
+import crypto.KeyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProvisioningSecretsTest {
+
+    private final KeyStore keyStore = mock(KeyStore.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProvisioningSecrets provisioningSecrets = new ProvisioningSecrets(keyStore, Duration.ofMinutes(1), 10, meterRegistry);
+
+    @Test
+    void decryptOncePerSecret() {
+        when(keyStore.isEncryptedSecret("encrypted")).thenReturn(true);
+        when(keyStore.decodeAndDecrypt("encrypted")).thenReturn("secret");
+        when(keyStore.isEncryptedSecret("other-encrypted")).thenReturn(true);
+        when(keyStore.decodeAndDecrypt("other-encrypted")).thenReturn("other");
+
+        assertEquals("secret", provisioningSecrets.decrypt("encrypted"));
+        assertEquals("secret", provisioningSecrets.decrypt("encrypted"));
+        verify(keyStore, times(1)).decodeAndDecrypt("encrypted");
+        assertEquals(1.0, decryptions());
+
+        assertEquals("other", provisioningSecrets.decrypt("other-encrypted"));
+        assertEquals(2.0, decryptions());
+    }
+
+    @Test
+    void plainSecret() {
+        assertEquals("plain", provisioningSecrets.decrypt("plain"));
+        verify(keyStore, never()).decodeAndDecrypt(anyString());
+        assertEquals(0.0, decryptions());
+    }
+
+    private double decryptions() {
+        return meterRegistry.get("provisioning_secret_decryptions").counter().count();
+    }
+}
@@ -20,6 +20,7 @@ import org.springframework.http.HttpStatus;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -210,6 +211,68 @@ class ProvisioningServiceDefaultTest extends AbstractTest {
         provisioningService.updateGroupRequest(new UserRole(Authority.INVITER, new Role()), OperationType.add);
     }
 
+    @Test
+    void updateGroupRequestWithMemberDelta() throws JsonProcessingException {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        UserRole userRole = user.getUserRoles().stream()
+                .filter(ur -> ur.getRole().getName().equals("Wiki"))
+                .findFirst()
+                .get();
+        //Provisioning "7" uses the PUT method for group updates
+        this.stubForManageProvisioning(List.of("1"));
+        super.stubForProvisionEduID(UUID.randomUUID().toString());
+        this.stubForCreateScimRole();
+        String remoteScimIdentifier = this.stubForCreateScimUser();
+        this.stubForUpdateScimRole();
+
+        provisioningService.updateGroupRequest(userRole, OperationType.add);
+        //Unchanged members do not result in a new PUT
+        provisioningService.updateGroupRequest(userRole, OperationType.add);
+        mockServer.verify(1, putRequestedFor(urlPathMatching("/api/scim/v2/Groups/(.*)")));
+
+        RemoteProvisionedGroup remoteProvisionedGroup = remoteProvisionedGroupRepository
+                .findWithMembersByManageProvisioningIdAndRole("7", userRole.getRole()).get();
+        assertTrue(remoteProvisionedGroup.isMembersSynced());
+        assertEquals(Set.of(remoteScimIdentifier), remoteProvisionedGroup.getMembers());
+
+        provisioningService.updateGroupRequest(userRole, OperationType.remove);
+        mockServer.verify(2, putRequestedFor(urlPathMatching("/api/scim/v2/Groups/(.*)")));
+        remoteProvisionedGroup = remoteProvisionedGroupRepository
+                .findWithMembersByManageProvisioningIdAndRole("7", userRole.getRole()).get();
+        assertTrue(remoteProvisionedGroup.getMembers().isEmpty());
+    }
+
+    @Test
+    void updateGroupRequestWithMemberDeltaRetriedAfterFailure() throws JsonProcessingException {
+        User user = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        UserRole userRole = user.getUserRoles().stream()
+                .filter(ur -> ur.getRole().getName().equals("Wiki"))
+                .findFirst()
+                .get();
+        this.stubForManageProvisioning(List.of("1"));
+        super.stubForProvisionEduID(UUID.randomUUID().toString());
+        this.stubForCreateScimRole();
+        String remoteScimIdentifier = this.stubForCreateScimUser();
+        stubFor(put(urlPathMatching("/api/scim/v2/Groups/(.*)"))
+                .willReturn(aResponse().withStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())));
+
+        assertThrows(RemoteException.class, () -> provisioningService.updateGroupRequest(userRole, OperationType.add));
+        //The members are not saved as sent when the PUT has failed
+        RemoteProvisionedGroup remoteProvisionedGroup = remoteProvisionedGroupRepository
+                .findWithMembersByManageProvisioningIdAndRole("7", userRole.getRole()).get();
+        assertFalse(remoteProvisionedGroup.isMembersSynced());
+
+        this.stubForUpdateScimRole();
+        provisioningService.updateGroupRequest(userRole, OperationType.add);
+        List<LoggedRequest> putRequests = findAll(putRequestedFor(urlPathMatching("/api/scim/v2/Groups/(.*)")));
+        assertEquals(2, putRequests.size());
+        assertTrue(putRequests.getLast().getBodyAsString().contains(remoteScimIdentifier));
+
+        remoteProvisionedGroup = remoteProvisionedGroupRepository
+                .findWithMembersByManageProvisioningIdAndRole("7", userRole.getRole()).get();
+        assertEquals(Set.of(remoteScimIdentifier), remoteProvisionedGroup.getMembers());
+    }
+
     @Test
     void deleteGroupRequest() throws JsonProcessingException {
         Role role = roleRepository.findByName("Calendar").get();
@@ -6,21 +6,32 @@ import invite.manage.EntityType;
 import invite.manage.LocalManage;
 import invite.model.User;
 import invite.provision.Provisioning;
+import invite.provision.ProvisioningSecrets;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.graph.requests.GraphServiceClient;
 import crypto.RSAKeyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Request;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 //We test the non-happy paths here and the happy-paths through the controllers
 class GraphClientTest {
 
+    final MeterRegistry meterRegistry = new SimpleMeterRegistry();
     final GraphClient graphClient = new GraphClient("http://localhost:8888",
             "test.eduid.nl",
-            new RSAKeyStore(),
-            new ObjectMapper());
+            new ProvisioningSecrets(new RSAKeyStore(), Duration.ofMinutes(1), 10, meterRegistry),
+            new ObjectMapper(),
+            meterRegistry);
     final LocalManage localManage = new LocalManage(ObjectMapperHolder.objectMapper);
 
     @Test
@@ -41,6 +52,16 @@ class GraphClientTest {
         assertThrows(RemoteException.class, () -> graphClient.deleteUser(new User(), provisioning, "remote_id"));
     }
 
+    @Test
+    void graphServiceClientIsCachedPerProvisioning() {
+        Map<String, Object> provisioningData = new HashMap<>(localManage.providerById(EntityType.PROVISIONING, "9"));
+        GraphServiceClient<Request> graphServiceClient = graphClient.getRequestGraphServiceClient(new Provisioning(provisioningData));
+        assertSame(graphServiceClient, graphClient.getRequestGraphServiceClient(new Provisioning(provisioningData)));
+        //Changed metadata in Manage
+        provisioningData.put("graph_secret", "changed");
+        assertNotSame(graphServiceClient, graphClient.getRequestGraphServiceClient(new Provisioning(provisioningData)));
+    }
+
     private Provisioning getProvisioning() {
         Map<String, Object> provisioningData = localManage.providerById(EntityType.PROVISIONING, "9");
         return new Provisioning(provisioningData);
@@ -0,0 +1,42 @@
+package invite.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeysetTest {
+
+    @Test
+    void rewriteAscending() {
+        String query = "SELECT u.id, (SELECT COUNT(*) FROM user_roles ur) AS c FROM users u WHERE (?1 IS NOT NULL OR ?2 IS NULL) " +
+                "order by u.name asc, u.id asc";
+        assertEquals("SELECT u.id, (SELECT COUNT(*) FROM user_roles ur) AS c, u.name AS keyset_sort FROM users u WHERE " +
+                        "(?2 IS NULL OR u.name > ?1 OR (u.name = ?1 AND u.id > ?2) OR (?1 IS NULL AND (u.name IS NOT NULL OR u.id > ?2))) " +
+                        "order by u.name asc, u.id asc",
+                Keyset.rewrite(query));
+    }
+
+    @Test
+    void rewriteDescending() {
+        String query = "SELECT r.* FROM roles r WHERE r.x = ?1 AND (?2 IS NOT NULL OR ?3 IS NULL) order by r.created_at desc, r.id desc";
+        assertEquals("SELECT r.*, r.created_at AS keyset_sort FROM roles r WHERE r.x = ?1 AND " +
+                        "(?3 IS NULL OR r.created_at < ?2 OR (r.created_at = ?2 AND r.id < ?3) OR (?2 IS NOT NULL AND r.created_at IS NULL) " +
+                        "OR (?2 IS NULL AND r.created_at IS NULL AND r.id < ?3)) order by r.created_at desc, r.id desc",
+                Keyset.rewrite(query));
+    }
+
+    @Test
+    void rewriteAlias() {
+        String query = "SELECT u.id, (SELECT 1) AS authority FROM users u WHERE (?1 IS NOT NULL OR ?2 IS NULL) order by authority asc, u.id asc";
+        assertEquals("SELECT u.id, (SELECT 1) AS authority FROM users u WHERE 1 = 1 " +
+                        "HAVING (?2 IS NULL OR authority > ?1 OR (authority = ?1 AND u.id > ?2) OR (?1 IS NULL AND (authority IS NOT NULL OR u.id > ?2))) " +
+                        "order by authority asc, u.id asc",
+                Keyset.rewrite(query));
+    }
+
+    @Test
+    void rewriteIgnoresOtherQueries() {
+        String query = "SELECT * FROM users u WHERE u.id = ?1 order by u.name asc";
+        assertEquals(query, Keyset.rewrite(query));
+    }
+}
@@ -0,0 +1,44 @@
+package invite.repository;
+
+import invite.AbstractTest;
+import invite.model.RemoteProvisionedUser;
+import invite.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteProvisionedUserRepositoryTest extends AbstractTest {
+
+    @Test
+    void findRemoteIdentifiers() {
+        User guest = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        User inviter = userRepository.findBySubIgnoreCase(INVITER_SUB).get();
+        remoteProvisionedUserRepository.saveAll(List.of(
+                new RemoteProvisionedUser(guest, "remote-guest", "7"),
+                new RemoteProvisionedUser(inviter, "remote-inviter", "8")));
+
+        Map<Long, String> remoteIdentifiers = remoteProvisionedUserRepository
+                .findRemoteIdentifiers("7", Set.of(guest.getId(), inviter.getId()));
+        assertEquals(Map.of(guest.getId(), "remote-guest"), remoteIdentifiers);
+        assertTrue(remoteProvisionedUserRepository.findRemoteIdentifiers("7", Set.of()).isEmpty());
+    }
+
+    @Test
+    void deleteByManageProvisioningIdAndUserId() {
+        User guest = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        remoteProvisionedUserRepository.saveAll(List.of(
+                new RemoteProvisionedUser(guest, "remote-7", "7"),
+                new RemoteProvisionedUser(guest, "remote-8", "8")));
+
+        remoteProvisionedUserRepository.deleteByManageProvisioningIdAndUserId("7", guest.getId());
+
+        List<RemoteProvisionedUser> remoteProvisionedUsers = remoteProvisionedUserRepository.findAll();
+        assertEquals(1, remoteProvisionedUsers.size());
+        assertEquals("8", remoteProvisionedUsers.getFirst().getManageProvisioningId());
+    }
+}
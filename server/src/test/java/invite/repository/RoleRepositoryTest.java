@@ -1,10 +1,16 @@
 package invite.repository;
 
 import invite.AbstractTest;
+import invite.model.Authority;
 import invite.model.Role;
+import invite.model.User;
+import invite.model.UserRole;
+import invite.search.UserRoleCounts;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
 import java.util.List;
@@ -14,6 +20,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class RoleRepositoryTest extends AbstractTest {
 
+    @Autowired
+    private UserRoleCounts userRoleCounts;
+
     @Test
     void search() {
         List<Role> roles = roleRepository.search("desc*", 3);
@@ -30,31 +39,67 @@ class RoleRepositoryTest extends AbstractTest {
     }
 
     @Test
-    void searchByPageWithKeyword() {
-        PageRequest pageRequest = PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "name"));
-        Page<Role> page = roleRepository.searchByPageWithKeyword("desc*", pageRequest);
-        assertEquals(6L, page.getTotalElements());
-        assertEquals(3, page.getContent().size());
-        List<String> names = page.getContent().stream().map(role -> role.getName()).toList();
+    void searchByKeysetWithKeyword() {
+        Slice<Role> slice = roleRepository.searchByKeysetWithKeyword("desc*", null, null, pageRequest(1, 3, "name"));
+        assertEquals(6L, roleRepository.countSearchWithKeyword("desc*"));
+        assertEquals(3, slice.getContent().size());
+        List<String> names = slice.getContent().stream().map(role -> role.getName()).toList();
         //Sorted by name in descending order
         assertEquals(List.of("Network", "Mail", "Calendar"), names);
     }
 
     @Test
-    void searchByPageWithMultipleApplicationsUsages() {
-        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "name"));
+    void searchByKeysetWithMultipleApplicationsUsages() {
         //See AbstractTest#seed Storage has two applications linked
-        Page<Role> page = roleRepository.searchByPageWithKeyword("Storage", pageRequest);
-        assertEquals(1, page.getTotalElements());
-        assertEquals(1, page.getContent().size());
+        Slice<Role> slice = roleRepository.searchByKeysetWithKeyword("Storage", null, null, pageRequest(0, 10, "name"));
+        assertEquals(1L, roleRepository.countSearchWithKeyword("Storage"));
+        assertEquals(1, slice.getContent().size());
     }
 
     @Test
-    void searchByPageWiki() {
-        PageRequest pageRequest = PageRequest.of(0, 15, Sort.by(Sort.Direction.ASC, "description"));
-        Page<Role> page = roleRepository.searchByPageWithKeyword("wiki*", pageRequest);
-        assertEquals(1L, page.getTotalElements());
-        assertEquals(1, page.getContent().size());
-        assertEquals(3L, page.getContent().get(0).getUserRoleCount());
+    void searchByKeysetWiki() {
+        Slice<Role> slice = roleRepository.searchByKeysetWithKeyword("wiki*", null, null, pageRequest(0, 15, "description"));
+        assertEquals(1L, roleRepository.countSearchWithKeyword("wiki*"));
+        assertEquals(1, slice.getContent().size());
+        assertEquals(3L, slice.getContent().get(0).getUserRoleCount());
+    }
+
+    @Test
+    void countsOfSeededRoles() {
+        assertEquals(3L, userRoleCount("Wiki"));
+        assertEquals(2L, userRoleCount("Research"));
+        assertEquals(0L, userRoleCount("Network"));
+        assertEquals(0, userRoleCounts.reconcile());
+    }
+
+    @Test
+    void countIsMaintainedOnUserRoleChanges() {
+        User guest = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        Role network = roleRepository.findByName("Network").get();
+
+        UserRole userRole = userRoleRepository.save(new UserRole("system", guest, network, Authority.GUEST));
+        assertEquals(1L, userRoleCount("Network"));
+
+        userRole.setAuthority(Authority.INVITER);
+        userRoleRepository.save(userRole);
+        assertEquals(1L, userRoleCount("Network"));
+
+        userRoleRepository.delete(userRole);
+        assertEquals(0L, userRoleCount("Network"));
+    }
+
+    @Test
+    void reconcileUserRoleCounts() {
+        jdbcTemplate.update("UPDATE roles SET user_role_count = 7 WHERE name = 'Wiki'");
+        assertEquals(1, userRoleCounts.reconcile());
+        assertEquals(3L, userRoleCount("Wiki"));
+    }
+
+    private PageRequest pageRequest(int pageNumber, int pageSize, String sort) {
+        return PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, sort).and(Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    private long userRoleCount(String name) {
+        return roleRepository.findByName(name).get().getUserRoleCount();
     }
-}
\ No newline at end of file
+}
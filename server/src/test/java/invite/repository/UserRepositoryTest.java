@@ -1,20 +1,30 @@
 package invite.repository;
 
 import invite.AbstractTest;
+import invite.model.Authority;
+import invite.model.Role;
 import invite.model.User;
+import invite.model.UserRole;
+import invite.search.UserSummaries;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
 import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UserRepositoryTest extends AbstractTest {
 
+    @Autowired
+    private UserSummaries userSummaries;
+
     @Test
     void findBySubIgnoreCase() {
         User user = userRepository.findBySubIgnoreCase(MANAGE_SUB.toUpperCase()).get();
@@ -28,26 +38,89 @@ class UserRepositoryTest extends AbstractTest {
     }
 
     @Test
-    void search() {
-        Page<Map<String, Object>> usersPage = userRepository.searchByPage(PageRequest.of(1, 3, Sort.by(Sort.Direction.ASC, "name")));
-        assertEquals(3, usersPage.getContent().size());
+    void searchByKeyset() {
+        Slice<Map<String, Object>> users = userRepository.searchByKeyset(null, null, pageRequest(1, 3, "name"));
+        assertEquals(3, users.getContent().size());
     }
 
     @Test
-    void searchByPage() {
-        PageRequest pageRequest = PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "given_name"));
-        Page<Map<String, Object>> users = userRepository.searchByPageWithKeyword("exam*", pageRequest);
-        assertEquals(7L, users.getTotalElements());
+    void searchByKeysetWithKeyword() {
+        Slice<Map<String, Object>> users = userRepository.searchByKeysetWithKeyword("exam*", null, null, pageRequest(1, 3, "name"));
+        assertEquals(7L, userRepository.countSearchWithKeyword("exam*"));
         assertEquals(3, users.getContent().size());
     }
 
     @Test
-    void searchByPageSingleResult() {
-        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "given_name"));
-        Page<Map<String, Object>> users = userRepository.searchByPageWithKeyword("mary*", pageRequest);
-        assertEquals(1L, users.getTotalElements());
+    void searchByKeysetSingleResult() {
+        Slice<Map<String, Object>> users = userRepository.searchByKeysetWithKeyword("mary*", null, null, pageRequest(0, 3, "name"));
+        assertEquals(1L, userRepository.countSearchWithKeyword("mary*"));
         assertEquals(1, users.getContent().size());
+        assertFalse(users.hasNext());
+    }
+
+    @Test
+    void summariesOfSeededUsers() {
+        assertSummary(GUEST_SUB, "GUEST", "GUEST");
+        assertSummary(INVITER_SUB, "INVITER", "INVITER");
+        assertSummary(SUPER_SUB, null, null);
+
+        Map<String, Object> summary = summary(APPLICATION_MANAGER_SUB);
+        assertNotNull(summary.get("application_ids"));
+        assertEquals(0, userSummaries.reconcile());
     }
 
+    @Test
+    void summaryIsRefreshedOnUserRoleChanges() {
+        User guest = userRepository.findBySubIgnoreCase(GUEST_SUB).get();
+        Role network = roleRepository.findByName("Network").get();
+
+        UserRole userRole = userRoleRepository.save(new UserRole("system", guest, network, Authority.MANAGER));
+        assertSummary(GUEST_SUB, "GUEST,MANAGER", "MANAGER");
+
+        userRole.setAuthority(Authority.INVITER);
+        userRoleRepository.save(userRole);
+        assertSummary(GUEST_SUB, "GUEST,INVITER", "INVITER");
 
-}
\ No newline at end of file
+        userRoleRepository.delete(userRole);
+        assertSummary(GUEST_SUB, "GUEST", "GUEST");
+    }
+
+    @Test
+    void summaryIsRefreshedAfterNativeDelete() {
+        User manager = userRepository.findBySubIgnoreCase(MANAGE_SUB).get();
+        Role wiki = roleRepository.findByName("Wiki").get();
+        UserRole userRole = userRoleRepository.findByRole(wiki).stream()
+                .filter(ur -> ur.getUser().getId().equals(manager.getId()))
+                .findFirst()
+                .get();
+
+        userRoleRepository.deleteUserRoleById(userRole.getId());
+        userSummaries.changed(manager.getId());
+        assertSummary(MANAGE_SUB, null, null);
+    }
+
+    @Test
+    void reconcileSummaries() {
+        jdbcTemplate.update("UPDATE users SET authorities = 'SUPER_USER', highest_authority = 'SUPER_USER' WHERE sub = ?",
+                GUEST_SUB);
+        jdbcTemplate.update("UPDATE users SET authorities = NULL WHERE sub = ?", INVITER_SUB);
+        assertEquals(2, userSummaries.reconcile());
+        assertSummary(GUEST_SUB, "GUEST", "GUEST");
+        assertSummary(INVITER_SUB, "INVITER", "INVITER");
+    }
+
+    private PageRequest pageRequest(int pageNumber, int pageSize, String sort) {
+        return PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, sort).and(Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    private void assertSummary(String sub, String authorities, String highestAuthority) {
+        Map<String, Object> summary = summary(sub);
+        assertEquals(authorities, summary.get("authorities"));
+        assertEquals(highestAuthority, summary.get("highest_authority"));
+    }
+
+    private Map<String, Object> summary(String sub) {
+        return jdbcTemplate.queryForMap(
+                "SELECT authorities, highest_authority, application_ids FROM users WHERE sub = ?", sub);
+    }
+}
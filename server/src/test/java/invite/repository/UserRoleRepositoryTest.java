@@ -3,53 +3,58 @@ package invite.repository;
 import invite.AbstractTest;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UserRoleRepositoryTest extends AbstractTest {
 
     @SneakyThrows
     @Test
-    void searchGuestsByPage() {
-        PageRequest pageRequest = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "authority"));
+    void searchGuestsByKeyset() {
         Long roleID = roleRepository.findByName("Wiki").get().getId();
-        Page<Map<String, Object>> userRoles = userRoleRepository.searchGuestsByPage(roleID, pageRequest);
-        assertEquals(2L, userRoles.getTotalElements());
+        Slice<Map<String, Object>> userRoles = userRoleRepository.searchGuestsByKeyset(roleID, null, null, pageRequest("authority"));
+        assertEquals(2L, userRoleRepository.countGuests(roleID));
         assertEquals(1, userRoles.getContent().size());
+        assertTrue(userRoles.hasNext());
     }
 
     @SneakyThrows
     @Test
-    void searchGuestsByPageWithKeyword() {
-        PageRequest pageRequest = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "u.email"));
+    void searchGuestsByKeysetWithKeyword() {
         Long roleID = roleRepository.findByName("Wiki").get().getId();
-        Page<Map<String, Object>> userRoles = userRoleRepository.searchGuestsByPageWithKeyword(roleID, "doe*", pageRequest);
-        assertEquals(2L, userRoles.getTotalElements());
+        Slice<Map<String, Object>> userRoles = userRoleRepository.searchGuestsByKeysetWithKeyword(roleID, "doe*", null, null, pageRequest("name"));
+        assertEquals(2L, userRoleRepository.countGuestsWithKeyword(roleID, "doe*"));
         assertEquals(1, userRoles.getContent().size());
+        assertTrue(userRoles.hasNext());
     }
 
     @SneakyThrows
     @Test
-    void searchNonGuestsByPage() {
-        PageRequest pageRequest = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "authority"));
+    void searchNonGuestsByKeyset() {
         Long roleID = roleRepository.findByName("Wiki").get().getId();
-        Page<Map<String, Object>> userRoles = userRoleRepository.searchNonGuestsByPage(roleID, pageRequest);
-        assertEquals(2L, userRoles.getTotalElements());
+        Slice<Map<String, Object>> userRoles = userRoleRepository.searchNonGuestsByKeyset(roleID, null, null, pageRequest("authority"));
+        assertEquals(2L, userRoleRepository.countNonGuests(roleID));
         assertEquals(1, userRoles.getContent().size());
+        assertTrue(userRoles.hasNext());
     }
 
     @SneakyThrows
     @Test
-    void searchNonGuestsByPageWithKeyword() {
-        PageRequest pageRequest = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "u.email"));
+    void searchNonGuestsByKeysetWithKeyword() {
         Long roleID = roleRepository.findByName("Wiki").get().getId();
-        Page<Map<String, Object>> userRoles = userRoleRepository.searchNonGuestsByPageWithKeyword(roleID, "doe*", pageRequest);
-        assertEquals(2L, userRoles.getTotalElements());
+        Slice<Map<String, Object>> userRoles = userRoleRepository.searchNonGuestsByKeysetWithKeyword(roleID, "doe*", null, null, pageRequest("name"));
+        assertEquals(2L, userRoleRepository.countNonGuestsWithKeyword(roleID, "doe*"));
         assertEquals(1, userRoles.getContent().size());
+        assertTrue(userRoles.hasNext());
     }
-}
\ No newline at end of file
+
+    private PageRequest pageRequest(String sort) {
+        return PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, sort).and(Sort.by(Sort.Direction.DESC, "id")));
+    }
+}
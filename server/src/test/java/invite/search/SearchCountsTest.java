@@ -0,0 +1,56 @@
+package invite.search;
+
+import invite.AbstractTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCountsTest extends AbstractTest {
+
+    @Test
+    void countIsCachedUntilInvalidated() {
+        SearchCounts searchCounts = searchCounts(Long.MAX_VALUE);
+        AtomicInteger queries = new AtomicInteger();
+        Set<String> tables = Set.of("user_roles", "users");
+
+        for (int i = 0; i < 3; i++) {
+            SearchCounts.Count count = searchCounts.count(tables, "guests", List.of(1L), () -> queries.incrementAndGet());
+            assertEquals(1L, count.total());
+            assertTrue(count.exact());
+        }
+        assertEquals(2L, searchCounts.count(tables, "guests", List.of(2L), () -> queries.incrementAndGet()).total());
+
+        searchCounts.invalidate("roles");
+        assertEquals(1L, searchCounts.count(tables, "guests", List.of(1L), () -> queries.incrementAndGet()).total());
+
+        searchCounts.invalidate("users");
+        assertEquals(3L, searchCounts.count(tables, "guests", List.of(1L), () -> queries.incrementAndGet()).total());
+    }
+
+    @Test
+    void estimateBelowThreshold() {
+        SearchCounts.Count count = searchCounts(Long.MAX_VALUE).estimate("users", userRepository::count);
+
+        assertEquals(userRepository.count(), count.total());
+        assertTrue(count.exact());
+    }
+
+    @Test
+    void estimateAboveThreshold() {
+        SearchCounts.Count count = searchCounts(0L).estimate("users", () -> {
+            throw new AssertionError("Rows must not be counted");
+        });
+
+        assertFalse(count.exact());
+    }
+
+    private SearchCounts searchCounts(long estimateThreshold) {
+        return new SearchCounts(jdbcTemplate, true, Duration.ofMinutes(1), 100, estimateThreshold, new SimpleMeterRegistry());
+    }
+}
@@ -1,19 +1,29 @@
 package invite.voot;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import invite.AbstractTest;
+import invite.cron.LastActivityBuffer;
+import invite.model.MembershipsRequest;
 import io.restassured.common.mapper.TypeRef;
 import io.restassured.http.ContentType;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
 import java.util.Map;
 
+import static invite.manage.EntityType.SAML20_SP;
 import static io.restassured.RestAssured.given;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class VootControllerTest extends AbstractTest {
 
+    @Autowired
+    private LastActivityBuffer lastActivityBuffer;
+
     @Test
     void getGroupMemberships() {
         List<Map<String, String>> groups = given()
@@ -89,4 +99,76 @@ class VootControllerTest extends AbstractTest {
                 });
         assertEquals(0, groups.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getGroupMembershipsBulk() throws JsonProcessingException {
+        lastActivityBuffer.doFlush();
+        String ndjson = given()
+                .when()
+                .auth().preemptive().basic("voot", "secret")
+                .accept("application/x-ndjson")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB, "nope", MANAGE_SUB), null))
+                .post("/api/external/v1/voot")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<Map<String, Object>> lines = ndjson.lines().map(this::parseLine).toList();
+
+        assertEquals(List.of(GUEST_SUB, "nope", MANAGE_SUB), lines.stream().map(line -> line.get("sub")).toList());
+        assertEquals(List.of(3, 0, 1), lines.stream().map(line -> ((List<?>) line.get("groups")).size()).toList());
+        //Bulk requests are not logins
+        assertEquals(0, lastActivityBuffer.doFlush());
+    }
+
+    @Test
+    void getGroupMembershipsBulkForServiceProvider() throws JsonProcessingException {
+        stubForManageProviderByEntityID(SAML20_SP, "https://research");
+        String ndjson = given()
+                .when()
+                .auth().preemptive().basic("voot", "secret")
+                .accept("application/x-ndjson")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB), List.of("https://research")))
+                .post("/api/external/v1/voot")
+                .then()
+                .statusCode(200)
+                .extract()
+                .asString();
+        List<Map<String, Object>> lines = ndjson.lines().map(this::parseLine).toList();
+
+        assertEquals(1, lines.size());
+        assertEquals(1, ((List<?>) lines.get(0).get("groups")).size());
+    }
+
+    @Test
+    void getGroupMembershipsBulkWithoutSubs() {
+        given()
+                .when()
+                .auth().preemptive().basic("voot", "secret")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(), null))
+                .post("/api/external/v1/voot")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void getGroupMembershipsBulkWithBlankSub() {
+        given()
+                .when()
+                .auth().preemptive().basic("voot", "secret")
+                .contentType(ContentType.JSON)
+                .body(new MembershipsRequest(List.of(GUEST_SUB, " "), null))
+                .post("/api/external/v1/voot")
+                .then()
+                .statusCode(400);
+    }
+
+    @SneakyThrows
+    private Map<String, Object> parseLine(String line) {
+        return objectMapper.readValue(line, new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package invite.voot;
+
+import invite.AbstractTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VootMembershipsTest extends AbstractTest {
+
+    @Value("${voot.group_urn_domain}")
+    private String groupUrnPrefix;
+
+    @Test
+    void memberships() {
+        VootMemberships.Memberships memberships = vootMemberships().memberships(GUEST_SUB);
+
+        assertEquals(userRepository.findBySubIgnoreCase(GUEST_SUB).get().getId(), memberships.userId());
+        assertEquals(3, memberships.groups().size());
+        memberships.groups().forEach(group -> {
+            assertTrue(group.get("urn").startsWith("urn:mace:surf.nl:test.surfaccess.nl:"));
+            assertNotNull(group.get("name"));
+        });
+    }
+
+    @Test
+    void membershipsUnknownUser() {
+        VootMemberships.Memberships memberships = vootMemberships().memberships("nope");
+
+        assertNull(memberships.userId());
+        assertTrue(memberships.groups().isEmpty());
+    }
+
+    @Test
+    void membershipsAreCachedUntilEvicted() {
+        VootMemberships vootMemberships = vootMemberships();
+        assertEquals(3, vootMemberships.memberships(GUEST_SUB).groups().size());
+
+        userRoleRepository.deleteAllInBatch();
+        //Cache keys are case-insensitive like the sub in the database
+        assertEquals(3, vootMemberships.memberships(GUEST_SUB.toUpperCase()).groups().size());
+
+        vootMemberships.evict(GUEST_SUB);
+        assertEquals(0, vootMemberships.memberships(GUEST_SUB).groups().size());
+    }
+
+    @Test
+    void bulkMemberships() {
+        VootMemberships vootMemberships = vootMemberships();
+        Map<String, VootMemberships.Memberships> membershipsBySub =
+                vootMemberships.memberships(List.of(GUEST_SUB.toUpperCase(), "nope", MANAGE_SUB));
+
+        assertEquals(3, membershipsBySub.size());
+        assertEquals(3, membershipsBySub.get(GUEST_SUB.toLowerCase()).groups().size());
+        assertNull(membershipsBySub.get("nope").userId());
+        assertEquals(1, membershipsBySub.get(MANAGE_SUB.toLowerCase()).groups().size());
+        //The bulk lookup populates the cache of the single lookup
+        userRoleRepository.deleteAllInBatch();
+        assertEquals(3, vootMemberships.memberships(GUEST_SUB).groups().size());
+    }
+
+    private VootMemberships vootMemberships() {
+        return new VootMemberships(userRoleRepository, groupUrnPrefix, true, Duration.ofMinutes(1), 100, new SimpleMeterRegistry());
+    }
+}